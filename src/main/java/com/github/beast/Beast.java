@@ -9,6 +9,7 @@ import net.htmlparser.jericho.LoggerProvider;
 
 import com.github.beast.crawler.Crawler;
 import com.github.beast.database.BeastIndex;
+import com.github.beast.relevance.RelevanceEngine;
 import com.github.beast.semantics.SemanticEngine;
 import com.github.beast.tagger.Tagger;
 import com.github.beast.util.Configuration;
@@ -22,6 +23,7 @@ public class Beast {
 	public static Tagger tagger = new Tagger();
 	public static Configuration config = Configuration.getInstance(PROPERTIES_FILE);
 	public static SemanticEngine semEngine = new SemanticEngine();
+	public static RelevanceEngine relevance = config.getRelevanceEngine().create();
 
 	// public static Tagger tagger;
 	
@@ -91,6 +93,10 @@ public class Beast {
 		log("index initialized at: " + path);
 		System.out.println("index initialized at: " + path);
 
+		if ((config.useSemantics()) && (config.useSemanticPreload())) {
+			semEngine.preload(index.getKeywordNames());
+		}
+
 		log("beginning crawl");
 		crawler.init();
 		crawler.doCrawl(bees, iters);
@@ -101,6 +107,9 @@ public class Beast {
 		System.out.println("Keywords: " + index.numKeywords());
 
 		index.shutdown();
+		if (config.useSemantics()) {
+			semEngine.save();
+		}
 		index.exportToXML(path, path + "/" + filename);
 
 		Date end = new Date();
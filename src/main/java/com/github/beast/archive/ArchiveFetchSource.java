@@ -0,0 +1,132 @@
+package com.github.beast.archive;
+
+import java.io.IOException;
+
+import com.github.beast.page.FetchSource;
+import com.github.beast.page.Page;
+import com.github.beast.parser.StreamingExtractor;
+
+/**
+ * Singleton class representing the {@link PageArchive} as a
+ * {@link FetchSource}, replaying the latest archived code of pages instead of
+ * requesting them from the web. Allows stored pages to be parsed and analysed
+ * again without network access.
+ * <p>
+ * A page is considered modified, if its latest record differs from the record
+ * the page has been processed from. Pages that have not been archived cannot
+ * be fetched.
+ *
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see ArchiveReader
+ */
+public final class ArchiveFetchSource implements FetchSource {
+
+	/** Instance of a singleton class. */
+	private static ArchiveFetchSource instance;
+
+	/** The replayed archive. */
+	private final PageArchive archive;
+
+	/** Reader of the replayed archive. */
+	private final ArchiveReader reader;
+
+	/**
+	 * Constructor of the <code>ArchiveFetchSource</code> class. Is private
+	 * because <code>ArchiveFetchSource</code> is a singleton class.
+	 */
+	private ArchiveFetchSource() {
+
+		archive = PageArchive.getInstance();
+		reader = new ArchiveReader(archive);
+	}
+
+	/**
+	 * Returns instance of the <code>ArchiveFetchSource</code> singleton class.
+	 * If no instance exists, new instance is created.
+	 *
+	 * @return instance of the singleton class
+	 */
+	public static synchronized ArchiveFetchSource getInstance() {
+
+		if (instance == null) {
+			instance = new ArchiveFetchSource();
+		}
+		return instance;
+	}
+
+	/**
+	 * Fetches the latest archived code of a page and points the page to its
+	 * record.
+	 *
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @param conditional <i>true</i> to fetch the code only if the page has
+	 *        been archived again since it has been processed
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if the page has not been modified
+	 * @throws NullPointerException if the page is not archived, or its record
+	 *         could not be read
+	 */
+	public CharSequence fetch(final Page page, final StreamingExtractor extractor, final boolean conditional)
+			throws NullPointerException {
+
+		ArchivePointer pointer = archive.getPointer(page.getUrl().toString());
+
+		if (pointer == null) {
+			pointer = page.getArchivePointer();
+		}
+		if (pointer == null) {
+			System.err.println("Page not archived: " + page.getUrl());
+			throw new NullPointerException();
+		}
+		if ((conditional) && (pointer.equals(page.getArchivePointer()))) {
+			return null;
+		}
+
+		try {
+			CharSequence code = reader.readCode(pointer, extractor);
+			page.setArchivePointer(pointer);
+			return code;
+		} catch (IOException e) {
+			System.err.println("Failed to replay page: " + page.getUrl() + ", " + e.getMessage());
+			throw new NullPointerException();
+		}
+	}
+
+	/**
+	 * Reads the code of a page from the very record the page has been
+	 * processed from, as recorded by its archive pointer. Unlike
+	 * {@link #fetch(Page, StreamingExtractor, boolean)}, neither newer records
+	 * of the page are read, nor failures are thrown.
+	 * 
+	 * @param page the page, for which the code is to be read
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to read the whole code
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if the page is not archived or its record could not be read
+	 */
+	public CharSequence restore(final Page page, final StreamingExtractor extractor) {
+
+		ArchivePointer pointer = page.getArchivePointer();
+
+		if (pointer == null) {
+			return null;
+		}
+		try {
+			return reader.readCode(pointer, extractor);
+		} catch (IOException e) {
+			System.err.println("Failed to restore page: " + page.getUrl() + ", " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return <i>true</i>, as pages are replayed from the archive
+	 */
+	public boolean isReplay() {
+
+		return true;
+	}
+}
@@ -0,0 +1,117 @@
+package com.github.beast.archive;
+
+/**
+ * An immutable pointer to a record of the {@link PageArchive}, consisting of
+ * the number of the segment, offset of the record within the segment and the
+ * length of the record, all in bytes. Pointers are stored in the index in
+ * their textual form <i>segment:offset:length</i>.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class ArchivePointer {
+
+	/** Separator of the parts of the textual form of the pointer. */
+	private static final char SEPARATOR = ':';
+
+	/** Number of the segment containing the record. */
+	private final int segment;
+
+	/** Offset of the record within the segment. */
+	private final long offset;
+
+	/** Length of the compressed record. */
+	private final int length;
+
+	/**
+	 * Creates a pointer to a record.
+	 * 
+	 * @param segment number of the segment containing the record
+	 * @param offset offset of the record within the segment
+	 * @param length length of the compressed record
+	 */
+	public ArchivePointer(final int segment, final long offset, final int length) {
+
+		this.segment = segment;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Parses the textual form of a pointer.
+	 * 
+	 * @param text the textual form <i>segment:offset:length</i>
+	 * @return the pointer, or <code>null</code> if the text is not a valid
+	 *         pointer, such as a path of a loose file of older versions
+	 */
+	public static ArchivePointer parse(final String text) {
+
+		int first = text.indexOf(SEPARATOR);
+		int second = text.indexOf(SEPARATOR, first + 1);
+
+		if ((first <= 0) || (second < 0)) {
+			return null;
+		}
+
+		try {
+			return new ArchivePointer(Integer.parseInt(text.substring(0, first)),
+					Long.parseLong(text.substring(first + 1, second)), Integer.parseInt(text.substring(second + 1)));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return length of the compressed record, in bytes
+	 */
+	public int getLength() {
+
+		return length;
+	}
+
+	/**
+	 * @return offset of the record within its segment, in bytes
+	 */
+	public long getOffset() {
+
+		return offset;
+	}
+
+	/**
+	 * @return number of the segment containing the record
+	 */
+	public int getSegment() {
+
+		return segment;
+	}
+
+	/**
+	 * @param other the compared object
+	 * @return <i>true</i> if the other object points to the same record
+	 */
+	public boolean equals(final Object other) {
+
+		if (!(other instanceof ArchivePointer)) {
+			return false;
+		}
+
+		ArchivePointer pointer = (ArchivePointer) other;
+		return (segment == pointer.segment) && (offset == pointer.offset) && (length == pointer.length);
+	}
+
+	/**
+	 * @return hash code of the pointer
+	 */
+	public int hashCode() {
+
+		return (int) (31 * (31 * segment + (offset ^ (offset >>> 32))) + length);
+	}
+
+	/**
+	 * @return the textual form <i>segment:offset:length</i> of the pointer
+	 */
+	public String toString() {
+
+		return Integer.toString(segment) + SEPARATOR + offset + SEPARATOR + length;
+	}
+}
@@ -0,0 +1,398 @@
+package com.github.beast.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+
+import com.github.beast.parser.StreamingExtractor;
+import com.github.beast.util.DecodingReader;
+
+/**
+ * A reader of records of the {@link PageArchive}. Segments of the archive are
+ * memory-mapped once and shared by all reading threads, records are
+ * decompressed straight from the mapped memory and their payload is decoded
+ * directly into the character buffer of the page, or into an extractor of its
+ * sections. No part of a segment is copied into the heap as a whole, so that
+ * reading of the archive is limited by decompression and parsing rather than
+ * by the disk.
+ * <p>
+ * Segments still being written are mapped again once a record beyond their
+ * mapped length is requested. Records are readable once written by the
+ * writer of the archive.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public class ArchiveReader {
+
+	/** Size of the buffer of the decompressing stream. */
+	private static final int INFLATE_BUFFER_SIZE = 8192;
+
+	/** Maximal length of a header line of a record. */
+	private static final int MAX_HEADER_LENGTH = 8192;
+
+	/** Format of dates in record headers. */
+	private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+	/**
+	 * Headers of a record needed to read its payload.
+	 */
+	private static final class Header {
+
+		private String url;
+		private Date date = new Date();
+		private String contentType;
+		private long length = -1;
+		private boolean extracted;
+	}
+
+	/**
+	 * An input stream reading the remaining bytes of a buffer, without copying
+	 * the buffer.
+	 */
+	private static final class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		/**
+		 * @param buffer the buffer to be read, from its position to its limit
+		 */
+		private BufferInputStream(final ByteBuffer buffer) {
+
+			this.buffer = buffer;
+		}
+
+		public int read() {
+
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		public int read(final byte[] bytes, final int offset, final int length) {
+
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		public int available() {
+
+			return buffer.remaining();
+		}
+	}
+
+	/**
+	 * An input stream reading at most a given number of bytes of another
+	 * stream, so that the payload of a record is read without its trailer.
+	 */
+	private static final class BoundedInputStream extends InputStream {
+
+		private final InputStream in;
+		private long remaining;
+
+		/**
+		 * @param in the underlying stream
+		 * @param length maximal number of bytes read
+		 */
+		private BoundedInputStream(final InputStream in, final long length) {
+
+			this.in = in;
+			this.remaining = length;
+		}
+
+		public int read() throws IOException {
+
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read();
+			if (read >= 0) {
+				remaining--;
+			}
+			return read;
+		}
+
+		public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(bytes, offset, (int) Math.min(length, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		public void close() throws IOException {
+
+			in.close();
+		}
+	}
+
+	/** The archive being read. */
+	private final PageArchive archive;
+
+	/** Mapped segments of the archive, by their numbers. */
+	private final ConcurrentMap<Integer, ByteBuffer> segments = new ConcurrentHashMap<Integer, ByteBuffer>();
+
+	/**
+	 * Creates a reader of an archive.
+	 * 
+	 * @param archive the archive to be read
+	 */
+	public ArchiveReader(final PageArchive archive) {
+
+		this.archive = archive;
+	}
+
+	/**
+	 * Reads a whole record of the archive.
+	 * 
+	 * @param pointer pointer to the record
+	 * @return the record
+	 * @throws IOException if the record could not be read
+	 */
+	public ArchiveRecord read(final ArchivePointer pointer) throws IOException {
+
+		InputStream in = open(pointer);
+		Header header;
+
+		try {
+			header = readHeader(in);
+			return new ArchiveRecord(header.url, header.date, readPayload(in, header, null), header.extracted);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the payload of a record, that is the code of the archived page.
+	 * Records holding only extracted sections of the code are read only
+	 * through an extractor, as they cannot stand for the whole code.
+	 * 
+	 * @param pointer pointer to the record
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to read the whole code
+	 * @return the code of the page, or its captured sections
+	 * @throws IOException if the record could not be read, or the whole code
+	 *         is requested from a record of extracted sections
+	 */
+	public CharSequence readCode(final ArchivePointer pointer, final StreamingExtractor extractor)
+			throws IOException {
+
+		InputStream in = open(pointer);
+
+		try {
+			Header header = readHeader(in);
+			if ((header.extracted) && (extractor == null)) {
+				throw new IOException("record " + pointer + " holds extracted sections only");
+			}
+			return readPayload(in, header, extractor);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Releases the mapped segments. Segments are unmapped once no longer
+	 * referenced.
+	 */
+	public void close() {
+
+		segments.clear();
+	}
+
+	/**
+	 * Decodes the payload of a record, following its headers.
+	 * 
+	 * @param in stream of the decompressed record, positioned after headers
+	 * @param header headers of the record
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to decode the whole payload
+	 * @return the decoded payload, or its captured sections
+	 * @throws IOException if the payload could not be read
+	 */
+	private static CharSequence readPayload(final InputStream in, final Header header,
+			final StreamingExtractor extractor) throws IOException {
+
+		DecodingReader reader = DecodingReader.open(new BoundedInputStream(in, header.length),
+				header.contentType, header.length);
+
+		try {
+			if (extractor != null) {
+				return extractor.extract(reader);
+			}
+			return reader.readFully((int) header.length);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Opens a decompressing stream of a record, reading the mapped segment.
+	 * 
+	 * @param pointer pointer to the record
+	 * @return stream of the decompressed record
+	 * @throws IOException if the segment could not be mapped
+	 */
+	private InputStream open(final ArchivePointer pointer) throws IOException {
+
+		ByteBuffer region = map(pointer).duplicate();
+
+		// records of oversized segments are mapped alone
+		if (region.capacity() == pointer.getLength()) {
+			region.clear();
+		} else {
+			region.limit((int) pointer.getOffset() + pointer.getLength());
+			region.position((int) pointer.getOffset());
+		}
+		return new GZIPInputStream(new BufferInputStream(region), INFLATE_BUFFER_SIZE);
+	}
+
+	/**
+	 * Returns the mapped segment containing a record. Segments are mapped
+	 * whole, unless exceeding the size of a single mapping, in which case only
+	 * the record is mapped.
+	 * 
+	 * @param pointer pointer to the record
+	 * @return the mapped segment, or the mapped record
+	 * @throws IOException if the segment could not be mapped
+	 */
+	private ByteBuffer map(final ArchivePointer pointer) throws IOException {
+
+		long end = pointer.getOffset() + pointer.getLength();
+		ByteBuffer segment = segments.get(pointer.getSegment());
+
+		if ((segment != null) && (end <= segment.capacity())) {
+			return segment;
+		}
+
+		File file = archive.getSegmentFile(pointer.getSegment());
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+
+			if (end > size) {
+				throw new IOException("record " + pointer + " beyond the end of " + file);
+			}
+			if (size > Integer.MAX_VALUE) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, pointer.getOffset(), pointer.getLength());
+			}
+			segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			segments.put(pointer.getSegment(), segment);
+			return segment;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the headers of a record, up to the empty line preceding the
+	 * payload.
+	 * 
+	 * @param in stream of the decompressed record
+	 * @return headers of the record
+	 * @throws IOException if the headers are malformed
+	 */
+	private static Header readHeader(final InputStream in) throws IOException {
+
+		Header header = new Header();
+		String line = readLine(in);
+
+		if (!line.startsWith("WARC/")) {
+			throw new IOException("not a WARC record");
+		}
+
+		while (!(line = readLine(in)).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon < 0) {
+				continue;
+			}
+			String name = line.substring(0, colon).trim();
+			String value = line.substring(colon + 1).trim();
+
+			if (name.equalsIgnoreCase("WARC-Type")) {
+				header.extracted = value.equalsIgnoreCase("conversion");
+			} else if (name.equalsIgnoreCase("WARC-Target-URI")) {
+				header.url = value;
+			} else if (name.equalsIgnoreCase("WARC-Date")) {
+				header.date = parseDate(value);
+			} else if (name.equalsIgnoreCase("Content-Type")) {
+				header.contentType = value;
+			} else if (name.equalsIgnoreCase("Content-Length")) {
+				try {
+					header.length = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+					throw new IOException("invalid record length: " + value);
+				}
+			}
+		}
+
+		if (header.length < 0) {
+			throw new IOException("record without length");
+		}
+		return header;
+	}
+
+	/**
+	 * Reads a single header line, terminated by <i>CRLF</i>.
+	 * 
+	 * @param in stream of the decompressed record
+	 * @return the line, without its terminator
+	 * @throws IOException if the stream ends or the line is too long
+	 */
+	private static String readLine(final InputStream in) throws IOException {
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int read;
+
+		while ((read = in.read()) != '\n') {
+			if (read < 0) {
+				throw new IOException("unexpected end of record");
+			}
+			if (line.size() >= MAX_HEADER_LENGTH) {
+				throw new IOException("record header too long");
+			}
+			line.write(read);
+		}
+
+		String text = new String(line.toByteArray(), ArchiveRecord.CHARSET);
+		if (text.endsWith("\r")) {
+			text = text.substring(0, text.length() - 1);
+		}
+		return text;
+	}
+
+	/**
+	 * @param value the date of a record
+	 * @return the parsed date, or the current date if not parsable
+	 */
+	private static Date parseDate(final String value) {
+
+		SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH);
+
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		try {
+			return format.parse(value);
+		} catch (ParseException e) {
+			return new Date();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.github.beast.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable record of the {@link PageArchive}, holding the code of a single
+ * page. Records are stored in the format of <i>WARC resource</i> records, each
+ * compressed as a separate <i>gzip</i> member, so that any record may be read
+ * from its offset without decompressing the preceding ones and segments may be
+ * processed by common WARC tools.
+ * <p>
+ * Pages fetched with streaming extraction hold only the captured sections of
+ * their code. Such records are stored as <i>WARC conversion</i> records, so
+ * that they are not mistaken for complete responses, and may be replayed only
+ * through an extractor of sections.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see <a href="http://iipc.github.io/warc-specifications/">WARC format</a>
+ */
+public final class ArchiveRecord {
+
+	/** Encoding of headers and payload of records. */
+	protected static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Line separator of record headers. */
+	private static final String CRLF = "\r\n";
+
+	/** Format of dates in record headers. */
+	private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+	/** Url of the archived page. */
+	private final String url;
+
+	/** Time the page has been archived. */
+	private final Date date;
+
+	/** Code of the archived page. */
+	private final CharSequence payload;
+
+	/** Is <i>true</i> if the payload holds only extracted sections of the code. */
+	private final boolean extracted;
+
+	/**
+	 * Creates a record of the complete code of a page.
+	 * 
+	 * @param url the url of the page
+	 * @param date the time the page has been archived
+	 * @param payload the code of the page
+	 */
+	public ArchiveRecord(final String url, final Date date, final CharSequence payload) {
+
+		this(url, date, payload, false);
+	}
+
+	/**
+	 * Creates a record of the code of a page.
+	 * 
+	 * @param url the url of the page
+	 * @param date the time the page has been archived
+	 * @param payload the code of the page, or its extracted sections
+	 * @param extracted <i>true</i> if the payload holds only sections of the
+	 *        code captured by an extractor
+	 */
+	public ArchiveRecord(final String url, final Date date, final CharSequence payload, final boolean extracted) {
+
+		this.url = url;
+		this.date = new Date(date.getTime());
+		this.payload = payload;
+		this.extracted = extracted;
+	}
+
+	/**
+	 * @return the time the page has been archived
+	 */
+	public Date getDate() {
+
+		return new Date(date.getTime());
+	}
+
+	/**
+	 * @return the code of the archived page
+	 */
+	public CharSequence getPayload() {
+
+		return payload;
+	}
+
+	/**
+	 * @return <i>true</i> if the payload holds only extracted sections of the
+	 *         code of the page
+	 */
+	public boolean isExtracted() {
+
+		return extracted;
+	}
+
+	/**
+	 * @return the url of the archived page
+	 */
+	public String getUrl() {
+
+		return url;
+	}
+
+	/**
+	 * Encodes the record into a compressed <i>gzip</i> member, ready to be
+	 * appended to a segment of the archive.
+	 * 
+	 * @return the compressed record
+	 * @throws IOException if the record could not be compressed
+	 */
+	public byte[] toBytes() throws IOException {
+
+		byte[] content = payload.toString().getBytes(CHARSET);
+		DateFormat format = new SimpleDateFormat(DATE_FORMAT, Locale.ENGLISH);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 512);
+		OutputStream out = new GZIPOutputStream(bytes);
+		StringBuilder header = new StringBuilder(256);
+
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		header.append("WARC/1.0").append(CRLF);
+		header.append("WARC-Type: ").append(extracted ? "conversion" : "resource").append(CRLF);
+		header.append("WARC-Target-URI: ").append(url).append(CRLF);
+		header.append("WARC-Date: ").append(format.format(date)).append(CRLF);
+		header.append("Content-Type: text/html; charset=").append(CHARSET.name()).append(CRLF);
+		header.append("Content-Length: ").append(content.length).append(CRLF);
+		header.append(CRLF);
+
+		out.write(header.toString().getBytes(CHARSET));
+		out.write(content);
+		out.write((CRLF + CRLF).getBytes(CHARSET));
+		out.close();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,437 @@
+package com.github.beast.archive;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.github.beast.Beast;
+import com.github.beast.page.Page;
+import com.github.beast.util.Configuration;
+
+/**
+ * Singleton class representing an append-only archive of the code of
+ * processed pages. The archive consists of numbered segment files of
+ * compressed {@link ArchiveRecord records}. Once a segment reaches the size set
+ * in {@link Configuration}, a new segment is started.
+ * <p>
+ * Records are compressed by the thread archiving the page, which also reserves
+ * the position of the record in the current segment, so that an
+ * {@link ArchivePointer} to the record is known immediately. The records are
+ * then written by a background writer thread, so that threads processing
+ * pages do not wait for the disk.
+ * <p>
+ * Pointers to the latest record of each url are kept in an index, stored
+ * next to each segment as lines of <i>url, offset, length</i> and loaded when
+ * the archive is opened.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class PageArchive implements Runnable {
+
+	/** Prefix of names of segment and index files. */
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	/** Suffix of names of segment files. */
+	private static final String SEGMENT_SUFFIX = ".warc.gz";
+
+	/** Suffix of names of index files. */
+	private static final String INDEX_SUFFIX = ".idx";
+
+	/** Time in milliseconds the writer waits for new records before rechecking. */
+	private static final long POLL_TIMEOUT = 500;
+
+	/**
+	 * A compressed record waiting to be written.
+	 */
+	private static final class Pending {
+
+		private final String url;
+		private final ArchivePointer pointer;
+		private final byte[] bytes;
+
+		/**
+		 * @param url the url of the archived page
+		 * @param pointer the reserved position of the record
+		 * @param bytes the compressed record
+		 */
+		private Pending(final String url, final ArchivePointer pointer, final byte[] bytes) {
+
+			this.url = url;
+			this.pointer = pointer;
+			this.bytes = bytes;
+		}
+	}
+
+	/** Instance of a singleton class. */
+	private static PageArchive instance;
+
+	/** Directory containing the segments of the archive. */
+	private final File directory;
+
+	/** Size of a segment, after which a new segment is started. */
+	private final long segmentSize;
+
+	/** Queue of records waiting to be written. */
+	private final BlockingQueue<Pending> queue;
+
+	/** Pointers to the latest record of each url. */
+	private final ConcurrentMap<String, ArchivePointer> index = new ConcurrentHashMap<String, ArchivePointer>();
+
+	/** Number of the segment, into which new records are appended. */
+	private int segment;
+
+	/** Reserved size of the current segment. */
+	private long position;
+
+	/** Thread writing the records. */
+	private Thread thread;
+
+	/** Is <i>true</i> while the archive accepts new records. */
+	private volatile boolean running;
+
+	/** Lock guarding the open segment and index files. */
+	private final Object fileLock = new Object();
+
+	/** Segment file currently open for writing. */
+	private RandomAccessFile segmentFile;
+
+	/** Index file currently open for writing. */
+	private Writer indexFile;
+
+	/** Number of the segment currently open for writing. */
+	private int openSegment = -1;
+
+	/**
+	 * Constructor of the <code>PageArchive</code> class, opening the archive in
+	 * the directory set in {@link Configuration}. Is private because
+	 * <code>PageArchive</code> is a singleton class.
+	 */
+	private PageArchive() {
+
+		directory = new File(Configuration.getInstance().getPageArchiveDir());
+		segmentSize = Configuration.getInstance().getArchiveSegmentSize();
+		queue = new ArrayBlockingQueue<Pending>(Configuration.getInstance().getArchiveQueueSize());
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Beast.log("unable to create page archive in " + directory);
+		}
+		open();
+	}
+
+	/**
+	 * Returns instance of the <code>PageArchive</code> singleton class. If no
+	 * instance exists, new instance is created and its writer is started.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static synchronized PageArchive getInstance() {
+
+		if (instance == null) {
+			instance = new PageArchive();
+			instance.start();
+		}
+		return instance;
+	}
+
+	/**
+	 * Archives the code of a page. The record is compressed by the calling
+	 * thread and written in the background.
+	 * 
+	 * @param page the archived page
+	 * @param code the code of the page, or its extracted sections
+	 * @param extracted <i>true</i> if the code holds only sections captured by
+	 *        an extractor
+	 * @return pointer to the record, or <code>null</code> if the record could
+	 *         not be archived
+	 * @see ArchiveRecord#isExtracted()
+	 */
+	public ArchivePointer append(final Page page, final CharSequence code, final boolean extracted) {
+
+		String url = page.getUrl().toString();
+		ArchivePointer pointer;
+		byte[] bytes;
+
+		try {
+			bytes = new ArchiveRecord(url, new Date(), code, extracted).toBytes();
+		} catch (IOException e) {
+			Beast.log("unable to archive " + url + ": " + e);
+			return null;
+		}
+
+		// positions are reserved in the order of the queue and the index
+		// follows the same order, the lock keeps all of them
+		synchronized (this) {
+			if ((position > 0) && (position + bytes.length > segmentSize)) {
+				segment++;
+				position = 0;
+			}
+			pointer = new ArchivePointer(segment, position, bytes.length);
+			position += bytes.length;
+
+			try {
+				if (running) {
+					queue.put(new Pending(url, pointer, bytes));
+				} else {
+					write(new Pending(url, pointer, bytes));
+					flush();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			index.put(url, pointer);
+		}
+		return pointer;
+	}
+
+	/**
+	 * @param url the url of a page
+	 * @return pointer to the latest record of the page, or <code>null</code>
+	 *         if the page has not been archived
+	 */
+	public ArchivePointer getPointer(final String url) {
+
+		return index.get(url);
+	}
+
+	/**
+	 * @param number the number of a segment
+	 * @return the file of the segment
+	 */
+	public File getSegmentFile(final int number) {
+
+		return new File(directory, segmentName(number) + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Writes queued records until the archive is shut down and all queued
+	 * records are written.
+	 */
+	public void run() {
+
+		Pending pending;
+
+		while (running || !queue.isEmpty()) {
+			try {
+				pending = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (pending != null) {
+					write(pending);
+				} else {
+					flush();
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			}
+		}
+		close();
+	}
+
+	/**
+	 * Stops accepting new records into the queue, waits until all queued
+	 * records are written and closes the open segment.
+	 */
+	public void shutdown() {
+
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			running = false;
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts the writer thread. The thread is stopped when the virtual machine
+	 * shuts down, after writing all queued records.
+	 */
+	private synchronized void start() {
+
+		running = true;
+		thread = new Thread(this, "page-archive");
+		thread.setDaemon(true);
+		thread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+
+			public void run() {
+
+				shutdown();
+			}
+		});
+	}
+
+	/**
+	 * Loads the indices of all segments in the directory of the archive and
+	 * continues in the last segment.
+	 */
+	private void open() {
+
+		File[] files = directory.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			String name = file.getName();
+			if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+				try {
+					int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+							name.length() - SEGMENT_SUFFIX.length()));
+					if (number >= segment) {
+						segment = number;
+						position = file.length();
+					}
+				} catch (NumberFormatException e) {
+					continue;
+				}
+			}
+		}
+
+		for (int i = 0; i <= segment; i++) {
+			loadIndex(i);
+		}
+	}
+
+	/**
+	 * Loads the index of a single segment. Later records of a url replace
+	 * earlier ones.
+	 * 
+	 * @param number the number of the segment
+	 */
+	private void loadIndex(final int number) {
+
+		File file = new File(directory, segmentName(number) + INDEX_SUFFIX);
+		BufferedReader reader = null;
+		String line;
+		String[] parts;
+
+		if (!file.isFile()) {
+			return;
+		}
+
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ArchiveRecord.CHARSET));
+			while ((line = reader.readLine()) != null) {
+				parts = line.split("\t");
+				if (parts.length == 3) {
+					index.put(parts[0], new ArchivePointer(number, Long.parseLong(parts[1]),
+							Integer.parseInt(parts[2])));
+				}
+			}
+		} catch (IOException e) {
+			Beast.log("unable to load archive index " + file + ": " + e);
+		} catch (NumberFormatException e) {
+			Beast.log("corrupted archive index " + file + ": " + e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a record at its reserved position and appends it to the index of
+	 * its segment.
+	 * 
+	 * @param pending the record to be written
+	 */
+	private void write(final Pending pending) {
+
+		ArchivePointer pointer = pending.pointer;
+
+		synchronized (fileLock) {
+			try {
+				if (pointer.getSegment() != openSegment) {
+					close();
+					segmentFile = new RandomAccessFile(getSegmentFile(pointer.getSegment()), "rw");
+					indexFile = new OutputStreamWriter(new FileOutputStream(new File(directory,
+							segmentName(pointer.getSegment()) + INDEX_SUFFIX), true), ArchiveRecord.CHARSET);
+					openSegment = pointer.getSegment();
+				}
+
+				FileChannel channel = segmentFile.getChannel();
+				ByteBuffer buffer = ByteBuffer.wrap(pending.bytes);
+				long offset = pointer.getOffset();
+				while (buffer.hasRemaining()) {
+					offset += channel.write(buffer, offset);
+				}
+				indexFile.write(pending.url + "\t" + pointer.getOffset() + "\t" + pointer.getLength() + "\n");
+			} catch (IOException e) {
+				Beast.log("unable to write archive record of " + pending.url + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Flushes the index of the open segment.
+	 */
+	private void flush() {
+
+		synchronized (fileLock) {
+			if (indexFile == null) {
+				return;
+			}
+			try {
+				indexFile.flush();
+			} catch (IOException e) {
+				Beast.log("unable to flush archive index: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Closes the open segment and its index.
+	 */
+	private void close() {
+
+		synchronized (fileLock) {
+			try {
+				if (indexFile != null) {
+					indexFile.close();
+				}
+				if (segmentFile != null) {
+					segmentFile.close();
+				}
+			} catch (IOException e) {
+				Beast.log("unable to close archive segment: " + e);
+			}
+			indexFile = null;
+			segmentFile = null;
+			openSegment = -1;
+		}
+	}
+
+	/**
+	 * @param number the number of a segment
+	 * @return the name of the segment, without suffix
+	 */
+	private static String segmentName(final int number) {
+
+		return SEGMENT_PREFIX + String.format("%05d", number);
+	}
+}
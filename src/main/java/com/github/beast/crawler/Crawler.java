@@ -4,6 +4,8 @@ import java.util.*;
 
 import com.github.beast.Beast;
 import com.github.beast.database.BeastIndex;
+import com.github.beast.database.QualityCache;
+import com.github.beast.page.FetchCache;
 import com.github.beast.page.Page;
 import com.github.beast.util.Configuration;
 
@@ -23,6 +25,9 @@ public class Crawler {
     private final int ITERATIONS = 10000;
 
     private int requestDelay;
+
+    /** Distinct ids of keywords carried by bees, updated every iteration. */
+    private volatile int[] activeKeywords = new int[0];
     
     public Crawler(BeastIndex index) {
 
@@ -64,6 +69,7 @@ public class Crawler {
 	for (int i = 0; i < iterations; i++) {
 
 	    if (ANNOUNCE) System.out.println(iterationStats(i));
+	    updateActiveKeywords();
 
 	    for (int j = 0; j < bees.size(); j++) {
 		bees.get(j).doIteration();
@@ -77,6 +83,15 @@ public class Crawler {
 	}
     }
 
+    /**
+     * @return distinct ids of keywords carried by bees at the start of the
+     *         current iteration
+     */
+    public int[] getActiveKeywords() {
+
+	return activeKeywords;
+    }
+
     public Bee getBee(int num) {
 
 	return bees.get(num);
@@ -119,10 +134,33 @@ public class Crawler {
 	String stats = String.format("iteration %04d, foraging bees %03d, dancing bees %03d, observing bees %03d", i, foragingBees, dancingBees,
 		observingBees);
 	Beast.log(stats);
+	if (Configuration.getInstance().useResponseCache()) {
+	    Beast.log(FetchCache.getInstance().getStatistics());
+	}
+	Beast.log(QualityCache.getInstance().getStatistics());
 
 	return stats;
     }
 
+    // collect the distinct keywords carried by bees
+    private void updateActiveKeywords() {
+
+	Set<Integer> keywords = new LinkedHashSet<Integer>();
+
+	for (Bee bee : bees) {
+	    if (bee instanceof NewsBee) {
+		keywords.add(((NewsBee) bee).getKeyword());
+	    }
+	}
+
+	int[] ids = new int[keywords.size()];
+	int i = 0;
+	for (Integer keyword : keywords) {
+	    ids[i++] = keyword;
+	}
+	activeKeywords = ids;
+    }
+
     public Page randomSource() {
 
 	return index.getRandPage();
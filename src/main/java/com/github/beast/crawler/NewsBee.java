@@ -3,11 +3,19 @@ package com.github.beast.crawler;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.beast.Beast;
+import com.github.beast.database.IndexWriter;
+import com.github.beast.database.KeywordDictionary;
+import com.github.beast.database.QualityCache;
 import com.github.beast.page.ArticlePage;
 import com.github.beast.page.Page;
+import com.github.beast.relevance.RelevanceEngine;
+import com.github.beast.semantics.SynonymMatcher;
 import com.github.beast.util.Configuration;
+import com.github.beast.util.TermIndex;
 
 /**
  * NewsBee extends the {@link Bee} class, representing a specialized agent for
@@ -15,6 +23,9 @@ import com.github.beast.util.Configuration;
  * carrying {@link Bee#source}, every bee also carries a specific
  * {@link #keyword}. Instead of rating only the content of a {@link Page Pages},
  * keywords are used in the calculation of {@link Bee#quality} as well.
+ * <p>
+ * Keywords are carried as ids of the {@link KeywordDictionary}, the keyword
+ * itself is looked up only for scoring and messages.
  * 
  * @author Štefan Sabo
  * @see Bee
@@ -23,7 +34,14 @@ public class NewsBee extends Bee {
 
 	private double newQuality;
 	private ArticlePage newSource;
-	private String keyword;
+	private int keyword;
+
+	/** Compiled matchers of keywords, by keyword id, shared by all bees. */
+	private static final ConcurrentMap<Integer, SynonymMatcher> MATCHERS =
+			new ConcurrentHashMap<Integer, SynonymMatcher>();
+
+	/** Symbol table of keywords, shared by all bees. */
+	private final KeywordDictionary dictionary = KeywordDictionary.getInstance();
 
 	public NewsBee(Crawler crawler) {
 
@@ -32,10 +50,18 @@ public class NewsBee extends Bee {
 		this.keyword = crawler.index.getRandKeyword(source);
 
 		if (Configuration.getInstance().useBeeMessages()) {
-			System.out.println("Init: " + source.getTitle() + " --- " + keyword);
+			System.out.println("Init: " + source.getTitle() + " --- " + dictionary.getName(keyword));
 		}
 	}
 
+	/**
+	 * @return id of the keyword carried by the bee
+	 */
+	public int getKeyword() {
+
+		return keyword;
+	}
+
 	public double evalQuality(final Object args) {
 
 		return 0;
@@ -47,13 +73,66 @@ public class NewsBee extends Bee {
 	 * keyword was already identified and its relevance value is higher than
 	 * relevance value obtained only from the page content, old keyword
 	 * relevance is used, otherwise value based on the page content is returned.
+	 * Evaluated relevance is kept in the {@link QualityCache}, until the page
+	 * or the keyword relevance changes.
+	 * 
+	 * @param page page to be evaluated.
+	 * @param keyword id of the keyword to be considered.
+	 * @return A double representing the relevance of the given page to the
+	 *         given keyword.
+	 */
+	protected double evalQuality(final ArticlePage page, final int keyword) {
+
+		QualityCache cache = QualityCache.getInstance();
+		double quality = cache.get(page, keyword);
+
+		if (Double.isNaN(quality)) {
+			quality = computeQuality(page, keyword);
+			cache.put(page, keyword, quality);
+		}
+		return quality;
+	}
+
+	/**
+	 * Evaluate the relevance of a freshly processed page to all keywords
+	 * carried by the swarm at once, as returned by
+	 * {@link Crawler#getActiveKeywords()}. The relevance is stored in the
+	 * {@link QualityCache}, so that bees reaching the page later with any of
+	 * the keywords do not evaluate the page again.
+	 * <p>
+	 * Keywords of the page are looked up once and all keywords are scored
+	 * against the same {@link TermIndex} of the page, in a single pass.
+	 * 
+	 * @param page freshly processed page to be evaluated
+	 */
+	protected void evalActiveKeywords(final ArticlePage page) {
+
+		QualityCache cache = QualityCache.getInstance();
+		int[] active = crawler.getActiveKeywords();
+		double[] surround = crawler.index.getKeywordRelevance(active, page);
+		TermIndex index;
+
+		if (!page.isIndexed()) {
+			Beast.crawler.index.getWriter().postIndex(page);
+		}
+		index = page.getTermIndex();
+
+		for (int i = 0; i < active.length; i++) {
+			double pageQuality = Beast.relevance.score(index, getMatcher(active[i]));
+			cache.put(page, active[i], Math.max(pageQuality, surround[i]));
+		}
+	}
+
+	/**
+	 * Evaluate the relevance of a given page to a given keyword, as
+	 * {@link #evalQuality(ArticlePage, int)} does, without the cache.
 	 * 
 	 * @param page page to be evaluated.
-	 * @param keyword keyword to be considered.
+	 * @param keyword id of the keyword to be considered.
 	 * @return A double representing the relevance of the given page to the
 	 *         given keyword.
 	 */
-	protected double evalQuality(final ArticlePage page, final String keyword) {
+	private double computeQuality(final ArticlePage page, final int keyword) {
 
 		// evaluate the quality of keyword considering only the page
 		double pageQuality = evalSourceQuality(page, keyword);
@@ -66,83 +145,52 @@ public class NewsBee extends Bee {
 
 	/**
 	 * Evaluate the relevance of a given page to a given keyword, considering
-	 * only the content of the page. Uses semantics if enabled.
+	 * only the content of the page. Uses semantics if enabled, matching
+	 * synonyms of the keyword as well. The relevance is measured by the
+	 * {@link RelevanceEngine} set in {@link Configuration}.
 	 * 
 	 * @param page - Page to be evaluated.
-	 * @param keyword - Keyword to be used for evaluation.
+	 * @param keyword - Id of the keyword to be used for evaluation.
 	 * @return A double representing the relevance of the given page to the
 	 *         given keyword.
 	 */
-	protected double evalSourceQuality(final ArticlePage page, final String keyword) {
-
-		final int granularity = 1000;
-
-		int maxPoints = 0;
-		int recPoints = 0;
-
-		ArrayList<String> lookups;
-
-		if (Configuration.getInstance().useSemantics()) {
-
-			lookups = Beast.semEngine.getSynonyms(keyword);
-
-			for (int i = 0; i < lookups.size(); i++) {
-				lookups.set(i, lookups.get(i).toLowerCase());
-			}
-		} else {
-			lookups = new ArrayList<String>();
-			lookups.add(keyword.toLowerCase());
-		}
+	protected double evalSourceQuality(final ArticlePage page, final int keyword) {
 
-		String keywordInLow = keyword.toLowerCase();
+		SynonymMatcher matcher = getMatcher(keyword);
 
 		if (!page.isIndexed()) {
-			Beast.crawler.index.indexPage(page);
+			Beast.crawler.index.getWriter().postIndex(page);
 		}
 
-		maxPoints = (int) Math.ceil(page.getText().length() / granularity);
-
-		if (maxPoints > 0) {
-			// careful not to exceed the end of string
-			for (int i = 0; i < maxPoints - 1; i++) {
-				String subString = page.getText().substring(i * granularity, (i + 1) * granularity);
-				if (subString.toLowerCase().contains(keywordInLow)) {
-					recPoints = recPoints + 1;
-				}
-			}
+		return Beast.relevance.score(page.getTermIndex(), matcher);
+	}
 
-			// final part of string that contains <= GRANULARITY chars
-			String subString = page.getText().substring((maxPoints - 1) * granularity);
+	/**
+	 * Returns the matcher of a keyword, compiling it on first use. If
+	 * semantics are enabled, the matcher includes all synonyms of the keyword.
+	 * 
+	 * @param keyword id of the keyword
+	 * @return the matcher of the keyword
+	 */
+	protected SynonymMatcher getMatcher(final int keyword) {
 
-			if (subString.toLowerCase().contains(keywordInLow)) {
-				recPoints = recPoints + 1;
-			}
+		SynonymMatcher matcher = MATCHERS.get(keyword);
 
-			// increase for perex
-			if ((page.getPerex() != null) && (page.getPerex().length() > 0)) {
-				maxPoints = maxPoints + 2;
-				if (page.getPerex().toString().toLowerCase().contains(keywordInLow)) {
-					recPoints = recPoints + 2;
-				}
+		if (matcher == null) {
+			// dictionary keywords are already normalized to lower case
+			ArrayList<String> lookups = new ArrayList<String>();
+			lookups.add(dictionary.getName(keyword));
+			if (Configuration.getInstance().useSemantics()) {
+				lookups.addAll(Beast.semEngine.getSynonyms(lookups.get(0)));
 			}
-		}
 
-		// increase for title
-		if ((page.getTitle() != null) && (!page.getTitle().isEmpty())) {
-			maxPoints = maxPoints + 5;
-			if (page.getTitle().toLowerCase().contains(keywordInLow)) {
-				recPoints = recPoints + 5;
+			matcher = SynonymMatcher.compile(lookups);
+			SynonymMatcher previous = MATCHERS.putIfAbsent(keyword, matcher);
+			if (previous != null) {
+				matcher = previous;
 			}
 		}
-
-		if (recPoints > maxPoints) {
-			recPoints = maxPoints;
-		}
-
-		// evalute the quality of keyword considering only the page
-		double pageQuality = (double) recPoints / maxPoints;
-
-		return pageQuality;
+		return matcher;
 	}
 
 	/**
@@ -151,11 +199,11 @@ public class NewsBee extends Bee {
 	 * itself.
 	 * 
 	 * @param page - Page to be evaluated.
-	 * @param keyword - Keyword to be used for evaluation.
+	 * @param keyword - Id of the keyword to be used for evaluation.
 	 * @return A double representing the relevance of the given page to the
 	 *         given keyword.
 	 */
-	protected double evalSurroundQuality(final ArticlePage page, final String keyword) {
+	protected double evalSurroundQuality(final ArticlePage page, final int keyword) {
 
 		Double relevance = crawler.index.getKeywordRelevance(keyword, page);
 		return relevance;
@@ -177,7 +225,7 @@ public class NewsBee extends Bee {
 		ArticlePage sourceArticle = (ArticlePage) source;
 		
 		if (Configuration.getInstance().useBeeMessages()) {
-			System.out.println("Foraging: " + source.getUrl().toString() + ", keyword: " + keyword);
+			System.out.println("Foraging: " + source.getUrl().toString() + ", keyword: " + dictionary.getName(keyword));
 		}
 
 		// process the source first, if not processed yet. if processing
@@ -192,6 +240,7 @@ public class NewsBee extends Bee {
 				return;
 			}
 			Beast.log("new source found: " + sourceArticle.getTimestamp().toString() + " " + source.getUrl().toString());
+			evalActiveKeywords(sourceArticle);
 		}
 		quality = evalQuality(sourceArticle, keyword);
 
@@ -203,22 +252,34 @@ public class NewsBee extends Bee {
 			return;
 		}
 
-		// if source is sucessfully processed, index it, otherwise leave
+		// if source is sucessfully processed, post it for indexing, otherwise
+		// leave
 		if (!newSource.isIndexed()) {
 			try {
 				newSource.process();
-				crawler.index.indexPage(newSource);
+				crawler.index.getWriter().postIndex(newSource);
+				evalActiveKeywords(newSource);
 			} catch (NullPointerException e) {
 				desire = 0;
 				return;
 			}
 		}
 
-		// if source is old enough, reindex it anew
+		// if source is old enough, reprocess it and post it for reindexing
 		if ((source.isIndexed()) && (timeSinceRefresh > Configuration.getInstance().getRefreshDelay())) {
-			crawler.index.reindexPage(sourceArticle);
-			quality = evalQuality(sourceArticle, keyword);
-			Beast.log("source refreshed: " + sourceArticle.getTimestamp().toString() + " " + quality + " " + source.getUrl().toString());
+			try {
+				sourceArticle.process(Page.REPROCESS);
+				crawler.index.getWriter().postRefresh(sourceArticle);
+				if (sourceArticle.isModified()) {
+					evalActiveKeywords(sourceArticle);
+					quality = evalQuality(sourceArticle, keyword);
+					Beast.log("source refreshed: " + sourceArticle.getTimestamp().toString() + " " + quality + " " + source.getUrl().toString());
+				} else {
+					Beast.log("source not modified: " + source.getUrl().toString());
+				}
+			} catch (NullPointerException e) {
+				System.err.println("Failed to process page: " + source.getUrl());
+			}
 		}
 
 		newQuality = evalQuality(newSource, keyword);
@@ -249,13 +310,14 @@ public class NewsBee extends Bee {
 	protected void doWhileDancing() {
 
 		if (Configuration.getInstance().useBeeMessages()) {
-			System.out.println("Dancing: " + source.getUrl().toString() + " keyword: " + keyword);
+			System.out.println("Dancing: " + source.getUrl().toString() + " keyword: " + dictionary.getName(keyword));
 		}
 
 		if (firstDance) {
-			crawler.index.addRelation(source, newSource, keyword, desire);
-			crawler.index.addKeyword(source, keyword, Math.max(quality, newQuality * crawler.DECAY));
-			crawler.index.addKeyword(newSource, keyword, Math.max(quality * crawler.DECAY, newQuality));
+			IndexWriter writer = crawler.index.getWriter();
+			writer.postRelation(source, newSource, keyword, desire);
+			writer.postKeyword(source, keyword, Math.max(quality, newQuality * crawler.DECAY));
+			writer.postKeyword(newSource, keyword, Math.max(quality * crawler.DECAY, newQuality));
 			firstDance = false;
 		}
 	}
@@ -3,53 +3,112 @@ package com.github.beast.database;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 
 import com.github.beast.Beast;
+import com.github.beast.archive.ArchivePointer;
 import com.github.beast.page.ArticlePage;
 import com.github.beast.page.Link;
 import com.github.beast.page.Page;
-import com.github.beast.page.ReutersPage;
-import com.github.beast.parser.ReutersParser;
+import com.github.beast.page.PageMemoryBudget;
+import com.github.beast.parser.ArticleParser;
+import com.github.beast.parser.ParserRegistry;
+import com.github.beast.util.CompactText;
+import com.github.beast.util.ConcurrentLruCache;
 import com.github.beast.util.Configuration;
+import com.github.beast.util.Fingerprint;
+import com.github.beast.util.ScalableBloomFilter;
+import com.github.beast.util.TermIndex;
 import com.github.beast.util.Utility;
 
 import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
 import com.tinkerpop.blueprints.util.io.graphml.GraphMLWriter;
 
+/**
+ * Index of crawled pages and identified keywords, backed by a
+ * {@link GraphDatabase}.
+ * <p>
+ * The index is safe for use by concurrent {@link com.github.beast.crawler.Bee
+ * bees}. Reads are lock-free and rely on the consistency of the underlying
+ * database. Writes are serialized per page through a set of striped locks,
+ * selected by the hash of the page url, so that two callers never create
+ * duplicate nodes for the same url, nor overwrite each other's keyword
+ * relevance updates. Writers never hold more than one stripe at a time, except
+ * for {@link #addRelation(Page, Page, int, double)}, which acquires both
+ * stripes in a fixed order. Stripes are released when a write returns, even
+ * if it joins an enclosing transaction, so within a batch of the
+ * {@link IndexWriter} they order writes but not their commit.
+ * <p>
+ * Indexed pages are partitioned into time buckets by their timestamp. If a
+ * retention is set in {@link Configuration}, buckets older than the retention
+ * are evicted in bulk by {@link #enforceRetention()}, together with the
+ * keywords and linked pages left orphaned by the eviction.
+ * <p>
+ * Content of indexed pages is {@link Fingerprint fingerprinted}. A page with
+ * the same or nearly the same content as an already indexed page, e.g. the
+ * same story under a different url, is not indexed on its own, its node
+ * refers to the already indexed canonical page instead.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
 public class BeastIndex {
 
+	/** Number of lock stripes, needs to be a power of two. */
+	private static final int LOCK_STRIPES = 64;
+
+	/** False positive probability of the filter of known urls. */
+	private static final double URL_FILTER_PROBABILITY = 0.01;
+
 	private static final String ANCHOR_TEXT = "anchor_text";
 	private static final String DEFAULT_DATE_FORMAT = "EEE MMM dd HH:mm:ss z yyyy";
+	private static final String FINGERPRINT_BAND = "simhash_band";
 	private static final String KEYWORD_NAME = "keyword";
 	private static final String KEYWORD_RELEVANCE = "keyword_relevance";
+	private static final String PAGE_BUCKET = "time_bucket";
+	private static final String PAGE_CANONICAL = "canonical";
+	private static final String PAGE_ETAG = "etag";
+	private static final String PAGE_HASH = "content_hash";
 	private static final String PAGE_INDEXED = "indexed";
 	private static final String PAGE_KEY = "url";
 	private static final String PAGE_LASTINDEX = "last_indexed";
+	private static final String PAGE_LAST_MODIFIED = "last_modified";
 	private static final String PAGE_LOCATION = "location";
 	private static final String PAGE_PATH = "path";
 	private static final String PAGE_PEREX = "perex";
+	private static final String PAGE_SIMHASH = "content_simhash";
 	private static final String PAGE_TEXT = "text";
 	private static final String PAGE_TIME = "time_milis";
 	private static final String PAGE_TIMESTAMP = "timestamp";
 	private static final String PAGE_TITLE = "title";
+	private static final String PAGE_TITLE_NOUNS = "title_nouns";
 	private static final String REL_KEYWORD = "relationship_keyword";
 	private static final String REL_RELEVANCE = "relationship_relevance";
 
@@ -65,6 +124,42 @@ public class BeastIndex {
 	/** Index of all nodes representing pages. */
 	private static Index<Node> allNodeIndex;
 
+	/** Index of indexed pages by their time bucket. */
+	private static Index<Node> bucketIndex;
+
+	/** Index of indexed pages by the fingerprint of their content. */
+	private static Index<Node> fingerprintIndex;
+
+	/** Filter of urls of all page nodes, screening lookups of unseen urls. */
+	private static ScalableBloomFilter knownUrls;
+
+	/** All buckets below this one have already been evicted. */
+	private static volatile long evictedBelow = Long.MIN_VALUE;
+
+	/** Write-behind writer, through which bees post their writes. */
+	private static IndexWriter writer;
+
+	/** Symbol table of keywords, all keywords are passed around as its ids. */
+	private static final KeywordDictionary DICTIONARY = KeywordDictionary.getInstance();
+
+	/** Keywords of pages, keyed by page url, least recently used evicted. */
+	private static ConcurrentLruCache<String, PageKeywords> pageKeywords;
+
+	/** Title nouns of pages posted for indexing, keyed by page title. */
+	private static ConcurrentLruCache<String, PageKeywords> titleKeywords;
+
+	/** Cached adjacency of pages, used to draw random neighbours. */
+	private static NeighbourSampler neighbours;
+
+	/** Cache invalidations deferred until the batch of the current thread commits. */
+	private static final ThreadLocal<List<Runnable>> AFTER_COMMIT = new ThreadLocal<List<Runnable>>();
+
+	/** Locks guarding writes to page nodes, striped by the hash of page url. */
+	private static final ReentrantLock[] PAGE_LOCKS = createLocks(LOCK_STRIPES);
+
+	/** Locks guarding creation of keyword nodes, striped by keyword hash. */
+	private static final ReentrantLock[] KEYWORD_LOCKS = createLocks(LOCK_STRIPES);
+
 	/** Relationship type definitions. */
 	protected static enum Rel implements RelationshipType {
 
@@ -75,59 +170,108 @@ public class BeastIndex {
 	 * Adds a new keyword to the given {@link Page page}, with given relevance.
 	 * If the page already contains the keyword, keyword relevance is updated
 	 * only if value of new relevance is higher than original value. Otherwise
-	 * original value is kept.
+	 * original value is kept. Keywords of a duplicate page are added to its
+	 * canonical page.
 	 * 
 	 * @param page the page to which the keyword is being added to
-	 * @param keyword the keyword being added
+	 * @param keyword id of the keyword being added
 	 * @param relevance the relevance of given keyword to the given page
+	 * @see KeywordDictionary
 	 */
-	public void addKeyword(final Page page, final String keyword, final double relevance) {
+	public void addKeyword(final Page page, final int keyword, final double relevance) {
 
-		Node node = allNodeIndex.get(PAGE_KEY, page.getUrl().toString()).getSingle();
-		Node keywordNode = getKeywordNode(keyword);
+		Node node = getIndexedNode(page.getUrl().toString());
+		Node keywordNode;
 		Relationship relationship;
+		String url;
+		ReentrantLock lock;
 
-		if (keywordNode == null) {
-			keywordNode = graphDb.createNode(KEYWORD_NAME, keyword);
-			graphDb.addToIndex(keywords, keywordNode, KEYWORD_NAME, keyword);
+		if (node == null) {
+			node = allNodeIndex.get(PAGE_KEY, page.getUrl().toString()).getSingle();
+		}
+		if (node == null) {
+			Beast.log("keyword of a page missing in the index skipped: " + page.getUrl());
+			return;
 		}
+		url = node.getProperty(PAGE_KEY).toString();
+		keywordNode = getOrCreateKeywordNode(keyword);
+		lock = lockFor(PAGE_LOCKS, url);
 
-		relationship = graphDb.getSingleRelationship(node, keywordNode, Rel.KEYWORD);
+		lock.lock();
+		try {
+			relationship = graphDb.getSingleRelationship(node, keywordNode, Rel.KEYWORD);
+
+			if (relationship == null) {
+				relationship = graphDb.addRelationship(keywordNode,  node,  Rel.KEYWORD);
+				graphDb.setProperty(relationship, KEYWORD_RELEVANCE, relevance);
+			} else if (!(relationship.hasProperty(KEYWORD_RELEVANCE))
+					|| (Double.parseDouble(relationship.getProperty(KEYWORD_RELEVANCE).toString()) < relevance)) {
+				graphDb.setProperty(relationship, KEYWORD_RELEVANCE, relevance);
+			}
 
-		if (relationship == null) {
-			relationship = graphDb.addRelationship(keywordNode,  node,  Rel.KEYWORD);
-			graphDb.setProperty(relationship, KEYWORD_RELEVANCE, relevance);
-		} else if (!(relationship.hasProperty(KEYWORD_RELEVANCE))
-				|| (Double.parseDouble(relationship.getProperty(KEYWORD_RELEVANCE).toString()) < relevance)) {
-			graphDb.setProperty(relationship, KEYWORD_RELEVANCE, relevance);
+			updateKeywords(page, url, keyword, relevance);
+
+			// adjacency of linked pages is weighted by the relevance of this page
+			if (neighbours.getWeighting() == NeighbourSampler.Weighting.RELEVANCE) {
+				List<String> linked = new ArrayList<String>();
+				for (Relationship link : node.getRelationships(Rel.LINK)) {
+					linked.add(link.getOtherNode(node).getProperty(PAGE_KEY, "").toString());
+				}
+				invalidateNeighbours(linked);
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
-	// add a relation of mutual relevance for two p
-	public Relationship addRelation(final Page first, final Page second, final String keyword, double relevance) {
+	// add a relation of mutual relevance for two pages, duplicates are resolved
+	// to their canonical pages, relations of pages missing in the index are skipped
+	public Relationship addRelation(final Page first, final Page second, final int keyword, double relevance) {
 
 		// TODO: create method in graphdatabase to set properties at relationship creation
 		ArrayList<Relationship> relationships;
 		Relationship newRelationship;
 
-		Node firstNode = pageIndex.get(PAGE_KEY, first.getUrl().toString()).getSingle();
-		Node secondNode = pageIndex.get(PAGE_KEY, second.getUrl().toString()).getSingle();
+		Node firstNode = getIndexedNode(first.getUrl().toString());
+		Node secondNode = getIndexedNode(second.getUrl().toString());
 
-		relationships = graphDb.getRelationship(firstNode, secondNode, Rel.RELATED);
-		
-		for (Relationship rel : relationships) {
-			if (rel.hasProperty(REL_KEYWORD)) {
-				if ((Double.parseDouble(rel.getProperty(REL_RELEVANCE).toString()) < relevance)) {
-					graphDb.setProperty(rel, REL_RELEVANCE, relevance);
+		if ((firstNode == null) || (secondNode == null)) {
+			Beast.log("relation of a page missing in the index skipped: " + first.getUrl() + " " + second.getUrl());
+			return null;
+		}
+		// a duplicate is not related to its own canonical page
+		if (firstNode.equals(secondNode)) {
+			return null;
+		}
+
+		// both stripes are needed, acquire them in a fixed order to avoid deadlock
+		int firstStripe = stripeFor(firstNode.getProperty(PAGE_KEY).toString());
+		int secondStripe = stripeFor(secondNode.getProperty(PAGE_KEY).toString());
+		ReentrantLock firstLock = PAGE_LOCKS[Math.min(firstStripe, secondStripe)];
+		ReentrantLock secondLock = PAGE_LOCKS[Math.max(firstStripe, secondStripe)];
+
+		firstLock.lock();
+		secondLock.lock();
+		try {
+			relationships = graphDb.getRelationship(firstNode, secondNode, Rel.RELATED);
+
+			for (Relationship rel : relationships) {
+				if (rel.hasProperty(REL_KEYWORD)) {
+					if ((Double.parseDouble(rel.getProperty(REL_RELEVANCE).toString()) < relevance)) {
+						graphDb.setProperty(rel, REL_RELEVANCE, relevance);
+					}
+					return rel;
 				}
-				return rel;
 			}
-		}		
 
-		newRelationship = graphDb.addRelationship(firstNode, secondNode, Rel.RELATED);
-		graphDb.setProperty(newRelationship, REL_KEYWORD, keyword);
-		graphDb.setProperty(newRelationship, REL_RELEVANCE, relevance);
-		return newRelationship;		
+			newRelationship = graphDb.addRelationship(firstNode, secondNode, Rel.RELATED);
+			graphDb.setProperty(newRelationship, REL_KEYWORD, DICTIONARY.getName(keyword));
+			graphDb.setProperty(newRelationship, REL_RELEVANCE, relevance);
+			return newRelationship;
+		} finally {
+			secondLock.unlock();
+			firstLock.unlock();
+		}
 	}
 
 	/**
@@ -152,98 +296,149 @@ public class BeastIndex {
 		}
 	}
 
-	// get a random keyword of a given page
-	public double getKeywordRelevance(String keyword, Page page) {
-
-		Node node = pageIndex.get(PAGE_KEY, page.getUrl().toString()).getSingle();
+	/**
+	 * Retrieves the relevance of a keyword to a page, as set by
+	 * {@link #addKeyword(Page, int, double)}, including writes still pending
+	 * in the {@link IndexWriter}.
+	 * 
+	 * @param keyword id of the keyword
+	 * @param page the page
+	 * @return relevance of the keyword to the page, or <code>0</code> if the
+	 *         keyword has not been added to the page
+	 */
+	public double getKeywordRelevance(final int keyword, final Page page) {
 
-		if (node == null)
-			return 0;
+		PageKeywords cached = getPageKeywords(page);
+		double pending = writer.getPendingRelevance(page, keyword);
 
-		Iterator<Relationship> iter = node.getRelationships(Rel.KEYWORD).iterator();
+		if (cached == null) {
+			return pending;
+		}
+		return Math.max(cached.getRelevance(keyword), pending);
+	}
 
-		while (iter.hasNext()) {
+	/**
+	 * Retrieves the relevance of several keywords to a page at once, as
+	 * {@link #getKeywordRelevance(int, Page)} does, looking up the keywords of
+	 * the page only once.
+	 * 
+	 * @param keywords ids of the keywords
+	 * @param page the page
+	 * @return relevance of the keywords to the page, in order of the keywords
+	 */
+	public double[] getKeywordRelevance(final int[] keywords, final Page page) {
 
-			Relationship rel = iter.next();
+		PageKeywords cached = getPageKeywords(page);
+		double[] relevance = new double[keywords.length];
 
-			if (rel.getOtherNode(node).hasProperty(KEYWORD_NAME)
-					&& (rel.getOtherNode(node).getProperty(KEYWORD_NAME).toString().equals(keyword))) {
-				double relevance = Double.parseDouble(rel.getProperty(KEYWORD_RELEVANCE).toString());
-				return relevance;
+		for (int i = 0; i < keywords.length; i++) {
+			relevance[i] = writer.getPendingRelevance(page, keywords[i]);
+			if (cached != null) {
+				relevance[i] = Math.max(cached.getRelevance(keywords[i]), relevance[i]);
 			}
 		}
-
-		return 0;
+		return relevance;
 	}
 
-	// get a random keyword of a given page
-	public String getRandKeyword(Page page) {
+	/**
+	 * Draws a random keyword of a given page. Candidates are the nouns of the
+	 * page title, reduced to root form when the page was indexed, and all
+	 * keywords added to the page so far. Candidates of a page are loaded once
+	 * and kept as an array, so that repeated draws touch neither the tagger
+	 * nor the database.
+	 * 
+	 * @param page the page whose keyword is drawn
+	 * @return id of a random keyword of the page
+	 * @see PageKeywords
+	 * @see KeywordDictionary
+	 */
+	public int getRandKeyword(final Page page) {
+
+		PageKeywords candidates = getPageKeywords(page);
 
-		Node node = pageIndex.get(PAGE_KEY, page.getUrl().toString()).getSingle();
+		// a page posted for indexing has only its title nouns
+		if (candidates == null) {
+			candidates = titleKeywords.get(page.getTitle());
+		}
+		if (candidates == null) {
+			candidates = new PageKeywords(DICTIONARY.internAll(getTitleNouns(page.getTitle())), new int[0],
+					new double[0]);
+			titleKeywords.put(page.getTitle(), candidates);
+		}
+		return candidates.draw(ThreadLocalRandom.current());
+	}
 
-		ArrayList<String> keywords = Beast.tagger.getAllNouns(page.getTitle());
+	/**
+	 * Retrieves a random neighbour of a page, i.e. a page linked from or to the
+	 * given page. Neighbours are drawn from a cached adjacency of the page,
+	 * built on first draw and weighted according to {@link Configuration}.
+	 * 
+	 * @param page the page whose neighbour is drawn
+	 * @return a random neighbour, or <code>null</code> if the page has no
+	 *         neighbours
+	 * @see NeighbourSampler
+	 */
+	public Page getRandNeighbour(final Page page) {
 
-		Iterator<Relationship> iter = node.getRelationships(Rel.KEYWORD).iterator();
+		String url = page.getUrl().toString();
+		NeighbourSampler.Adjacency adjacency = neighbours.get(url);
+		long target;
 
-		while (iter.hasNext()) {
-			Relationship rel = iter.next();
-			if (rel.getOtherNode(node).hasProperty(KEYWORD_NAME)) {
-				keywords.add(rel.getOtherNode(node).getProperty(KEYWORD_NAME).toString());
+		if (adjacency == null) {
+			adjacency = loadAdjacency(url);
+			if (adjacency == null) {
+				return getRandPendingNeighbour(page);
 			}
 		}
-		Random generator = new Random();
-		String keyword = keywords.get(generator.nextInt(keywords.size()));
 
-		if (Configuration.getInstance().useSemantics()) {
-			return Beast.semEngine.getRootNoun(keyword);
-		} else {
-			return keyword;
+		target = adjacency.draw(ThreadLocalRandom.current());
+		if (target < 0) {
+			return getRandPendingNeighbour(page);
 		}
+		return pageFromNode(graphDb.getNodeById(target));
 	}
 
-	// retrieve a random neighbour of a page
-	public Page getRandNeighbour(final Page page) {
+	// retrieve a random neighbour of a page posted for indexing, but not written yet
+	private Page getRandPendingNeighbour(final Page page) {
 
+		ArticlePage pending = writer.getPendingPage(page.getUrl().toString());
+		Link link;
 		Node node;
-		Node otherNode;
-		Random generator = new Random();
-		ArrayList<Relationship> relArray = new ArrayList<Relationship>();
 
-		if (!containsUrl(page.getUrl(), allNodeIndex)) {
+		if ((pending == null) || (pending.getLinks() == null) || (pending.getLinks().isEmpty())) {
 			return null;
 		}
 
-		node = allNodeIndex.get(PAGE_KEY, page.getUrl().toString()).getSingle();
-		// iter = node.getRelationships(Rel.LINK).iterator();
-
-		for (Relationship rel : node.getRelationships(Rel.LINK)) {
-			relArray.add(rel);
-		}
+		link = pending.getLinks().get(ThreadLocalRandom.current().nextInt(pending.getLinks().size()));
+		node = allNodeIndex.get(PAGE_KEY, link.getUrl().toString()).getSingle();
 
-		if (relArray.size() == 0) {
-			return null;
-		} else {
-			otherNode = relArray.get(generator.nextInt(relArray.size())).getOtherNode(node);
-			return pageFromNode(otherNode);
+		if (node != null) {
+			return pageFromNode(node);
 		}
+		return new ArticlePage(link.getUrl());
 	}
 
-	// retrieve a random page from index
+	// retrieve a random page from index, or null if no page is indexed
 	public Page getRandPage() {
 
-		int pageNum = getNumberOfPages(pageIndex);
-		Random generator = new Random();
-		int choice = generator.nextInt(pageNum);
-		IndexHits<Node> result = pageIndex.query(PAGE_KEY, "*");
+		Random generator = ThreadLocalRandom.current();
+		Node node = null;
 
-		for (int i = 0; i < choice; i++) {
-			result.next();
-		}
+		// the index may shrink between counting and querying, draw again then
+		while (node == null) {
+			int pageNum = getNumberOfPages(pageIndex);
+			if (pageNum == 0) {
+				return null;
+			}
+			int choice = generator.nextInt(pageNum);
+			IndexHits<Node> result = pageIndex.query(PAGE_KEY, "*");
 
-		Node node = result.next();
-		result.close();
-		Page page = pageFromNode(node);
-		return page;
+			for (int i = 0; (i <= choice) && (result.hasNext()); i++) {
+				node = result.next();
+			}
+			result.close();
+		}
+		return pageFromNode(node);
 	}
 
 	/**
@@ -255,30 +450,19 @@ public class BeastIndex {
 	 */
 	public Node indexPage(final ArticlePage page) {
 
-		Node newPage = null;
-		boolean nodeIsNew = true;
+		String url = page.getUrl().toString();
+		Node newPage;
+		List<Node> linkedPages;
+		ReentrantLock lock;
 
-		// find out if node already exists
 		// if we found a page and its already indexed, we return the page
-		IndexHits<Node> resultIndexed = pageIndex.get(PAGE_KEY, page.getUrl().toString());
-		if (resultIndexed.size() > 0) {
-			newPage = resultIndexed.next();
-			resultIndexed.close();
-
+		newPage = pageIndex.get(PAGE_KEY, url).getSingle();
+		if (newPage != null) {
 			return newPage;
 		}
-
-		// otherwise if we found a node that's not yet fully indexed, we update
-		// the page we have found
-		IndexHits<Node> result = allNodeIndex.get(PAGE_KEY, page.getUrl().toString());
-		if (result.size() > 0) {
-			newPage = result.next();
-			result.close();
-			nodeIsNew = false;
-		}
-
-		if (nodeIsNew) {
-			newPage = graphDb.createNode();
+		newPage = getCanonicalNode(url);
+		if (newPage != null) {
+			return newPage;
 		}
 
 		// try to process page, if not yet processed
@@ -289,52 +473,38 @@ public class BeastIndex {
 			return null;
 		}
 
-		System.out.println("index - " + page.getUrl());
-		page.setLastIndexed(new Date());
-		graphDb.setProperty(newPage, PAGE_KEY, page.getUrl().toString());
-		graphDb.setProperty(newPage, PAGE_INDEXED, true);
-
-		if (page.getArchiveFile() != null)
-			graphDb.setProperty(newPage, PAGE_PATH, page.getArchiveFile().getAbsolutePath());
-		if (page.getTitle() != null)
-			graphDb.setProperty(newPage, PAGE_TITLE, page.getTitle());
-		if (page.getLocation() != null)
-			graphDb.setProperty(newPage, PAGE_LOCATION, page.getLocation());
-		if (page.getTimestamp() != null)
-			graphDb.setProperty(newPage, PAGE_TIMESTAMP, page.getTimestamp().toString());
-		if (page.getLastIndexed() != null)
-			graphDb.setProperty(newPage, PAGE_LASTINDEX, page.getLastIndexed().toString());
-		if (page.getText() != null)
-			graphDb.setProperty(newPage, PAGE_TEXT, page.getText().toString());
-		if (page.getPerex() != null)
-			graphDb.setProperty(newPage, PAGE_PEREX, page.getPerex().toString());
-
-		if (page.getTimestamp() != null) {
-			double timemilis = page.getTimestamp().getTime();
-			graphDb.setProperty(newPage, PAGE_TIME, timemilis);
+		// duplicates of indexed pages refer to the indexed page, pages
+		// without text have no fingerprint and are never duplicates
+		if (page.getFingerprint() != null) {
+			newPage = findDuplicate(page);
+			if (newPage != null) {
+				return setCanonical(url, newPage);
+			}
 		}
 
-		// add outgoing links within the page as nonindexed nodes
-		for (int i = 0; i < page.getLinks().size(); i++) {
-
-			Node linkedPage;
+		// resolve outgoing links before locking the page, so that no two
+		// stripes are held at once
+		linkedPages = getOrCreateLinkedNodes(page);
+		newPage = getOrCreatePageNode(url);
 
-			if (containsUrl(page.getLinks().get(i).getUrl(), allNodeIndex)) {
-				linkedPage = allNodeIndex.get(PAGE_KEY, page.getLinks().get(i).getUrl()).getSingle();
-			} else {
-				linkedPage = graphDb.createNode();
-				graphDb.setProperty(linkedPage, PAGE_KEY, page.getLinks().get(i).getUrl().toString());
-				graphDb.setProperty(linkedPage, PAGE_INDEXED, false);
-				graphDb.addToIndex(allNodeIndex, linkedPage, PAGE_KEY, page.getLinks().get(i).getUrl());
+		lock = lockFor(PAGE_LOCKS, url);
+		lock.lock();
+		try {
+			// another caller may have indexed the page in the meantime
+			Node indexed = pageIndex.get(PAGE_KEY, url).getSingle();
+			if (indexed != null) {
+				return indexed;
 			}
-			Relationship relation = graphDb.addRelationship(newPage,  linkedPage,  Rel.LINK);
-			graphDb.setProperty(relation, ANCHOR_TEXT, page.getLinks().get(i).getAnchorText());
-		}
 
-		if ((nodeIsNew) && (!containsUrl(page.getUrl(), allNodeIndex)))
-			graphDb.addToIndex(allNodeIndex, newPage, PAGE_KEY, page.getUrl().toString());
-
-		graphDb.addToIndex(pageIndex, newPage, PAGE_KEY, page.getUrl().toString());
+			System.out.println("index - " + page.getUrl());
+			page.setLastIndexed(new Date());
+			setPageProperties(newPage, page);
+			addLinks(newPage, page, linkedPages);
+			graphDb.addToIndex(pageIndex, newPage, PAGE_KEY, url);
+		} finally {
+			lock.unlock();
+		}
+		addDocument(page);
 
 		return newPage;
 	}
@@ -358,10 +528,23 @@ public class BeastIndex {
 	public void init(final String path) {
 
 		graphDb = new GraphDatabase(path);
+		pageKeywords = new ConcurrentLruCache<String, PageKeywords>(
+				Configuration.getInstance().getPageKeywordsCacheSize());
+		titleKeywords = new ConcurrentLruCache<String, PageKeywords>(
+				Configuration.getInstance().getPageKeywordsCacheSize());
 		pageIndex = graphDb.createIndex("pages");
 		allNodeIndex = graphDb.createIndex("allnodes");
 		keywords = graphDb.createIndex("keywords");
+		bucketIndex = graphDb.createIndex("buckets");
+		fingerprintIndex = graphDb.createIndex("fingerprints");
+		assignMissingBuckets();
+		loadKnownUrls();
+		loadStatistics();
+		writer = new IndexWriter(this);
+		neighbours = new NeighbourSampler(Configuration.getInstance().getNeighbourCacheSize(),
+				Configuration.getInstance().getNeighbourWeighting());
 		indexStartingPages();
+		writer.start();
 
 		System.out.println("index running");
 	}
@@ -384,15 +567,42 @@ public class BeastIndex {
 		return getNumberOfPages(keywords);
 	}
 
-	// retrieve a page object from a given node
-	public ArticlePage pageFromNode(final Node node) {
+	/**
+	 * Lists names of all indexed keywords, e.g. to query their semantics in
+	 * advance.
+	 * 
+	 * @return names of indexed keywords
+	 */
+	public List<String> getKeywordNames() {
+
+		List<String> names = new ArrayList<String>();
+		IndexHits<Node> result = keywords.query(KEYWORD_NAME, "*");
+
+		for (Node node : result) {
+			names.add(node.getProperty(KEYWORD_NAME).toString());
+		}
+		result.close();
+		return names;
+	}
+
+	// retrieve a page object from a given node, duplicates are resolved to
+	// their canonical page
+	public ArticlePage pageFromNode(final Node storedNode) {
 
 		URL url;
 		ArticlePage page = null;
+		Node node = storedNode;
+
+		if (node.hasProperty(PAGE_CANONICAL)) {
+			Node canonical = pageIndex.get(PAGE_KEY, node.getProperty(PAGE_CANONICAL).toString()).getSingle();
+			if (canonical != null) {
+				node = canonical;
+			}
+		}
 
 		try {
 			url = Utility.stringToURL(node.getProperty(PAGE_KEY).toString());
-			page = new ReutersPage(url);
+			page = new ArticlePage(url);
 		} catch (MalformedURLException e) {
 			e.printStackTrace();
 			System.exit(1);
@@ -406,8 +616,7 @@ public class BeastIndex {
 			}
 		}
 		if (node.hasProperty(PAGE_PATH)) {
-			File newFile = new File(node.getProperty(PAGE_PATH).toString());
-			page.setArchiveFile(newFile);
+			page.setArchivePointer(ArchivePointer.parse(node.getProperty(PAGE_PATH).toString()));
 		}
 		if (node.hasProperty(PAGE_TITLE)) {
 			page.setTitle(node.getProperty(PAGE_TITLE).toString());
@@ -416,10 +625,18 @@ public class BeastIndex {
 			page.setLocation(node.getProperty(PAGE_LOCATION).toString());
 		}
 		if (node.hasProperty(PAGE_TEXT)) {
-			page.setText(new StringBuffer(node.getProperty(PAGE_TEXT).toString()));
+			page.setText(CompactText.of(node.getProperty(PAGE_TEXT).toString()));
 		}
 		if (node.hasProperty(PAGE_PEREX)) {
-			page.setPerex(new StringBuffer(node.getProperty(PAGE_PEREX).toString()));
+			page.setPerex(CompactText.of(node.getProperty(PAGE_PEREX).toString()));
+		}
+		if ((node.hasProperty(PAGE_HASH)) && (node.hasProperty(PAGE_SIMHASH))) {
+			page.setFingerprint(new Fingerprint((Long) node.getProperty(PAGE_HASH),
+					(Long) node.getProperty(PAGE_SIMHASH)));
+		}
+		if ((node.hasProperty(PAGE_ETAG)) || (node.hasProperty(PAGE_LAST_MODIFIED))) {
+			page.setValidators((String) node.getProperty(PAGE_ETAG, null),
+					(String) node.getProperty(PAGE_LAST_MODIFIED, null));
 		}
 		if (node.hasProperty(PAGE_LASTINDEX)) {
 			try {
@@ -429,6 +646,11 @@ public class BeastIndex {
 				System.out.println("Wrong date format: " + e);
 			}
 		}
+		// a pending refresh has already recorded a later time of indexing
+		ArticlePage pending = writer.getPendingPage(page.getUrl().toString());
+		if ((pending != null) && (pending.getLastIndexed() != null)) {
+			page.setLastIndexed(pending.getLastIndexed());
+		}
 		if (node.hasProperty(PAGE_TIMESTAMP)) {
 			try {
 				DateFormat format = new SimpleDateFormat(DEFAULT_DATE_FORMAT, Locale.ENGLISH);
@@ -437,6 +659,11 @@ public class BeastIndex {
 				System.out.println("Wrong date format: " + e);
 			}
 		}
+		// hydrated content counts against the budget like processed content,
+		// stubs of linked pages hold none
+		if (page.getContentSize() > 0) {
+			PageMemoryBudget.getInstance().retain(page);
+		}
 		return page;
 	}
 
@@ -459,140 +686,1109 @@ public class BeastIndex {
 	 */
 	public Node reindexPage(final ArticlePage page) {
 
-		Node newPage = null;
+		return reindexPage(page, Page.REPROCESS);
+	}
+
+	/**
+	 * Reindexes an existing page, as {@link #reindexPage(ArticlePage)} does.
+	 * The page may have already been reprocessed by the caller, in which case
+	 * only the database is updated.
+	 * 
+	 * @param page - Page to be reindexed.
+	 * @param reprocess if <i>true</i>, the page is reprocessed before writing,
+	 *        otherwise its current content is written
+	 * @return Indexed page as a Node in graph database.
+	 */
+	public Node reindexPage(final ArticlePage page, final boolean reprocess) {
+
+		String url = page.getUrl().toString();
+		Node newPage;
+		List<Node> linkedPages;
+		ReentrantLock lock;
 
 		// if page is not yet indexed properly, index it normally
-		IndexHits<Node> resultIndexed = pageIndex.get(PAGE_KEY, page.getUrl().toString());
-		if (resultIndexed.size() == 0) {
-			resultIndexed.close();
-			newPage = indexPage(page);
-			return newPage;
-		} else { 							// otherwise use it for reindexing
-			newPage = resultIndexed.next();
-			resultIndexed.close();
+		newPage = pageIndex.get(PAGE_KEY, url).getSingle();
+		if (newPage == null) {
+			return indexPage(page);
 		}
 
-		System.out.println("update - " + page.getUrl());
-		page.setLastIndexed(new Date());
-		graphDb.setProperty(newPage, PAGE_KEY, page.getUrl().toString());
-		graphDb.setProperty(newPage, PAGE_INDEXED, true);
-
 		// try to process page, if not yet processed
 		try {
-			page.process(Page.REPROCESS);
+			page.process(reprocess);
 		} catch (NullPointerException e) {
 			System.err.println("Failed to process page: " + page.getUrl());
 			return null;
 		}
 
-		if (page.getText() != null) {
-			graphDb.setProperty(newPage, PAGE_TEXT, page.getText().toString());
+		lock = lockFor(PAGE_LOCKS, url);
+
+		// content of a page not modified since last retrieval is unchanged
+		if (!page.isModified()) {
+			lock.lock();
+			try {
+				page.setLastIndexed(new Date());
+				graphDb.setProperty(newPage, PAGE_LASTINDEX, page.getLastIndexed().toString());
+			} finally {
+				lock.unlock();
+			}
+			return newPage;
 		}
-		if (page.getPerex() != null) {
-			graphDb.setProperty(newPage, PAGE_PEREX, page.getPerex().toString());
+
+		linkedPages = getOrCreateLinkedNodes(page);
+
+		lock.lock();
+		try {
+			System.out.println("update - " + page.getUrl());
+			page.setLastIndexed(new Date());
+			setPageProperties(newPage, page);
+			QualityCache.getInstance().invalidate(page);
+
+			// remove all old outgoing links first
+			Iterator<Relationship> rel = newPage.getRelationships(Rel.LINK).iterator();
+			List<String> unlinked = new ArrayList<String>();
+
+			while (rel.hasNext()) {
+				Relationship link = rel.next();
+				if (link.getStartNode().equals(newPage)) {
+					unlinked.add(link.getEndNode().getProperty(PAGE_KEY, "").toString());
+					graphDb.deleteRelationship(link);
+				}
+			}
+			invalidateNeighbours(unlinked);
+
+			// update links
+			addLinks(newPage, page, linkedPages);
+		} finally {
+			lock.unlock();
 		}
-		if (page.getArchiveFile() != null) {
-			graphDb.setProperty(newPage, PAGE_PATH, page.getArchiveFile().getAbsolutePath());
+		addDocument(page);
+		return newPage;
+	}
+
+	/**
+	 * Creates a set of locks used for lock striping.
+	 * 
+	 * @param count the number of stripes
+	 * @return array of new locks
+	 */
+	private static ReentrantLock[] createLocks(final int count) {
+
+		ReentrantLock[] locks = new ReentrantLock[count];
+
+		for (int i = 0; i < count; i++) {
+			locks[i] = new ReentrantLock();
 		}
-		if (page.getTitle() != null) {
-			graphDb.setProperty(newPage, PAGE_TITLE, page.getTitle());
+		return locks;
+	}
+
+	/**
+	 * Selects the stripe guarding a given key. The hash is spread, so that keys
+	 * differing only in higher bits do not fall into the same stripe.
+	 * 
+	 * @param key the key to be guarded, usually a page url
+	 * @return index of the stripe
+	 */
+	private static int stripeFor(final String key) {
+
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return hash & (LOCK_STRIPES - 1);
+	}
+
+	/**
+	 * @param locks the striped locks to choose from
+	 * @param key the key to be guarded
+	 * @return the lock guarding the given key
+	 */
+	private static ReentrantLock lockFor(final ReentrantLock[] locks, final String key) {
+
+		return locks[stripeFor(key)];
+	}
+
+	/**
+	 * Adds outgoing {@link Rel#LINK links} of a page to its node. Caller needs
+	 * to hold the lock of the page.
+	 * 
+	 * @param node the node of the page
+	 * @param page the page holding the links
+	 * @param linkedPages nodes of the linked pages, in the order of
+	 *        {@link Page#getLinks()}
+	 */
+	private void addLinks(final Node node, final ArticlePage page, final List<Node> linkedPages) {
+
+		List<String> linked = new ArrayList<String>();
+
+		for (int i = 0; i < linkedPages.size(); i++) {
+			Relationship relation = graphDb.addRelationship(node, linkedPages.get(i), Rel.LINK);
+			graphDb.setProperty(relation, ANCHOR_TEXT, page.getLinks().get(i).getAnchorText());
+			linked.add(page.getLinks().get(i).getUrl().toString());
 		}
-		if (page.getLocation() != null) {
-			graphDb.setProperty(newPage, PAGE_LOCATION, page.getLocation());
+		linked.add(page.getUrl().toString());
+		invalidateNeighbours(linked);
+	}
+
+	/**
+	 * Adds an indexed page into the statistics of the relevance engine once
+	 * the current write is committed, so that a replayed batch does not add
+	 * the page twice. A reindexed page replaces its previous version.
+	 * 
+	 * @param page the indexed page
+	 */
+	private static void addDocument(final ArticlePage page) {
+
+		final String url = page.getUrl().toString();
+		final TermIndex terms = page.getTermIndex();
+
+		afterCommit(new Runnable() {
+
+			public void run() {
+
+				Beast.relevance.addDocument(url, terms);
 			}
-		if (page.getTimestamp() != null) {
-			graphDb.setProperty(newPage, PAGE_TIMESTAMP, page.getTimestamp().toString());
+		});
+	}
+
+	/**
+	 * Invalidates cached adjacency of pages once the current write is
+	 * committed, so that no reader caches adjacency of uncommitted state.
+	 * 
+	 * @param urls urls of the pages whose adjacency has changed
+	 */
+	private static void invalidateNeighbours(final Collection<String> urls) {
+
+		afterCommit(new Runnable() {
+
+			public void run() {
+
+				for (String url : urls) {
+					neighbours.invalidate(url);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Invalidates cached keywords of a page once the current write is
+	 * committed, so that no reader caches keywords of uncommitted state.
+	 * 
+	 * @param url the url of the page whose title nouns have changed
+	 */
+	private static void invalidateKeywords(final String url) {
+
+		afterCommit(new Runnable() {
+
+			public void run() {
+
+				pageKeywords.remove(url);
+			}
+		});
+	}
+
+	/**
+	 * Adds a keyword to the cached keywords of a page and invalidates its
+	 * cached quality once the current write is committed, so that readers see
+	 * neither before the keyword is in the database.
+	 * 
+	 * @param page the page the keyword was added to
+	 * @param url the url of the node of the page
+	 * @param keyword id of the added keyword
+	 * @param relevance the relevance of the keyword to the page
+	 */
+	private static void updateKeywords(final Page page, final String url, final int keyword,
+			final double relevance) {
+
+		afterCommit(new Runnable() {
+
+			public void run() {
+
+				PageKeywords cached = pageKeywords.get(url);
+				if (cached != null) {
+					cached.add(keyword, relevance);
+				}
+				QualityCache.getInstance().invalidate(page, keyword);
+			}
+		});
+	}
+
+	/**
+	 * Runs an action once the batch of the current thread is committed, or
+	 * immediately if the thread writes outside of a batch, where each write
+	 * commits on its own. Actions of a batch which fails are dropped, as its
+	 * writes are replayed one by one.
+	 * 
+	 * @param action the action to be run, usually a cache invalidation
+	 * @see #beginBatch()
+	 */
+	private static void afterCommit(final Runnable action) {
+
+		List<Runnable> actions = AFTER_COMMIT.get();
+
+		if (actions == null) {
+			action.run();
+		} else {
+			actions.add(action);
 		}
-		if (page.getLastIndexed() != null) {
-			graphDb.setProperty(newPage, PAGE_LASTINDEX, page.getLastIndexed().toString());
+	}
+
+	/**
+	 * Builds the adjacency of a page from its {@link Rel#LINK links} and caches
+	 * it in {@link #neighbours}.
+	 * 
+	 * @param url the url of the page
+	 * @return adjacency of the page, or <code>null</code> if the page is not
+	 *         in the index
+	 */
+	private NeighbourSampler.Adjacency loadAdjacency(final String url) {
+
+		Node node = allNodeIndex.get(PAGE_KEY, url).getSingle();
+		List<Relationship> links = new ArrayList<Relationship>();
+		long[] targets;
+		double[] weights = null;
+
+		if (node == null) {
+			return null;
+		}
+
+		for (Relationship rel : node.getRelationships(Rel.LINK)) {
+			links.add(rel);
+		}
+
+		targets = new long[links.size()];
+		if (neighbours.getWeighting() != NeighbourSampler.Weighting.UNIFORM) {
+			weights = new double[links.size()];
 		}
 
-		// remove all old outgoing links first
-		Iterator<Relationship> rel = newPage.getRelationships(Rel.LINK).iterator();
+		for (int i = 0; i < links.size(); i++) {
+			Node otherNode = links.get(i).getOtherNode(node);
+			targets[i] = otherNode.getId();
 
-		while (rel.hasNext()) {
-			Relationship link = rel.next();
-			if (link.getStartNode().equals(newPage)) {
-				graphDb.deleteRelationship(link);
+			if (neighbours.getWeighting() == NeighbourSampler.Weighting.ANCHOR) {
+				weights[i] = 1 + countWords(links.get(i).getProperty(ANCHOR_TEXT, "").toString());
+			} else if (neighbours.getWeighting() == NeighbourSampler.Weighting.RELEVANCE) {
+				weights[i] = 1 + getMaxRelevance(otherNode);
 			}
 		}
+		return neighbours.put(url, targets, weights);
+	}
 
-		// update links
-		for (int i = 0; i < page.getLinks().size(); i++) {
+	// count whitespace separated words of a text
+	private static int countWords(final String text) {
 
-			Node linkedPage;
-			
-			if (containsUrl(page.getLinks().get(i).getUrl(), allNodeIndex)) {
-				linkedPage = allNodeIndex.get(PAGE_KEY, page.getLinks().get(i).getUrl()).getSingle();
-			} else {
-				linkedPage = graphDb.createNode();
-				graphDb.setProperty(linkedPage, PAGE_KEY, page.getLinks().get(i).getUrl().toString());
-				graphDb.setProperty(linkedPage, PAGE_INDEXED, false);
-			}
+		int words = 0;
+		boolean inWord = false;
 
-			Relationship relation = graphDb.addRelationship(newPage,  linkedPage,  Rel.LINK);
-			graphDb.setProperty(relation, ANCHOR_TEXT, page.getLinks().get(i).getAnchorText());
-			graphDb.addToIndex(allNodeIndex, linkedPage, PAGE_KEY, page.getLinks().get(i).getUrl());
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.isWhitespace(text.charAt(i))) {
+				inWord = false;
+			} else if (!inWord) {
+				inWord = true;
+				words++;
+			}
 		}
-		return newPage;
+		return words;
 	}
 
-	// check, if the page already exists in the index
-	private boolean containsUrl(final URL url, Index<Node> index) {
+	// highest relevance of any keyword of a page node
+	private static double getMaxRelevance(final Node node) {
 
-		IndexHits<Node> result = index.get(PAGE_KEY, url.toString());
+		double max = 0;
 
-		if (result.size() > 0) {
-			result.close();
-			return true;
-		} else {
-			result.close();
-			return false;
+		for (Relationship rel : node.getRelationships(Rel.KEYWORD)) {
+			if (rel.hasProperty(KEYWORD_RELEVANCE)) {
+				max = Math.max(max, Double.parseDouble(rel.getProperty(KEYWORD_RELEVANCE).toString()));
+			}
 		}
+		return max;
 	}
 
-	// retrieve a keyword node
-	private Node getKeywordNode(String keyword) {
+	/**
+	 * Resolves nodes of all outgoing links of a page, adding linked pages as
+	 * not indexed nodes where necessary.
+	 * 
+	 * @param page the page holding the links
+	 * @return nodes of the linked pages, in the order of {@link Page#getLinks()}
+	 */
+	private List<Node> getOrCreateLinkedNodes(final ArticlePage page) {
 
-		Node node = keywords.get(KEYWORD_NAME, keyword).getSingle();
-		return node;
+		List<Node> nodes = new ArrayList<Node>();
+
+		for (Link link : page.getLinks()) {
+			nodes.add(getOrCreatePageNode(link.getUrl().toString()));
+		}
+		return nodes;
 	}
 
 	/**
-	 * Indexes the starting pages, currently preset for Reuters home page and
-	 * using reuters page parser.
+	 * Retrieves the node of a page with a given url. If no such node exists, a
+	 * new node is created for the page, marked as not indexed. Lookup is
+	 * lock-free, only the creation is guarded by the lock of the url. Urls not
+	 * present in the filter of {@link #knownUrls known urls} are not looked up
+	 * in the index at all.
+	 * 
+	 * @param url the url of the page
+	 * @return node representing the page
 	 */
-	private void indexStartingPages() {
+	private Node getOrCreatePageNode(final String url) {
+
+		Node node = null;
+		ReentrantLock lock;
 
-		ReutersPage newPage;
-		List<Link> links = ReutersParser.getInstance().getStartingPages();
+		if (knownUrls.mightContain(url)) {
+			node = allNodeIndex.get(PAGE_KEY, url).getSingle();
+			if (node != null) {
+				return node;
+			}
+		}
 
-		for (Link link : links) {
-			newPage = new ReutersPage(link.getUrl());
-			if (!containsUrl(newPage.getUrl(), allNodeIndex)) {
-				newPage.process();
-				indexPage(newPage);
+		lock = lockFor(PAGE_LOCKS, url);
+		lock.lock();
+		try {
+			if (knownUrls.mightContain(url)) {
+				node = allNodeIndex.get(PAGE_KEY, url).getSingle();
+			}
+			if (node == null) {
+				Map<String, Object> properties = new HashMap<String, Object>();
+				properties.put(PAGE_KEY, url);
+				properties.put(PAGE_INDEXED, false);
+				node = graphDb.createIndexedNode(allNodeIndex, PAGE_KEY, url, properties);
+				knownUrls.put(url);
 			}
+		} finally {
+			lock.unlock();
 		}
+		return node;
 	}
 
-	// return the number of pages in a given index
-	private int getNumberOfPages(Index<Node> index) {
+	/**
+	 * Retrieves the node of a keyword, creating a new one if the keyword is not
+	 * in the index yet. Node ids of keywords are remembered in the
+	 * {@link KeywordDictionary} once committed, so the index is queried only
+	 * once per keyword. A remembered node which no longer exists is looked up
+	 * in the index again.
+	 * 
+	 * @param keyword id of the keyword to be retrieved
+	 * @return node representing the keyword
+	 */
+	private Node getOrCreateKeywordNode(final int keyword) {
 
-		int numPages;
-		IndexHits<Node> result;
-		if (index.getName().equals("keywords")) {
-			result = index.query(KEYWORD_NAME, "*");
-		} else {
-			result = index.query(PAGE_KEY, "*");
+		final String name = DICTIONARY.getName(keyword);
+		long nodeId = DICTIONARY.getNodeId(keyword);
+		final Node node;
+		ReentrantLock lock;
+
+		if (nodeId >= 0) {
+			try {
+				return graphDb.getNodeById(nodeId);
+			} catch (NotFoundException e) {
+				DICTIONARY.setNodeId(keyword, -1);
+			}
+		}
+
+		lock = lockFor(KEYWORD_LOCKS, name);
+		lock.lock();
+		try {
+			Node existing = getKeywordNode(name);
+			if (existing == null) {
+				Map<String, Object> properties = new HashMap<String, Object>();
+				properties.put(KEYWORD_NAME, name);
+				existing = graphDb.createIndexedNode(keywords, KEYWORD_NAME, name, properties);
+			}
+			node = existing;
+		} finally {
+			lock.unlock();
+		}
+
+		// the node of a rolled back batch would not exist
+		afterCommit(new Runnable() {
+
+			public void run() {
+
+				DICTIONARY.setNodeId(keyword, node.getId());
+			}
+		});
+		return node;
+	}
+
+	/**
+	 * Extracts the nouns of a page title, reduced to root form if semantics
+	 * are enabled.
+	 * 
+	 * @param title the title of a page
+	 * @return nouns of the title
+	 */
+	private static String[] getTitleNouns(final String title) {
+
+		ArrayList<String> nouns = Beast.tagger.getAllNouns(title);
+		String[] result = new String[nouns.size()];
+
+		for (int i = 0; i < result.length; i++) {
+			if (Configuration.getInstance().useSemantics()) {
+				result[i] = Beast.semEngine.getRootNoun(nouns.get(i));
+			} else {
+				result[i] = nouns.get(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieves cached keywords of an indexed page, loading them if not cached
+	 * yet. Keywords of a duplicate page are those of its canonical page.
+	 * 
+	 * @param page the page whose keywords are retrieved
+	 * @return keywords of the page, or <code>null</code> if the page is not
+	 *         indexed
+	 */
+	private PageKeywords getPageKeywords(final Page page) {
+
+		PageKeywords cached = pageKeywords.get(page.getUrl().toString());
+		Node node;
+
+		if (cached != null) {
+			return cached;
+		}
+		node = getIndexedNode(page.getUrl().toString());
+		if (node == null) {
+			return null;
+		}
+		cached = pageKeywords.get(node.getProperty(PAGE_KEY).toString());
+		return (cached != null) ? cached : loadPageKeywords(page, node);
+	}
+
+	/**
+	 * Loads keywords of an indexed page and caches them under the url of its
+	 * node. Title nouns and keyword names are interned into the
+	 * {@link KeywordDictionary}.
+	 * 
+	 * @param page the page whose keywords are loaded
+	 * @param node the node of the page
+	 * @return keywords of the page
+	 */
+	private PageKeywords loadPageKeywords(final Page page, final Node node) {
+
+		String url = node.getProperty(PAGE_KEY).toString();
+		List<Relationship> rels = new ArrayList<Relationship>();
+		String[] titleNouns;
+		int[] keywordIds;
+		double[] relevance;
+		PageKeywords loaded;
+		PageKeywords previous;
+
+		if (node.hasProperty(PAGE_TITLE_NOUNS)) {
+			titleNouns = (String[]) node.getProperty(PAGE_TITLE_NOUNS);
+		} else {
+			titleNouns = getTitleNouns(page.getTitle());
+		}
+
+		for (Relationship rel : node.getRelationships(Rel.KEYWORD)) {
+			if (rel.getOtherNode(node).hasProperty(KEYWORD_NAME)) {
+				rels.add(rel);
+			}
+		}
+
+		keywordIds = new int[rels.size()];
+		relevance = new double[rels.size()];
+		for (int i = 0; i < rels.size(); i++) {
+			keywordIds[i] = DICTIONARY.intern(rels.get(i).getOtherNode(node).getProperty(KEYWORD_NAME).toString());
+			if (rels.get(i).hasProperty(KEYWORD_RELEVANCE)) {
+				relevance[i] = Double.parseDouble(rels.get(i).getProperty(KEYWORD_RELEVANCE).toString());
+			}
+		}
+
+		loaded = new PageKeywords(DICTIONARY.internAll(titleNouns), keywordIds, relevance);
+
+		// keep the instance another caller may have already started appending to
+		previous = pageKeywords.putIfAbsent(url, loaded);
+		return (previous == null) ? loaded : previous;
+	}
+
+	/**
+	 * Assigns a time bucket to a page node, moving it within the bucket index
+	 * if its bucket has changed.
+	 * 
+	 * @param node the node of an indexed page
+	 * @param time timestamp of the page, in milliseconds
+	 */
+	private void setBucket(final Node node, final long time) {
+
+		String bucket = bucketKey(time / Configuration.getInstance().getIndexBucketSize());
+
+		if (!bucket.equals(node.getProperty(PAGE_BUCKET, null))) {
+			graphDb.removeFromIndex(bucketIndex, node);
+			graphDb.setProperty(node, PAGE_BUCKET, bucket);
+			graphDb.addToIndex(bucketIndex, node, PAGE_BUCKET, bucket);
+		}
+	}
+
+	/**
+	 * Stores the fingerprint of the content of a page, moving the page within
+	 * the fingerprint index if its fingerprint has changed.
+	 * 
+	 * @param node the node of an indexed page
+	 * @param fingerprint fingerprint of the content of the page
+	 */
+	private void setFingerprint(final Node node, final Fingerprint fingerprint) {
+
+		if ((node.hasProperty(PAGE_HASH)) && (node.hasProperty(PAGE_SIMHASH))
+				&& (fingerprint.sameContent(new Fingerprint((Long) node.getProperty(PAGE_HASH),
+						(Long) node.getProperty(PAGE_SIMHASH))))) {
+			return;
+		}
+
+		graphDb.removeFromIndex(fingerprintIndex, node);
+		graphDb.setProperty(node, PAGE_HASH, fingerprint.getHash());
+		graphDb.setProperty(node, PAGE_SIMHASH, fingerprint.getSimHash());
+		graphDb.addToIndex(fingerprintIndex, node, PAGE_HASH, Long.toHexString(fingerprint.getHash()));
+		for (int band = 0; band < Fingerprint.BANDS; band++) {
+			graphDb.addToIndex(fingerprintIndex, node, FINGERPRINT_BAND, bandKey(fingerprint, band));
+		}
+	}
+
+	/**
+	 * Finds an indexed page with the same or nearly the same content as the
+	 * given page. Pages are nearly the same, if the distance of their
+	 * fingerprints does not exceed the distance set in {@link Configuration}.
+	 * 
+	 * @param page a processed page
+	 * @return node of the indexed page, or <code>null</code> if no such page
+	 *         exists
+	 */
+	private Node findDuplicate(final ArticlePage page) {
+
+		Fingerprint fingerprint = page.getFingerprint();
+		int maxDistance = Configuration.getInstance().getDuplicateDistance();
+		String url = page.getUrl().toString();
+		Node duplicate = null;
+		IndexHits<Node> hits;
+
+		if (fingerprint == null) {
+			return null;
+		}
+
+		hits = fingerprintIndex.get(PAGE_HASH, Long.toHexString(fingerprint.getHash()));
+		for (Node node : hits) {
+			if (!url.equals(node.getProperty(PAGE_KEY))) {
+				duplicate = node;
+				break;
+			}
+		}
+		hits.close();
+
+		// near duplicates share at least one band of their fingerprints
+		for (int band = 0; (duplicate == null) && (maxDistance >= 0) && (band < Fingerprint.BANDS); band++) {
+			hits = fingerprintIndex.get(FINGERPRINT_BAND, bandKey(fingerprint, band));
+			for (Node node : hits) {
+				Fingerprint other = new Fingerprint((Long) node.getProperty(PAGE_HASH),
+						(Long) node.getProperty(PAGE_SIMHASH));
+				if ((!url.equals(node.getProperty(PAGE_KEY))) && (fingerprint.distance(other) <= maxDistance)) {
+					duplicate = node;
+					break;
+				}
+			}
+			hits.close();
+		}
+		return duplicate;
+	}
+
+	/**
+	 * Refers the node of a duplicate page to its canonical page, creating the
+	 * node if it does not exist yet.
+	 * 
+	 * @param url the url of the duplicate page
+	 * @param canonical the node of the indexed canonical page
+	 * @return node of the canonical page
+	 */
+	private Node setCanonical(final String url, final Node canonical) {
+
+		Node node = getOrCreatePageNode(url);
+		ReentrantLock lock = lockFor(PAGE_LOCKS, url);
+
+		lock.lock();
+		try {
+			System.out.println("duplicate - " + url + " of " + canonical.getProperty(PAGE_KEY));
+			graphDb.setProperty(node, PAGE_CANONICAL, canonical.getProperty(PAGE_KEY).toString());
+		} finally {
+			lock.unlock();
+		}
+		return canonical;
+	}
+
+	/**
+	 * @param url the url of a page
+	 * @return node of the indexed page, or of its canonical page if the page
+	 *         is a known duplicate, otherwise <code>null</code>
+	 */
+	private Node getIndexedNode(final String url) {
+
+		Node node = pageIndex.get(PAGE_KEY, url).getSingle();
+		return (node != null) ? node : getCanonicalNode(url);
+	}
+
+	/**
+	 * @param url the url of a page
+	 * @return node of the canonical page, if the page is a known duplicate of
+	 *         an indexed page, otherwise <code>null</code>
+	 */
+	private Node getCanonicalNode(final String url) {
+
+		Node node = allNodeIndex.get(PAGE_KEY, url).getSingle();
+
+		if ((node == null) || (!node.hasProperty(PAGE_CANONICAL))) {
+			return null;
+		}
+		return pageIndex.get(PAGE_KEY, node.getProperty(PAGE_CANONICAL).toString()).getSingle();
+	}
+
+	// index key of a band of a fingerprint
+	private static String bandKey(final Fingerprint fingerprint, final int band) {
+
+		return band + ":" + Integer.toHexString(fingerprint.getBand(band));
+	}
+
+	/**
+	 * Assigns time buckets to indexed pages stored before time partitioning
+	 * was introduced, based on their timestamp or the time of last indexing.
+	 */
+	private void assignMissingBuckets() {
+
+		IndexHits<Node> result = pageIndex.query(PAGE_KEY, "*");
+		DateFormat format = new SimpleDateFormat(DEFAULT_DATE_FORMAT, Locale.ENGLISH);
+
+		for (Node node : result) {
+			if (node.hasProperty(PAGE_BUCKET)) {
+				continue;
+			}
+			if (node.hasProperty(PAGE_TIME)) {
+				setBucket(node, (long) Double.parseDouble(node.getProperty(PAGE_TIME).toString()));
+			} else if (node.hasProperty(PAGE_LASTINDEX)) {
+				try {
+					setBucket(node, format.parse(node.getProperty(PAGE_LASTINDEX).toString()).getTime());
+				} catch (ParseException e) {
+					System.out.println("Wrong date format: " + e);
+				}
+			}
+		}
+		result.close();
+	}
+
+	/**
+	 * Fills the statistics of the relevance engine with all indexed pages, if
+	 * the engine keeps statistics of the collection.
+	 */
+	private void loadStatistics() {
+
+		IndexHits<Node> result;
+
+		if (!Beast.relevance.keepsStatistics()) {
+			return;
+		}
+
+		result = pageIndex.query(PAGE_KEY, "*");
+		for (Node node : result) {
+			Beast.relevance.addDocument(node.getProperty(PAGE_KEY).toString(), TermIndex.of(
+					(String) node.getProperty(PAGE_TITLE, null), (String) node.getProperty(PAGE_PEREX, null),
+					(String) node.getProperty(PAGE_TEXT, null)));
+		}
+		result.close();
+	}
+
+	/**
+	 * Fills the filter of known urls with urls of all page nodes in the
+	 * database, including linked pages not indexed yet.
+	 */
+	private void loadKnownUrls() {
+
+		IndexHits<Node> result = allNodeIndex.query(PAGE_KEY, "*");
+
+		knownUrls = new ScalableBloomFilter(Math.max(Configuration.getInstance().getUrlFilterCapacity(),
+				result.size()), URL_FILTER_PROBABILITY);
+		for (Node node : result) {
+			knownUrls.put(node.getProperty(PAGE_KEY).toString());
+		}
+		result.close();
+	}
+
+	/**
+	 * Evicts a single page from the index. Caches of the page are invalidated
+	 * and linked pages and keywords left orphaned are deleted.
+	 * 
+	 * @param node the node of the evicted page
+	 */
+	private void evictPage(final Node node) {
+
+		String url = node.getProperty(PAGE_KEY).toString();
+		List<Relationship> rels = new ArrayList<Relationship>();
+		List<Node> orphanCandidates = new ArrayList<Node>();
+		List<Node> keywordNodes = new ArrayList<Node>();
+		boolean linkedTo = false;
+		ReentrantLock lock = lockFor(PAGE_LOCKS, url);
+		Transaction tx;
+
+		lock.lock();
+		tx = graphDb.beginTx();
+		try {
+			for (Relationship rel : node.getRelationships()) {
+				rels.add(rel);
+			}
+
+			for (Relationship rel : rels) {
+				// incoming links of retained pages keep the node referenced
+				if ((rel.isType(Rel.LINK)) && (rel.getEndNode().equals(node))) {
+					linkedTo = true;
+					continue;
+				}
+				if (rel.isType(Rel.LINK)) {
+					orphanCandidates.add(rel.getOtherNode(node));
+				} else if (rel.isType(Rel.KEYWORD)) {
+					keywordNodes.add(rel.getOtherNode(node));
+				}
+				graphDb.deleteRelationship(rel);
+			}
+
+			graphDb.removeFromIndex(pageIndex, node);
+			graphDb.removeFromIndex(bucketIndex, node);
+			graphDb.removeFromIndex(fingerprintIndex, node);
+
+			if (linkedTo) {
+				List<String> keys = new ArrayList<String>();
+				for (String key : node.getPropertyKeys()) {
+					keys.add(key);
+				}
+				for (String key : keys) {
+					if (!key.equals(PAGE_KEY)) {
+						graphDb.removeProperty(node, key);
+					}
+				}
+				graphDb.setProperty(node, PAGE_INDEXED, false);
+			} else {
+				graphDb.removeFromIndex(allNodeIndex, node);
+				graphDb.deleteNode(node);
+			}
+			tx.success();
+		} finally {
+			tx.finish();
+			lock.unlock();
+		}
+
+		pageKeywords.remove(url);
+		neighbours.invalidate(url);
+		Beast.relevance.removeDocument(url);
+
+		for (Node linked : orphanCandidates) {
+			deleteOrphanPage(linked);
+		}
+		for (Node keywordNode : keywordNodes) {
+			deleteOrphanKeyword(keywordNode);
+		}
+	}
+
+	/**
+	 * Deletes a not indexed page node, if no relationship references it.
+	 * 
+	 * @param node the node of a page
+	 */
+	private void deleteOrphanPage(final Node node) {
+
+		String url = node.getProperty(PAGE_KEY).toString();
+		ReentrantLock lock = lockFor(PAGE_LOCKS, url);
+
+		lock.lock();
+		try {
+			neighbours.invalidate(url);
+			if ((!Boolean.parseBoolean(node.getProperty(PAGE_INDEXED, "false").toString()))
+					&& (!node.hasRelationship())) {
+				graphDb.removeFromIndex(allNodeIndex, node);
+				graphDb.deleteNode(node);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes a keyword node, if no page references it anymore.
+	 * 
+	 * @param node the node of a keyword
+	 */
+	private void deleteOrphanKeyword(final Node node) {
+
+		String name = node.getProperty(KEYWORD_NAME).toString();
+		ReentrantLock lock = lockFor(KEYWORD_LOCKS, name);
+
+		lock.lock();
+		try {
+			if (!node.hasRelationship()) {
+				int id = DICTIONARY.getId(name);
+				if (id != KeywordDictionary.UNKNOWN) {
+					DICTIONARY.setNodeId(id, -1);
+				}
+				graphDb.removeFromIndex(keywords, node);
+				graphDb.deleteNode(node);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Archives evicted pages into a compressed file, one page per line, with
+	 * url, timestamp, title and text separated by tabs.
+	 * 
+	 * @param nodes nodes of the evicted pages
+	 * @param file the archive file to be written
+	 */
+	private static void archivePages(final List<Node> nodes, final File file) {
+
+		final String[] fields = {PAGE_KEY, PAGE_TIMESTAMP, PAGE_TITLE, PAGE_TEXT};
+		Writer out = null;
+
+		try {
+			out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file, true)), "UTF-8");
+			for (Node node : nodes) {
+				for (int i = 0; i < fields.length; i++) {
+					if (i > 0) {
+						out.write('\t');
+					}
+					out.write(node.getProperty(fields[i], "").toString().replaceAll("[\\t\\r\\n]+", " "));
+				}
+				out.write('\n');
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to archive evicted pages: " + e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					System.err.println("Failed to archive evicted pages: " + e);
+				}
+			}
+		}
+	}
+
+	// key of a time bucket, padded so that buckets sort in lexicographic order
+	private static String bucketKey(final long bucket) {
+
+		return String.format("%013d", bucket);
+	}
+
+	/**
+	 * Stores the fields of a processed page as properties of its node. Caller
+	 * needs to hold the lock of the page.
+	 * 
+	 * @param node the node of the page
+	 * @param page the page to be stored
+	 */
+	private void setPageProperties(final Node node, final ArticlePage page) {
+
+		graphDb.setProperty(node, PAGE_KEY, page.getUrl().toString());
+		graphDb.setProperty(node, PAGE_INDEXED, true);
+
+		if (page.getArchivePointer() != null) {
+			graphDb.setProperty(node, PAGE_PATH, page.getArchivePointer().toString());
+		}
+		if (page.getTitle() != null) {
+			// the tagger is costly, run it only when the title changes
+			if (!(page.getTitle().equals(node.getProperty(PAGE_TITLE, null))) || !node.hasProperty(PAGE_TITLE_NOUNS)) {
+				graphDb.setProperty(node, PAGE_TITLE_NOUNS, getTitleNouns(page.getTitle()));
+				invalidateKeywords(page.getUrl().toString());
+			}
+			graphDb.setProperty(node, PAGE_TITLE, page.getTitle());
+		}
+		if (page.getLocation() != null) {
+			graphDb.setProperty(node, PAGE_LOCATION, page.getLocation());
+		}
+		if (page.getTimestamp() != null) {
+			graphDb.setProperty(node, PAGE_TIMESTAMP, page.getTimestamp().toString());
+			double timemilis = page.getTimestamp().getTime();
+			graphDb.setProperty(node, PAGE_TIME, timemilis);
+		}
+		if (page.getLastIndexed() != null) {
+			graphDb.setProperty(node, PAGE_LASTINDEX, page.getLastIndexed().toString());
+		}
+		if (page.getEtag() != null) {
+			graphDb.setProperty(node, PAGE_ETAG, page.getEtag());
+		}
+		if (page.getFingerprint() != null) {
+			setFingerprint(node, page.getFingerprint());
+		}
+		if (page.getLastModified() != null) {
+			graphDb.setProperty(node, PAGE_LAST_MODIFIED, page.getLastModified());
+		}
+		if (page.getTimestamp() != null) {
+			setBucket(node, page.getTimestamp().getTime());
+		} else if (page.getLastIndexed() != null) {
+			setBucket(node, page.getLastIndexed().getTime());
+		}
+
+		// content released without a local copy keeps the stored one
+		CompactText text = page.getText();
+		CompactText perex = page.getPerex();
+		if (text != null) {
+			graphDb.setProperty(node, PAGE_TEXT, text.toString());
+		}
+		if (perex != null) {
+			graphDb.setProperty(node, PAGE_PEREX, perex.toString());
+		}
+	}
+
+	// check, if the page already exists in the index
+	private boolean containsUrl(final URL url, Index<Node> index) {
+
+		IndexHits<Node> result = index.get(PAGE_KEY, url.toString());
+
+		if (result.size() > 0) {
+			result.close();
+			return true;
+		} else {
+			result.close();
+			return false;
+		}
+	}
+
+	// retrieve a keyword node
+	private Node getKeywordNode(String keyword) {
+
+		Node node = keywords.get(KEYWORD_NAME, keyword).getSingle();
+		return node;
+	}
+
+	/**
+	 * Indexes the starting pages of all news sites registered in the
+	 * {@link ParserRegistry}, each processed by the parser of its host.
+	 */
+	private void indexStartingPages() {
+
+		ArticlePage newPage;
+		List<Link> links;
+
+		for (ArticleParser parser : ParserRegistry.getInstance().getParsers()) {
+			links = parser.getStartingPages();
+			if (links == null) {
+				continue;
+			}
+			for (Link link : links) {
+				newPage = new ArticlePage(link.getUrl());
+				if (!containsUrl(newPage.getUrl(), allNodeIndex)) {
+					newPage.process();
+					indexPage(newPage);
+				}
+			}
+		}
+	}
+
+	// return the number of pages in a given index
+	private int getNumberOfPages(Index<Node> index) {
+
+		int numPages;
+		IndexHits<Node> result;
+		if (index.getName().equals("keywords")) {
+			result = index.query(KEYWORD_NAME, "*");
+		} else {
+			result = index.query(PAGE_KEY, "*");
 		}
 		numPages = result.size();
 		result.close();
 		return numPages;
 	}	
 	
+	/**
+	 * Evicts all time buckets older than the retention set in
+	 * {@link Configuration}. Evicted pages lose their keywords, relations and
+	 * outgoing links. A page still linked from a retained page is kept as a not
+	 * indexed node, otherwise it is deleted, along with linked pages and
+	 * keywords left without any relationship. Optionally, evicted pages are
+	 * archived before eviction.
+	 * <p>
+	 * The check is cheap if no bucket has expired since the last call, so the
+	 * method may be called frequently. It is invoked by the {@link IndexWriter}
+	 * thread, so that evictions never interleave with batches of writes.
+	 */
+	public void enforceRetention() {
+
+		long retention = Configuration.getInstance().getIndexRetention();
+		long cutoff;
+		List<Node> expired = new ArrayList<Node>();
+		IndexHits<Node> hits;
+
+		if (retention <= 0) {
+			return;
+		}
+
+		cutoff = (System.currentTimeMillis() - retention) / Configuration.getInstance().getIndexBucketSize();
+		if (cutoff <= evictedBelow) {
+			return;
+		}
+
+		hits = bucketIndex.query(PAGE_BUCKET, "[" + bucketKey(0) + " TO " + bucketKey(cutoff - 1) + "]");
+		for (Node node : hits) {
+			expired.add(node);
+		}
+		hits.close();
+
+		if ((!expired.isEmpty()) && (Configuration.getInstance().useIndexRetentionArchive())) {
+			archivePages(expired, new File(Configuration.getInstance().getPageArchiveDir(), "evicted-"
+					+ bucketKey(cutoff) + ".tsv.gz"));
+		}
+
+		for (Node node : expired) {
+			evictPage(node);
+		}
+
+		evictedBelow = cutoff;
+		if (!expired.isEmpty()) {
+			Beast.log("evicted " + expired.size() + " pages older than bucket " + bucketKey(cutoff));
+		}
+	}
+
+	/**
+	 * @return the write-behind writer of the index
+	 */
+	public IndexWriter getWriter() {
+
+		return writer;
+	}
+
+	/**
+	 * Begins a transaction spanning multiple writes into the index.
+	 * 
+	 * @return the new transaction
+	 */
+	Transaction beginTx() {
+
+		return graphDb.beginTx();
+	}
+
+	/**
+	 * Starts deferring cache invalidations of the current thread, until the
+	 * batch transaction is finished by {@link #endBatch(boolean)}.
+	 */
+	void beginBatch() {
+
+		AFTER_COMMIT.set(new ArrayList<Runnable>());
+	}
+
+	/**
+	 * Stops deferring cache invalidations of the current thread and runs the
+	 * deferred ones if the batch has been committed.
+	 * 
+	 * @param committed <i>true</i> if the batch transaction has been committed
+	 */
+	void endBatch(final boolean committed) {
+
+		List<Runnable> actions = AFTER_COMMIT.get();
+
+		AFTER_COMMIT.remove();
+		if ((committed) && (actions != null)) {
+			for (Runnable action : actions) {
+				action.run();
+			}
+		}
+	}
+
 	public void shutdown() {
 		
+		writer.shutdown();
 		graphDb.shutdown();
 	}
 }
\ No newline at end of file
@@ -64,6 +64,29 @@ public class GraphDatabase {
 		});
 	}
 
+	/**
+	 * Begins a new transaction in the current thread. Writes performed through
+	 * the other methods of <code>GraphDatabase</code> while the transaction is
+	 * open become part of it and are committed together.
+	 * 
+	 * @return the new transaction
+	 */
+	protected Transaction beginTx() {
+
+		return graphDb.beginTx();
+	}
+
+	/**
+	 * Looks up a node by its id.
+	 * 
+	 * @param id the id of the node
+	 * @return node with the given id
+	 */
+	protected Node getNodeById(final long id) {
+
+		return graphDb.getNodeById(id);
+	}
+
 	/**
 	 * Shutdown the running database.
 	 */
@@ -142,6 +165,37 @@ public class GraphDatabase {
 		return node;
 	}
 
+	/**
+	 * Create a new node, set its properties and add it to the given index, all
+	 * within a single transaction. Other threads therefore never observe the
+	 * node without its properties, or the node missing from the index.
+	 * 
+	 * @param index the index to which the created node is added
+	 * @param key the key under which the node is indexed
+	 * @param value the value under which the node is indexed
+	 * @param properties map of property - value pairs to be set for created
+	 *        node
+	 * @return created node
+	 */
+	protected Node createIndexedNode(final Index<Node> index, final String key, final Object value,
+			final Map<String, Object> properties) {
+
+		Transaction tx = graphDb.beginTx();
+		Node node;
+
+		try {
+			node = graphDb.createNode();
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				node.setProperty(property.getKey(), property.getValue());
+			}
+			index.add(node, key, value);
+			tx.success();
+		} finally {
+			tx.finish();
+		}
+		return node;
+	}
+
 	/**
 	 * Sets a property of a given node. Wraps
 	 * {@link org.neo4j.graphdb.PropertyContainer#setProperty(String, Object)
@@ -284,4 +338,58 @@ public class GraphDatabase {
 			tx.finish();
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Removes all entries of a node from the given index.
+	 * 
+	 * @param index the index from which the node is removed
+	 * @param node the node to be removed
+	 */
+	protected void removeFromIndex(final Index<Node> index, final Node node) {
+
+		Transaction tx = graphDb.beginTx();
+
+		try {
+			index.remove(node);
+			tx.success();
+		} finally {
+			tx.finish();
+		}
+	}
+
+	/**
+	 * Removes a property of a given node, if present.
+	 * 
+	 * @param node the node to have its property removed
+	 * @param key the key of property to be removed
+	 */
+	protected void removeProperty(final Node node, final String key) {
+
+		Transaction tx = graphDb.beginTx();
+
+		try {
+			node.removeProperty(key);
+			tx.success();
+		} finally {
+			tx.finish();
+		}
+	}
+
+	/**
+	 * Deletes a node. The node must have no relationships and needs to be
+	 * removed from all indexes beforehand.
+	 * 
+	 * @param node the node to be deleted
+	 */
+	protected void deleteNode(final Node node) {
+
+		Transaction tx = graphDb.beginTx();
+
+		try {
+			node.delete();
+			tx.success();
+		} finally {
+			tx.finish();
+		}
+	}
+}
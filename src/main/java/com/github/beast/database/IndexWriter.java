@@ -0,0 +1,507 @@
+package com.github.beast.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.graphdb.Transaction;
+
+import com.github.beast.Beast;
+import com.github.beast.page.ArticlePage;
+import com.github.beast.page.Page;
+import com.github.beast.util.Configuration;
+
+/**
+ * Write-behind writer of a {@link BeastIndex}. Instead of writing into the
+ * index directly, {@link com.github.beast.crawler.Bee bees} post index intents
+ * into a bounded queue and continue with their decisions. A dedicated writer
+ * thread drains the queue, coalesces intents concerning the same page, keyword
+ * or relation, and commits each batch in a single transaction.
+ * <p>
+ * Intents that are posted but not yet committed are kept in an in-memory view,
+ * which is consulted by {@link BeastIndex} reads, so that a bee always observes
+ * its own writes.
+ * <p>
+ * While the writer is running, all writes into the index should be posted
+ * through the writer, as the writer thread holds database locks for the whole
+ * batch. Between batches, the writer thread also evicts expired time buckets
+ * of the index. Intents posted before the writer is started wait in the queue,
+ * intents posted after it is shut down are rejected.
+ * <p>
+ * Striped locks of the {@link BeastIndex} are released as soon as a single
+ * write is applied, while the batch is committed only after all its writes.
+ * The locks therefore guard writes only within the batch of the writer thread,
+ * commits are ordered by the single writer thread itself.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see BeastIndex
+ */
+public class IndexWriter implements Runnable {
+
+	/** Time in milliseconds the writer waits for new intents before rechecking. */
+	private static final long POLL_TIMEOUT = 500;
+
+	/** Possible kinds of index intents. */
+	protected enum IntentType {
+		INDEX, REFRESH, KEYWORD, RELATION;
+	}
+
+	/**
+	 * A single write posted into the writer queue.
+	 */
+	protected static final class Intent {
+
+		private final IntentType type;
+		private final Page page;
+		private final Page second;
+		private final int keyword;
+		private final double relevance;
+
+		/**
+		 * @param type the kind of the intent
+		 * @param page the page being written
+		 * @param second the other page of a relation, otherwise
+		 *        <code>null</code>
+		 * @param keyword id of the keyword being written, otherwise
+		 *        {@link KeywordDictionary#UNKNOWN}
+		 * @param relevance relevance of the keyword or relation
+		 */
+		private Intent(final IntentType type, final Page page, final Page second, final int keyword,
+				final double relevance) {
+
+			this.type = type;
+			this.page = page;
+			this.second = second;
+			this.keyword = keyword;
+			this.relevance = relevance;
+		}
+
+		/**
+		 * @return the key under which intents are coalesced within a batch
+		 */
+		private String getKey() {
+
+			switch (type) {
+			case KEYWORD:
+				return pendingKey(page, keyword);
+			case RELATION:
+				return page.getUrl() + "\n" + second.getUrl() + "\n" + keyword;
+			default:
+				return page.getUrl().toString();
+			}
+		}
+	}
+
+	/** The index into which the intents are written. */
+	private final BeastIndex index;
+
+	/** Queue of intents waiting to be written. */
+	private final BlockingQueue<Intent> queue;
+
+	/** Maximal number of intents committed in a single transaction. */
+	private final int batchSize;
+
+	/** Pages posted for indexing or refreshing, not committed yet. */
+	private final ConcurrentMap<String, ArticlePage> pendingPages = new ConcurrentHashMap<String, ArticlePage>();
+
+	/** Keyword relevance values posted, not committed yet. */
+	private final ConcurrentMap<String, Double> pendingKeywords = new ConcurrentHashMap<String, Double>();
+
+	/** Thread draining the queue. */
+	private Thread thread;
+
+	/** Is <i>true</i> while the writer thread drains the queue. */
+	private volatile boolean running;
+
+	/** Is <i>true</i> once the writer has been shut down and rejects intents. */
+	private boolean stopped;
+
+	/** Guards {@link #stopped}, posting holds the read lock, shutdown the write lock. */
+	private final ReadWriteLock postLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new writer for the given index, with queue capacity and batch
+	 * size set according to {@link Configuration}.
+	 * 
+	 * @param index the index into which the intents are written
+	 */
+	public IndexWriter(final BeastIndex index) {
+
+		this.index = index;
+		this.queue = new ArrayBlockingQueue<Intent>(Configuration.getInstance().getIndexQueueSize());
+		this.batchSize = Configuration.getInstance().getIndexBatchSize();
+	}
+
+	/**
+	 * Starts the writer thread.
+	 */
+	public synchronized void start() {
+
+		if (running) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "index-writer");
+		thread.start();
+	}
+
+	/**
+	 * Stops accepting new intents, waits until all posted intents are written
+	 * and stops the writer thread. Intents posted afterwards are rejected.
+	 */
+	public synchronized void shutdown() {
+
+		postLock.writeLock().lock();
+		try {
+			stopped = true;
+		} finally {
+			postLock.writeLock().unlock();
+		}
+
+		if (!running) {
+			return;
+		}
+		running = false;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Posts a processed page to be indexed. The page is marked as indexed
+	 * immediately, as its pending write is visible to index reads.
+	 * 
+	 * @param page the page to be indexed
+	 * @see BeastIndex#indexPage(ArticlePage)
+	 */
+	public void postIndex(final ArticlePage page) {
+
+		page.setIndexed(true);
+		pendingPages.put(page.getUrl().toString(), page);
+		if (!post(new Intent(IntentType.INDEX, page, null, KeywordDictionary.UNKNOWN, 0))) {
+			page.setIndexed(false);
+		}
+	}
+
+	/**
+	 * Posts an already reprocessed page to be indexed anew. The time of last
+	 * indexing is recorded immediately, so that the page is not refreshed
+	 * again while its write is pending.
+	 * 
+	 * @param page the page to be reindexed
+	 * @see BeastIndex#reindexPage(ArticlePage, boolean)
+	 */
+	public void postRefresh(final ArticlePage page) {
+
+		page.setLastIndexed(new Date());
+		pendingPages.put(page.getUrl().toString(), page);
+		post(new Intent(IntentType.REFRESH, page, null, KeywordDictionary.UNKNOWN, 0));
+	}
+
+	/**
+	 * Posts a keyword to be added to the given page.
+	 * 
+	 * @param page the page to which the keyword is being added to
+	 * @param keyword id of the keyword being added
+	 * @param relevance the relevance of given keyword to the given page
+	 * @see BeastIndex#addKeyword(Page, int, double)
+	 */
+	public void postKeyword(final Page page, final int keyword, final double relevance) {
+
+		String key = pendingKey(page, keyword);
+		Double pending = pendingKeywords.get(key);
+
+		// relevance only ever grows, a lower value would be ignored anyway
+		while ((pending == null) || (pending < relevance)) {
+			if (pending == null) {
+				if (pendingKeywords.putIfAbsent(key, relevance) == null) {
+					break;
+				}
+			} else if (pendingKeywords.replace(key, pending, relevance)) {
+				break;
+			}
+			pending = pendingKeywords.get(key);
+		}
+		// pending relevance is visible to bees before it is written
+		QualityCache.getInstance().invalidate(page, keyword);
+		post(new Intent(IntentType.KEYWORD, page, null, keyword, relevance));
+	}
+
+	/**
+	 * Posts a relation of mutual relevance between two pages.
+	 * 
+	 * @param first the first related page
+	 * @param second the second related page
+	 * @param keyword id of the keyword the pages are related by
+	 * @param relevance the relevance of the relation
+	 * @see BeastIndex#addRelation(Page, Page, int, double)
+	 */
+	public void postRelation(final Page first, final Page second, final int keyword, final double relevance) {
+
+		post(new Intent(IntentType.RELATION, first, second, keyword, relevance));
+	}
+
+	/**
+	 * Returns a page posted for indexing, which has not been written yet.
+	 * 
+	 * @param url the url of the page
+	 * @return the pending page, or <code>null</code> if no write of the page is
+	 *         pending
+	 */
+	public ArticlePage getPendingPage(final String url) {
+
+		return pendingPages.get(url);
+	}
+
+	/**
+	 * Returns the relevance of a keyword posted for a page, which has not been
+	 * written yet.
+	 * 
+	 * @param page the page of the keyword
+	 * @param keyword id of the keyword
+	 * @return pending relevance, or <code>0</code> if no write is pending
+	 */
+	public double getPendingRelevance(final Page page, final int keyword) {
+
+		Double relevance = pendingKeywords.get(pendingKey(page, keyword));
+		return (relevance == null) ? 0 : relevance;
+	}
+
+	/**
+	 * @return number of intents waiting in the queue
+	 */
+	public int getQueueLength() {
+
+		return queue.size();
+	}
+
+	/**
+	 * Drains the queue in batches, until the writer is shut down and all
+	 * posted intents are written.
+	 */
+	public void run() {
+
+		List<Intent> batch = new ArrayList<Intent>(batchSize);
+
+		while (running || !queue.isEmpty()) {
+			try {
+				Intent first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+					write(batch);
+				}
+				enforceRetention();
+			} catch (InterruptedException e) {
+				running = false;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Evicts expired time buckets of the index between batches, logging
+	 * failures instead of stopping the writer.
+	 */
+	private void enforceRetention() {
+
+		try {
+			index.enforceRetention();
+		} catch (RuntimeException e) {
+			Beast.log("index eviction failed: " + e);
+		}
+	}
+
+	/**
+	 * Inserts an intent into the queue, blocking while the queue is full. If
+	 * the writer has been shut down, the intent is rejected and removed from
+	 * the pending view.
+	 * 
+	 * @param intent the intent to be posted
+	 * @return <i>true</i> if the intent has been queued
+	 */
+	private boolean post(final Intent intent) {
+
+		boolean queued = false;
+
+		postLock.readLock().lock();
+		try {
+			if (stopped) {
+				Beast.log("index writer shut down, rejected " + intent.type + " " + intent.page.getUrl());
+			} else {
+				queue.put(intent);
+				queued = true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			postLock.readLock().unlock();
+		}
+
+		if (!queued) {
+			release(intent);
+		}
+		return queued;
+	}
+
+	/**
+	 * Coalesces a batch of intents and writes it in a single transaction. Page
+	 * writes precede keyword and relation writes, as these need the page nodes
+	 * to exist. If the batch transaction fails, intents are written one by one.
+	 * Cache invalidations of the writes are deferred until the commit.
+	 * 
+	 * @param batch intents to be written, in the order of posting
+	 */
+	private void write(final List<Intent> batch) {
+
+		Collection<Intent> intents = coalesce(batch);
+		Transaction tx;
+		boolean committed = false;
+
+		index.beginBatch();
+		tx = index.beginTx();
+		try {
+			for (Intent intent : intents) {
+				apply(intent);
+			}
+			tx.success();
+			committed = true;
+		} catch (RuntimeException e) {
+			tx.failure();
+		} finally {
+			try {
+				tx.finish();
+			} catch (RuntimeException e) {
+				committed = false;
+			}
+			// caches are invalidated only once the batch is visible to readers
+			index.endBatch(committed);
+		}
+
+		if (!committed) {
+			Beast.log("batch of " + intents.size() + " index writes failed, writing one by one");
+			for (Intent intent : intents) {
+				writeSingle(intent);
+			}
+		}
+
+		// intents coalesced away were written by the surviving intent of their key
+		for (Intent intent : batch) {
+			release(intent);
+		}
+	}
+
+	/**
+	 * Writes a single intent in its own transaction, logging failures.
+	 * 
+	 * @param intent the intent to be written
+	 */
+	private void writeSingle(final Intent intent) {
+
+		try {
+			apply(intent);
+		} catch (RuntimeException e) {
+			Beast.log("index write failed: " + intent.type + " " + intent.page.getUrl() + " " + e);
+		}
+	}
+
+	/**
+	 * Performs the write of an intent.
+	 * 
+	 * @param intent the intent to be written
+	 */
+	private void apply(final Intent intent) {
+
+		switch (intent.type) {
+		case INDEX:
+			index.indexPage((ArticlePage) intent.page);
+			break;
+		case REFRESH:
+			index.reindexPage((ArticlePage) intent.page, false);
+			break;
+		case KEYWORD:
+			index.addKeyword(intent.page, intent.keyword, intent.relevance);
+			break;
+		case RELATION:
+			index.addRelation(intent.page, intent.second, intent.keyword, intent.relevance);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Removes a written intent from the pending view, unless it has been posted
+	 * again in the meantime. Every intent of a written batch is released, as
+	 * the pending view may hold any of the intents coalesced into one write.
+	 * 
+	 * @param intent the written intent
+	 */
+	private void release(final Intent intent) {
+
+		if ((intent.type == IntentType.INDEX) || (intent.type == IntentType.REFRESH)) {
+			pendingPages.remove(intent.page.getUrl().toString(), intent.page);
+		} else if (intent.type == IntentType.KEYWORD) {
+			pendingKeywords.remove(intent.getKey(), intent.relevance);
+		}
+	}
+
+	/**
+	 * Coalesces intents of a batch. Repeated writes of a page are merged into a
+	 * single write, with refresh taking precedence over indexing, and repeated
+	 * keyword or relation writes are merged keeping the highest relevance.
+	 * 
+	 * @param batch intents to be coalesced, in the order of posting
+	 * @return coalesced intents, page writes first
+	 */
+	private static Collection<Intent> coalesce(final List<Intent> batch) {
+
+		Map<String, Intent> pages = new LinkedHashMap<String, Intent>();
+		Map<String, Intent> others = new LinkedHashMap<String, Intent>();
+
+		for (Intent intent : batch) {
+			String key = intent.getKey();
+
+			if ((intent.type == IntentType.INDEX) || (intent.type == IntentType.REFRESH)) {
+				Intent previous = pages.get(key);
+				if ((previous == null) || (intent.type == IntentType.REFRESH)) {
+					pages.put(key, intent);
+				}
+			} else {
+				Intent previous = others.get(key);
+				if ((previous == null) || (previous.relevance < intent.relevance)) {
+					others.put(key, intent);
+				}
+			}
+		}
+
+		List<Intent> coalesced = new ArrayList<Intent>(pages.size() + others.size());
+		coalesced.addAll(pages.values());
+		coalesced.addAll(others.values());
+		return coalesced;
+	}
+
+	/**
+	 * @param page the page of a keyword
+	 * @param keyword id of the keyword
+	 * @return the key of the keyword in the pending view
+	 */
+	private static String pendingKey(final Page page, final int keyword) {
+
+		return page.getUrl() + "\n" + keyword;
+	}
+}
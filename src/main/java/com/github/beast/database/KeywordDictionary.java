@@ -0,0 +1,189 @@
+package com.github.beast.database;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A singleton symbol table of keywords. Keywords are normalized (trimmed and
+ * lowercased) and interned to dense <code>int</code> ids at the edge of the
+ * system, i.e. when they are extracted from page titles or read from the
+ * database. Bees, relevance maps and caches carry only the ids, strings are
+ * materialized through {@link #getName(int)} for scoring, export and logs.
+ * <p>
+ * Ids are never reused and lookups of names by id are lock-free.
+ *
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class KeywordDictionary {
+
+	/** Id returned for keywords not present in the dictionary. */
+	public static final int UNKNOWN = -1;
+
+	/** Initial capacity of the arrays indexed by id. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Instance of a singleton class. */
+	private static KeywordDictionary instance;
+
+	/** Ids of interned keywords, keyed by normalized keyword. */
+	private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+
+	/** Normalized keywords, indexed by id. */
+	private volatile String[] names = new String[INITIAL_CAPACITY];
+
+	/** Ids of database nodes representing the keywords, indexed by id. */
+	private volatile long[] nodeIds = newNodeIds(INITIAL_CAPACITY);
+
+	/** Number of interned keywords. */
+	private volatile int size;
+
+	/**
+	 * Constructor of the <code>KeywordDictionary</code> class. Is private
+	 * because <code>KeywordDictionary</code> is a singleton class.
+	 */
+	private KeywordDictionary() {
+
+	}
+
+	/**
+	 * Returns instance of the <code>KeywordDictionary</code> singleton class.
+	 * If no instance exists, new instance is created.
+	 *
+	 * @return instance of the singleton class
+	 */
+	public static synchronized KeywordDictionary getInstance() {
+
+		if (instance == null) {
+			instance = new KeywordDictionary();
+		}
+		return instance;
+	}
+
+	/**
+	 * Normalizes a keyword, so that keywords differing only in case or
+	 * surrounding whitespace share a single id.
+	 *
+	 * @param keyword the keyword to be normalized
+	 * @return normalized keyword
+	 */
+	public static String normalize(final String keyword) {
+
+		return keyword.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the id of a keyword, interning the keyword if it is not present
+	 * in the dictionary yet.
+	 *
+	 * @param keyword the keyword, in arbitrary case
+	 * @return id of the keyword
+	 */
+	public int intern(final String keyword) {
+
+		String name = normalize(keyword);
+		Integer id = ids.get(name);
+
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+			id = ids.get(name);
+			if (id != null) {
+				return id;
+			}
+
+			int newId = size;
+			if (newId == names.length) {
+				long[] grownNodeIds = Arrays.copyOf(nodeIds, newId * 2);
+				Arrays.fill(grownNodeIds, newId, grownNodeIds.length, -1);
+				nodeIds = grownNodeIds;
+				names = Arrays.copyOf(names, newId * 2);
+			}
+			names[newId] = name;
+
+			// publish the name before the id becomes visible
+			size = newId + 1;
+			ids.put(name, newId);
+			return newId;
+		}
+	}
+
+	/**
+	 * Returns the id of a keyword, without interning it.
+	 *
+	 * @param keyword the keyword, in arbitrary case
+	 * @return id of the keyword, or {@link #UNKNOWN} if not present
+	 */
+	public int getId(final String keyword) {
+
+		Integer id = ids.get(normalize(keyword));
+		return (id == null) ? UNKNOWN : id;
+	}
+
+	/**
+	 * @param id the id of a keyword
+	 * @return the normalized keyword
+	 */
+	public String getName(final int id) {
+
+		return names[id];
+	}
+
+	/**
+	 * @param id the id of a keyword
+	 * @return id of the node representing the keyword, or <code>-1</code> if
+	 *         the node is not known
+	 */
+	public long getNodeId(final int id) {
+
+		return nodeIds[id];
+	}
+
+	/**
+	 * @param id the id of a keyword
+	 * @param nodeId id of the node representing the keyword
+	 */
+	public synchronized void setNodeId(final int id, final long nodeId) {
+
+		nodeIds[id] = nodeId;
+	}
+
+	/**
+	 * @return number of interned keywords
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Interns all given keywords.
+	 *
+	 * @param keywords keywords, in arbitrary case
+	 * @return ids of the keywords, in the given order
+	 */
+	public int[] internAll(final String[] keywords) {
+
+		int[] result = new int[keywords.length];
+
+		for (int i = 0; i < keywords.length; i++) {
+			result[i] = intern(keywords[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * @param capacity length of the array
+	 * @return array of node ids, with all ids unknown
+	 */
+	private static long[] newNodeIds(final int capacity) {
+
+		long[] array = new long[capacity];
+		Arrays.fill(array, -1);
+		return array;
+	}
+}
@@ -0,0 +1,232 @@
+package com.github.beast.database;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of links from and to indexed pages, used for sampling of random
+ * neighbours. For every page, the ids of linked nodes are kept in a compact
+ * array, so that a uniform draw is a single array access. Optionally, the
+ * neighbours may be weighted, in which case an alias table is built along with
+ * the array and a weighted draw takes constant time as well.
+ * <p>
+ * Cached adjacency of a page needs to be {@link #invalidate(String)
+ * invalidated} whenever links of the page change. The cache is
+ * bounded, arbitrary entries are dropped once the capacity is reached.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see BeastIndex#getRandNeighbour(com.github.beast.page.Page)
+ */
+public class NeighbourSampler {
+
+	/** Possible weightings of neighbours. */
+	public enum Weighting {
+
+		/** All neighbours are equally likely. */
+		UNIFORM,
+
+		/** Neighbours linked by longer anchor text are more likely. */
+		ANCHOR,
+
+		/** Neighbours with higher keyword relevance are more likely. */
+		RELEVANCE;
+	}
+
+	/**
+	 * Compact adjacency of a single page. Holds ids of linked nodes and, for
+	 * weighted sampling, an alias table built by Vose's method.
+	 */
+	protected static final class Adjacency {
+
+		/** Adjacency of a page without links. */
+		private static final Adjacency EMPTY = new Adjacency(new long[0], null);
+
+		private final long[] targets;
+		private final double[] probability;
+		private final int[] alias;
+
+		/**
+		 * @param targets ids of linked nodes
+		 * @param weights positive weights of the linked nodes, or
+		 *        <code>null</code> for uniform sampling
+		 */
+		protected Adjacency(final long[] targets, final double[] weights) {
+
+			this.targets = targets;
+
+			if ((weights == null) || (targets.length == 0)) {
+				this.probability = null;
+				this.alias = null;
+			} else {
+				this.probability = new double[targets.length];
+				this.alias = new int[targets.length];
+				buildAliasTable(weights);
+			}
+		}
+
+		/**
+		 * @return number of neighbours
+		 */
+		protected int size() {
+
+			return targets.length;
+		}
+
+		/**
+		 * Draws a random neighbour.
+		 * 
+		 * @param generator source of randomness
+		 * @return id of the drawn node, or <code>-1</code> if there are no
+		 *         neighbours
+		 */
+		protected long draw(final Random generator) {
+
+			if (targets.length == 0) {
+				return -1;
+			}
+
+			int column = generator.nextInt(targets.length);
+
+			if ((probability == null) || (generator.nextDouble() < probability[column])) {
+				return targets[column];
+			}
+			return targets[alias[column]];
+		}
+
+		/**
+		 * Builds the alias table for the given weights.
+		 * 
+		 * @param weights positive weights of the linked nodes
+		 */
+		private void buildAliasTable(final double[] weights) {
+
+			int count = weights.length;
+			double sum = 0;
+			double[] scaled = new double[count];
+			int[] small = new int[count];
+			int[] large = new int[count];
+			int numSmall = 0;
+			int numLarge = 0;
+
+			for (double weight : weights) {
+				sum += weight;
+			}
+
+			for (int i = 0; i < count; i++) {
+				scaled[i] = weights[i] * count / sum;
+				if (scaled[i] < 1) {
+					small[numSmall++] = i;
+				} else {
+					large[numLarge++] = i;
+				}
+			}
+
+			while ((numSmall > 0) && (numLarge > 0)) {
+				int less = small[--numSmall];
+				int more = large[--numLarge];
+
+				probability[less] = scaled[less];
+				alias[less] = more;
+				scaled[more] = (scaled[more] + scaled[less]) - 1;
+
+				if (scaled[more] < 1) {
+					small[numSmall++] = more;
+				} else {
+					large[numLarge++] = more;
+				}
+			}
+
+			// remaining columns are full, up to rounding errors
+			while (numLarge > 0) {
+				probability[large[--numLarge]] = 1;
+			}
+			while (numSmall > 0) {
+				probability[small[--numSmall]] = 1;
+			}
+		}
+	}
+
+	/** Cached adjacency of pages, keyed by page url. */
+	private final ConcurrentMap<String, Adjacency> adjacency = new ConcurrentHashMap<String, Adjacency>();
+
+	/** Maximal number of cached pages. */
+	private final int capacity;
+
+	/** Weighting used when building adjacency of pages. */
+	private final Weighting weighting;
+
+	/**
+	 * @param capacity maximal number of cached pages
+	 * @param weighting weighting of neighbours
+	 */
+	public NeighbourSampler(final int capacity, final Weighting weighting) {
+
+		this.capacity = capacity;
+		this.weighting = weighting;
+	}
+
+	/**
+	 * @return weighting of neighbours used by the sampler
+	 */
+	public Weighting getWeighting() {
+
+		return weighting;
+	}
+
+	/**
+	 * Drops the cached adjacency of a page, so that it is rebuilt on next
+	 * draw.
+	 * 
+	 * @param url the url of the page
+	 */
+	public void invalidate(final String url) {
+
+		adjacency.remove(url);
+	}
+
+	/**
+	 * Drops all cached adjacency.
+	 */
+	public void clear() {
+
+		adjacency.clear();
+	}
+
+	/**
+	 * @param url the url of the page
+	 * @return cached adjacency of the page, or <code>null</code> if not cached
+	 */
+	protected Adjacency get(final String url) {
+
+		return adjacency.get(url);
+	}
+
+	/**
+	 * Caches the adjacency of a page, dropping an arbitrary entry if the
+	 * capacity is reached.
+	 * 
+	 * @param url the url of the page
+	 * @param targets ids of linked nodes
+	 * @param weights weights of the linked nodes, or <code>null</code> for
+	 *        uniform sampling
+	 * @return the cached adjacency
+	 */
+	protected Adjacency put(final String url, final long[] targets, final double[] weights) {
+
+		Adjacency entry = (targets.length == 0) ? Adjacency.EMPTY : new Adjacency(targets,
+				(weighting == Weighting.UNIFORM) ? null : weights);
+
+		if (adjacency.size() >= capacity) {
+			Iterator<String> iter = adjacency.keySet().iterator();
+			if (iter.hasNext()) {
+				iter.next();
+				iter.remove();
+			}
+		}
+		adjacency.put(url, entry);
+		return entry;
+	}
+}
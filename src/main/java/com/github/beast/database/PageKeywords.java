@@ -0,0 +1,129 @@
+package com.github.beast.database;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Keywords of a single page, held as {@link KeywordDictionary} ids. Holds the
+ * keyword candidates, from which bees draw their keywords, and the relevance of
+ * keywords added to the page by bees.
+ * <p>
+ * Candidates consist of the nouns of the page title, reduced to root form at
+ * index time, followed by keywords added to the page. The candidates are kept
+ * in an array, so that a draw is a single array access. Candidates may be
+ * drawn concurrently with {@link #add(int, double) additions}, draws never
+ * block.
+ *
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see BeastIndex#getRandKeyword(com.github.beast.page.Page)
+ */
+public final class PageKeywords {
+
+	/** Array holding the candidates, may be longer than {@link #size}. */
+	private volatile int[] candidates;
+
+	/** Number of valid candidates in {@link #candidates}. */
+	private volatile int size;
+
+	/** Ids of keywords added to the page. */
+	private int[] keywords;
+
+	/** Relevance of keywords added to the page, in order of {@link #keywords}. */
+	private double[] relevance;
+
+	/** Number of valid entries in {@link #keywords}. */
+	private int numKeywords;
+
+	/**
+	 * Creates keywords of a page.
+	 *
+	 * @param titleNouns ids of the nouns of the page title in root form
+	 * @param keywordIds ids of keywords already added to the page
+	 * @param keywordRelevance relevance of keywords already added to the page
+	 */
+	public PageKeywords(final int[] titleNouns, final int[] keywordIds, final double[] keywordRelevance) {
+
+		int[] initial = Arrays.copyOf(titleNouns, titleNouns.length + keywordIds.length + 1);
+		System.arraycopy(keywordIds, 0, initial, titleNouns.length, keywordIds.length);
+		candidates = initial;
+		size = titleNouns.length + keywordIds.length;
+
+		keywords = Arrays.copyOf(keywordIds, keywordIds.length + 1);
+		relevance = Arrays.copyOf(keywordRelevance, keywordIds.length + 1);
+		numKeywords = keywordIds.length;
+	}
+
+	/**
+	 * Records the relevance of a keyword. A keyword not added to the page
+	 * before is appended to the candidates, growing the array if needed.
+	 * Otherwise only a higher relevance replaces the original value.
+	 *
+	 * @param keyword id of the keyword added to the page
+	 * @param keywordRelevance relevance of the keyword
+	 */
+	public synchronized void add(final int keyword, final double keywordRelevance) {
+
+		for (int i = 0; i < numKeywords; i++) {
+			if (keywords[i] == keyword) {
+				relevance[i] = Math.max(relevance[i], keywordRelevance);
+				return;
+			}
+		}
+
+		if (numKeywords == keywords.length) {
+			keywords = Arrays.copyOf(keywords, keywords.length * 2);
+			relevance = Arrays.copyOf(relevance, relevance.length * 2);
+		}
+		keywords[numKeywords] = keyword;
+		relevance[numKeywords] = keywordRelevance;
+		numKeywords++;
+
+		int[] current = candidates;
+		if (size == current.length) {
+			current = Arrays.copyOf(current, current.length * 2);
+		}
+		current[size] = keyword;
+
+		// publish the array before the size, draws read them in reverse order
+		candidates = current;
+		size = size + 1;
+	}
+
+	/**
+	 * Draws a random candidate.
+	 *
+	 * @param generator source of randomness
+	 * @return id of a random keyword candidate
+	 * @throws IllegalArgumentException if there are no candidates
+	 */
+	public int draw(final Random generator) {
+
+		int count = size;
+		int[] current = candidates;
+		return current[generator.nextInt(count)];
+	}
+
+	/**
+	 * @param keyword id of a keyword
+	 * @return relevance of the keyword to the page, or <code>0</code> if the
+	 *         keyword has not been added to the page
+	 */
+	public synchronized double getRelevance(final int keyword) {
+
+		for (int i = 0; i < numKeywords; i++) {
+			if (keywords[i] == keyword) {
+				return relevance[i];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return number of candidates
+	 */
+	public int size() {
+
+		return size;
+	}
+}
@@ -0,0 +1,243 @@
+package com.github.beast.database;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.beast.page.ArticlePage;
+import com.github.beast.page.Page;
+import com.github.beast.util.ConcurrentLruCache;
+import com.github.beast.util.Configuration;
+
+/**
+ * Singleton class caching the quality of pages for keywords, as evaluated by
+ * bees. Qualities are kept per page, along with the version of the content of
+ * the page they were evaluated for, so that a quality is valid only for the
+ * same page, content version and keyword. Qualities of a page are dropped
+ * once its content is reindexed, and the quality of a keyword once the
+ * keyword is added to the page, as its relevance affects the quality.
+ * <p>
+ * The number of cached pages is bounded by {@link Configuration}, least
+ * recently used pages are evicted first.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see ArticlePage#getContentVersion()
+ */
+public final class QualityCache {
+
+	/**
+	 * Qualities of keywords of a single page, evaluated for a single version of
+	 * its content.
+	 */
+	private static final class PageQualities {
+
+		private final long version;
+		private int[] keywords = new int[4];
+		private double[] qualities = new double[4];
+		private int size;
+
+		/**
+		 * @param version version of the content the qualities are valid for
+		 */
+		private PageQualities(final long version) {
+
+			this.version = version;
+		}
+
+		/**
+		 * @param keyword id of a keyword
+		 * @return quality of the keyword, or <code>NaN</code> if not cached
+		 */
+		private synchronized double get(final int keyword) {
+
+			for (int i = 0; i < size; i++) {
+				if (keywords[i] == keyword) {
+					return qualities[i];
+				}
+			}
+			return Double.NaN;
+		}
+
+		/**
+		 * @param keyword id of a keyword
+		 * @param quality quality of the keyword
+		 */
+		private synchronized void put(final int keyword, final double quality) {
+
+			for (int i = 0; i < size; i++) {
+				if (keywords[i] == keyword) {
+					qualities[i] = quality;
+					return;
+				}
+			}
+			if (size == keywords.length) {
+				keywords = Arrays.copyOf(keywords, size * 2);
+				qualities = Arrays.copyOf(qualities, size * 2);
+			}
+			keywords[size] = keyword;
+			qualities[size] = quality;
+			size++;
+		}
+
+		/**
+		 * @param keyword id of a keyword
+		 */
+		private synchronized void remove(final int keyword) {
+
+			for (int i = 0; i < size; i++) {
+				if (keywords[i] == keyword) {
+					size--;
+					keywords[i] = keywords[size];
+					qualities[i] = qualities[size];
+					return;
+				}
+			}
+		}
+	}
+
+	/** Instance of a singleton class. */
+	private static QualityCache instance;
+
+	/** Qualities of pages, keyed by page url. */
+	private final ConcurrentLruCache<String, PageQualities> pages;
+
+	/** Number of lookups finding a quality. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups not finding a quality. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor of the <code>QualityCache</code> class. Is private because
+	 * <code>QualityCache</code> is a singleton class.
+	 */
+	private QualityCache() {
+
+		pages = new ConcurrentLruCache<String, PageQualities>(Configuration.getInstance().getQualityCacheSize());
+	}
+
+	/**
+	 * Returns instance of the <code>QualityCache</code> singleton class. If no
+	 * instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static synchronized QualityCache getInstance() {
+
+		if (instance == null) {
+			instance = new QualityCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Looks up the quality of a page for a keyword, evaluated for the current
+	 * content of the page.
+	 * 
+	 * @param page the page
+	 * @param keyword id of the keyword
+	 * @return the quality, or <code>NaN</code> if not cached
+	 */
+	public double get(final ArticlePage page, final int keyword) {
+
+		PageQualities cached = pages.get(page.getUrl().toString());
+		double quality = Double.NaN;
+
+		if ((cached != null) && (cached.version == page.getContentVersion())) {
+			quality = cached.get(keyword);
+		}
+		if (Double.isNaN(quality)) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return quality;
+	}
+
+	/**
+	 * Caches the quality of a page for a keyword, evaluated for the current
+	 * content of the page. Qualities cached for other versions of the content
+	 * are dropped.
+	 * 
+	 * @param page the page
+	 * @param keyword id of the keyword
+	 * @param quality the quality
+	 */
+	public void put(final ArticlePage page, final int keyword, final double quality) {
+
+		String url = page.getUrl().toString();
+		long version = page.getContentVersion();
+		PageQualities cached = pages.get(url);
+
+		if ((cached == null) || (cached.version != version)) {
+			PageQualities fresh = new PageQualities(version);
+			cached = pages.putIfAbsent(url, fresh);
+			if ((cached == null) || (cached.version != version)) {
+				pages.put(url, fresh);
+				cached = fresh;
+			}
+		}
+		cached.put(keyword, quality);
+	}
+
+	/**
+	 * Drops all qualities of a page.
+	 * 
+	 * @param page the page
+	 */
+	public void invalidate(final Page page) {
+
+		pages.remove(page.getUrl().toString());
+	}
+
+	/**
+	 * Drops the quality of a page for a keyword.
+	 * 
+	 * @param page the page
+	 * @param keyword id of the keyword
+	 */
+	public void invalidate(final Page page, final int keyword) {
+
+		PageQualities cached = pages.get(page.getUrl().toString());
+
+		if (cached != null) {
+			cached.remove(keyword);
+		}
+	}
+
+	/**
+	 * @return number of pages evicted from the cache
+	 */
+	public long getEvictions() {
+
+		return pages.getEvictions();
+	}
+
+	/**
+	 * @return number of lookups finding a quality
+	 */
+	public long getHits() {
+
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups not finding a quality
+	 */
+	public long getMisses() {
+
+		return misses.get();
+	}
+
+	/**
+	 * @return summary of hits, misses and evictions of the cache
+	 */
+	public String getStatistics() {
+
+		long found = hits.get();
+		long total = found + misses.get();
+
+		return String.format("quality cache hit rate %.3f, hits %d, misses %d, evictions %d",
+				(total == 0) ? 0 : (double) found / total, found, misses.get(), getEvictions());
+	}
+}
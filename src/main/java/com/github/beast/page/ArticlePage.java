@@ -1,24 +1,29 @@
 package com.github.beast.page;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.net.URL;
 import java.util.Date;
 
-import com.github.beast.parser.ReutersParser;
+import com.github.beast.archive.PageArchive;
+import com.github.beast.parser.ArticleParser;
+import com.github.beast.parser.ParsedArticle;
+import com.github.beast.parser.ParserRegistry;
+import com.github.beast.util.CompactText;
 import com.github.beast.util.Configuration;
+import com.github.beast.util.Fingerprint;
+import com.github.beast.util.TermIndex;
 
 /**
  * An extension of {@link Page} class, suited specifically for pages containing
- * news articles. ArticlePage uses different default {@link Parser} and holds
+ * news articles. ArticlePage uses the {@link ArticleParser} of its news site,
+ * resolved by the {@link ParserRegistry}, as its default {@link Parser} and
+ * holds
  * multiple fields specific to news article pages, such as {@link #timestamp} of
  * the news article, {@link #location} of the news event, {@link #perex}
  * containing first paragraph of the article and {@link #text} containing the
  * text of the article within ArticlePage.
  * <p>
- * In addition, the text of the contained article may be archived to disk, using
- * {@link #writeToFile(ArticlePage)} method, for future reference.
+ * In addition, the code of the page may be archived to the {@link PageArchive}
+ * once processed, for future reference.
  * 
  * @author Štefan Sabo
  * @version 1.0
@@ -32,13 +37,23 @@ public class ArticlePage extends Page {
 	private Date timestamp;
 
 	/** Article text extracted from the page HTML code. */
-	private StringBuffer text;
+	private volatile CompactText text;
 
 	/** First paragraph of the article extracted from the page HTML code. */
-	private StringBuffer perex;
+	private volatile CompactText perex;
+
+	/** Fingerprint of the article text, used to detect unchanged content. */
+	private Fingerprint fingerprint;
+
+	/**
+	 * Index of terms of the article, built when the page is parsed. Is kept
+	 * when the content of the page is released.
+	 */
+	private volatile TermIndex termIndex;
 
 	/**
-	 * Creates a new ArticlePage from a valid {@link URL}.
+	 * Creates a new ArticlePage from a valid {@link URL}, assigning it the
+	 * parser of its host.
 	 * 
 	 * @param url the url of the created page, serves as an identifier of the
 	 *        page and is used for future refreshing of the page
@@ -46,40 +61,33 @@ public class ArticlePage extends Page {
 	public ArticlePage(final URL url) {
 
 		super(url);
-		this.setParser(ReutersParser.getInstance());
+		this.setParser(ParserRegistry.getInstance().getParser(url));
 	}
 
 	/**
-	 * Writes the content of a page to a archiveFile. Currently only the article
-	 * text is stored from a page, other parts are omitted. The archiveFile is
-	 * named according to the page title, replacing all illegal characters with
-	 * blanks.
-	 * 
-	 * @param page the page to be archived
-	 * @return reference to the created archive file
+	 * @return fingerprint of the article text, or <code>null</code> if the
+	 *         page has no text
 	 */
-	public static File writeToFile(final ArticlePage page) {
+	public Fingerprint getFingerprint() {
 
-		final String fileExtension = "html";
+		return fingerprint;
+	}
 
-		if (!page.isProcessed()) {
-			page.process();
-		}
+	/**
+	 * Returns the version of the content of the page, derived from the
+	 * {@link Fingerprint} of its text and its title. The version changes
+	 * whenever the content is modified and is equal for all instances of a
+	 * page holding the same content.
+	 * 
+	 * @return version of the content of the page
+	 */
+	public long getContentVersion() {
 
-		String path = new String(Configuration.getInstance().getPageArchiveDir());
-		String filename = page.getTitle().replaceAll("[\\/|:*?<>\"]", " ").trim() + "." + fileExtension;
-		File pageFile = new File(path, filename);
-		FileWriter writer;
-
-		try {
-			writer = new FileWriter(pageFile);
-			writer.append(page.getText());
-			writer.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
-		}
-		return pageFile;
+		Fingerprint current = fingerprint;
+		String title = getTitle();
+		long version = (current == null) ? 0 : current.getHash();
+
+		return version * 31 + ((title == null) ? 0 : title.hashCode());
 	}
 
 	/**
@@ -91,19 +99,83 @@ public class ArticlePage extends Page {
 	}
 
 	/**
-	 * @return the {@link #perex} of the page
+	 * Returns the {@link #perex} of the page, restoring it if released.
+	 * 
+	 * @return the {@link #perex} of the page, or <code>null</code> if released
+	 *         and no local copy of the page is available
+	 */
+	public CompactText getPerex() {
+
+		CompactText current = perex;
+
+		if ((current == null) && (isReleased()) && (restoreContent())) {
+			current = perex;
+		}
+		return current;
+	}
+
+	/**
+	 * Returns the {@link #text} content of the page, restoring it if
+	 * released.
+	 * 
+	 * @return the {@link #text} content of the page, or <code>null</code> if
+	 *         released and no local copy of the page is available
 	 */
-	public StringBuffer getPerex() {
+	public CompactText getText() {
 
-		return perex;
+		CompactText current = text;
+
+		if ((current == null) && (isReleased()) && (restoreContent())) {
+			current = text;
+		}
+		return current;
 	}
 
 	/**
-	 * @return the {@link #text} content of the page
+	 * @return estimated size of the content held by the page, in bytes
 	 */
-	public StringBuffer getText() {
+	public long getContentSize() {
 
-		return text;
+		CompactText currentText = text;
+		CompactText currentPerex = perex;
+		TermIndex currentIndex = termIndex;
+		long size = super.getContentSize();
+
+		if (currentText != null) {
+			size += currentText.getByteSize();
+		}
+		if (currentPerex != null) {
+			size += currentPerex.getByteSize();
+		}
+		if (currentIndex != null) {
+			size += currentIndex.getByteSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the {@link #termIndex} of the page. If the page has not been
+	 * parsed since loaded from the index, its content is restored first. If the
+	 * content cannot be restored, terms of the title are indexed only, without
+	 * keeping the index, so that it is built again once content is available.
+	 * 
+	 * @return index of terms of the title, perex and text of the article
+	 */
+	public TermIndex getTermIndex() {
+
+		TermIndex current = termIndex;
+
+		if (current == null) {
+			CompactText currentText = getText();
+			current = termIndex;
+			if (current == null) {
+				current = TermIndex.of(getTitle(), getPerex(), currentText);
+				if ((currentText != null) || (!isReleased())) {
+					termIndex = current;
+				}
+			}
+		}
+		return current;
 	}
 
 	/**
@@ -115,25 +187,84 @@ public class ArticlePage extends Page {
 	}
 
 	/**
-	 * Attempts to process a page. The processing consists of retrieving the
-	 * code of the page if not yet available, parsing the content of the page
-	 * and optionally archiving the page, if archiving is enabled in
-	 * {@link Configuration}.
+	 * Parse the content of the page using default {@link Parser}. If the page
+	 * belongs to a registered news site, all fields of the article are
+	 * extracted, otherwise only the title and links are.
 	 * 
-	 * @param reprocess if <i>true</i>, forces reprocessing of the page, even if
-	 *        it has been processed before. If <i>false</i> page will be
-	 *        processed only once.
-	 * @throws NullPointerException if unable to retrieve the code of the page
+	 * @see #parse(ArticleParser)
 	 */
-	public void process(final boolean reprocess) throws NullPointerException {
+	public void parse() {
 
-		super.process(reprocess);
+		if (getParser() instanceof ArticleParser) {
+			parse((ArticleParser) getParser());
+		} else {
+			super.parse();
+			termIndex = null;
+		}
+	}
 
-		if (Configuration.getInstance().usePageArchive()) {
-			this.setArchiveFile(writeToFile(this));
+	/**
+	 * Parse the content of the page using supplied {@link ArticleParser}. All
+	 * fields are extracted from a single parse of the page code.
+	 * 
+	 * @param parser the {@link ArticleParser} used to process the page
+	 */
+	public void parse(final ArticleParser parser) {
+
+		ParsedArticle article = parser.parseArticle(this);
+
+		setTitle(article.getTitle());
+		setLinks(article.getLinks());
+		setPerex(article.getPerex());
+		setText(article.getText());
+		setLocation(article.getLocation());
+		setTimestamp(article.getTimestamp());
+		termIndex = TermIndex.of(article.getTitle(), article.getPerex(), article.getText());
+	}
+
+	/**
+	 * Called once freshly retrieved code of the page is parsed. If the article
+	 * text is unchanged since the previous processing, as determined by its
+	 * {@link Fingerprint}, the page is considered not modified, even if it has
+	 * been retrieved anew. Otherwise the code of the page is archived, if
+	 * archiving is enabled in {@link Configuration} and the page has not been
+	 * replayed from the archive. Code fetched through an extractor is archived
+	 * as extracted sections, not as the complete page.
+	 * 
+	 * @param parsedCode the parsed code of the page
+	 */
+	protected void parsed(final CharSequence parsedCode) {
+
+		Fingerprint previous = fingerprint;
+
+		fingerprint = Fingerprint.of(text);
+		if ((fingerprint != null) && (fingerprint.sameContent(previous))) {
+			setModified(false);
+		}
+
+		if ((isModified()) && (Configuration.getInstance().usePageArchive()) && (!getFetchSource().isReplay())) {
+			setArchivePointer(PageArchive.getInstance().append(this, parsedCode, getParser().getExtractor() != null));
 		}
 	}
 
+	/**
+	 * Releases the content of the page, including its text and perex.
+	 */
+	public synchronized void releaseContent() {
+
+		super.releaseContent();
+		text = null;
+		perex = null;
+	}
+
+	/**
+	 * @param fingerprint fingerprint of the article text
+	 */
+	public void setFingerprint(final Fingerprint fingerprint) {
+
+		this.fingerprint = fingerprint;
+	}
+
 	/**
 	 * @param location the new location field of the page
 	 */
@@ -145,7 +276,7 @@ public class ArticlePage extends Page {
 	/**
 	 * @param perex the new {@link #perex} of the page
 	 */
-	public void setPerex(final StringBuffer perex) {
+	public void setPerex(final CompactText perex) {
 
 		this.perex = perex;
 	}
@@ -153,7 +284,7 @@ public class ArticlePage extends Page {
 	/**
 	 * @param text new {@link #text} content of the page
 	 */
-	public void setText(final StringBuffer text) {
+	public void setText(final CompactText text) {
 
 		this.text = text;
 	}
@@ -0,0 +1,640 @@
+package com.github.beast.page;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.beast.Beast;
+import com.github.beast.parser.StreamingExtractor;
+import com.github.beast.util.CompactText;
+import com.github.beast.util.Configuration;
+
+/**
+ * Singleton class representing a cache of fetched code of pages, placed in
+ * front of another {@link FetchSource}. Code of pages is cached by their url,
+ * while fresh, as determined by the fetched response (see
+ * {@link Page#getFreshUntil()}), so that bees converging on the same pages do
+ * not request them again.
+ * <p>
+ * The cache has two tiers. Recently used code is kept in memory, up to the
+ * size set in {@link Configuration}. Code evicted from memory is spilled into
+ * a directory on the disk, from which it is loaded back into memory on demand.
+ * The disk tier is bounded by its own size, least recently used files are
+ * deleted first. Files are named by a digest of the url, so that urls do not
+ * share files. Stale code is discarded when found.
+ * <p>
+ * Concurrent fetches of the same url are deduplicated, only the first thread
+ * fetches the page, while other threads wait for its result.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class FetchCache implements FetchSource {
+
+	/** Suffix of names of files of the disk tier. */
+	private static final String FILE_SUFFIX = ".cache";
+
+	/** Digest naming files of the disk tier. */
+	private static final String FILE_DIGEST = "SHA-1";
+
+	/** Encoding of urls digested into file names. */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Cached code of a single page, along with its validators and freshness.
+	 */
+	private static final class Entry {
+
+		private final String url;
+		private final CompactText code;
+		private final String etag;
+		private final String lastModified;
+		private final long freshUntil;
+
+		/**
+		 * @param url the url of the page
+		 * @param code the code of the page
+		 * @param etag <i>ETag</i> validator of the code, may be
+		 *        <code>null</code>
+		 * @param lastModified <i>Last-Modified</i> validator of the code, may
+		 *        be <code>null</code>
+		 * @param freshUntil time in milliseconds until which the code is
+		 *        fresh
+		 */
+		private Entry(final String url, final CompactText code, final String etag, final String lastModified,
+				final long freshUntil) {
+
+			this.url = url;
+			this.code = code;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.freshUntil = freshUntil;
+		}
+
+		/**
+		 * @param page a page
+		 * @return <i>true</i> if the page has been processed from this code,
+		 *         as determined by its validators
+		 */
+		private boolean isProcessedBy(final Page page) {
+
+			return ((etag != null) && (etag.equals(page.getEtag())))
+					|| ((lastModified != null) && (lastModified.equals(page.getLastModified())));
+		}
+	}
+
+	/** Instance of a singleton class. */
+	private static FetchCache instance;
+
+	/** The source of code of pages not cached. */
+	private final FetchSource source;
+
+	/** Maximal size of the memory tier, in bytes. */
+	private final long capacity;
+
+	/** Directory of the disk tier. */
+	private final File directory;
+
+	/** Memory tier, in order of access. */
+	private final Map<String, Entry> memory = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/** Size of the memory tier, in bytes. */
+	private long used;
+
+	/** Maximal size of the disk tier, in bytes. */
+	private final long diskCapacity;
+
+	/** Sizes of files of the disk tier, by their names, in order of access. */
+	private final Map<String, Long> files = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+	/** Size of the disk tier, in bytes, guarded by {@link #files}. */
+	private long diskUsed;
+
+	/** Fetches in progress, by url. */
+	private final ConcurrentMap<String, FutureTask<Entry>> inFlight =
+			new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+	/** Number of fetches served from memory. */
+	private final AtomicLong memoryHits = new AtomicLong();
+
+	/** Number of fetches served from the disk. */
+	private final AtomicLong diskHits = new AtomicLong();
+
+	/** Number of fetches served by joining a fetch in progress. */
+	private final AtomicLong sharedFetches = new AtomicLong();
+
+	/** Number of fetches passed to the source. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor of the <code>FetchCache</code> class, caching pages fetched
+	 * from the web. Is private because <code>FetchCache</code> is a singleton
+	 * class.
+	 */
+	private FetchCache() {
+
+		source = HttpFetchSource.getInstance();
+		capacity = Configuration.getInstance().getResponseCacheSize();
+		diskCapacity = Configuration.getInstance().getResponseCacheDiskSize();
+		directory = new File(Configuration.getInstance().getResponseCacheDir());
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Beast.log("unable to create fetch cache in " + directory);
+		}
+		loadFiles();
+	}
+
+	/**
+	 * Registers files of the disk tier left by previous runs, oldest first,
+	 * and deletes the oldest ones exceeding the size of the disk tier.
+	 */
+	private void loadFiles() {
+
+		File[] found = directory.listFiles();
+
+		if (found == null) {
+			return;
+		}
+
+		Arrays.sort(found, new Comparator<File>() {
+
+			public int compare(final File first, final File second) {
+
+				return Long.compare(first.lastModified(), second.lastModified());
+			}
+		});
+		synchronized (files) {
+			for (File file : found) {
+				if (file.getName().endsWith(FILE_SUFFIX)) {
+					files.put(file.getName(), file.length());
+					diskUsed += file.length();
+				}
+			}
+			trimFiles();
+		}
+	}
+
+	/**
+	 * Returns instance of the <code>FetchCache</code> singleton class. If no
+	 * instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static synchronized FetchCache getInstance() {
+
+		if (instance == null) {
+			instance = new FetchCache();
+		}
+		return instance;
+	}
+
+	/**
+	 * Fetches the code of a page, from the cache if fresh code is cached,
+	 * otherwise from the source. Validators and freshness of the cached code
+	 * are set to the page.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @param conditional <i>true</i> to fetch the code only if modified since
+	 *        the page has last been fetched
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if the page has not been modified
+	 * @throws NullPointerException if failed to obtain the code of the page
+	 */
+	public CharSequence fetch(final Page page, final StreamingExtractor extractor, final boolean conditional)
+			throws NullPointerException {
+
+		final String url = page.getUrl().toString();
+		Entry entry = lookup(url, System.currentTimeMillis());
+
+		if (entry != null) {
+			return serve(entry, page, conditional);
+		}
+
+		FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+
+			public Entry call() {
+
+				return load(url, page, extractor, conditional);
+			}
+		});
+		FutureTask<Entry> running = inFlight.putIfAbsent(url, task);
+
+		if (running == null) {
+			misses.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(url, task);
+			}
+			entry = await(task);
+			return (entry == null) ? null : entry.code;
+		}
+
+		sharedFetches.incrementAndGet();
+		entry = await(running);
+		if (entry == null) {
+			// the page was not modified for the validators of the other fetch
+			return source.fetch(page, extractor, conditional);
+		}
+		return serve(entry, page, conditional);
+	}
+
+	/**
+	 * Fetches the code of a page only if fresh code is cached, never passing
+	 * the fetch to the source.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @return cached code of the page, or <code>null</code> if no fresh code
+	 *         is cached
+	 */
+	public CharSequence fetchCached(final Page page) {
+
+		Entry entry = lookup(page.getUrl().toString(), System.currentTimeMillis());
+		return (entry == null) ? null : serve(entry, page, false);
+	}
+
+	/**
+	 * @return <i>false</i>, as cached pages are fetched anew once stale
+	 */
+	public boolean isReplay() {
+
+		return false;
+	}
+
+	/**
+	 * @return ratio of fetches served without requesting the source
+	 */
+	public double getHitRate() {
+
+		long hits = memoryHits.get() + diskHits.get() + sharedFetches.get();
+		long total = hits + misses.get();
+
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @return number of fetches served from the disk tier
+	 */
+	public long getDiskHits() {
+
+		return diskHits.get();
+	}
+
+	/**
+	 * @return number of fetches served from the memory tier
+	 */
+	public long getMemoryHits() {
+
+		return memoryHits.get();
+	}
+
+	/**
+	 * @return number of fetches passed to the source
+	 */
+	public long getMisses() {
+
+		return misses.get();
+	}
+
+	/**
+	 * @return number of fetches served by joining a fetch in progress
+	 */
+	public long getSharedFetches() {
+
+		return sharedFetches.get();
+	}
+
+	/**
+	 * @return summary of hits and misses of the cache
+	 */
+	public String getStatistics() {
+
+		return String.format("fetch cache hit rate %.3f, memory hits %d, disk hits %d, shared fetches %d, "
+				+ "misses %d", getHitRate(), getMemoryHits(), getDiskHits(), getSharedFetches(), getMisses());
+	}
+
+	/**
+	 * Serves cached code to a page.
+	 * 
+	 * @param entry the cached code
+	 * @param page the page, for which the code is fetched
+	 * @param conditional <i>true</i> if the code is needed only if modified
+	 * @return the cached code, or <code>null</code> if the page has been
+	 *         processed from the same code
+	 */
+	private CharSequence serve(final Entry entry, final Page page, final boolean conditional) {
+
+		if ((conditional) && (entry.isProcessedBy(page))) {
+			return null;
+		}
+		page.setValidators(entry.etag, entry.lastModified);
+		page.setFreshUntil(entry.freshUntil);
+		return entry.code;
+	}
+
+	/**
+	 * Fetches the code of a page from the source and caches it, if fresh.
+	 * 
+	 * @param url the url of the page
+	 * @param page the page, for which the code is fetched
+	 * @param extractor the extractor of needed sections of the page
+	 * @param conditional <i>true</i> if the code is needed only if modified
+	 * @return the fetched code, or <code>null</code> if the page has not been
+	 *         modified
+	 */
+	private Entry load(final String url, final Page page, final StreamingExtractor extractor,
+			final boolean conditional) {
+
+		CharSequence code = source.fetch(page, extractor, conditional);
+
+		if (code == null) {
+			return null;
+		}
+
+		Entry entry = new Entry(url, CompactText.of(code), page.getEtag(), page.getLastModified(),
+				page.getFreshUntil());
+		if (entry.freshUntil > System.currentTimeMillis()) {
+			store(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Waits for the result of a fetch.
+	 * 
+	 * @param task the fetch
+	 * @return the result of the fetch
+	 * @throws NullPointerException if the fetch failed
+	 */
+	private static Entry await(final FutureTask<Entry> task) throws NullPointerException {
+
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof NullPointerException) {
+				throw (NullPointerException) e.getCause();
+			}
+			throw new NullPointerException();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NullPointerException();
+		}
+	}
+
+	/**
+	 * Looks up fresh code of a page, in memory first, then on the disk. Code
+	 * found on the disk is moved back into memory.
+	 * 
+	 * @param url the url of the page
+	 * @param now the current time in milliseconds
+	 * @return the cached code, or <code>null</code> if no fresh code is cached
+	 */
+	private Entry lookup(final String url, final long now) {
+
+		Entry entry;
+
+		synchronized (this) {
+			entry = memory.get(url);
+			if ((entry != null) && (entry.freshUntil <= now)) {
+				memory.remove(url);
+				used -= entry.code.getByteSize();
+				entry = null;
+			}
+		}
+		if (entry != null) {
+			memoryHits.incrementAndGet();
+			return entry;
+		}
+
+		entry = readFile(url, now);
+		if (entry != null) {
+			diskHits.incrementAndGet();
+			store(entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores code into memory. If the memory tier is full, the least recently
+	 * used code is spilled onto the disk.
+	 * 
+	 * @param entry the code to be stored
+	 */
+	private void store(final Entry entry) {
+
+		List<Entry> evicted = new ArrayList<Entry>();
+
+		synchronized (this) {
+			Entry previous = memory.put(entry.url, entry);
+			used += entry.code.getByteSize() - ((previous == null) ? 0 : previous.code.getByteSize());
+
+			Iterator<Entry> iter = memory.values().iterator();
+			while ((used > capacity) && (iter.hasNext())) {
+				Entry oldest = iter.next();
+				if (oldest != entry) {
+					used -= oldest.code.getByteSize();
+					iter.remove();
+					evicted.add(oldest);
+				}
+			}
+		}
+
+		// spilled outside of the lock, not to block other fetches
+		long now = System.currentTimeMillis();
+		for (Entry oldest : evicted) {
+			if (oldest.freshUntil > now) {
+				writeFile(oldest);
+			}
+		}
+	}
+
+	/**
+	 * @param url the url of a page
+	 * @return the file of the disk tier holding code of the page
+	 */
+	private File fileOf(final String url) {
+
+		StringBuilder name = new StringBuilder(48);
+
+		try {
+			for (byte b : MessageDigest.getInstance(FILE_DIGEST).digest(url.getBytes(UTF8))) {
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(FILE_DIGEST + " not supported", e);
+		}
+		return new File(directory, name.append(FILE_SUFFIX).toString());
+	}
+
+	/**
+	 * Records the size of a written file of the disk tier and deletes the
+	 * least recently used files, while the disk tier exceeds its size.
+	 * 
+	 * @param file the written file
+	 */
+	private void addFile(final File file) {
+
+		synchronized (files) {
+			Long previous = files.put(file.getName(), file.length());
+			diskUsed += file.length() - ((previous == null) ? 0 : previous);
+			trimFiles();
+		}
+	}
+
+	/**
+	 * Forgets a deleted file of the disk tier.
+	 * 
+	 * @param file the deleted file
+	 */
+	private void removeFile(final File file) {
+
+		synchronized (files) {
+			Long previous = files.remove(file.getName());
+			if (previous != null) {
+				diskUsed -= previous;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files of the disk tier, until the disk
+	 * tier fits its size. Caller needs to hold the lock of {@link #files}.
+	 */
+	private void trimFiles() {
+
+		Iterator<Map.Entry<String, Long>> iter = files.entrySet().iterator();
+
+		while ((diskUsed > diskCapacity) && (iter.hasNext())) {
+			Map.Entry<String, Long> oldest = iter.next();
+			diskUsed -= oldest.getValue();
+			iter.remove();
+			new File(directory, oldest.getKey()).delete();
+		}
+	}
+
+	/**
+	 * Reads fresh code of a page from the disk tier, deleting stale code.
+	 * 
+	 * @param url the url of the page
+	 * @param now the current time in milliseconds
+	 * @return the cached code, or <code>null</code> if no fresh code is stored
+	 */
+	private Entry readFile(final String url, final long now) {
+
+		File file = fileOf(url);
+		DataInputStream in = null;
+		Entry entry = null;
+		boolean foreign = false;
+
+		if (!file.isFile()) {
+			return null;
+		}
+		synchronized (files) {
+			// touched, so that the file is not the next one deleted
+			files.get(file.getName());
+		}
+
+		try {
+			in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			String storedUrl = in.readUTF();
+			long freshUntil = in.readLong();
+			String etag = in.readBoolean() ? in.readUTF() : null;
+			String lastModified = in.readBoolean() ? in.readUTF() : null;
+			char[] code = new char[in.readInt()];
+			for (int i = 0; i < code.length; i++) {
+				code[i] = in.readChar();
+			}
+			foreign = !storedUrl.equals(url);
+			if ((!foreign) && (freshUntil > now)) {
+				entry = new Entry(url, CompactText.of(new String(code)), etag, lastModified, freshUntil);
+			}
+		} catch (IOException e) {
+			Beast.log("unable to read fetch cache file " + file + ": " + e);
+		} finally {
+			closeQuietly(in);
+		}
+
+		// a file of another url is left to that url
+		if ((entry == null) && (!foreign)) {
+			file.delete();
+			removeFile(file);
+		}
+		return entry;
+	}
+
+	/**
+	 * Writes code of a page into the disk tier, replacing any code stored
+	 * under the same file.
+	 * 
+	 * @param entry the code to be written
+	 */
+	private void writeFile(final Entry entry) {
+
+		File file = fileOf(entry.url);
+		DataOutputStream out = null;
+
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+			out.writeUTF(entry.url);
+			out.writeLong(entry.freshUntil);
+			out.writeBoolean(entry.etag != null);
+			if (entry.etag != null) {
+				out.writeUTF(entry.etag);
+			}
+			out.writeBoolean(entry.lastModified != null);
+			if (entry.lastModified != null) {
+				out.writeUTF(entry.lastModified);
+			}
+			out.writeInt(entry.code.length());
+			for (int i = 0; i < entry.code.length(); i++) {
+				out.writeChar(entry.code.charAt(i));
+			}
+		} catch (IOException e) {
+			Beast.log("unable to write fetch cache file " + file + ": " + e);
+		} finally {
+			closeQuietly(out);
+		}
+		addFile(file);
+	}
+
+	/**
+	 * Closes a stream, ignoring failures.
+	 * 
+	 * @param stream the stream to be closed, may be <code>null</code>
+	 */
+	private static void closeQuietly(final java.io.Closeable stream) {
+
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				Beast.log("unable to close fetch cache file: " + e);
+			}
+		}
+	}
+}
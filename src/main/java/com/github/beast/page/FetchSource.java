@@ -0,0 +1,37 @@
+package com.github.beast.page;
+
+import com.github.beast.parser.StreamingExtractor;
+
+/**
+ * A source of the code of {@link Page pages}. Pages fetch their code through
+ * their fetch source, which is either the web, or a local copy of the pages,
+ * such as the page archive, which allows processing of pages to be repeated
+ * without network access.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see Page#getCode(boolean)
+ */
+public interface FetchSource {
+
+	/**
+	 * Fetches the code of a page. If an extractor is given, only the sections
+	 * captured by the extractor are returned.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @param conditional <i>true</i> to fetch the code only if modified since
+	 *        the page has last been fetched
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if the page has not been modified
+	 * @throws NullPointerException if failed to obtain the code of the page
+	 */
+	CharSequence fetch(Page page, StreamingExtractor extractor, boolean conditional) throws NullPointerException;
+
+	/**
+	 * @return <i>true</i> if the source replays pages that have already been
+	 *         archived
+	 */
+	boolean isReplay();
+}
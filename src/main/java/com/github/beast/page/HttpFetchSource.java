@@ -0,0 +1,65 @@
+package com.github.beast.page;
+
+import com.github.beast.parser.StreamingExtractor;
+import com.github.beast.util.Utility;
+
+/**
+ * Singleton class representing the web as a {@link FetchSource}, fetching the
+ * code of pages through HTTP requests.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see Utility#requestCode(Page, StreamingExtractor, boolean)
+ */
+public final class HttpFetchSource implements FetchSource {
+
+	/** Instance of a singleton class. */
+	private static HttpFetchSource instance;
+
+	/**
+	 * Constructor of the <code>HttpFetchSource</code> class. Is private
+	 * because <code>HttpFetchSource</code> is a singleton class.
+	 */
+	private HttpFetchSource() {
+
+	}
+
+	/**
+	 * Returns instance of the <code>HttpFetchSource</code> singleton class. If
+	 * no instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static HttpFetchSource getInstance() {
+
+		if (instance == null) {
+			instance = new HttpFetchSource();
+		}
+		return instance;
+	}
+
+	/**
+	 * Fetches the code of a page through HTTP request.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @param conditional <i>true</i> to request the code only if modified
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if the page has not been modified
+	 * @throws NullPointerException if failed to obtain the code of the page
+	 */
+	public CharSequence fetch(final Page page, final StreamingExtractor extractor, final boolean conditional)
+			throws NullPointerException {
+
+		return Utility.requestCode(page, extractor, conditional);
+	}
+
+	/**
+	 * @return <i>false</i>, as pages are fetched anew
+	 */
+	public boolean isReplay() {
+
+		return false;
+	}
+}
@@ -13,6 +13,9 @@ import java.net.URL;
  * If a <i>String</i> is used for Link construction, it is necessary to use
  * well-formed URL, prefixed with protocol, otherwise
  * {@link MalformedURLException} is raised during construction.
+ * <p>
+ * Links are equal if they point to the same URL, regardless of their anchor
+ * text. URLs are compared as strings, without resolving their hosts.
  * 
  * @version 1.0
  * @author Štefan Sabo
@@ -35,7 +38,7 @@ public class Link {
 	 */
 	public Link(final String newUrl) throws MalformedURLException {
 
-		new Link(null, newUrl);
+		this(null, newUrl);
 	}
 
 	/**
@@ -75,7 +78,44 @@ public class Link {
 	 */
 	public Link(final URL newUrl) {
 
-		new Link(null, newUrl);
+		this(null, newUrl);
+	}
+
+	/**
+	 * @param other the compared object
+	 * @return <i>true</i> if the other object is a link to the same URL
+	 */
+	public boolean equals(final Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof Link)) {
+			return false;
+		}
+
+		URL otherUrl = ((Link) other).url;
+		if ((url == null) || (otherUrl == null)) {
+			return url == otherUrl;
+		}
+		return url.toExternalForm().equals(otherUrl.toExternalForm());
+	}
+
+	/**
+	 * @return hash code of the URL of the link
+	 */
+	public int hashCode() {
+
+		return (url == null) ? 0 : url.toExternalForm().hashCode();
+	}
+
+	/**
+	 * @return estimated size of the url and anchor text of the link, in bytes
+	 */
+	public long getByteSize() {
+
+		long size = (url == null) ? 0 : 2L * url.toExternalForm().length();
+		return (anchorText == null) ? size : size + 2L * anchorText.length();
 	}
 
 	/**
@@ -1,12 +1,13 @@
 package com.github.beast.page;
 
-import java.io.File;
 import java.net.URL;
 import java.util.Date;
 import java.util.List;
 
+import com.github.beast.archive.ArchiveFetchSource;
+import com.github.beast.archive.ArchivePointer;
 import com.github.beast.parser.Parser;
-import com.github.beast.util.Utility;
+import com.github.beast.util.Configuration;
 
 /**
  * Represents a single web page identified by its {@link URL}. The URL needs to
@@ -17,6 +18,13 @@ import com.github.beast.util.Utility;
  * outgoing links and fields such as {@link #title}, the {@link #parse()} method
  * needs to be called. Parsing of the Page is handled by appropriate
  * {@link Parser}, assigned to the Page at construction.
+ * <p>
+ * Once processed, the code of the Page is released, unless disabled in
+ * {@link Configuration}, and the content of the Page is registered with the
+ * {@link PageMemoryBudget}. Content released by the budget is restored on
+ * demand from a local copy of the Page, that is its record in the page archive
+ * or its code in the {@link FetchCache}, never from the web. Content with no
+ * local copy stays unavailable.
  * 
  * @author Štefan Sabo
  * @version 1.0
@@ -52,20 +60,44 @@ public class Page {
 	private List<Link> links;
 
 	/** HTML code of the page. */
-	private StringBuffer code;
+	private CharSequence code;
+
+	/** Is <i>true</i> if the content of the page has been released. */
+	private volatile boolean released = false;
+
+	/** <i>ETag</i> validator of the last retrieval of the page. */
+	private String etag;
+
+	/** <i>Last-Modified</i> validator of the last retrieval of the page. */
+	private String lastModified;
+
+	/** Time until which the last retrieved code of the page may be reused. */
+	private long freshUntil;
+
+	/**
+	 * Is <i>false</i> if the last reprocessing found the page not modified,
+	 * so that its content has not been changed.
+	 */
+	private boolean modified = true;
 
 	/**
-	 * A reference to local copy of page content on the disk, used if page
-	 * archiving is enabled through setting {@link Configuration#pageArchive} to
-	 * <i>true</i>.
+	 * A pointer to the latest record of the page code in the page archive, used
+	 * if page archiving is enabled through setting
+	 * {@link Configuration#pageArchive} to <i>true</i>.
 	 */
-	private File archiveFile;
+	private ArchivePointer archivePointer;
 
 	/**
 	 * Default {@link Parser} used extract the content of the page.
 	 */
 	private Parser parser;
 
+	/**
+	 * Source of the code of the page, either the web, or the page archive if
+	 * replaying is enabled in {@link Configuration}.
+	 */
+	private FetchSource fetchSource;
+
 	/**
 	 * Creates a new Page from a valid {@link URL} and assigns a new
 	 * {@link Parser}, that will be used to process the code of the page.
@@ -77,6 +109,13 @@ public class Page {
 
 		setURL(url);
 		setParser(Parser.getInstance());
+		if (Configuration.getInstance().useArchiveReplay()) {
+			setFetchSource(ArchiveFetchSource.getInstance());
+		} else if (Configuration.getInstance().useResponseCache()) {
+			setFetchSource(FetchCache.getInstance());
+		} else {
+			setFetchSource(HttpFetchSource.getInstance());
+		}
 	}
 
 	/**
@@ -90,13 +129,13 @@ public class Page {
 	}
 
 	/**
-	 * @return the file, where article text of the page is saved on the disk for
-	 *         future reference.
-	 * @see #archiveFile
+	 * @return pointer to the record of the page in the page archive, or
+	 *         <code>null</code> if the page has not been archived
+	 * @see #archivePointer
 	 */
-	public File getArchiveFile() {
+	public ArchivePointer getArchivePointer() {
 
-		return archiveFile;
+		return archivePointer;
 	}
 
 	/**
@@ -108,7 +147,7 @@ public class Page {
 	 * @return the HTML code of a page.
 	 * @see #requestCode()
 	 */
-	public StringBuffer getCode() {
+	public CharSequence getCode() {
 
 		return getCode(false);
 	}
@@ -124,10 +163,10 @@ public class Page {
 	 * @return the HTML code of a page
 	 * @throws NullPointerException if returned code equals <i>null</i>
 	 */
-	public StringBuffer getCode(final boolean forceRetrieval) throws NullPointerException {
+	public CharSequence getCode(final boolean forceRetrieval) throws NullPointerException {
 
 		if ((this.code == null) || (forceRetrieval)) {
-			this.code = Utility.requestCode(this);
+			this.code = fetchSource.fetch(this, parser.getExtractor(), false);
 		}
 		return this.code;
 	}
@@ -229,6 +268,11 @@ public class Page {
 	 * Attempts to process a page. The processing consists of retrieving the
 	 * code of the page if not yet available and parsing the content of the
 	 * page.
+	 * <p>
+	 * If reprocessing a page with known validators, the page is requested only
+	 * if modified, unless disabled in {@link Configuration}. If the page has not
+	 * been modified, parsing is skipped and {@link #isModified()} returns
+	 * <i>false</i> until the page is processed anew.
 	 * 
 	 * @param reprocess if <i>true</i>, forces reprocessing of the page, even if
 	 *        it has been processed before. If <i>false</i> page will be
@@ -237,21 +281,225 @@ public class Page {
 	 */
 	public void process(final boolean reprocess) throws NullPointerException {
 
-		setProcessed(false);
-
 		if ((this.isProcessed()) && (!reprocess)) {
 			return;
 		}
 
-		if ((reprocess) || (!this.isProcessed())) {
-			code = getCode(FORCE_RETRIEVAL);
+		if ((reprocess) && (canRevalidate()) && (Configuration.getInstance().useConditionalRequests())) {
+			CharSequence freshCode = fetchSource.fetch(this, parser.getExtractor(), true);
+			if (freshCode == null) {
+				modified = false;
+				this.setLastProcessed(new Date());
+				return;
+			}
+			code = freshCode;
 		} else {
-			code = getCode();
+			code = getCode(FORCE_RETRIEVAL);
 		}
 
+		setProcessed(false);
+		modified = true;
 		this.parse();
+		this.parsed(code);
+		if (Configuration.getInstance().releasePageCode()) {
+			code = null;
+		}
+		released = false;
 		this.setProcessed(true);
 		this.setLastProcessed(new Date());
+		PageMemoryBudget.getInstance().retain(this);
+	}
+
+	/**
+	 * Called by {@link #process(boolean)} once freshly retrieved code of the
+	 * page is parsed, before the code is released. Does nothing by default.
+	 * 
+	 * @param parsedCode the parsed code of the page
+	 */
+	protected void parsed(final CharSequence parsedCode) {
+
+	}
+
+	/**
+	 * Releases the content of the page extracted by processing, keeping only
+	 * its url, title and links. The content is restored on demand through
+	 * {@link #restoreContent()}.
+	 * 
+	 * @see PageMemoryBudget
+	 */
+	public synchronized void releaseContent() {
+
+		released = true;
+		code = null;
+	}
+
+	/**
+	 * @return <i>ETag</i> validator of the last retrieval of the page, or
+	 *         <code>null</code> if not known
+	 */
+	public String getEtag() {
+
+		return etag;
+	}
+
+	/**
+	 * @return <i>Last-Modified</i> validator of the last retrieval of the page,
+	 *         or <code>null</code> if not known
+	 */
+	public String getLastModified() {
+
+		return lastModified;
+	}
+
+	/**
+	 * @return time in milliseconds until which the last retrieved code of the
+	 *         page may be reused, or <i>0</i> if not known
+	 */
+	public long getFreshUntil() {
+
+		return freshUntil;
+	}
+
+	/**
+	 * @return <i>true</i> if any validator of the page is known
+	 */
+	public boolean hasValidators() {
+
+		return (etag != null) || (lastModified != null);
+	}
+
+	/**
+	 * @return <i>true</i> if the fetch source of the page is able to tell,
+	 *         whether the page has been modified since it has been processed
+	 */
+	private boolean canRevalidate() {
+
+		if (fetchSource.isReplay()) {
+			return archivePointer != null;
+		}
+		return hasValidators();
+	}
+
+	/**
+	 * @param freshUntil time in milliseconds until which the last retrieved
+	 *        code of the page may be reused
+	 */
+	public void setFreshUntil(final long freshUntil) {
+
+		this.freshUntil = freshUntil;
+	}
+
+	/**
+	 * @param etag <i>ETag</i> validator of the last retrieval of the page
+	 * @param lastModified <i>Last-Modified</i> validator of the last retrieval
+	 *        of the page
+	 */
+	public void setValidators(final String etag, final String lastModified) {
+
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return <i>false</i> if the last reprocessing of the page found it not
+	 *         modified, otherwise <i>true</i>
+	 */
+	public boolean isModified() {
+
+		return modified;
+	}
+
+	/**
+	 * @param modified <i>false</i> if the last reprocessing of the page found
+	 *        its content unchanged
+	 */
+	protected void setModified(final boolean modified) {
+
+		this.modified = modified;
+	}
+
+	/**
+	 * @return <i>true</i> if the content of the page has been released and
+	 *         not restored yet
+	 */
+	public boolean isReleased() {
+
+		return released;
+	}
+
+	/**
+	 * @return estimated size of the content held by the page, in bytes,
+	 *         including its outgoing links
+	 */
+	public long getContentSize() {
+
+		CharSequence current = code;
+		List<Link> currentLinks = links;
+		long size = (current == null) ? 0 : 2L * current.length();
+
+		if (currentLinks != null) {
+			for (Link link : currentLinks) {
+				size += link.getByteSize();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Restores released content of the page, by parsing a local copy of its
+	 * code again. The restored content is registered with the
+	 * {@link PageMemoryBudget}.
+	 * 
+	 * @return <i>true</i> if the content is available, <i>false</i> if no
+	 *         local copy of the page could be read
+	 */
+	protected boolean restoreContent() {
+
+		synchronized (this) {
+			if (!released) {
+				return true;
+			}
+			code = fetchLocal();
+			if (code == null) {
+				return false;
+			}
+			try {
+				parse();
+			} catch (NullPointerException e) {
+				code = null;
+				return false;
+			}
+			if (Configuration.getInstance().releasePageCode()) {
+				code = null;
+			}
+			released = false;
+		}
+
+		// registered outside of the lock, as the budget may release other pages
+		PageMemoryBudget.getInstance().retain(this);
+		return true;
+	}
+
+	/**
+	 * Fetches the code of the page from its local copy, so that restoring
+	 * content never blocks the calling thread on the network. The record the
+	 * page has been processed from is preferred, otherwise fresh code cached
+	 * by the {@link FetchCache} is used.
+	 * 
+	 * @return code of the page, or its captured sections, or <code>null</code>
+	 *         if no local copy of the page is available
+	 */
+	private CharSequence fetchLocal() {
+
+		CharSequence local = null;
+
+		if (archivePointer != null) {
+			local = ArchiveFetchSource.getInstance().restore(this, parser.getExtractor());
+		}
+		if ((local == null) && (fetchSource instanceof FetchCache)) {
+			local = ((FetchCache) fetchSource).fetchCached(this);
+		}
+		return local;
 	}
 
 	/**
@@ -265,12 +513,13 @@ public class Page {
 	}
 
 	/**
-	 * @param archiveFile the file containing the archived version of the page
-	 * @see #archiveFile
+	 * @param archivePointer pointer to the record of the page in the page
+	 *        archive
+	 * @see #archivePointer
 	 */
-	public void setArchiveFile(final File archiveFile) {
+	public void setArchivePointer(final ArchivePointer archivePointer) {
 
-		this.archiveFile = archiveFile;
+		this.archivePointer = archivePointer;
 	}
 
 	/**
@@ -315,6 +564,14 @@ public class Page {
 		this.title = title;
 	}
 
+	/**
+	 * @return the {@link FetchSource} of the code of the page
+	 */
+	protected FetchSource getFetchSource() {
+
+		return fetchSource;
+	}
+
 	/**
 	 * @return the {@link Parser} assigned to process the page
 	 */
@@ -323,6 +580,14 @@ public class Page {
 		return this.parser;
 	}
 
+	/**
+	 * @param fetchSource the source of the code of the page
+	 */
+	public void setFetchSource(final FetchSource fetchSource) {
+
+		this.fetchSource = fetchSource;
+	}
+
 	/**
 	 * @param parser the {@link Parser} to be used as default when processing
 	 *        the page
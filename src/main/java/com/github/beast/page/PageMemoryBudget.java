@@ -0,0 +1,114 @@
+package com.github.beast.page;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.beast.util.Configuration;
+
+/**
+ * A singleton class enforcing a global budget of memory held by the content of
+ * processed pages, i.e. their code, text, perex, term index and links. Pages
+ * register their content with the budget after processing, or once loaded
+ * from the index with content. Once the total size of registered content
+ * exceeds the budget, content of the least recently registered pages is
+ * {@link Page#releaseContent() released}, keeping only their url, title and
+ * links. Released content is restored on demand from a local copy of the page,
+ * i.e. its archive record or the {@link com.github.beast.util.FetchCache
+ * FetchCache}, never by fetching the page again.
+ * <p>
+ * Content of a page stays registered, and the page reachable through the
+ * budget, until it is released. The memory held by the budget is thus bounded
+ * by the budget itself.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class PageMemoryBudget {
+
+	/** Instance of a singleton class. */
+	private static PageMemoryBudget instance;
+
+	/** Maximal size of registered content, in bytes. */
+	private final long budget;
+
+	/** Sizes of registered content, in order of registration. */
+	private final Map<Page, Long> retained = new LinkedHashMap<Page, Long>(16, 0.75f, true);
+
+	/** Total size of registered content, in bytes. */
+	private long used;
+
+	/**
+	 * Constructor of the <code>PageMemoryBudget</code> class. Is private
+	 * because <code>PageMemoryBudget</code> is a singleton class.
+	 */
+	private PageMemoryBudget() {
+
+		budget = Configuration.getInstance().getPageMemoryBudget();
+	}
+
+	/**
+	 * Returns instance of the <code>PageMemoryBudget</code> singleton class.
+	 * If no instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static synchronized PageMemoryBudget getInstance() {
+
+		if (instance == null) {
+			instance = new PageMemoryBudget();
+		}
+		return instance;
+	}
+
+	/**
+	 * Registers the current content of a page, replacing its previous
+	 * registration. If the budget is exceeded, content of other pages is
+	 * released, starting with the least recently registered.
+	 * 
+	 * @param page the page holding the content
+	 */
+	public void retain(final Page page) {
+
+		long size = page.getContentSize();
+		List<Page> evicted = new ArrayList<Page>();
+
+		synchronized (this) {
+			Long previous = retained.put(page, size);
+			used += size - ((previous == null) ? 0 : previous);
+
+			Iterator<Map.Entry<Page, Long>> iter = retained.entrySet().iterator();
+			while ((used > budget) && (iter.hasNext())) {
+				Map.Entry<Page, Long> entry = iter.next();
+				if (entry.getKey() != page) {
+					used -= entry.getValue();
+					iter.remove();
+					evicted.add(entry.getKey());
+				}
+			}
+		}
+
+		// released outside of the lock, as releasing locks the page
+		for (Page evictedPage : evicted) {
+			evictedPage.releaseContent();
+		}
+	}
+
+	/**
+	 * @return total size of registered content, in bytes
+	 */
+	public synchronized long getUsed() {
+
+		return used;
+	}
+
+	/**
+	 * @return number of pages with registered content
+	 */
+	public synchronized int getRetainedPages() {
+
+		return retained.size();
+	}
+}
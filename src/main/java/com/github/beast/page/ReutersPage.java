@@ -6,9 +6,8 @@ import com.github.beast.parser.ReutersParser;
 
 /**
  * A specialized version of {@link ArticlePage} for processing of <i>Reuters</i>
- * articles. A {@link ReutersParser} is used for processing of article pages and
- * {@link #parse()} method is suited for extraction of features specific to
- * <i>Reuters</i> articles.
+ * articles. A {@link ReutersParser} is used for processing of article pages,
+ * regardless of the host of the page.
  * 
  * @author Štefan Sabo
  * @version 1.0
@@ -27,31 +26,4 @@ public class ReutersPage extends ArticlePage {
 		super(url);
 		this.setParser(ReutersParser.getInstance());
 	}
-
-	/**
-	 * Parse the content of the page using default {@link Parser}. ReutesPage
-	 * uses default Parser of type {@link ReutersParser}.
-	 * 
-	 * @see #parse(Parser)
-	 */
-	public void parse() {
-
-		parse((ReutersParser) getParser());
-	}
-
-	/**
-	 * Parse the content of the page using supplied {@link ReutersParser}.
-	 * 
-	 * @param parser the {@link ReutersParser} used to process the page
-	 * @see #parse(ReutersParser)
-	 */
-	public void parse(final ReutersParser parser) {
-
-		setTitle(parser.parseTitle(this));
-		setLinks(parser.parseLinks(this));
-		setPerex(parser.parsePerex(this));
-		setText(parser.parseText(this));
-		setLocation(parser.parseLocation(this));
-		setTimestamp(parser.parseTimestamp(this));
-	}
-}
\ No newline at end of file
+}
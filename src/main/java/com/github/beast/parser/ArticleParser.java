@@ -0,0 +1,276 @@
+package com.github.beast.parser;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import net.htmlparser.jericho.Element;
+import net.htmlparser.jericho.Source;
+import net.htmlparser.jericho.TextExtractor;
+
+import com.github.beast.page.Link;
+import com.github.beast.page.Page;
+import com.github.beast.util.CompactText;
+
+/**
+ * A {@link Parser} of pages of a news site, extracting all fields of an
+ * article at once through {@link #parseArticle(Page)}. Each news site declares
+ * its fields only once, as {@link Selector selectors} passed to the
+ * constructor, which are compiled when the parser is created:
+ * <ul>
+ * <li>the <i>title</i> of the article,</li>
+ * <li>the <i>article</i> element containing the text of the article,</li>
+ * <li>the <i>perex</i>, <i>location</i> and <i>timestamp</i> elements, looked
+ * up within the article element,</li>
+ * <li>the sections of the page, from which links are extracted.</li>
+ * </ul>
+ * Site specific extraction may be added by overriding the protected methods
+ * extracting single fields. Parsers of news sites are resolved from the host of
+ * a page by the {@link ParserRegistry}.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public abstract class ArticleParser extends Parser {
+
+	/** Home page of the news site. */
+	private final String homepage;
+
+	/** Selector of the title of the article. */
+	private final Selector title;
+
+	/** Selector of the element containing the text of the article. */
+	private final Selector article;
+
+	/** Selector of the perex, within the article element. */
+	private final Selector perex;
+
+	/** Selector of the location label, within the article element. */
+	private final Selector location;
+
+	/** Selector of the timestamp label, within the article element. */
+	private final Selector timestamp;
+
+	/** Format of the timestamp label, as used by {@link SimpleDateFormat}. */
+	private final String timestampFormat;
+
+	/** Selectors of the sections of the page, containing links to articles. */
+	private final List<Selector> linkSections;
+
+	/**
+	 * Creates a parser of a news site, compiling selectors of its fields.
+	 * 
+	 * @param homepage the home page of the news site
+	 * @param title selector of the title of the article
+	 * @param article selector of the element containing the article text
+	 * @param perex selector of the perex, within the article element
+	 * @param location selector of the location label, within the article
+	 *        element
+	 * @param timestamp selector of the timestamp label, within the article
+	 *        element
+	 * @param timestampFormat format of the timestamp label
+	 * @param linkSections selectors of the sections containing links to
+	 *        articles
+	 * @see Selector#compile(String)
+	 */
+	protected ArticleParser(final String homepage, final String title, final String article,
+			final String perex, final String location, final String timestamp, final String timestampFormat,
+			final String... linkSections) {
+
+		this.homepage = homepage;
+		this.title = Selector.compile(title);
+		this.article = Selector.compile(article);
+		this.perex = Selector.compile(perex);
+		this.location = Selector.compile(location);
+		this.timestamp = Selector.compile(timestamp);
+		this.timestampFormat = timestampFormat;
+		this.linkSections = Selector.compileAll(linkSections);
+	}
+
+	/**
+	 * Returns the starting pages of the news site, from which the search
+	 * starts.
+	 * 
+	 * @return list of links to starting pages, or <code>null</code> if the
+	 *         starting pages could not be retrieved
+	 */
+	public abstract List<Link> getStartingPages();
+
+	/**
+	 * @return the home page of the news site
+	 */
+	public String getHomepage() {
+
+		return homepage;
+	}
+
+	/**
+	 * Returns the hosts of pages, which are processed by the parser. By
+	 * default, the host of the home page without the <i>www</i> prefix, which
+	 * covers also all its subdomains.
+	 * 
+	 * @return hosts of pages processed by the parser
+	 * @see ParserRegistry
+	 */
+	public String[] getHosts() {
+
+		String host = homepage.substring(homepage.indexOf("://") + 3);
+
+		if (host.indexOf('/') >= 0) {
+			host = host.substring(0, host.indexOf('/'));
+		}
+		if (host.startsWith("www.")) {
+			host = host.substring(4);
+		}
+		return new String[] {host};
+	}
+
+	/**
+	 * Extracts all fields of an article from a {@link Page}. The HTML code of
+	 * the page is parsed only once and the article element is looked up only
+	 * once, for all of the fields.
+	 * 
+	 * @param page the page containing the processed article
+	 * @return fields of the article in the page
+	 */
+	public ParsedArticle parseArticle(final Page page) {
+
+		Source source = new Source(page.getCode());
+		source.fullSequentialParse();
+		Element articleElement = selectArticle(source);
+		String hostUrl = page.getUrl().getProtocol() + "://" + page.getUrl().getHost();
+
+		if (articleElement == null) {
+			System.err.println("No article text in page body: " + page.getUrl());
+		}
+
+		return new ParsedArticle(parseTitle(source), parseArticleLinks(source, hostUrl),
+				parsePerex(articleElement), parseText(articleElement), parseLocation(articleElement),
+				parseTimestamp(articleElement));
+	}
+
+	/**
+	 * Looks up the element containing the text of the article.
+	 * 
+	 * @param source the parsed HTML code of the page
+	 * @return the article element, or <code>null</code> if not present
+	 */
+	protected Element selectArticle(final Source source) {
+
+		return article.select(source);
+	}
+
+	/**
+	 * Extracts links to articles from the declared link sections of a parsed
+	 * page. Each URL is returned only once.
+	 * 
+	 * @param source the parsed HTML code of the page
+	 * @param hostUrl the URL of the host of the page, needed in order to handle
+	 *        relative links
+	 * @return list of outgoing links to articles in the page
+	 */
+	protected List<Link> parseArticleLinks(final Source source, final String hostUrl) {
+
+		Set<Link> links = new LinkedHashSet<Link>();
+
+		for (Selector section : linkSections) {
+			links.addAll(parseLinks(section.select(source), hostUrl));
+		}
+		return new ArrayList<Link>(links);
+	}
+
+	/**
+	 * Extracts the <i>location</i> label from the article element of a page.
+	 * 
+	 * @param articleElement the article element, may be <code>null</code>
+	 * @return text of the <i>location</i> label, or <code>null</code> if not
+	 *         present
+	 */
+	protected String parseLocation(final Element articleElement) {
+
+		Element locationElement = location.select(articleElement);
+
+		if (locationElement == null) {
+			return null;
+		}
+		return locationElement.getContent().toString();
+	}
+
+	/**
+	 * Extracts the highlighted first paragraph from the article element of a
+	 * page.
+	 * 
+	 * @param articleElement the article element, may be <code>null</code>
+	 * @return text of the highlighted first paragraph, or <code>null</code> if
+	 *         not present
+	 */
+	protected CompactText parsePerex(final Element articleElement) {
+
+		Element focus = perex.select(articleElement);
+
+		if (focus == null) {
+			return null;
+		}
+		return CompactText.of(new TextExtractor(focus).toString());
+	}
+
+	/**
+	 * Extracts the text of an article from the article element of a page.
+	 * 
+	 * @param articleElement the article element, may be <code>null</code>
+	 * @return text of the article, or <code>null</code> if not present
+	 */
+	protected CompactText parseText(final Element articleElement) {
+
+		if (articleElement == null) {
+			return null;
+		}
+		return CompactText.of(new TextExtractor(articleElement).toString());
+	}
+
+	/**
+	 * Extracts the <i>timestamp</i> label from the article element of a page.
+	 * 
+	 * @param articleElement the article element, may be <code>null</code>
+	 * @return date and time of the article, or <code>null</code> if not
+	 *         present
+	 */
+	protected Date parseTimestamp(final Element articleElement) {
+
+		Element timeElement = timestamp.select(articleElement);
+		String timeString;
+
+		if (timeElement == null) {
+			return null;
+		}
+
+		timeString = timeElement.getContent().toString();
+		try {
+			return new SimpleDateFormat(timestampFormat, Locale.ENGLISH).parse(timeString);
+		} catch (ParseException e) {
+			System.err.println("Invalid timestamp format: " + timeString);
+			return null;
+		}
+	}
+
+	/**
+	 * Extracts the title of the article from a parsed page.
+	 * 
+	 * @param source the parsed HTML code of the page
+	 * @return title of the article, or <code>null</code> if not present
+	 */
+	protected String parseTitle(final Source source) {
+
+		Element titleElement = title.select(source);
+
+		if (titleElement == null) {
+			return null;
+		}
+		return titleElement.getContent().toString().trim();
+	}
+}
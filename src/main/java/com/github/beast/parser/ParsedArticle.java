@@ -0,0 +1,93 @@
+package com.github.beast.parser;
+
+import java.util.Date;
+import java.util.List;
+
+import com.github.beast.page.Link;
+import com.github.beast.util.CompactText;
+
+/**
+ * Fields of an article page extracted by a single pass of a parser. Holds
+ * the title, outgoing links, perex, text, location and timestamp of the
+ * article, any of which may be <code>null</code> if not present in the page.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see ArticleParser#parseArticle(com.github.beast.page.Page)
+ */
+public final class ParsedArticle {
+
+	private final String title;
+	private final List<Link> links;
+	private final CompactText perex;
+	private final CompactText text;
+	private final String location;
+	private final Date timestamp;
+
+	/**
+	 * @param title the title of the article
+	 * @param links outgoing links of the page
+	 * @param perex the highlighted first paragraph of the article
+	 * @param text the text of the article
+	 * @param location the location label of the article
+	 * @param timestamp last modification date and time of the article
+	 */
+	public ParsedArticle(final String title, final List<Link> links, final CompactText perex,
+			final CompactText text, final String location, final Date timestamp) {
+
+		this.title = title;
+		this.links = links;
+		this.perex = perex;
+		this.text = text;
+		this.location = location;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return the title of the article
+	 */
+	public String getTitle() {
+
+		return title;
+	}
+
+	/**
+	 * @return outgoing links of the page
+	 */
+	public List<Link> getLinks() {
+
+		return links;
+	}
+
+	/**
+	 * @return the highlighted first paragraph of the article
+	 */
+	public CompactText getPerex() {
+
+		return perex;
+	}
+
+	/**
+	 * @return the text of the article
+	 */
+	public CompactText getText() {
+
+		return text;
+	}
+
+	/**
+	 * @return the location label of the article
+	 */
+	public String getLocation() {
+
+		return location;
+	}
+
+	/**
+	 * @return last modification date and time of the article
+	 */
+	public Date getTimestamp() {
+
+		return timestamp;
+	}
+}
@@ -2,8 +2,10 @@ package com.github.beast.parser;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.Segment;
@@ -11,6 +13,7 @@ import net.htmlparser.jericho.Source;
 
 import com.github.beast.page.Link;
 import com.github.beast.page.Page;
+import com.github.beast.util.UrlCanonicalizer;
 import com.github.beast.util.Utility;
 
 /**
@@ -51,6 +54,19 @@ public class Parser {
 		return instance;
 	}
 
+	/**
+	 * Returns the extractor of sections of pages needed by the parser. If an
+	 * extractor is returned, only the sections it captures are downloaded and
+	 * kept as the code of a page. The default parser needs whole pages.
+	 * 
+	 * @return the extractor of needed sections, or <code>null</code> if whole
+	 *         pages are needed
+	 */
+	public StreamingExtractor getExtractor() {
+
+		return null;
+	}
+
 	/**
 	 * Extracts all HTML {@link Link links} from a given {@link Page}. All
 	 * relative links are changed to absolute and protocol is prefixed in order
@@ -84,7 +100,9 @@ public class Parser {
 	/**
 	 * Extracts all HTML {@link Link links} from a given {@link Segment} of a
 	 * page. All relative links are changed to absolute and protocol is prefixed
-	 * in order to obtain valid absolute URLs.
+	 * in order to obtain valid absolute URLs. URLs are
+	 * {@link UrlCanonicalizer canonicalized} and each URL is returned only
+	 * once, with the anchor text of its first link.
 	 * 
 	 * @param segment the segment of a HTML document to be processed
 	 * @param hostUrl the URL of containing document, needed in order to handle
@@ -93,14 +111,14 @@ public class Parser {
 	 */
 	protected List<Link> parseLinks(final Segment segment, final String hostUrl) {
 
-		List<Link> links = new LinkedList<Link>();
+		Set<Link> links = new LinkedHashSet<Link>();
 		String anchorText;
 		String urlText;
 		URL url = null;
 		List<Element> elements;
 
 		if (segment == null) {
-			return links;
+			return new ArrayList<Link>();
 		} else {
 			elements = segment.getAllElements("a ");
 		}
@@ -117,14 +135,13 @@ public class Parser {
 				}
 
 				try {
-					url = Utility.stringToURL(urlText);
-					Link newLink = new Link(anchorText, url);
-					links.add(newLink);
+					url = UrlCanonicalizer.canonicalize(Utility.stringToURL(urlText));
+					links.add(new Link(anchorText, url));
 				} catch (MalformedURLException e) {
 					System.err.println("Malformed URL: " + urlText);
 				}
 			}
 		}
-		return links;
+		return new ArrayList<Link>(links);
 	}
 }
\ No newline at end of file
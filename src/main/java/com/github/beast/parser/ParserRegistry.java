@@ -0,0 +1,149 @@
+package com.github.beast.parser;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Singleton class resolving the {@link Parser} of a page from the host of its
+ * URL, so that pages of multiple news sites may be crawled at once. Each
+ * {@link ArticleParser} is registered for its hosts, including their
+ * subdomains, pages of unknown hosts are processed by the general
+ * {@link Parser}.
+ * <p>
+ * Hosts are kept in a trie of their domain labels, in reverse order (e.g.
+ * <i>com</i>, <i>reuters</i>, <i>www</i>), compiled when the registry is
+ * created. A parser is resolved by walking the labels of the host from the
+ * top level domain, taking the parser of the most specific matching host,
+ * without regard to the number of registered parsers.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class ParserRegistry {
+
+	/**
+	 * A node of the trie of hosts, representing a single domain label.
+	 */
+	private static final class HostNode {
+
+		private final Map<String, HostNode> children = new HashMap<String, HostNode>();
+		private ArticleParser parser;
+	}
+
+	/** Instance of a singleton class. */
+	private static ParserRegistry instance;
+
+	/** Root of the trie of hosts. */
+	private final HostNode root = new HostNode();
+
+	/** All registered parsers, in order of registration. */
+	private final List<ArticleParser> parsers = new ArrayList<ArticleParser>();
+
+	/**
+	 * Constructor of the <code>ParserRegistry</code> class, registering
+	 * parsers of all supported news sites. Is private because
+	 * <code>ParserRegistry</code> is a singleton class.
+	 */
+	private ParserRegistry() {
+
+		register(ReutersParser.getInstance());
+	}
+
+	/**
+	 * Returns instance of the <code>ParserRegistry</code> singleton class. If
+	 * no instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static ParserRegistry getInstance() {
+
+		if (instance == null) {
+			instance = new ParserRegistry();
+		}
+		return instance;
+	}
+
+	/**
+	 * Resolves the parser of a page.
+	 * 
+	 * @param url the url of the page
+	 * @return the parser of the news site of the page, or the general
+	 *         {@link Parser} if the host of the page is not registered
+	 */
+	public Parser getParser(final URL url) {
+
+		ArticleParser parser = getArticleParser(url.getHost());
+
+		if (parser == null) {
+			return Parser.getInstance();
+		}
+		return parser;
+	}
+
+	/**
+	 * Resolves the parser of articles of a host. Labels of the host are
+	 * compared case insensitively.
+	 * 
+	 * @param host the host name
+	 * @return parser registered for the most specific matching host, or
+	 *         <code>null</code> if no registered host matches
+	 */
+	public ArticleParser getArticleParser(final String host) {
+
+		String name = host.toLowerCase();
+		HostNode node = root;
+		ArticleParser parser = null;
+		int end = name.length();
+		int start;
+
+		while ((node != null) && (end > 0)) {
+			start = name.lastIndexOf('.', end - 1);
+			node = node.children.get(name.substring(start + 1, end));
+			if ((node != null) && (node.parser != null)) {
+				parser = node.parser;
+			}
+			end = start;
+		}
+		return parser;
+	}
+
+	/**
+	 * @return all registered parsers of news sites
+	 */
+	public List<ArticleParser> getParsers() {
+
+		return Collections.unmodifiableList(parsers);
+	}
+
+	/**
+	 * Registers a parser for all of its hosts, adding their labels to the
+	 * trie.
+	 * 
+	 * @param parser the registered parser
+	 */
+	private void register(final ArticleParser parser) {
+
+		HostNode node;
+		HostNode child;
+		String[] labels;
+
+		for (String host : parser.getHosts()) {
+			labels = host.toLowerCase().split("\\.");
+			node = root;
+			for (int i = labels.length - 1; i >= 0; i--) {
+				child = node.children.get(labels[i]);
+				if (child == null) {
+					child = new HostNode();
+					node.children.put(labels[i], child);
+				}
+				node = child;
+			}
+			node.parser = parser;
+		}
+		parsers.add(parser);
+	}
+}
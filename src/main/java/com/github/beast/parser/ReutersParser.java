@@ -1,28 +1,25 @@
 package com.github.beast.parser;
 
 import java.net.MalformedURLException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
 
 import com.github.beast.page.Link;
 import com.github.beast.page.Page;
 import com.github.beast.page.ReutersPage;
+import com.github.beast.util.CompactText;
+import com.github.beast.util.Configuration;
 import com.github.beast.util.Utility;
 
 import net.htmlparser.jericho.Element;
 import net.htmlparser.jericho.Segment;
 import net.htmlparser.jericho.Source;
-import net.htmlparser.jericho.TextExtractor;
 
 /**
- * Singleton class representing a {@link Parser} for Reuters web pages. In
- * addition to standard <code>Parser</code> class, ability to extract timestamp,
- * location and perex of a page are added, through new methods
+ * Singleton class representing an {@link ArticleParser} for Reuters web pages.
+ * In addition to standard <code>Parser</code> class, ability to extract
+ * timestamp, location and perex of a page are added, through new methods
  * <ul>
  * <li>{@link #parseTimestamp(ReutersPage)}</li>
  * <li>{@link #parseLocation(ReutersPage)}</li>
@@ -34,14 +31,58 @@ import net.htmlparser.jericho.TextExtractor;
  * parseLinks(ReutersPage)} is changed, so that links are extracted only from
  * specific parts of a page, in order to avoid following links not leading to
  * articles.
+ * <p>
+ * All fields of an article may be extracted at once through {@link
+ * #parseArticle(Page)}, which parses the HTML code of the page only once,
+ * while the methods extracting single fields parse the code on every call.
  * 
  * @author Štefan Sabo
  * @version 1.0
  */
-public final class ReutersParser extends Parser {
+public final class ReutersParser extends ArticleParser {
 
 	private static final String HOMEPAGE = "http://www.reuters.com";
 
+	/** Format of timestamps of Reuters articles. */
+	private static final String TIMESTAMP_FORMAT = "EEE MMM dd, yyyy hh:mmaa zzz";
+
+	/** Selector of the title of the page. */
+	private static final String TITLE = "title";
+
+	/** Selector of the element containing the text of the article. */
+	private static final String ARTICLE = "#articleText";
+
+	/** Selector of the related news of article pages. */
+	private static final String RELATED_NEWS = "#relatedNews";
+
+	/** Selector of the most popular news of article pages. */
+	private static final String MOST_POPULAR = "#most-popular";
+
+	/** Selector of the box of related facts, used if no links are found. */
+	private static final Selector RELATED_FACTS = Selector.compile("#relatedFactboxes");
+
+	/** Selector of the top story of the home page. */
+	private static final Selector TOP_STORY = Selector.compile("#topStory");
+
+	/** Selector of the breaking news of the home page, replacing other stories. */
+	private static final Selector BIG_STORY = Selector.compile("#topStoryNuclear");
+
+	/** Selector of the latest headlines of the home page. */
+	private static final Selector HEADLINES = Selector.compile("#latestHeadlines");
+
+	/**
+	 * Sections of article pages, after which download stops. Related facts are
+	 * extracted only if present before the end of these sections.
+	 */
+	private static final String[] REQUIRED_SECTIONS = {TITLE, ARTICLE, RELATED_NEWS, MOST_POPULAR};
+
+	/** Sections of Reuters pages, from which fields and links are extracted. */
+	private static final String[] SECTIONS = sections(REQUIRED_SECTIONS, RELATED_FACTS, TOP_STORY, BIG_STORY,
+			HEADLINES);
+
+	/** Extractor of the sections of Reuters pages. */
+	private static final StreamingExtractor EXTRACTOR = new StreamingExtractor(SECTIONS, REQUIRED_SECTIONS);
+
 	/** Instance of a singleton class. */
 	private static ReutersParser instance;
 
@@ -51,6 +92,27 @@ public final class ReutersParser extends Parser {
 	 */
 	private ReutersParser() {
 
+		super(HOMEPAGE, TITLE, ARTICLE, ".focusParagraph", ".location", ".timestamp", TIMESTAMP_FORMAT,
+				RELATED_NEWS, MOST_POPULAR);
+	}
+
+	/**
+	 * Lists the sections captured by the extractor, so that the sections are
+	 * given by the same definitions as the selectors used for parsing.
+	 * 
+	 * @param required selectors of the required sections
+	 * @param optional other selectors of sections, captured if present
+	 * @return expressions of all captured sections
+	 */
+	private static String[] sections(final String[] required, final Selector... optional) {
+
+		String[] sections = new String[required.length + optional.length];
+
+		System.arraycopy(required, 0, sections, 0, required.length);
+		for (int i = 0; i < optional.length; i++) {
+			sections[required.length + i] = optional[i].toString();
+		}
+		return sections;
 	}
 
 	/**
@@ -88,6 +150,21 @@ public final class ReutersParser extends Parser {
 		}
 	}
 
+	/**
+	 * Returns the extractor of sections of Reuters pages, unless streaming
+	 * extraction is disabled in {@link Configuration}.
+	 * 
+	 * @return the extractor of needed sections, or <code>null</code> if whole
+	 *         pages are needed
+	 */
+	public StreamingExtractor getExtractor() {
+
+		if (Configuration.getInstance().useStreamingExtraction()) {
+			return EXTRACTOR;
+		}
+		return null;
+	}
+
 	/**
 	 * Extracts HTML {@link Link links} pointing to articles from a given
 	 * {@link ReutersPage}. All relative links are changed to absolute and
@@ -104,20 +181,7 @@ public final class ReutersParser extends Parser {
 	public List<Link> parseLinks(final ReutersPage page) {
 
 		Source source = new Source(page.getCode());
-		List<Link> linksRelated = parseLinks(source.getElementById("relatedNews"), HOMEPAGE);
-		List<Link> linksDiscussed = parseLinks(source.getElementById("most-popular"), HOMEPAGE);
-
-		// if no related pages are found, try extracting related facts
-		if ((linksRelated.size() == 0) && (linksDiscussed.size() == 0)) {
-			return parseLinks(source.getElementById("relatedFactboxes"), "http://www.reuters.com");
-		}
-
-		for (Link link : linksDiscussed) {
-			if (!(linksRelated.contains(link))) {
-				linksRelated.add(link);
-			}
-		}
-		return linksRelated;
+		return parseArticleLinks(source, HOMEPAGE);
 	}
 
 	/**
@@ -131,18 +195,7 @@ public final class ReutersParser extends Parser {
 	 */
 	public String parseLocation(final ReutersPage page) {
 
-		Source source = new Source(page.getCode());
-		Element articleElement = source.getElementById("articleText");
-		Element locationElement;
-		String location;
-
-		try {
-			locationElement = articleElement.getFirstElement("class", "location", true);
-			location = new String(locationElement.getContent().toString());
-		} catch (NullPointerException e) {
-			return null;
-		}
-		return location;
+		return parseLocation(selectArticle(new Source(page.getCode())));
 	}
 
 	/**
@@ -154,23 +207,9 @@ public final class ReutersParser extends Parser {
 	 * @return text of the highlighted first article, or <code>null</code> if no
 	 *         highlighted first article is present
 	 */
-	public StringBuffer parsePerex(final ReutersPage page) {
+	public CompactText parsePerex(final ReutersPage page) {
 
-		Source source = new Source(page.getCode());
-		Element articleElement;
-		Element focus;
-		TextExtractor focusExtractor;
-		StringBuffer perex;
-
-		try {
-			articleElement = source.getElementById("articleText");
-			focus = articleElement.getFirstElement("class", "focusParagraph", true);
-			focusExtractor = new TextExtractor(focus);
-			perex = new StringBuffer(focusExtractor.toString());
-		} catch (NullPointerException e) {
-			return null;
-		}
-		return perex;
+		return parsePerex(selectArticle(new Source(page.getCode())));
 	}
 
 	/**
@@ -183,20 +222,12 @@ public final class ReutersParser extends Parser {
 	 * @return text of the article in the page, or <code>null</code> if no
 	 *         article is present
 	 */
-	public StringBuffer parseText(final ReutersPage page) {
+	public CompactText parseText(final ReutersPage page) {
 
-		Source source = new Source(page.getCode());
-		Element articleElement;
-		TextExtractor extractor;
-		StringBuffer pageText;
+		CompactText pageText = parseText(selectArticle(new Source(page.getCode())));
 
-		try {
-			articleElement = source.getElementById("articleText");
-			extractor = new TextExtractor(articleElement);
-			pageText = new StringBuffer(extractor.toString());
-		} catch (NullPointerException e) {
+		if (pageText == null) {
 			System.err.println("No article text in page body: " + page.getUrl());
-			return null;
 		}
 		return pageText;
 	}
@@ -212,23 +243,7 @@ public final class ReutersParser extends Parser {
 	 */
 	public Date parseTimestamp(final ReutersPage page) {
 
-		Source source = new Source(page.getCode());
-		Element articleElement = source.getElementById("articleText");
-		Element timeElement;
-		String timeString = null;
-		Date timestamp;
-
-		try {
-			timeElement = articleElement.getFirstElement("class", "timestamp", true);
-			timeString = timeElement.getContent().toString();
-			timestamp = new SimpleDateFormat("EEE MMM dd, yyyy hh:mmaa zzz", Locale.ENGLISH).parse(timeString);
-		} catch (NullPointerException e) {
-			return null;
-		} catch (ParseException e) {
-			System.err.println("Invalid timestamp format: " + timeString);
-			return null;
-		}
-		return timestamp;
+		return parseTimestamp(selectArticle(new Source(page.getCode())));
 	}
 
 	/**
@@ -240,9 +255,44 @@ public final class ReutersParser extends Parser {
 	 */
 	public String parseTitle(final Page page) {
 
-		Source source = new Source(page.getCode());
-		Element titleElement = source.getFirstElement("title");
-		String title = titleElement.getContent().toString();
+		return parseTitle(new Source(page.getCode()));
+	}
+
+	/**
+	 * Extracts links to articles from a parsed page. Links are extracted from
+	 * <i>related news</i> and <i>most popular</i> sections, or from <i>related
+	 * facts</i> box if none are found.
+	 * 
+	 * @param source the parsed HTML code of the page
+	 * @param hostUrl the URL of the host of the page, needed in order to handle
+	 *        relative links
+	 * @return list of outgoing links to articles in the page
+	 * @see #parseLinks(ReutersPage)
+	 */
+	protected List<Link> parseArticleLinks(final Source source, final String hostUrl) {
+
+		List<Link> links = super.parseArticleLinks(source, hostUrl);
+
+		// if no related pages are found, try extracting related facts
+		if (links.size() == 0) {
+			return parseLinks(RELATED_FACTS.select(source), hostUrl);
+		}
+		return links;
+	}
+
+	/**
+	 * Extracts the title from a parsed page, discarding the part after "|".
+	 * 
+	 * @param source the parsed HTML code of the page
+	 * @return title of the page
+	 */
+	protected String parseTitle(final Source source) {
+
+		String title = super.parseTitle(source);
+
+		if (title == null) {
+			return null;
+		}
 
 		int pos = title.lastIndexOf('|');
 		if (pos > 0) {
@@ -269,17 +319,13 @@ public final class ReutersParser extends Parser {
 	 */
 	protected List<Link> parseLinks(final Segment segment, final String hostUrl) {
 
-		Link link;
-		List<Link> links = new LinkedList<Link>();
-		links = super.parseLinks(segment, hostUrl);
+		List<Link> links = new ArrayList<Link>();
 		String urlText;
-		Iterator<Link> iter = links.iterator();
 
-		while (iter.hasNext()) {
-			link = iter.next();
-			urlText = link.getUrl().toString();
-			if (!(urlText.contains("article/")) && !(urlText.contains("places"))) {
-				iter.remove();
+		for (Link link : super.parseLinks(segment, hostUrl)) {
+			urlText = link.getUrl().toExternalForm();
+			if (urlText.contains("article/") || urlText.contains("places")) {
+				links.add(link);
 			}
 		}
 		return links;
@@ -296,9 +342,9 @@ public final class ReutersParser extends Parser {
 	private List<Link> getLatestHeadlines(final Page page) {
 
 		Source source = new Source(page.getCode());
-		Element topStoryElement = source.getElementById("topStory");
-		Element bigStoryElement = source.getElementById("topStoryNuclear");
-		Element headlineElement = source.getElementById("latestHeadlines");
+		Element topStoryElement = TOP_STORY.select(source);
+		Element bigStoryElement = BIG_STORY.select(source);
+		Element headlineElement = HEADLINES.select(source);
 		String hostUrl = page.getUrl().getHost();
 
 		List<Link> links;
@@ -0,0 +1,155 @@
+package com.github.beast.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.htmlparser.jericho.Element;
+import net.htmlparser.jericho.Segment;
+import net.htmlparser.jericho.Source;
+
+/**
+ * A compiled selector of elements of a HTML document. A selector consists of
+ * steps separated by whitespace, each step selecting the first descendant of
+ * the element selected by the previous step, identified either
+ * <ul>
+ * <li>by its id, as in <code>#articleText</code>,</li>
+ * <li>by its class, as in <code>.focusParagraph</code>,</li>
+ * <li>by its tag name, as in <code>title</code>.</li>
+ * </ul>
+ * The expression is compiled into a program of steps only once, so that
+ * parsers may declare their selectors as constants, without interpreting the
+ * expression on every page.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class Selector {
+
+	/** Step selecting an element by its tag name. */
+	private static final byte TAG = 0;
+
+	/** Step selecting an element by its id. */
+	private static final byte ID = 1;
+
+	/** Step selecting an element by its class. */
+	private static final byte CLASS = 2;
+
+	/** The expression the selector was compiled from. */
+	private final String expression;
+
+	/** Kinds of the steps of the program. */
+	private final byte[] kinds;
+
+	/** Names selected by the steps of the program. */
+	private final String[] names;
+
+	/**
+	 * Creates a selector from its compiled program.
+	 * 
+	 * @param expression the expression of the selector
+	 * @param kinds kinds of the steps
+	 * @param names names selected by the steps
+	 */
+	private Selector(final String expression, final byte[] kinds, final String[] names) {
+
+		this.expression = expression;
+		this.kinds = kinds;
+		this.names = names;
+	}
+
+	/**
+	 * Compiles a selector expression.
+	 * 
+	 * @param expression whitespace separated steps of the selector
+	 * @return the compiled selector
+	 * @throws IllegalArgumentException if the expression contains no steps or
+	 *         an empty id or class
+	 */
+	public static Selector compile(final String expression) throws IllegalArgumentException {
+
+		String[] steps = expression.trim().split("\\s+");
+		byte[] kinds = new byte[steps.length];
+		String[] names = new String[steps.length];
+
+		if (steps[0].isEmpty()) {
+			throw new IllegalArgumentException("Empty selector");
+		}
+
+		for (int i = 0; i < steps.length; i++) {
+			switch (steps[i].charAt(0)) {
+				case '#':
+					kinds[i] = ID;
+					names[i] = steps[i].substring(1);
+					break;
+				case '.':
+					kinds[i] = CLASS;
+					names[i] = steps[i].substring(1);
+					break;
+				default:
+					kinds[i] = TAG;
+					names[i] = steps[i].toLowerCase();
+			}
+			if (names[i].isEmpty()) {
+				throw new IllegalArgumentException("Empty step in selector: " + expression);
+			}
+		}
+		return new Selector(expression, kinds, names);
+	}
+
+	/**
+	 * Compiles a list of selector expressions.
+	 * 
+	 * @param expressions the expressions of selectors
+	 * @return list of compiled selectors, in order of the expressions
+	 * @see #compile(String)
+	 */
+	public static List<Selector> compileAll(final String... expressions) {
+
+		List<Selector> selectors = new ArrayList<Selector>(expressions.length);
+
+		for (String expression : expressions) {
+			selectors.add(compile(expression));
+		}
+		return selectors;
+	}
+
+	/**
+	 * Selects the first element matching the selector within a segment of a
+	 * document.
+	 * 
+	 * @param segment the searched segment, may be <code>null</code>
+	 * @return the selected element, or <code>null</code> if none matches
+	 */
+	public Element select(final Segment segment) {
+
+		Segment current = segment;
+		Element element = null;
+
+		for (int i = 0; (i < kinds.length) && (current != null); i++) {
+			switch (kinds[i]) {
+				case ID:
+					if (current instanceof Source) {
+						element = ((Source) current).getElementById(names[i]);
+					} else {
+						element = current.getFirstElement("id", names[i], true);
+					}
+					break;
+				case CLASS:
+					element = current.getFirstElementByClass(names[i]);
+					break;
+				default:
+					element = current.getFirstElement(names[i]);
+			}
+			current = element;
+		}
+		return element;
+	}
+
+	/**
+	 * @return the expression the selector was compiled from
+	 */
+	public String toString() {
+
+		return expression;
+	}
+}
@@ -0,0 +1,448 @@
+package com.github.beast.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A streaming extractor of sections of HTML documents. The document is scanned
+ * once, as a stream of characters, and only the elements matching configured
+ * selectors are captured, including their nested content. Nesting of elements
+ * with the same tag as the captured one is tracked, so that a captured
+ * section ends with its own end tag. No tree of the document is built.
+ * <p>
+ * Selectors are given in a simplified CSS form, as <i>#id</i>, <i>.class</i>
+ * or a tag name (e.g. "<i>title</i>"). If some selectors are marked as
+ * required, scanning stops as soon as all of the required sections are
+ * closed, without reading the rest of the stream. Otherwise the whole stream
+ * is scanned.
+ * <p>
+ * Captured sections are returned concatenated in document order, so that
+ * the result may be parsed by a {@link Parser} instead of the whole document.
+ * Comments, doctype declarations and text outside captured sections are
+ * discarded. Instances are immutable and may be shared by multiple threads.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public class StreamingExtractor {
+
+	/** Number of characters read from the stream at once. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Elements, which never have an end tag. */
+	private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList("area", "base", "br",
+			"col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "wbr"));
+
+	/** Elements, whose content is not parsed as markup. */
+	private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<String>(Arrays.asList("script", "style"));
+
+	private final Set<String> ids = new HashSet<String>();
+	private final Set<String> classes = new HashSet<String>();
+	private final Set<String> tags = new HashSet<String>();
+	private final Set<String> required = new HashSet<String>();
+
+	/**
+	 * Creates an extractor of sections matching the given selectors.
+	 * 
+	 * @param selectors selectors of the captured sections, in the form of
+	 *        <i>#id</i>, <i>.class</i> or a tag name
+	 * @param requiredSelectors selectors of sections, after which scanning may
+	 *        stop, each of them needs to be present in <i>selectors</i>
+	 */
+	public StreamingExtractor(final String[] selectors, final String[] requiredSelectors) {
+
+		for (String selector : selectors) {
+			if (selector.startsWith("#")) {
+				ids.add(selector.substring(1));
+			} else if (selector.startsWith(".")) {
+				classes.add(selector.substring(1));
+			} else {
+				tags.add(selector.toLowerCase(Locale.ENGLISH));
+			}
+		}
+		for (String selector : requiredSelectors) {
+			required.add(normalize(selector));
+		}
+	}
+
+	/**
+	 * Extracts the configured sections from a stream of a HTML document. The
+	 * stream is not closed, however it may not be read to its end, if all of
+	 * the required sections have been captured.
+	 * 
+	 * @param reader the stream of the HTML document
+	 * @return captured sections of the document, in document order
+	 * @throws IOException if reading of the stream fails
+	 */
+	public CharSequence extract(final Reader reader) throws IOException {
+
+		return new Scan(reader).run();
+	}
+
+	/**
+	 * Returns a selector matching the start tag of an element, if any.
+	 * 
+	 * @param name lowercase name of the element
+	 * @param tag the full start tag
+	 * @return the matching selector, or <code>null</code> if the element is
+	 *         not captured
+	 */
+	private String match(final String name, final String tag) {
+
+		String value;
+
+		if (tags.contains(name)) {
+			return name;
+		}
+		if (!ids.isEmpty()) {
+			value = attribute(tag, "id");
+			if ((value != null) && (ids.contains(value))) {
+				return "#" + value;
+			}
+		}
+		if (!classes.isEmpty()) {
+			value = attribute(tag, "class");
+			if (value != null) {
+				for (String token : value.trim().split("\\s+")) {
+					if (classes.contains(token)) {
+						return "." + token;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param selector a selector
+	 * @return the selector in the form returned by {@link #match(String,
+	 *         String)}
+	 */
+	private static String normalize(final String selector) {
+
+		if ((selector.startsWith("#")) || (selector.startsWith("."))) {
+			return selector;
+		}
+		return selector.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the lowercase name of the element of a tag.
+	 * 
+	 * @param tag a start or end tag
+	 * @return name of the element, or an empty string if the tag has no name
+	 */
+	private static String tagName(final String tag) {
+
+		int begin = (tag.startsWith("</")) ? 2 : 1;
+		int end = begin;
+
+		while ((end < tag.length()) && (Character.isLetterOrDigit(tag.charAt(end)))) {
+			end++;
+		}
+		return tag.substring(begin, end).toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Returns the value of an attribute of a start tag.
+	 * 
+	 * @param tag the start tag
+	 * @param attribute name of the attribute
+	 * @return value of the attribute, or <code>null</code> if not present
+	 */
+	private static String attribute(final String tag, final String attribute) {
+
+		int length = tag.length();
+		int pos = 1;
+		int nameStart;
+		String name;
+		String value;
+
+		// skip the tag name
+		while ((pos < length) && (!Character.isWhitespace(tag.charAt(pos))) && (tag.charAt(pos) != '>')) {
+			pos++;
+		}
+
+		while (pos < length) {
+			while ((pos < length) && ((Character.isWhitespace(tag.charAt(pos))) || (tag.charAt(pos) == '/'))) {
+				pos++;
+			}
+			nameStart = pos;
+			while ((pos < length) && (!Character.isWhitespace(tag.charAt(pos))) && ("=/>".indexOf(tag.charAt(pos)) < 0)) {
+				pos++;
+			}
+			if (pos == nameStart) {
+				return null;
+			}
+			name = tag.substring(nameStart, pos);
+			value = "";
+
+			while ((pos < length) && (Character.isWhitespace(tag.charAt(pos)))) {
+				pos++;
+			}
+			if ((pos < length) && (tag.charAt(pos) == '=')) {
+				pos++;
+				while ((pos < length) && (Character.isWhitespace(tag.charAt(pos)))) {
+					pos++;
+				}
+				if ((pos < length) && ((tag.charAt(pos) == '"') || (tag.charAt(pos) == '\''))) {
+					int end = tag.indexOf(tag.charAt(pos), pos + 1);
+					end = (end < 0) ? length : end;
+					value = tag.substring(pos + 1, end);
+					pos = end + 1;
+				} else {
+					int valueStart = pos;
+					while ((pos < length) && (!Character.isWhitespace(tag.charAt(pos))) && (tag.charAt(pos) != '>')) {
+						pos++;
+					}
+					value = tag.substring(valueStart, pos);
+				}
+			}
+			if (name.equalsIgnoreCase(attribute)) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * State of a single scan of a document.
+	 */
+	private final class Scan {
+
+		private final Reader reader;
+		private final char[] buffer = new char[BUFFER_SIZE];
+		private int pos;
+		private int limit;
+
+		private final StringBuilder captured = new StringBuilder();
+		private final Set<String> pending = new HashSet<String>(required);
+
+		/** Name of the element of the captured section, if any. */
+		private String captureTag;
+
+		/** Selector matched by the captured section. */
+		private String captureSelector;
+
+		/** Nesting depth of elements named {@link #captureTag}. */
+		private int depth;
+
+		/**
+		 * @param reader the stream of the scanned document
+		 */
+		private Scan(final Reader reader) {
+
+			this.reader = reader;
+		}
+
+		/**
+		 * Scans the document until its end, or until all required sections
+		 * have been captured.
+		 * 
+		 * @return captured sections of the document
+		 * @throws IOException if reading of the stream fails
+		 */
+		private CharSequence run() throws IOException {
+
+			int c;
+			String tag;
+
+			while ((c = read()) != -1) {
+				if (c != '<') {
+					if (captureTag != null) {
+						captured.append((char) c);
+					}
+					continue;
+				}
+
+				tag = readTag();
+				if ((tag != null) && (handleTag(tag))) {
+					break;
+				}
+			}
+			return captured;
+		}
+
+		/**
+		 * Processes a tag read from the document, starting or finishing a
+		 * captured section.
+		 * 
+		 * @param tag the full tag
+		 * @return <i>true</i> if all required sections have been captured
+		 * @throws IOException if reading of the stream fails
+		 */
+		private boolean handleTag(final String tag) throws IOException {
+
+			String name = tagName(tag);
+			boolean end = tag.startsWith("</");
+			boolean empty = (tag.endsWith("/>")) || (VOID_ELEMENTS.contains(name));
+			String selector;
+
+			if (name.length() == 0) {
+				if (captureTag != null) {
+					captured.append(tag);
+				}
+				return false;
+			}
+
+			if (captureTag == null) {
+				if ((end) || (empty)) {
+					return false;
+				}
+				selector = match(name, tag);
+				if (selector != null) {
+					captureTag = name;
+					captureSelector = selector;
+					depth = 1;
+					captured.append(tag);
+				} else if (RAW_TEXT_ELEMENTS.contains(name)) {
+					skipRawText(name, false);
+				}
+				return false;
+			}
+
+			captured.append(tag);
+			if (name.equals(captureTag)) {
+				if (end) {
+					depth--;
+				} else if (!empty) {
+					depth++;
+				}
+			}
+
+			if (depth == 0) {
+				captured.append('\n');
+				pending.remove(captureSelector);
+				captureTag = null;
+				captureSelector = null;
+				return (!required.isEmpty()) && (pending.isEmpty());
+			}
+
+			if ((!end) && (!empty) && (RAW_TEXT_ELEMENTS.contains(name))) {
+				return handleTag(skipRawText(name, true));
+			}
+			return false;
+		}
+
+		/**
+		 * Reads the rest of a tag, after its opening "<". Comments and
+		 * declarations are consumed and <code>null</code> is returned.
+		 * 
+		 * @return the full tag, or <code>null</code> if no tag was read
+		 * @throws IOException if reading of the stream fails
+		 */
+		private String readTag() throws IOException {
+
+			StringBuilder tag = new StringBuilder("<");
+			int c;
+			char quote = 0;
+
+			while ((c = read()) != -1) {
+				tag.append((char) c);
+				if ((tag.length() == 4) && ("<!--".contentEquals(tag))) {
+					skipComment();
+					return null;
+				}
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if ((c == '"') || (c == '\'')) {
+					// quotes are significant only within attributes
+					if (tag.indexOf("=") > 0) {
+						quote = (char) c;
+					}
+				} else if (c == '>') {
+					break;
+				}
+			}
+
+			if ((tag.length() > 1) && ((tag.charAt(1) == '!') || (tag.charAt(1) == '?'))) {
+				return null;
+			}
+			return tag.toString();
+		}
+
+		/**
+		 * Consumes a comment, up to and including "-->".
+		 * 
+		 * @throws IOException if reading of the stream fails
+		 */
+		private void skipComment() throws IOException {
+
+			int dashes = 0;
+			int c;
+
+			while ((c = read()) != -1) {
+				if ((c == '>') && (dashes >= 2)) {
+					return;
+				}
+				dashes = (c == '-') ? dashes + 1 : 0;
+			}
+		}
+
+		/**
+		 * Consumes the content of a raw text element, such as a script, up to
+		 * its end tag.
+		 * 
+		 * @param name name of the raw text element
+		 * @param keep <i>true</i> to capture the content
+		 * @return the end tag of the element
+		 * @throws IOException if reading of the stream fails
+		 */
+		private String skipRawText(final String name, final boolean keep) throws IOException {
+
+			String endTag = "</" + name;
+			StringBuilder tag;
+			int matched = 0;
+			int c;
+
+			while ((c = read()) != -1) {
+				if (keep) {
+					captured.append((char) c);
+				}
+				if (Character.toLowerCase((char) c) == endTag.charAt(matched)) {
+					matched++;
+				} else {
+					matched = (c == '<') ? 1 : 0;
+				}
+				if (matched == endTag.length()) {
+					break;
+				}
+			}
+			if (keep) {
+				captured.setLength(Math.max(0, captured.length() - matched));
+			}
+
+			tag = new StringBuilder(endTag);
+			while ((c = read()) != -1) {
+				tag.append((char) c);
+				if (c == '>') {
+					break;
+				}
+			}
+			return tag.toString();
+		}
+
+		/**
+		 * @return next character of the stream, or <i>-1</i> at its end
+		 * @throws IOException if reading of the stream fails
+		 */
+		private int read() throws IOException {
+
+			if (pos == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			return buffer[pos++];
+		}
+	}
+}
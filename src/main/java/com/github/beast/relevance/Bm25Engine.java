@@ -0,0 +1,237 @@
+package com.github.beast.relevance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.beast.semantics.SynonymMatcher;
+import com.github.beast.util.TermIndex;
+
+/**
+ * Relevance measure based on Okapi BM25. The frequency of the keyword and its
+ * synonyms in the text of an article is saturated and normalized by the
+ * length of the article relative to the average length of indexed articles,
+ * then weighted by the inverse document frequency of the keyword. Occurrences
+ * in the title and perex count as several occurrences in the text.
+ * <p>
+ * Statistics of the collection, i.e. the number of articles, their average
+ * length and the document frequencies of terms, are updated incrementally as
+ * articles are indexed, reindexed or evicted. Terms and length of each article
+ * are kept by its url, so that a new version of an article replaces the
+ * contribution of the previous one. The score is divided by its upper bound for the
+ * current collection, so that it lies between <i>0</i> and <i>1</i>, as the
+ * quality of a bee's source does.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see <a href="http://dx.doi.org/10.1561/1500000019">The Probabilistic
+ *      Relevance Framework: BM25 and Beyond</a>
+ */
+public class Bm25Engine implements RelevanceEngine {
+
+	/** Saturation of term frequency. */
+	private static final double K1 = 1.2;
+
+	/** Strength of length normalization. */
+	private static final double B = 0.75;
+
+	/** Occurrences in the text an occurrence in the title counts for. */
+	private static final int TITLE_WEIGHT = 5;
+
+	/** Occurrences in the text an occurrence in the perex counts for. */
+	private static final int PEREX_WEIGHT = 2;
+
+	/**
+	 * Contribution of a single article to the statistics of the collection.
+	 */
+	private static final class Document {
+
+		private final String[] terms;
+		private final int length;
+
+		/**
+		 * @param terms index of the article
+		 */
+		private Document(final TermIndex terms) {
+
+			this.terms = new String[terms.size()];
+			this.length = terms.getLength();
+			for (int i = 0; i < this.terms.length; i++) {
+				this.terms[i] = terms.getTerm(i);
+			}
+		}
+	}
+
+	/** Contributions of indexed articles, by their url. */
+	private final ConcurrentMap<String, Document> contributions = new ConcurrentHashMap<String, Document>();
+
+	/** Number of articles containing each term, terms in ascending order. */
+	private final ConcurrentNavigableMap<String, AtomicInteger> frequencies =
+			new ConcurrentSkipListMap<String, AtomicInteger>();
+
+	/** Number of indexed articles. */
+	private final AtomicInteger documents = new AtomicInteger();
+
+	/** Total length of indexed articles, in terms. */
+	private final AtomicLong totalLength = new AtomicLong();
+
+	/**
+	 * Adds an article into the statistics of the collection, replacing the
+	 * article previously added under the same url.
+	 * 
+	 * @param url the url of the article
+	 * @param terms index of the article
+	 */
+	public void addDocument(final String url, final TermIndex terms) {
+
+		Document document = new Document(terms);
+		Document previous = contributions.put(url, document);
+
+		for (String term : document.terms) {
+			AtomicInteger frequency = frequencies.get(term);
+			if (frequency == null) {
+				AtomicInteger created = new AtomicInteger();
+				frequency = frequencies.putIfAbsent(term, created);
+				if (frequency == null) {
+					frequency = created;
+				}
+			}
+			frequency.incrementAndGet();
+		}
+		totalLength.addAndGet(document.length);
+
+		if (previous == null) {
+			documents.incrementAndGet();
+		} else {
+			subtract(previous);
+		}
+	}
+
+	/**
+	 * Removes an article from the statistics of the collection.
+	 * 
+	 * @param url the url of the article
+	 */
+	public void removeDocument(final String url) {
+
+		Document previous = contributions.remove(url);
+
+		if (previous != null) {
+			subtract(previous);
+			documents.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return <i>true</i>, as statistics of the collection are kept
+	 */
+	public boolean keepsStatistics() {
+
+		return true;
+	}
+
+	/**
+	 * Subtracts the terms and length of a replaced or removed article from the
+	 * statistics. Terms no longer contained in any article are kept with zero
+	 * frequency, as they would be counted again by a concurrent addition.
+	 * 
+	 * @param document contribution of the article
+	 */
+	private void subtract(final Document document) {
+
+		for (String term : document.terms) {
+			AtomicInteger frequency = frequencies.get(term);
+			if (frequency != null) {
+				frequency.decrementAndGet();
+			}
+		}
+		totalLength.addAndGet(-document.length);
+	}
+
+	/**
+	 * @return number of indexed articles
+	 */
+	public int getDocumentCount() {
+
+		return documents.get();
+	}
+
+	/**
+	 * Rates the relevance of an article to a keyword by BM25, divided by the
+	 * highest score attainable in the current collection.
+	 * 
+	 * @param terms index of the article
+	 * @param keyword matcher of the keyword and its synonyms
+	 * @return relevance of the article, between <i>0</i> and <i>1</i>
+	 */
+	public double score(final TermIndex terms, final SynonymMatcher keyword) {
+
+		int count = documents.get();
+		double frequency = keyword.countOccurrences(terms);
+		double averageLength;
+		double norm;
+
+		if (keyword.inTitle(terms)) {
+			frequency += TITLE_WEIGHT;
+		}
+		if (keyword.inPerex(terms)) {
+			frequency += PEREX_WEIGHT;
+		}
+		if (frequency == 0) {
+			return 0;
+		}
+
+		averageLength = (count == 0) ? terms.getLength() : (double) totalLength.get() / count;
+		norm = K1 * (1 - B + B * terms.getLength() / Math.max(averageLength, 1));
+
+		// saturated frequency, times idf relative to the idf of an unseen term
+		return (frequency / (frequency + norm)) * (idf(documentFrequency(keyword, count), count) / idf(0, count));
+	}
+
+	/**
+	 * Estimates the number of articles containing a keyword or any of its
+	 * synonyms. Words are matched as prefixes of terms, as by
+	 * {@link TermIndex}, so the frequency of a word is the sum of frequencies
+	 * of its terms, capped by the number of articles.
+	 * 
+	 * @param keyword matcher of the keyword and its synonyms
+	 * @param count number of indexed articles
+	 * @return estimated document frequency of the keyword
+	 */
+	private int documentFrequency(final SynonymMatcher keyword, final int count) {
+
+		int frequency = 0;
+
+		for (String[] tokens : keyword.getPatterns()) {
+			int least = Integer.MAX_VALUE;
+			for (String token : tokens) {
+				int sum = 0;
+				for (Map.Entry<String, AtomicInteger> entry : frequencies.tailMap(token).entrySet()) {
+					if ((!entry.getKey().startsWith(token)) || (sum >= count)) {
+						break;
+					}
+					sum += entry.getValue().get();
+				}
+				least = Math.min(least, sum);
+			}
+			if (tokens.length > 0) {
+				frequency = Math.max(frequency, least);
+			}
+		}
+		return Math.min(frequency, count);
+	}
+
+	/**
+	 * @param frequency number of articles containing a term
+	 * @param count number of indexed articles
+	 * @return inverse document frequency of the term, always positive
+	 */
+	private static double idf(final int frequency, final int count) {
+
+		return Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+	}
+}
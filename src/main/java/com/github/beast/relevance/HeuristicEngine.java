@@ -0,0 +1,90 @@
+package com.github.beast.relevance;
+
+import com.github.beast.semantics.SynonymMatcher;
+import com.github.beast.util.TermIndex;
+
+/**
+ * The original relevance measure of bees. The text of an article is split into
+ * chunks of {@link TermIndex#CHUNK_SIZE} characters, every chunk containing
+ * the keyword scores a point, the perex two points and the title five points.
+ * Relevance is the ratio of scored points to all points. No statistics of the
+ * collection are needed.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public class HeuristicEngine implements RelevanceEngine {
+
+	/** Points of the perex. */
+	private static final int PEREX_POINTS = 2;
+
+	/** Points of the title. */
+	private static final int TITLE_POINTS = 5;
+
+	/**
+	 * Does nothing, as no statistics of the collection are kept.
+	 * 
+	 * @param url the url of the article
+	 * @param terms index of the article
+	 */
+	public void addDocument(final String url, final TermIndex terms) {
+
+	}
+
+	/**
+	 * Does nothing, as no statistics of the collection are kept.
+	 * 
+	 * @param url the url of the article
+	 */
+	public void removeDocument(final String url) {
+
+	}
+
+	/**
+	 * @return <i>false</i>, as no statistics of the collection are kept
+	 */
+	public boolean keepsStatistics() {
+
+		return false;
+	}
+
+	/**
+	 * Rates the relevance of an article to a keyword, as the ratio of points
+	 * of chunks, perex and title containing the keyword.
+	 * 
+	 * @param terms index of the article
+	 * @param keyword matcher of the keyword and its synonyms
+	 * @return relevance of the article, between <i>0</i> and <i>1</i>
+	 */
+	public double score(final TermIndex terms, final SynonymMatcher keyword) {
+
+		// one point for every chunk of text containing the keyword or a synonym
+		int maxPoints = terms.getChunkCount();
+		int recPoints = 0;
+
+		if (maxPoints > 0) {
+			recPoints = keyword.countChunks(terms);
+
+			// increase for perex
+			if (terms.hasPerex()) {
+				maxPoints = maxPoints + PEREX_POINTS;
+				if (keyword.inPerex(terms)) {
+					recPoints = recPoints + PEREX_POINTS;
+				}
+			}
+		}
+
+		// increase for title
+		if (terms.hasTitle()) {
+			maxPoints = maxPoints + TITLE_POINTS;
+			if (keyword.inTitle(terms)) {
+				recPoints = recPoints + TITLE_POINTS;
+			}
+		}
+
+		if (recPoints > maxPoints) {
+			recPoints = maxPoints;
+		}
+		return (double) recPoints / maxPoints;
+	}
+}
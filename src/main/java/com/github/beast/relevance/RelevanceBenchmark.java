@@ -0,0 +1,305 @@
+package com.github.beast.relevance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import com.github.beast.semantics.SynonymMatcher;
+import com.github.beast.util.TermIndex;
+
+/**
+ * Synthetic benchmark of {@link RelevanceEngine relevance engines}, comparing
+ * the throughput of scoring and the number of pages fetched per relevant page
+ * found, when the engine guides a crawl.
+ * <p>
+ * A collection of articles is generated from a vocabulary of filler words
+ * with a Zipf distribution. A tenth of the articles is relevant to a topic,
+ * mentioning the keyword or its synonyms throughout, usually also in the
+ * title and perex. Other articles mention the keyword only incidentally and
+ * tend to be longer. Articles link mostly to articles of the same kind.
+ * <p>
+ * The crawl is best-first, links of a fetched article are followed in order of
+ * the relevance of the article, as bees do by dancing for relevant sources.
+ * Engines keeping statistics of the collection learn them only from the
+ * articles fetched so far.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class RelevanceBenchmark {
+
+	/** Number of generated articles. */
+	private static final int ARTICLES = 4000;
+
+	/** Ratio of articles relevant to the topic. */
+	private static final double RELEVANT_RATIO = 0.1;
+
+	/** Number of distinct filler words. */
+	private static final int VOCABULARY = 5000;
+
+	/** Number of outgoing links of an article. */
+	private static final int LINKS = 10;
+
+	/** Number of articles the crawl starts from. */
+	private static final int SEEDS = 20;
+
+	/** Number of relevant articles the crawl searches for. */
+	private static final int TARGET = 100;
+
+	/** Number of rounds of scoring of the whole collection. */
+	private static final int ROUNDS = 20;
+
+	/** Keyword of the topic, followed by its synonyms. */
+	private static final String[] TOPIC = {"election", "vote", "ballot"};
+
+	/**
+	 * A generated article, with its links.
+	 */
+	private static final class Article {
+
+		private final TermIndex terms;
+		private final boolean relevant;
+		private final int[] links = new int[LINKS];
+
+		/**
+		 * @param terms index of the article
+		 * @param relevant <i>true</i> if the article is relevant to the topic
+		 */
+		private Article(final TermIndex terms, final boolean relevant) {
+
+			this.terms = terms;
+			this.relevant = relevant;
+		}
+	}
+
+	/**
+	 * An article waiting to be fetched, prioritized by the relevance of the
+	 * article linking to it.
+	 */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final int article;
+		private final double priority;
+
+		/**
+		 * @param article number of the article
+		 * @param priority relevance of the linking article
+		 */
+		private Candidate(final int article, final double priority) {
+
+			this.article = article;
+			this.priority = priority;
+		}
+
+		public int compareTo(final Candidate other) {
+
+			return Double.compare(other.priority, priority);
+		}
+	}
+
+	/** Cumulative probabilities of filler words. */
+	private final double[] zipf = new double[VOCABULARY];
+
+	/** Source of randomness, seeded so that runs are comparable. */
+	private final Random random = new Random(42);
+
+	/** Matcher of the topic. */
+	private final SynonymMatcher topic = SynonymMatcher.compile(Arrays.asList(TOPIC));
+
+	/** The generated collection. */
+	private final List<Article> articles = new ArrayList<Article>();
+
+	/**
+	 * Creates the benchmark and generates its collection.
+	 */
+	private RelevanceBenchmark() {
+
+		double sum = 0;
+
+		for (int i = 0; i < VOCABULARY; i++) {
+			sum += 1.0 / (i + 1);
+			zipf[i] = sum;
+		}
+		for (int i = 0; i < VOCABULARY; i++) {
+			zipf[i] /= sum;
+		}
+
+		for (int i = 0; i < ARTICLES; i++) {
+			articles.add(generate(random.nextDouble() < RELEVANT_RATIO));
+		}
+		for (Article article : articles) {
+			for (int i = 0; i < LINKS; i++) {
+				article.links[i] = link(article.relevant);
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmark for all engines and prints the results.
+	 * 
+	 * @param args ignored
+	 */
+	public static void main(final String[] args) {
+
+		RelevanceBenchmark benchmark = new RelevanceBenchmark();
+
+		System.out.println("engine, ns per score, fetches per relevant page");
+		for (RelevanceEngine.Type type : RelevanceEngine.Type.values()) {
+			System.out.println(String.format("%s, %.0f, %.2f", type, benchmark.measureThroughput(type),
+					benchmark.measureCrawl(type)));
+		}
+	}
+
+	/**
+	 * Measures the time of scoring an article, with statistics of the whole
+	 * collection.
+	 * 
+	 * @param type the engine
+	 * @return average time of a single score, in nanoseconds
+	 */
+	private double measureThroughput(final RelevanceEngine.Type type) {
+
+		RelevanceEngine engine = type.create();
+		double sink = 0;
+		long start;
+
+		for (int i = 0; i < articles.size(); i++) {
+			engine.addDocument(Integer.toString(i), articles.get(i).terms);
+		}
+
+		// the first round warms up the engine
+		for (Article article : articles) {
+			sink += engine.score(article.terms, topic);
+		}
+
+		start = System.nanoTime();
+		for (int round = 0; round < ROUNDS; round++) {
+			for (Article article : articles) {
+				sink += engine.score(article.terms, topic);
+			}
+		}
+		double elapsed = System.nanoTime() - start;
+
+		if (Double.isNaN(sink)) {
+			System.out.println("invalid scores of " + type);
+		}
+		return elapsed / (ROUNDS * articles.size());
+	}
+
+	/**
+	 * Crawls the collection best-first, until {@link #TARGET} relevant articles
+	 * are fetched.
+	 * 
+	 * @param type the engine guiding the crawl
+	 * @return number of fetched articles per relevant article found
+	 */
+	private double measureCrawl(final RelevanceEngine.Type type) {
+
+		RelevanceEngine engine = type.create();
+		PriorityQueue<Candidate> frontier = new PriorityQueue<Candidate>();
+		boolean[] fetched = new boolean[articles.size()];
+		Random seeds = new Random(7);
+		int fetches = 0;
+		int found = 0;
+
+		for (int i = 0; i < SEEDS; i++) {
+			frontier.add(new Candidate(seeds.nextInt(articles.size()), 0));
+		}
+
+		while ((found < TARGET) && (!frontier.isEmpty())) {
+			int next = frontier.poll().article;
+			if (fetched[next]) {
+				continue;
+			}
+			fetched[next] = true;
+			fetches++;
+
+			Article article = articles.get(next);
+			engine.addDocument(Integer.toString(next), article.terms);
+			double score = engine.score(article.terms, topic);
+			if (article.relevant) {
+				found++;
+			}
+			for (int link : article.links) {
+				if (!fetched[link]) {
+					frontier.add(new Candidate(link, score));
+				}
+			}
+		}
+		return (found == 0) ? Double.POSITIVE_INFINITY : (double) fetches / found;
+	}
+
+	/**
+	 * Generates an article.
+	 * 
+	 * @param relevant <i>true</i> to generate an article relevant to the topic
+	 * @return the generated article
+	 */
+	private Article generate(final boolean relevant) {
+
+		int length = relevant ? 300 + random.nextInt(2700) : 300 + random.nextInt(5700);
+		double mentions = relevant ? 1.0 / 80 : 0;
+		StringBuilder text = new StringBuilder(length * 7);
+
+		// other articles mention the topic in passing, few times at most
+		int incidental = (!relevant) && (random.nextDouble() < 0.3) ? 1 + random.nextInt(3) : 0;
+
+		for (int i = 0; i < length; i++) {
+			if ((random.nextDouble() < mentions) || ((incidental > 0) && (random.nextInt(length) < incidental))) {
+				text.append(TOPIC[random.nextInt(TOPIC.length)]);
+			} else {
+				text.append(filler());
+			}
+			text.append(' ');
+		}
+
+		String title = sentence(6, relevant ? 0.7 : 0.02);
+		String perex = sentence(25, relevant ? 0.5 : 0.03);
+		return new Article(TermIndex.of(title, perex, text), relevant);
+	}
+
+	/**
+	 * @param words number of words of the sentence
+	 * @param probability probability of the sentence mentioning the topic
+	 * @return generated sentence
+	 */
+	private String sentence(final int words, final double probability) {
+
+		StringBuilder sentence = new StringBuilder();
+
+		for (int i = 0; i < words; i++) {
+			sentence.append(filler()).append(' ');
+		}
+		if (random.nextDouble() < probability) {
+			sentence.append(TOPIC[0]);
+		}
+		return sentence.toString();
+	}
+
+	/**
+	 * @return random filler word
+	 */
+	private String filler() {
+
+		int position = Arrays.binarySearch(zipf, random.nextDouble());
+		return "w" + ((position < 0) ? Math.min(-position - 1, VOCABULARY - 1) : position);
+	}
+
+	/**
+	 * @param relevant <i>true</i> if the linking article is relevant
+	 * @return number of the linked article, mostly of the same kind
+	 */
+	private int link(final boolean relevant) {
+
+		boolean toRelevant = random.nextDouble() < (relevant ? 0.5 : 0.05);
+
+		while (true) {
+			int target = random.nextInt(articles.size());
+			if (articles.get(target).relevant == toRelevant) {
+				return target;
+			}
+		}
+	}
+}
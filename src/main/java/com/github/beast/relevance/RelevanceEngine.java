@@ -0,0 +1,79 @@
+package com.github.beast.relevance;
+
+import com.github.beast.semantics.SynonymMatcher;
+import com.github.beast.util.TermIndex;
+
+/**
+ * A measure of relevance of articles to keywords, used by bees to rate the
+ * content of their sources. Articles are rated through their
+ * {@link TermIndex}, keywords through their compiled {@link SynonymMatcher}.
+ * Engines may keep statistics of the collection of indexed articles, which
+ * are updated as articles are added to and evicted from the index. Articles
+ * are identified by their url, so that an article added again replaces its
+ * previous version.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see com.github.beast.crawler.NewsBee#evalSourceQuality(com.github.beast.page.ArticlePage, int)
+ */
+public interface RelevanceEngine {
+
+	/** Available relevance engines. */
+	enum Type {
+
+		/** Ratio of chunks, perex and title containing the keyword. */
+		HEURISTIC {
+
+			public RelevanceEngine create() {
+
+				return new HeuristicEngine();
+			}
+		},
+
+		/** Okapi BM25, with incrementally updated collection statistics. */
+		BM25 {
+
+			public RelevanceEngine create() {
+
+				return new Bm25Engine();
+			}
+		};
+
+		/**
+		 * @return new instance of the engine
+		 */
+		public abstract RelevanceEngine create();
+	}
+
+	/**
+	 * Adds an article into the statistics of the collection, if kept by the
+	 * engine, replacing the article previously added under the same url.
+	 * 
+	 * @param url the url of the article
+	 * @param terms index of the article
+	 */
+	void addDocument(String url, TermIndex terms);
+
+	/**
+	 * Removes an article from the statistics of the collection, if kept by
+	 * the engine.
+	 * 
+	 * @param url the url of the article
+	 */
+	void removeDocument(String url);
+
+	/**
+	 * @return <i>true</i> if the engine keeps statistics of the collection,
+	 *         which need to be filled with already indexed articles
+	 */
+	boolean keepsStatistics();
+
+	/**
+	 * Rates the relevance of an article to a keyword.
+	 * 
+	 * @param terms index of the article
+	 * @param keyword matcher of the keyword and its synonyms
+	 * @return relevance of the article, between <i>0</i> and <i>1</i>
+	 */
+	double score(TermIndex terms, SynonymMatcher keyword);
+}
@@ -0,0 +1,286 @@
+package com.github.beast.semantics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Read-only lexicon of Wordnet nouns, compiled by {@link LexiconCompiler} and
+ * mapped into memory. The lexicon answers the same queries as the Wordnet
+ * database used by {@link SemanticEngine}, without parsing dictionary files:
+ * nouns are found through a minimal perfect hash, their strings are kept in a
+ * pool and their senses point into an array of synsets.
+ * <p>
+ * Lookups only read the mapped file, so a lexicon is safe for use by multiple
+ * threads, and the pages of the file are shared by all processes mapping it.
+ * <p>
+ * The file consists of a header of {@link #HEADER_SIZE} bytes, followed by
+ * displacements of hash buckets, entries of nouns, synsets, lists and the
+ * string pool. All numbers are big endian <code>int</code> values. An entry of
+ * a noun holds the reference of the noun in the pool, the reference of its
+ * exceptional base forms and the reference of its senses. A list starts with
+ * the number of its items, followed by the items, being references of strings
+ * or indices of synsets. A synset refers to a list of its word forms. Strings
+ * of the pool are stored as an unsigned <code>short</code> length followed by
+ * <i>UTF-8</i> bytes.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see LexiconCompiler
+ */
+public final class Lexicon {
+
+	/** Identifier of lexicon files. */
+	static final int MAGIC = 0x42454c58;
+
+	/** Version of the format of lexicon files. */
+	static final int VERSION = 1;
+
+	/** Size of the header of lexicon files, in bytes. */
+	static final int HEADER_SIZE = 7 * 4;
+
+	/** Number of <code>int</code> values of an entry of a noun. */
+	static final int ENTRY_SIZE = 3;
+
+	/** Reference of a missing list. */
+	static final int NONE = -1;
+
+	/** Encoding of strings of the pool. */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Suffixes of inflected nouns, detached to retrieve base forms. */
+	private static final String[] SUFFIXES = {"s", "ses", "xes", "zes", "ches", "shes", "men", "ies"};
+
+	/** Endings of base forms, replacing {@link #SUFFIXES}. */
+	private static final String[] ENDINGS = {"", "s", "x", "z", "ch", "sh", "man", "y"};
+
+	/** The mapped file. */
+	private final ByteBuffer buffer;
+
+	/** Number of nouns. */
+	private final int keyCount;
+
+	/** Number of buckets of the hash. */
+	private final int bucketCount;
+
+	/** Offset of displacements of buckets. */
+	private final int displacements;
+
+	/** Offset of entries of nouns. */
+	private final int entries;
+
+	/** Offset of synsets. */
+	private final int synsets;
+
+	/** Offset of lists. */
+	private final int lists;
+
+	/** Offset of the string pool. */
+	private final int pool;
+
+	/**
+	 * @param buffer the mapped file
+	 * @throws IOException if the file is not a lexicon of supported version
+	 */
+	private Lexicon(final ByteBuffer buffer) throws IOException {
+
+		this.buffer = buffer;
+
+		if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+			throw new IOException("not a lexicon of version " + VERSION);
+		}
+
+		keyCount = buffer.getInt(8);
+		bucketCount = buffer.getInt(12);
+		displacements = HEADER_SIZE;
+		entries = displacements + (bucketCount * 4);
+		synsets = entries + (keyCount * ENTRY_SIZE * 4);
+		lists = synsets + (buffer.getInt(16) * 4);
+		pool = lists + (buffer.getInt(20) * 4);
+
+		if ((pool + buffer.getInt(24)) != buffer.capacity()) {
+			throw new IOException("truncated lexicon");
+		}
+	}
+
+	/**
+	 * Maps a compiled lexicon into memory.
+	 * 
+	 * @param file the lexicon file
+	 * @return the lexicon
+	 * @throws IOException if the file cannot be mapped or is not a lexicon
+	 */
+	public static Lexicon open(final File file) throws IOException {
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			return new Lexicon(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Retrieves candidates for the base form of a noun, the way the Wordnet
+	 * database does: exceptional base forms of the noun come first, followed by
+	 * forms created by detaching regular suffixes.
+	 * 
+	 * @param input arbitrary form of a noun
+	 * @return candidates for the base form, possibly empty
+	 */
+	public String[] getBaseFormCandidates(final String input) {
+
+		List<String> candidates = new ArrayList<String>();
+		int slot = find(normalize(input));
+
+		if (slot != NONE) {
+			int list = entry(slot, 1);
+			if (list != NONE) {
+				for (int i = 1; i <= item(list, 0); i++) {
+					candidates.add(string(item(list, i)));
+				}
+			}
+		}
+
+		for (int i = 0; i < SUFFIXES.length; i++) {
+			if (input.endsWith(SUFFIXES[i])) {
+				candidates.add(input.substring(0, input.length() - SUFFIXES[i].length()) + ENDINGS[i]);
+			}
+		}
+		return candidates.toArray(new String[candidates.size()]);
+	}
+
+	/**
+	 * Retrieves word forms of all synsets of a noun, in order of its senses.
+	 * 
+	 * @param input arbitrary noun
+	 * @return distinct word forms, empty if the noun is not in the lexicon
+	 */
+	public Set<String> getWordForms(final String input) {
+
+		Set<String> forms = new LinkedHashSet<String>();
+		int slot = find(normalize(input));
+
+		if (slot != NONE) {
+			int senses = entry(slot, 2);
+			if (senses != NONE) {
+				for (int i = 1; i <= item(senses, 0); i++) {
+					int words = buffer.getInt(synsets + (item(senses, i) * 4));
+					for (int j = 1; j <= item(words, 0); j++) {
+						forms.add(string(item(words, j)));
+					}
+				}
+			}
+		}
+		return forms;
+	}
+
+	/**
+	 * @return number of nouns and inflected forms in the lexicon
+	 */
+	public int size() {
+
+		return keyCount;
+	}
+
+	/**
+	 * Hashes a string, the seed selecting one of a family of hash functions.
+	 * 
+	 * @param key the string
+	 * @param seed the seed
+	 * @return non-negative hash
+	 */
+	static int hash(final CharSequence key, final int seed) {
+
+		int hash = 0x811c9dc5 ^ (seed * 0x9e3779b9);
+
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash & Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Brings a noun to the form it is stored in the lexicon, in lower case with
+	 * words separated by spaces.
+	 * 
+	 * @param noun the noun
+	 * @return normalized noun
+	 */
+	static String normalize(final String noun) {
+
+		return noun.trim().toLowerCase(Locale.ENGLISH).replace('_', ' ');
+	}
+
+	/**
+	 * Finds the entry of a noun.
+	 * 
+	 * @param key normalized noun
+	 * @return slot of the entry, or {@link #NONE} if the noun is not in the
+	 *         lexicon
+	 */
+	private int find(final String key) {
+
+		if (keyCount == 0) {
+			return NONE;
+		}
+
+		int displacement = buffer.getInt(displacements + ((hash(key, 0) % bucketCount) * 4));
+		int slot = hash(key, displacement) % keyCount;
+
+		return key.equals(string(entry(slot, 0))) ? slot : NONE;
+	}
+
+	/**
+	 * @param slot slot of an entry
+	 * @param field index of a field of the entry
+	 * @return value of the field
+	 */
+	private int entry(final int slot, final int field) {
+
+		return buffer.getInt(entries + (((slot * ENTRY_SIZE) + field) * 4));
+	}
+
+	/**
+	 * @param list reference of a list
+	 * @param index index within the list, <i>0</i> being its size
+	 * @return item of the list
+	 */
+	private int item(final int list, final int index) {
+
+		return buffer.getInt(lists + ((list + index) * 4));
+	}
+
+	/**
+	 * Decodes a string of the pool. Bytes are read by absolute positions, so
+	 * that threads do not share the position of the buffer.
+	 * 
+	 * @param reference reference of the string
+	 * @return the string
+	 */
+	private String string(final int reference) {
+
+		int offset = pool + reference;
+		byte[] bytes = new byte[buffer.getShort(offset) & 0xffff];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		return new String(bytes, UTF8);
+	}
+}
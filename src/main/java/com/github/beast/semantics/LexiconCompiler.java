@@ -0,0 +1,425 @@
+package com.github.beast.semantics;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.beast.util.Configuration;
+
+/**
+ * Compiles the noun dictionary of Wordnet into a {@link Lexicon} file. The
+ * noun index, the list of exceptional inflections and the noun synsets are
+ * read from the dictionary directory, i.e. files <code>index.noun</code>,
+ * <code>noun.exc</code> and <code>data.noun</code>.
+ * <p>
+ * Nouns and inflected forms are keyed by a minimal perfect hash, built by
+ * <i>hash and displace</i>: keys are split into buckets by a first hash, and
+ * for each bucket, largest buckets first, a displacement is searched for, so
+ * that the second hash seeded by it places all keys of the bucket into free
+ * slots. A lookup then takes two hashes and a single comparison of strings.
+ * <p>
+ * The compiler is run once per Wordnet installation:
+ * 
+ * <pre>
+ * java com.github.beast.semantics.LexiconCompiler [wordnet_dir] [lexicon_file]
+ * </pre>
+ * 
+ * Omitted arguments are taken from {@link Configuration}.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see Lexicon
+ */
+public final class LexiconCompiler {
+
+	/** Average number of keys of a bucket of the hash. */
+	private static final int BUCKET_LOAD = 3;
+
+	/** Maximal displacement tried for a bucket before giving up. */
+	private static final int MAX_DISPLACEMENT = 1 << 24;
+
+	/** Word forms of synsets, in order of the data file. */
+	private final List<String[]> synsets = new ArrayList<String[]>();
+
+	/** Indices of synsets, keyed by their offsets in the data file. */
+	private final Map<Long, Integer> synsetIndices = new HashMap<Long, Integer>();
+
+	/** Indices of synsets of nouns, in order of senses, keyed by nouns. */
+	private final Map<String, int[]> senses = new TreeMap<String, int[]>();
+
+	/** Base forms of exceptional inflections, keyed by inflected forms. */
+	private final Map<String, String[]> exceptions = new TreeMap<String, String[]>();
+
+	/** References of strings already in the pool. */
+	private final Map<String, Integer> references = new HashMap<String, Integer>();
+
+	/** The string pool. */
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+	/** The lists. */
+	private final ByteArrayOutputStream listBytes = new ByteArrayOutputStream();
+
+	/** Writer of the lists. */
+	private final DataOutputStream listOut = new DataOutputStream(listBytes);
+
+	/**
+	 * Constructor of the <code>LexiconCompiler</code> class. Is private, as
+	 * the compiler is run through {@link #compile(File, File)}.
+	 */
+	private LexiconCompiler() {
+
+	}
+
+	/**
+	 * Compiles the Wordnet dictionary into a lexicon file.
+	 * 
+	 * @param args optional path to the Wordnet dictionary directory, followed
+	 *        by optional path of the lexicon file
+	 */
+	public static void main(final String[] args) {
+
+		String dictionary = (args.length > 0) ? args[0] : Configuration.getInstance().getWordnetDir();
+		String lexicon = (args.length > 1) ? args[1] : Configuration.getInstance().getLexiconFile();
+
+		try {
+			long start = System.currentTimeMillis();
+			int size = compile(new File(dictionary), new File(lexicon));
+			System.out.println("compiled " + size + " nouns and inflections into " + lexicon + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compiles the Wordnet dictionary into a lexicon file. The lexicon is
+	 * written into a temporary file first, replacing the lexicon file once
+	 * complete, so that processes never map a partial lexicon.
+	 * 
+	 * @param dictionary the Wordnet dictionary directory
+	 * @param lexicon the lexicon file
+	 * @return number of nouns and inflected forms in the lexicon
+	 * @throws IOException if the dictionary cannot be read or the lexicon
+	 *         cannot be written
+	 */
+	public static int compile(final File dictionary, final File lexicon) throws IOException {
+
+		LexiconCompiler compiler = new LexiconCompiler();
+		File temporary = new File(lexicon.getPath() + ".tmp");
+		int size;
+
+		compiler.readSynsets(new File(dictionary, "data.noun"));
+		compiler.readIndex(new File(dictionary, "index.noun"));
+		compiler.readExceptions(new File(dictionary, "noun.exc"));
+
+		size = compiler.write(temporary);
+		if ((lexicon.exists()) && (!lexicon.delete())) {
+			throw new IOException("unable to replace " + lexicon);
+		}
+		if (!temporary.renameTo(lexicon)) {
+			throw new IOException("unable to rename " + temporary + " to " + lexicon);
+		}
+		return size;
+	}
+
+	/**
+	 * Reads noun synsets. A line of the data file starts with the offset of
+	 * the synset, the number of its lexicographer file and its type, followed
+	 * by the hexadecimal number of its words and pairs of a word and its
+	 * lexical id.
+	 * 
+	 * @param file the data file
+	 * @throws IOException if the file cannot be read
+	 */
+	private void readSynsets(final File file) throws IOException {
+
+		for (String[] fields : readLines(file)) {
+			String[] words = new String[Integer.parseInt(fields[3], 16)];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = fields[4 + (2 * i)].replace('_', ' ');
+			}
+			synsetIndices.put(Long.valueOf(fields[0]), synsets.size());
+			synsets.add(words);
+		}
+	}
+
+	/**
+	 * Reads the noun index. A line of the index starts with the noun, its
+	 * part of speech, the number of its synsets and the number of its pointer
+	 * types, followed by the pointer types, the number of senses and of tagged
+	 * senses, and offsets of its synsets.
+	 * 
+	 * @param file the index file
+	 * @throws IOException if the file cannot be read or refers to an unknown
+	 *         synset
+	 */
+	private void readIndex(final File file) throws IOException {
+
+		for (String[] fields : readLines(file)) {
+			int[] indices = new int[Integer.parseInt(fields[2])];
+			int first = 6 + Integer.parseInt(fields[3]);
+			for (int i = 0; i < indices.length; i++) {
+				Integer index = synsetIndices.get(Long.valueOf(fields[first + i]));
+				if (index == null) {
+					throw new IOException("unknown synset " + fields[first + i] + " of " + fields[0]);
+				}
+				indices[i] = index;
+			}
+			senses.put(Lexicon.normalize(fields[0]), indices);
+		}
+	}
+
+	/**
+	 * Reads exceptional inflections. A line of the exception list holds an
+	 * inflected form followed by its base forms.
+	 * 
+	 * @param file the exception list
+	 * @throws IOException if the file cannot be read
+	 */
+	private void readExceptions(final File file) throws IOException {
+
+		for (String[] fields : readLines(file)) {
+			String[] bases = Arrays.copyOfRange(fields, 1, fields.length);
+			for (int i = 0; i < bases.length; i++) {
+				bases[i] = bases[i].replace('_', ' ');
+			}
+			exceptions.put(Lexicon.normalize(fields[0]), bases);
+		}
+	}
+
+	/**
+	 * Writes the lexicon.
+	 * 
+	 * @param file the lexicon file
+	 * @return number of nouns and inflected forms in the lexicon
+	 * @throws IOException if the file cannot be written
+	 */
+	private int write(final File file) throws IOException {
+
+		Map<String, Boolean> union = new TreeMap<String, Boolean>();
+		List<String> keys;
+		int[] synsetLists = new int[synsets.size()];
+		int bucketCount;
+		int[] displacements;
+		int[] slots;
+		int[] table;
+		DataOutputStream out;
+
+		for (String key : senses.keySet()) {
+			union.put(key, Boolean.TRUE);
+		}
+		for (String key : exceptions.keySet()) {
+			union.put(key, Boolean.TRUE);
+		}
+		keys = new ArrayList<String>(union.keySet());
+		if (keys.isEmpty()) {
+			throw new IOException("no nouns found");
+		}
+
+		bucketCount = Math.max(1, keys.size() / BUCKET_LOAD);
+		displacements = new int[bucketCount];
+		slots = place(keys, bucketCount, displacements);
+
+		for (int i = 0; i < synsets.size(); i++) {
+			synsetLists[i] = writeStrings(synsets.get(i));
+		}
+
+		table = new int[keys.size() * Lexicon.ENTRY_SIZE];
+		for (int i = 0; i < keys.size(); i++) {
+			String key = keys.get(i);
+			int entry = slots[i] * Lexicon.ENTRY_SIZE;
+			table[entry] = reference(key);
+			table[entry + 1] = exceptions.containsKey(key) ? writeStrings(exceptions.get(key)) : Lexicon.NONE;
+			table[entry + 2] = senses.containsKey(key) ? writeInts(senses.get(key)) : Lexicon.NONE;
+		}
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(Lexicon.MAGIC);
+			out.writeInt(Lexicon.VERSION);
+			out.writeInt(keys.size());
+			out.writeInt(bucketCount);
+			out.writeInt(synsets.size());
+			out.writeInt(listOut.size() / 4);
+			out.writeInt(poolBytes.size());
+			for (int displacement : displacements) {
+				out.writeInt(displacement);
+			}
+			for (int value : table) {
+				out.writeInt(value);
+			}
+			for (int list : synsetLists) {
+				out.writeInt(list);
+			}
+			listBytes.writeTo(out);
+			poolBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+		return keys.size();
+	}
+
+	/**
+	 * Builds the minimal perfect hash of keys.
+	 * 
+	 * @param keys the keys, distinct
+	 * @param bucketCount number of buckets
+	 * @param displacements filled with displacements of buckets
+	 * @return slots of the keys
+	 * @throws IOException if no displacement is found for a bucket
+	 */
+	private static int[] place(final List<String> keys, final int bucketCount, final int[] displacements)
+			throws IOException {
+
+		final List<List<Integer>> buckets = new ArrayList<List<Integer>>(bucketCount);
+		List<Integer> order = new ArrayList<Integer>(bucketCount);
+		boolean[] taken = new boolean[keys.size()];
+		int[] slots = new int[keys.size()];
+		int n = keys.size();
+
+		for (int i = 0; i < bucketCount; i++) {
+			buckets.add(new ArrayList<Integer>());
+			order.add(i);
+		}
+		for (int i = 0; i < n; i++) {
+			buckets.get(Lexicon.hash(keys.get(i), 0) % bucketCount).add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+
+			public int compare(final Integer first, final Integer second) {
+
+				return buckets.get(second).size() - buckets.get(first).size();
+			}
+		});
+
+		for (int bucket : order) {
+			List<Integer> members = buckets.get(bucket);
+			int[] candidates = new int[members.size()];
+			int displacement = 0;
+			boolean placed = members.isEmpty();
+
+			while (!placed) {
+				displacement++;
+				if (displacement > MAX_DISPLACEMENT) {
+					throw new IOException("unable to place bucket of " + members.size() + " keys");
+				}
+				placed = true;
+				for (int i = 0; (i < candidates.length) && (placed); i++) {
+					candidates[i] = Lexicon.hash(keys.get(members.get(i)), displacement) % n;
+					placed = !taken[candidates[i]];
+					for (int j = 0; (j < i) && (placed); j++) {
+						placed = candidates[j] != candidates[i];
+					}
+				}
+			}
+
+			displacements[bucket] = displacement;
+			for (int i = 0; i < candidates.length; i++) {
+				taken[candidates[i]] = true;
+				slots[members.get(i)] = candidates[i];
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * Writes a list of strings.
+	 * 
+	 * @param strings the strings
+	 * @return reference of the list
+	 * @throws IOException if the strings cannot be encoded
+	 */
+	private int writeStrings(final String[] strings) throws IOException {
+
+		int[] items = new int[strings.length];
+
+		for (int i = 0; i < strings.length; i++) {
+			items[i] = reference(strings[i]);
+		}
+		return writeInts(items);
+	}
+
+	/**
+	 * Writes a list of numbers.
+	 * 
+	 * @param items the numbers
+	 * @return reference of the list
+	 * @throws IOException never, lists are written into memory
+	 */
+	private int writeInts(final int[] items) throws IOException {
+
+		int reference = listOut.size() / 4;
+
+		listOut.writeInt(items.length);
+		for (int item : items) {
+			listOut.writeInt(item);
+		}
+		return reference;
+	}
+
+	/**
+	 * Adds a string to the pool, unless already present.
+	 * 
+	 * @param string the string
+	 * @return reference of the string
+	 * @throws IOException if the string is too long
+	 */
+	private int reference(final String string) throws IOException {
+
+		Integer reference = references.get(string);
+
+		if (reference == null) {
+			byte[] bytes = string.getBytes(Lexicon.UTF8);
+			if (bytes.length > 0xffff) {
+				throw new IOException("string too long: " + string.substring(0, 20));
+			}
+			reference = poolBytes.size();
+			poolBytes.write(bytes.length >>> 8);
+			poolBytes.write(bytes.length);
+			poolBytes.write(bytes, 0, bytes.length);
+			references.put(string, reference);
+		}
+		return reference;
+	}
+
+	/**
+	 * Reads fields of lines of a dictionary file, skipping the license header,
+	 * whose lines start with a space.
+	 * 
+	 * @param file the dictionary file
+	 * @return fields of lines, separated by spaces
+	 * @throws IOException if the file cannot be read
+	 */
+	private static List<String[]> readLines(final File file) throws IOException {
+
+		List<String[]> lines = new ArrayList<String[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Lexicon.UTF8));
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if ((!line.isEmpty()) && (line.charAt(0) != ' ')) {
+					lines.add(line.trim().split(" +"));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+}
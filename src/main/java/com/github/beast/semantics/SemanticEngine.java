@@ -1,7 +1,25 @@
 package com.github.beast.semantics;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import com.github.beast.Beast;
+import com.github.beast.util.ConcurrentLruCache;
 import com.github.beast.util.Configuration;
 
 import edu.smu.tspell.wordnet.NounSynset;
@@ -13,8 +31,17 @@ import edu.smu.tspell.wordnet.WordNetDatabase;
  * Class representing engine, handling semantic queries to <a
  * href="http://wordnet.princeton.edu/wordnet/">Wordnet</a> database. Currently
  * the root of a given noun may be established, through
- * {@link #getNounRoot(String)}, or all synonyms of a noun may be retrieved
+ * {@link #getRootNoun(String)}, or all synonyms of a noun may be retrieved
  * through {@link #getSynonyms(String)}.
+ * <p>
+ * Results of queries are immutable and kept in bounded caches, as bees query
+ * the same few keywords over and over. The caches may be preloaded with
+ * known keywords and are saved to the file set in {@link Configuration}, so
+ * that following runs start with results of previous ones.
+ * <p>
+ * If a lexicon compiled by {@link LexiconCompiler} is found at the path set in
+ * {@link Configuration}, queries are answered from the memory mapped lexicon
+ * and the Wordnet dictionary is not opened at all.
  * 
  * @author Štefan Sabo
  * @version 1.0
@@ -22,18 +49,53 @@ import edu.smu.tspell.wordnet.WordNetDatabase;
  */
 public class SemanticEngine {
 
-	/** Wordnet database object. */
+	/** Version of the format of the cache file. */
+	private static final int CACHE_FORMAT = 1;
+
+	/** Wordnet database object, unless a compiled lexicon is used. */
 	private static WordNetDatabase database;
 
+	/** Compiled lexicon, <code>null</code> if not available. */
+	private Lexicon lexicon;
+
+	/** Dictionary the results are retrieved from, either a lexicon or Wordnet. */
+	private final String source;
+
+	/** Cached root forms of nouns. */
+	private final ConcurrentLruCache<String, String> roots;
+
+	/** Cached synonyms of nouns. */
+	private final ConcurrentLruCache<String, List<String>> synonyms;
+
 	/**
 	 * Creates a new Wordnet database and sets system property
 	 * <code>wordnet.database.dir</code>, pointing to Wordnet database in the
 	 * file system, according to settings given in {@link Configuration} class.
+	 * If a compiled lexicon exists, it is mapped instead. Results saved by
+	 * previous runs are loaded into the caches.
 	 */
 	public SemanticEngine() {
 
-		System.setProperty("wordnet.database.dir", Configuration.getInstance().getWordnetDir());
-		database = WordNetDatabase.getFileInstance();
+		int size = Configuration.getInstance().getSemanticCacheSize();
+		File lexiconFile = new File(Configuration.getInstance().getLexiconFile());
+
+		if (lexiconFile.isFile()) {
+			try {
+				lexicon = Lexicon.open(lexiconFile);
+			} catch (IOException e) {
+				Beast.log("unable to open lexicon " + lexiconFile + ": " + e);
+			}
+		}
+		if (lexicon == null) {
+			System.setProperty("wordnet.database.dir", Configuration.getInstance().getWordnetDir());
+			database = WordNetDatabase.getFileInstance();
+			source = Configuration.getInstance().getWordnetDir();
+		} else {
+			source = lexiconFile.getAbsolutePath();
+		}
+		roots = new ConcurrentLruCache<String, String>(size);
+		synonyms = new ConcurrentLruCache<String, List<String>>(size);
+		load(new File(Configuration.getInstance().getSemanticCacheFile()));
 	}
 
 	/**
@@ -46,43 +108,159 @@ public class SemanticEngine {
 	 */
 	public String getRootNoun(final String input) {
 
-		String[] candidates = database.getBaseFormCandidates(input, SynsetType.NOUN);
+		String root = roots.get(input);
 
-		if (candidates.length == 0) {
-			return input;
-		} else {
-			return candidates[0];
+		if (root == null) {
+			String[] candidates = (lexicon != null) ? lexicon.getBaseFormCandidates(input) : database
+					.getBaseFormCandidates(input, SynsetType.NOUN);
+
+			root = (candidates.length == 0) ? input : candidates[0];
+			roots.put(input, root);
 		}
+		return root;
 	}
 
 	/**
 	 * Retrieves all synonyms of a given noun from the Wordnet database.
 	 * 
 	 * @param input arbitrary noun
-	 * @return list of synonyms of the noun
+	 * @return unmodifiable list of synonyms of the noun
+	 */
+	public List<String> getSynonyms(final String input) {
+
+		List<String> result = synonyms.get(input);
+
+		if (result == null) {
+			Set<String> forms = (lexicon != null) ? lexicon.getWordForms(input) : getWordForms(input);
+
+			if (forms.isEmpty()) {
+				forms.add(input);
+			}
+
+			result = Collections.unmodifiableList(new ArrayList<String>(forms));
+			synonyms.put(input, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieves word forms of all synsets of a noun from the Wordnet database.
+	 * 
+	 * @param input arbitrary noun
+	 * @return distinct word forms, empty if the noun is unknown
 	 */
-	public ArrayList<String> getSynonyms(final String input) {
+	private Set<String> getWordForms(final String input) {
 
-		NounSynset nounSynset;
-		ArrayList<String> synonyms = new ArrayList<String>();
-		Synset[] synsets = database.getSynsets(input, SynsetType.NOUN);
-		String[] tokens;
+		Set<String> forms = new LinkedHashSet<String>();
 
-		if (synsets.length == 0) {
-			synonyms.add(input);
-			return synonyms;
+		for (Synset synset : database.getSynsets(input, SynsetType.NOUN)) {
+			forms.addAll(Arrays.asList(((NounSynset) synset).getWordForms()));
 		}
+		return forms;
+	}
 
-		for (Synset synset : synsets) {
-			nounSynset = (NounSynset) synset;
-			tokens = nounSynset.getWordForms();
+	/**
+	 * Queries root forms and synonyms of nouns in advance, so that bees find
+	 * them cached.
+	 * 
+	 * @param nouns the nouns, usually keywords of the index
+	 */
+	public void preload(final Iterable<String> nouns) {
 
-			for (String token : tokens) {
-				if (!synonyms.contains(token)) {
-					synonyms.add(token);
+		int count = 0;
+
+		for (String noun : nouns) {
+			getRootNoun(noun);
+			getSynonyms(noun);
+			count++;
+		}
+		Beast.log("preloaded semantics of " + count + " keywords");
+	}
+
+	/**
+	 * Saves cached results into the file set in {@link Configuration}, to be
+	 * loaded by following runs. Results are saved along with the Wordnet
+	 * directory or lexicon they were retrieved from and are loaded only for
+	 * the same one.
+	 */
+	public void save() {
+
+		File file = new File(Configuration.getInstance().getSemanticCacheFile());
+		Map<String, String> savedRoots = roots.snapshot();
+		Map<String, List<String>> savedSynonyms = synonyms.snapshot();
+		DataOutputStream out = null;
+
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+			out.writeInt(CACHE_FORMAT);
+			out.writeUTF(source);
+			out.writeInt(savedRoots.size());
+			for (Map.Entry<String, String> entry : savedRoots.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeUTF(entry.getValue());
+			}
+			out.writeInt(savedSynonyms.size());
+			for (Map.Entry<String, List<String>> entry : savedSynonyms.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().size());
+				for (String form : entry.getValue()) {
+					out.writeUTF(form);
+				}
+			}
+		} catch (IOException e) {
+			Beast.log("unable to save semantic cache " + file + ": " + e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					Beast.log("unable to close semantic cache " + file + ": " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads results saved by a previous run into the caches.
+	 * 
+	 * @param file the file holding saved results
+	 */
+	private void load(final File file) {
+
+		DataInputStream in = null;
+
+		if (!file.isFile()) {
+			return;
+		}
+
+		try {
+			in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			if ((in.readInt() != CACHE_FORMAT)
+					|| (!in.readUTF().equals(source))) {
+				return;
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String noun = in.readUTF();
+				roots.put(noun, in.readUTF());
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String noun = in.readUTF();
+				String[] forms = new String[in.readInt()];
+				for (int j = 0; j < forms.length; j++) {
+					forms[j] = in.readUTF();
+				}
+				synonyms.put(noun, Collections.unmodifiableList(Arrays.asList(forms)));
+			}
+		} catch (IOException e) {
+			Beast.log("unable to load semantic cache " + file + ": " + e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					Beast.log("unable to close semantic cache " + file + ": " + e);
 				}
 			}
 		}
-		return synonyms;
 	}
-}
\ No newline at end of file
+}
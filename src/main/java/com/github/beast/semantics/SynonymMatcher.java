@@ -0,0 +1,142 @@
+package com.github.beast.semantics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.beast.util.TermIndex;
+
+/**
+ * An immutable matcher of a keyword and its synonyms against the
+ * {@link TermIndex} of an article. Synonyms are split into words once, when
+ * the matcher is compiled, and all of them are matched against the index in
+ * a single lookup per word, so that matching the whole synonym set costs
+ * about as much as matching the keyword alone.
+ * <p>
+ * Synonyms made redundant by a shorter synonym are dropped when compiled, as
+ * words are matched as prefixes of terms. For instance <i>bank building</i>
+ * matches no chunk, which is not matched by <i>bank</i> already.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see SemanticEngine#getSynonyms(String)
+ */
+public final class SynonymMatcher {
+
+	/** Words of the matched synonyms. */
+	private final String[][] patterns;
+
+	/**
+	 * @param patterns words of the matched synonyms
+	 */
+	private SynonymMatcher(final String[][] patterns) {
+
+		this.patterns = patterns;
+	}
+
+	/**
+	 * Compiles a matcher of a set of synonyms.
+	 * 
+	 * @param synonyms the synonyms, in arbitrary case
+	 * @return matcher of the synonyms
+	 */
+	public static SynonymMatcher compile(final Collection<String> synonyms) {
+
+		Map<String, String[]> unique = new LinkedHashMap<String, String[]>();
+		List<String> singleWords = new ArrayList<String>();
+		List<String[]> patterns = new ArrayList<String[]>();
+
+		for (String synonym : synonyms) {
+			String[] tokens = TermIndex.tokenize(synonym);
+			if (tokens.length > 0) {
+				unique.put(Arrays.toString(tokens), tokens);
+				if (tokens.length == 1) {
+					singleWords.add(tokens[0]);
+				}
+			}
+		}
+
+		for (String[] tokens : unique.values()) {
+			if (!subsumed(tokens, singleWords)) {
+				patterns.add(tokens);
+			}
+		}
+		return new SynonymMatcher(patterns.toArray(new String[patterns.size()][]));
+	}
+
+	/**
+	 * @param terms index of an article
+	 * @return number of chunks of the text containing any of the synonyms
+	 */
+	public int countChunks(final TermIndex terms) {
+
+		return terms.countChunks(patterns);
+	}
+
+	/**
+	 * @param terms index of an article
+	 * @return number of occurrences of the synonyms in the text
+	 */
+	public int countOccurrences(final TermIndex terms) {
+
+		return terms.countOccurrences(patterns);
+	}
+
+	/**
+	 * Returns the words of the matched synonyms. The returned array is shared
+	 * and must not be modified.
+	 * 
+	 * @return words of every matched synonym
+	 */
+	public String[][] getPatterns() {
+
+		return patterns;
+	}
+
+	/**
+	 * @param terms index of an article
+	 * @return <i>true</i> if the perex contains any of the synonyms
+	 */
+	public boolean inPerex(final TermIndex terms) {
+
+		return terms.inPerex(patterns);
+	}
+
+	/**
+	 * @param terms index of an article
+	 * @return <i>true</i> if the title contains any of the synonyms
+	 */
+	public boolean inTitle(final TermIndex terms) {
+
+		return terms.inTitle(patterns);
+	}
+
+	/**
+	 * @return number of synonyms matched, after dropping redundant ones
+	 */
+	public int size() {
+
+		return patterns.length;
+	}
+
+	/**
+	 * @param tokens words of a synonym
+	 * @param singleWords synonyms of a single word
+	 * @return <i>true</i> if every match of the synonym is matched by a
+	 *         different synonym of a single word
+	 */
+	private static boolean subsumed(final String[] tokens, final List<String> singleWords) {
+
+		for (String word : singleWords) {
+			for (String token : tokens) {
+				if ((token.startsWith(word)) && ((tokens.length > 1) || (token.length() > word.length()))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.beast.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A singleton pool of direct byte buffers, used for downloading of pages.
+ * Direct buffers are costly to allocate, so they are reused across downloads
+ * instead. All buffers of the pool have the size set in {@link Configuration}.
+ * At most {@link #MAX_POOLED} buffers are kept in the pool, buffers returned
+ * into a full pool are left to the garbage collector.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class BufferPool {
+
+	/** Maximal number of idle buffers kept in the pool. */
+	private static final int MAX_POOLED = 32;
+
+	/** Instance of a singleton class. */
+	private static BufferPool instance;
+
+	/** Idle buffers. */
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+	/** Number of idle buffers. */
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/** Size of the buffers, in bytes. */
+	private final int bufferSize;
+
+	/**
+	 * Constructor of the <code>BufferPool</code> class. Is private because
+	 * <code>BufferPool</code> is a singleton class.
+	 */
+	private BufferPool() {
+
+		bufferSize = Configuration.getInstance().getFetchBufferSize();
+	}
+
+	/**
+	 * Returns instance of the <code>BufferPool</code> singleton class. If no
+	 * instance exists, new instance is created.
+	 * 
+	 * @return instance of the singleton class
+	 */
+	public static synchronized BufferPool getInstance() {
+
+		if (instance == null) {
+			instance = new BufferPool();
+		}
+		return instance;
+	}
+
+	/**
+	 * Takes an idle buffer from the pool, allocating a new one if the pool is
+	 * empty.
+	 * 
+	 * @return a cleared direct buffer
+	 */
+	public ByteBuffer acquire() {
+
+		ByteBuffer buffer = buffers.poll();
+
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer into the pool. The buffer must not be used by the
+	 * caller afterwards.
+	 * 
+	 * @param buffer a buffer acquired from the pool
+	 */
+	public void release(final ByteBuffer buffer) {
+
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			buffers.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return size of the buffers, in bytes
+	 */
+	public int getBufferSize() {
+
+		return bufferSize;
+	}
+}
@@ -0,0 +1,126 @@
+package com.github.beast.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detection of the character encoding of downloaded pages. The encoding is
+ * determined, in order of precedence, by a byte order mark, by the
+ * <i>Content-Type</i> header of the response, by a <i>meta</i> tag within the
+ * first {@link #PRESCAN_LENGTH} bytes of the page, or falls back to the
+ * default encoding set in {@link Configuration}.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public abstract class CharsetDetector {
+
+	/** Number of bytes at the start of a page searched for a meta tag. */
+	public static final int PRESCAN_LENGTH = 1024;
+
+	private static final Pattern HEADER_CHARSET = Pattern.compile("(?i)charset\\s*=\\s*[\"']?([\\w.:-]+)");
+	private static final Pattern META_CHARSET = Pattern.compile("(?i)<meta[^>]*?charset\\s*=\\s*[\"']?([\\w.:-]+)");
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+	private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+	private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+	/**
+	 * Detects the encoding of a page from the start of its content and the
+	 * <i>Content-Type</i> header. A byte order mark is skipped, by advancing the
+	 * position of the buffer.
+	 * 
+	 * @param prefix the start of the content of the page, ready to be read
+	 * @param contentType the <i>Content-Type</i> header, may be
+	 *        <code>null</code>
+	 * @return the detected encoding
+	 */
+	public static Charset detect(final ByteBuffer prefix, final String contentType) {
+
+		Charset charset = fromByteOrderMark(prefix);
+
+		if (charset == null) {
+			charset = fromPattern(HEADER_CHARSET, contentType);
+		}
+		if (charset == null) {
+			charset = fromPattern(META_CHARSET, prescan(prefix));
+		}
+		if (charset == null) {
+			charset = forName(Configuration.getInstance().getDefaultCharset());
+		}
+		return (charset == null) ? UTF_8 : charset;
+	}
+
+	/**
+	 * Detects an encoding from a byte order mark, skipping the mark.
+	 * 
+	 * @param prefix the start of the content of the page
+	 * @return the encoding, or <code>null</code> if there is no byte order
+	 *         mark
+	 */
+	private static Charset fromByteOrderMark(final ByteBuffer prefix) {
+
+		int pos = prefix.position();
+		int remaining = prefix.remaining();
+
+		if ((remaining >= 3) && ((prefix.get(pos) & 0xff) == 0xef) && ((prefix.get(pos + 1) & 0xff) == 0xbb)
+				&& ((prefix.get(pos + 2) & 0xff) == 0xbf)) {
+			prefix.position(pos + 3);
+			return UTF_8;
+		}
+		if ((remaining >= 2) && ((prefix.get(pos) & 0xff) == 0xfe) && ((prefix.get(pos + 1) & 0xff) == 0xff)) {
+			prefix.position(pos + 2);
+			return UTF_16BE;
+		}
+		if ((remaining >= 2) && ((prefix.get(pos) & 0xff) == 0xff) && ((prefix.get(pos + 1) & 0xff) == 0xfe)) {
+			prefix.position(pos + 2);
+			return UTF_16LE;
+		}
+		return null;
+	}
+
+	/**
+	 * @param prefix the start of the content of the page
+	 * @return the first {@link #PRESCAN_LENGTH} bytes of the content, decoded
+	 *         as Latin-1
+	 */
+	private static String prescan(final ByteBuffer prefix) {
+
+		ByteBuffer start = prefix.duplicate();
+		start.limit(start.position() + Math.min(start.remaining(), PRESCAN_LENGTH));
+		return LATIN_1.decode(start).toString();
+	}
+
+	/**
+	 * @param pattern pattern capturing the name of an encoding
+	 * @param text the searched text, may be <code>null</code>
+	 * @return the encoding named in the text, or <code>null</code> if not
+	 *         found or not supported
+	 */
+	private static Charset fromPattern(final Pattern pattern, final String text) {
+
+		if (text == null) {
+			return null;
+		}
+
+		Matcher matcher = pattern.matcher(text);
+		return (matcher.find()) ? forName(matcher.group(1)) : null;
+	}
+
+	/**
+	 * @param name name of an encoding
+	 * @return the encoding, or <code>null</code> if not supported
+	 */
+	private static Charset forName(final String name) {
+
+		try {
+			return (Charset.isSupported(name)) ? Charset.forName(name) : null;
+		} catch (IllegalCharsetNameException e) {
+			return null;
+		}
+	}
+}
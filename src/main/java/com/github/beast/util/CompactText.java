@@ -0,0 +1,299 @@
+package com.github.beast.util;
+
+/**
+ * An immutable, compact representation of text content of pages, such as the
+ * text and perex of articles. Text consisting only of Latin-1 characters is
+ * stored as a single byte per character, other text falls back to an array of
+ * characters. Character access is constant time in both cases.
+ * <p>
+ * Slices of a text share the storage of the original text, so that slicing
+ * never copies characters. Searching primitives are provided, which ignore
+ * case and operate directly on the storage, without creating intermediate
+ * strings.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class CompactText implements CharSequence {
+
+	/** Text without any characters. */
+	public static final CompactText EMPTY = new CompactText(new byte[0], null, 0, 0);
+
+	/** Highest character, that may be stored in a single byte. */
+	private static final char MAX_LATIN1 = '\u00ff';
+
+	/** Lower case forms of Latin-1 characters. */
+	private static final char[] LOWER_LATIN1 = new char[MAX_LATIN1 + 1];
+
+	static {
+		for (char c = 0; c <= MAX_LATIN1; c++) {
+			LOWER_LATIN1[c] = Character.toLowerCase(c);
+		}
+	}
+
+	/** Storage of Latin-1 text, or <code>null</code> if stored as chars. */
+	private final byte[] bytes;
+
+	/** Storage of other text, or <code>null</code> if stored as bytes. */
+	private final char[] chars;
+
+	/** Position of the first character of the text within the storage. */
+	private final int offset;
+
+	/** Number of characters of the text. */
+	private final int length;
+
+	/**
+	 * @param bytes Latin-1 storage, or <code>null</code>
+	 * @param chars character storage, or <code>null</code>
+	 * @param offset position of the first character within the storage
+	 * @param length number of characters of the text
+	 */
+	private CompactText(final byte[] bytes, final char[] chars, final int offset, final int length) {
+
+		this.bytes = bytes;
+		this.chars = chars;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Creates a compact copy of a sequence of characters.
+	 * 
+	 * @param text the copied characters
+	 * @return compact copy of the text, or <code>null</code> if the text is
+	 *         <code>null</code>
+	 */
+	public static CompactText of(final CharSequence text) {
+
+		if (text == null) {
+			return null;
+		}
+		if (text instanceof CompactText) {
+			return (CompactText) text;
+		}
+
+		int count = text.length();
+		byte[] latin1 = new byte[count];
+
+		for (int i = 0; i < count; i++) {
+			char c = text.charAt(i);
+			if (c > MAX_LATIN1) {
+				char[] copy = new char[count];
+				for (int j = 0; j < count; j++) {
+					copy[j] = text.charAt(j);
+				}
+				return new CompactText(null, copy, 0, count);
+			}
+			latin1[i] = (byte) c;
+		}
+		return new CompactText(latin1, null, 0, count);
+	}
+
+	/**
+	 * @return number of characters of the text
+	 */
+	public int length() {
+
+		return length;
+	}
+
+	/**
+	 * @return <i>true</i> if the text has no characters
+	 */
+	public boolean isEmpty() {
+
+		return length == 0;
+	}
+
+	/**
+	 * @param index position of a character within the text
+	 * @return the character at the given position
+	 */
+	public char charAt(final int index) {
+
+		if ((index < 0) || (index >= length)) {
+			throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+		}
+		return get(index);
+	}
+
+	/**
+	 * Returns a slice of the text, sharing its storage.
+	 * 
+	 * @param start position of the first character of the slice
+	 * @param end position after the last character of the slice
+	 * @return the slice of the text
+	 */
+	public CompactText subSequence(final int start, final int end) {
+
+		if ((start < 0) || (end > length) || (start > end)) {
+			throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+		}
+		if ((start == 0) && (end == length)) {
+			return this;
+		}
+		return new CompactText(bytes, chars, offset + start, end - start);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of a lower case pattern in
+	 * a region of the text, ignoring case of the text. The pattern needs to be
+	 * fully contained in the region.
+	 * 
+	 * @param lowerCasePattern the searched pattern, in lower case
+	 * @param start position of the first character of the region
+	 * @param end position after the last character of the region
+	 * @return position of the first occurrence, or <i>-1</i> if the pattern
+	 *         does not occur in the region
+	 */
+	public int indexOfIgnoreCase(final String lowerCasePattern, final int start, final int end) {
+
+		int patternLength = lowerCasePattern.length();
+		int last = Math.min(end, length) - patternLength;
+
+		if (patternLength == 0) {
+			return (start <= length) ? start : -1;
+		}
+
+		char first = lowerCasePattern.charAt(0);
+
+		for (int i = Math.max(start, 0); i <= last; i++) {
+			if (lower(get(i)) != first) {
+				continue;
+			}
+			int j = 1;
+			while ((j < patternLength) && (lower(get(i + j)) == lowerCasePattern.charAt(j))) {
+				j++;
+			}
+			if (j == patternLength) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the position of the first occurrence of a lower case pattern in
+	 * the text, ignoring case of the text.
+	 * 
+	 * @param lowerCasePattern the searched pattern, in lower case
+	 * @return position of the first occurrence, or <i>-1</i> if the pattern
+	 *         does not occur in the text
+	 */
+	public int indexOfIgnoreCase(final String lowerCasePattern) {
+
+		return indexOfIgnoreCase(lowerCasePattern, 0, length);
+	}
+
+	/**
+	 * Tests whether a region of the text contains a lower case pattern,
+	 * ignoring case of the text. The pattern needs to be fully contained in
+	 * the region.
+	 * 
+	 * @param lowerCasePattern the searched pattern, in lower case
+	 * @param start position of the first character of the region
+	 * @param end position after the last character of the region
+	 * @return <i>true</i> if the region contains the pattern
+	 */
+	public boolean containsIgnoreCase(final String lowerCasePattern, final int start, final int end) {
+
+		return indexOfIgnoreCase(lowerCasePattern, start, end) >= 0;
+	}
+
+	/**
+	 * Tests whether the text contains a lower case pattern, ignoring case of
+	 * the text.
+	 * 
+	 * @param lowerCasePattern the searched pattern, in lower case
+	 * @return <i>true</i> if the text contains the pattern
+	 */
+	public boolean containsIgnoreCase(final String lowerCasePattern) {
+
+		return indexOfIgnoreCase(lowerCasePattern, 0, length) >= 0;
+	}
+
+	/**
+	 * @return estimated size of the storage of the text, in bytes
+	 */
+	public long getByteSize() {
+
+		return (bytes != null) ? length : 2L * length;
+	}
+
+	/**
+	 * @return the text as a string
+	 */
+	public String toString() {
+
+		if (chars != null) {
+			return new String(chars, offset, length);
+		}
+
+		char[] copy = new char[length];
+		for (int i = 0; i < length; i++) {
+			copy[i] = (char) (bytes[offset + i] & 0xff);
+		}
+		return new String(copy);
+	}
+
+	/**
+	 * @param other the compared object
+	 * @return <i>true</i> if the other object is a text with equal characters
+	 */
+	public boolean equals(final Object other) {
+
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CompactText)) {
+			return false;
+		}
+
+		CompactText text = (CompactText) other;
+		if (text.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (get(i) != text.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return hash code of the characters of the text, equal to the hash code
+	 *         of the text as a string
+	 */
+	public int hashCode() {
+
+		int hash = 0;
+
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + get(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * @param index position within the text, not checked
+	 * @return the character at the given position
+	 */
+	private char get(final int index) {
+
+		if (bytes != null) {
+			return (char) (bytes[offset + index] & 0xff);
+		}
+		return chars[offset + index];
+	}
+
+	/**
+	 * @param c a character
+	 * @return lower case form of the character
+	 */
+	private static char lower(final char c) {
+
+		return (c <= MAX_LATIN1) ? LOWER_LATIN1[c] : Character.toLowerCase(c);
+	}
+}
@@ -0,0 +1,233 @@
+package com.github.beast.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache, safe for use by multiple threads. The cache is split into
+ * stripes by the hash of keys, each stripe being a map in order of access
+ * guarded by its own lock, so that threads accessing different keys rarely
+ * contend. Once a stripe is full, its least recently used entry is evicted.
+ * <p>
+ * Hits, misses and evictions are counted, so that the efficiency of the cache
+ * may be reported.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class ConcurrentLruCache<K, V> {
+
+	/** Number of stripes, must be a power of two. */
+	private static final int STRIPES = 16;
+
+	/** Stripes of the cache. */
+	private final Map<K, V>[] stripes;
+
+	/** Maximal number of entries of a single stripe. */
+	private final int stripeCapacity;
+
+	/** Number of lookups finding a value. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** Number of lookups not finding a value. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** Number of entries evicted to make room for others. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates an empty cache.
+	 * 
+	 * @param capacity maximal number of entries of the cache
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ConcurrentLruCache(final int capacity) {
+
+		stripes = new Map[STRIPES];
+		stripeCapacity = Math.max(1, (capacity + STRIPES - 1) / STRIPES);
+
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new LinkedHashMap<K, V>(16, 0.75f, true);
+		}
+	}
+
+	/**
+	 * Looks up a value, marking it as most recently used.
+	 * 
+	 * @param key the key of the value
+	 * @return the value, or <code>null</code> if not cached
+	 */
+	public V get(final K key) {
+
+		Map<K, V> stripe = stripeFor(key);
+		V value;
+
+		synchronized (stripe) {
+			value = stripe.get(key);
+		}
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Caches a value, replacing the value cached under the same key. If the
+	 * stripe of the key is full, its least recently used entry is evicted.
+	 * 
+	 * @param key the key of the value
+	 * @param value the value to be cached
+	 */
+	public void put(final K key, final V value) {
+
+		Map<K, V> stripe = stripeFor(key);
+
+		synchronized (stripe) {
+			stripe.put(key, value);
+
+			Iterator<K> iter = stripe.keySet().iterator();
+			while ((stripe.size() > stripeCapacity) && (iter.hasNext())) {
+				iter.next();
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Caches a value, unless a value is already cached under the same key.
+	 * 
+	 * @param key the key of the value
+	 * @param value the value to be cached
+	 * @return the value already cached, or <code>null</code> if the given value
+	 *         has been cached
+	 */
+	public V putIfAbsent(final K key, final V value) {
+
+		Map<K, V> stripe = stripeFor(key);
+
+		synchronized (stripe) {
+			V previous = stripe.get(key);
+			if (previous != null) {
+				return previous;
+			}
+			put(key, value);
+			return null;
+		}
+	}
+
+	/**
+	 * Drops a cached value.
+	 * 
+	 * @param key the key of the value
+	 * @return the dropped value, or <code>null</code> if not cached
+	 */
+	public V remove(final K key) {
+
+		Map<K, V> stripe = stripeFor(key);
+
+		synchronized (stripe) {
+			return stripe.remove(key);
+		}
+	}
+
+	/**
+	 * Drops all cached values.
+	 */
+	public void clear() {
+
+		for (Map<K, V> stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return number of cached values
+	 */
+	public int size() {
+
+		int size = 0;
+
+		for (Map<K, V> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Copies cached entries, without marking them as used. Entries of a stripe
+	 * are copied from the least recently used one.
+	 * 
+	 * @return map of cached keys to their values
+	 */
+	public Map<K, V> snapshot() {
+
+		Map<K, V> copy = new LinkedHashMap<K, V>();
+
+		for (Map<K, V> stripe : stripes) {
+			synchronized (stripe) {
+				copy.putAll(stripe);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * @return number of entries evicted to make room for others
+	 */
+	public long getEvictions() {
+
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of lookups finding a value
+	 */
+	public long getHits() {
+
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups not finding a value
+	 */
+	public long getMisses() {
+
+		return misses.get();
+	}
+
+	/**
+	 * @return ratio of lookups finding a value
+	 */
+	public double getHitRate() {
+
+		long found = hits.get();
+		long total = found + misses.get();
+
+		return (total == 0) ? 0 : (double) found / total;
+	}
+
+	/**
+	 * Selects the stripe holding a key. The hash is spread, so that keys
+	 * differing only in higher bits do not fall into the same stripe.
+	 * 
+	 * @param key the key
+	 * @return the stripe of the key
+	 */
+	private Map<K, V> stripeFor(final K key) {
+
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes[hash & (STRIPES - 1)];
+	}
+}
@@ -4,6 +4,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Properties;
 
+import com.github.beast.database.NeighbourSampler;
+import com.github.beast.relevance.RelevanceEngine;
+
 /**
  * Encapsulates configuration settings used in BeAST project.
  * 
@@ -34,6 +37,37 @@ public final class Configuration {
 	private static final String DEFAULT_REQUEST_DELAY = "5000";
 	private static final String DEFAULT_PROPERTIES_FILE = ".properties";
 	private static final String DEFAULT_TAGGER_PATH = "tagger\\english-left3words-distsim.tagger";
+	private static final String DEFAULT_INDEX_QUEUE_SIZE = "1000";
+	private static final String DEFAULT_INDEX_BATCH_SIZE = "100";
+	private static final String DEFAULT_NEIGHBOUR_CACHE_SIZE = "10000";
+	private static final String DEFAULT_NEIGHBOUR_WEIGHTING = "uniform";
+	private static final String DEFAULT_RELEVANCE_ENGINE = "heuristic";
+	private static final String DEFAULT_INDEX_BUCKET_SIZE = "86400000";
+	private static final String DEFAULT_INDEX_RETENTION = "0";
+	private static final String DEFAULT_INDEX_RETENTION_ARCHIVE = "false";
+	private static final String DEFAULT_DUPLICATE_DISTANCE = "3";
+	private static final String DEFAULT_STREAMING_EXTRACTION = "true";
+	private static final String DEFAULT_RELEASE_PAGE_CODE = "true";
+	private static final String DEFAULT_CONDITIONAL_REQUESTS = "true";
+	private static final String DEFAULT_PAGE_MAX_SIZE = "4194304";
+	private static final String DEFAULT_FETCH_BUFFER_SIZE = "65536";
+	private static final String DEFAULT_CHARSET = "UTF-8";
+	private static final String DEFAULT_TRACKING_PARAMETERS = "rpc,feedType,feedName,sp,ref,src";
+	private static final String DEFAULT_URL_FILTER_CAPACITY = "100000";
+	private static final String DEFAULT_PAGE_MEMORY_BUDGET = "67108864";
+	private static final String DEFAULT_ARCHIVE_SEGMENT_SIZE = "268435456";
+	private static final String DEFAULT_ARCHIVE_QUEUE_SIZE = "1000";
+	private static final String DEFAULT_ARCHIVE_REPLAY = "false";
+	private static final String DEFAULT_RESPONSE_CACHE = "true";
+	private static final String DEFAULT_RESPONSE_CACHE_SIZE = "33554432";
+	private static final String DEFAULT_RESPONSE_CACHE_DISK_SIZE = "268435456";
+	private static final String DEFAULT_QUALITY_CACHE_SIZE = "10000";
+	private static final String DEFAULT_PAGE_KEYWORDS_CACHE_SIZE = "10000";
+	private static final String DEFAULT_RESPONSE_CACHE_DIR = "C:\\_beast_data\\cache\\";
+	private static final String DEFAULT_SEMANTIC_CACHE_SIZE = "10000";
+	private static final String DEFAULT_SEMANTIC_CACHE_FILE = "C:\\_beast_data\\semantics.cache";
+	private static final String DEFAULT_SEMANTIC_PRELOAD = "true";
+	private static final String DEFAULT_LEXICON_FILE = "C:\\_beast_data\\wordnet.lexicon";
 	
 
 	// property names
@@ -49,6 +83,37 @@ public final class Configuration {
 	private static final String REQUEST_DELAY = "bee_request_delay";
 	private static final String PAGE_ARCHIVE_DIR = "page_archive_dir";
 	private static final String TAGGER_PATH = "tagger_path";
+	private static final String INDEX_QUEUE_SIZE = "index_queue_size";
+	private static final String INDEX_BATCH_SIZE = "index_batch_size";
+	private static final String NEIGHBOUR_CACHE_SIZE = "neighbour_cache_size";
+	private static final String NEIGHBOUR_WEIGHTING = "neighbour_weighting";
+	private static final String RELEVANCE_ENGINE = "relevance_engine";
+	private static final String INDEX_BUCKET_SIZE = "index_bucket_size";
+	private static final String INDEX_RETENTION = "index_retention";
+	private static final String INDEX_RETENTION_ARCHIVE = "index_retention_archive";
+	private static final String DUPLICATE_DISTANCE = "duplicate_distance";
+	private static final String STREAMING_EXTRACTION = "use_streaming_extraction";
+	private static final String RELEASE_PAGE_CODE = "release_page_code";
+	private static final String CONDITIONAL_REQUESTS = "use_conditional_requests";
+	private static final String PAGE_MAX_SIZE = "page_max_size";
+	private static final String FETCH_BUFFER_SIZE = "fetch_buffer_size";
+	private static final String CHARSET = "default_charset";
+	private static final String TRACKING_PARAMETERS = "url_tracking_parameters";
+	private static final String URL_FILTER_CAPACITY = "url_filter_capacity";
+	private static final String PAGE_MEMORY_BUDGET = "page_memory_budget";
+	private static final String ARCHIVE_SEGMENT_SIZE = "archive_segment_size";
+	private static final String ARCHIVE_QUEUE_SIZE = "archive_queue_size";
+	private static final String ARCHIVE_REPLAY = "use_archive_replay";
+	private static final String RESPONSE_CACHE = "use_response_cache";
+	private static final String RESPONSE_CACHE_SIZE = "response_cache_size";
+	private static final String RESPONSE_CACHE_DISK_SIZE = "response_cache_disk_size";
+	private static final String RESPONSE_CACHE_DIR = "response_cache_dir";
+	private static final String QUALITY_CACHE_SIZE = "quality_cache_size";
+	private static final String PAGE_KEYWORDS_CACHE_SIZE = "page_keywords_cache_size";
+	private static final String SEMANTIC_CACHE_SIZE = "semantic_cache_size";
+	private static final String SEMANTIC_CACHE_FILE = "semantic_cache_file";
+	private static final String SEMANTIC_PRELOAD = "use_semantic_preload";
+	private static final String LEXICON_FILE = "lexicon_file";
 
 	private static Configuration instance;
 
@@ -63,6 +128,39 @@ public final class Configuration {
 	private String wordnetDir;
 	private String taggerPath;
 
+	/** Capacity of the queue of pending index writes. */
+	private int indexQueueSize;
+
+	/** Maximal number of index writes committed in a single transaction. */
+	private int indexBatchSize;
+
+	/** Maximal number of pages with cached adjacency. */
+	private int neighbourCacheSize;
+
+	/** Weighting of neighbours drawn by bees. */
+	private NeighbourSampler.Weighting neighbourWeighting;
+
+	/** Measure of relevance of articles to keywords used by bees. */
+	private RelevanceEngine.Type relevanceEngine;
+
+	/** Length of a time bucket of the index, in milliseconds. */
+	private long indexBucketSize;
+
+	/**
+	 * Age of pages, in milliseconds, after which their time bucket is evicted
+	 * from the index. Value of <i>0</i> disables eviction.
+	 */
+	private long indexRetention;
+
+	/** If <i>true</i>, evicted pages are archived before removal. */
+	private boolean indexRetentionArchive;
+
+	/**
+	 * Maximal number of differing bits of <i>SimHashes</i> of near duplicate
+	 * pages. Negative value disables detection of near duplicates.
+	 */
+	private int duplicateDistance;
+
 	/**
 	 * Determines the directory for archiving of downloaded pages, if enabled by
 	 * setting {@link #pageArchive} to <i>true</i>.
@@ -76,6 +174,90 @@ public final class Configuration {
 	 */
 	private boolean pageArchive;
 
+	/** Size of a segment of the page archive, after which a new one is started. */
+	private long archiveSegmentSize;
+
+	/** Capacity of the queue of records waiting to be archived. */
+	private int archiveQueueSize;
+
+	/**
+	 * If <i>true</i>, code of pages is replayed from the page archive instead
+	 * of being requested from the web.
+	 */
+	private boolean archiveReplay;
+
+	/**
+	 * If <i>true</i>, fetched code of pages is cached while fresh, so that
+	 * pages are not requested again.
+	 */
+	private boolean responseCache;
+
+	/** Maximal size of fetched code cached in memory, in bytes. */
+	private long responseCacheSize;
+
+	/** Maximal size of fetched code cached on the disk, in bytes. */
+	private long responseCacheDiskSize;
+
+	/** Directory where fetched code evicted from memory is cached. */
+	private String responseCacheDir;
+
+	/** Maximal number of pages with cached keyword qualities. */
+	private int qualityCacheSize;
+
+	/** Maximal number of pages with cached keyword relevances. */
+	private int pageKeywordsCacheSize;
+
+	/** Maximal number of nouns with cached roots, and with cached synonyms. */
+	private int semanticCacheSize;
+
+	/** File where cached roots and synonyms of nouns are saved between runs. */
+	private String semanticCacheFile;
+
+	/**
+	 * If <i>true</i>, roots and synonyms of known keywords are cached before
+	 * crawling.
+	 */
+	private boolean semanticPreload;
+
+	/**
+	 * Compiled lexicon of Wordnet nouns. If the file exists, it is used
+	 * instead of the Wordnet dictionary in {@link #wordnetDir}.
+	 */
+	private String lexiconFile;
+
+	/**
+	 * If <i>true</i>, only the sections of pages needed by their parser are
+	 * extracted while the pages are downloaded.
+	 */
+	private boolean streamingExtraction;
+
+	/** If <i>true</i>, code of pages is released once they are parsed. */
+	private boolean releasePageCode;
+
+	/** Maximal size of content held by processed pages, in bytes. */
+	private long pageMemoryBudget;
+
+	/**
+	 * If <i>true</i>, refreshed pages are requested only if modified since
+	 * their last retrieval.
+	 */
+	private boolean conditionalRequests;
+
+	/** Maximal size of a downloaded page, in bytes. */
+	private long pageMaxSize;
+
+	/** Size of buffers used for downloading of pages, in bytes. */
+	private int fetchBufferSize;
+
+	/** Encoding of pages, which do not declare their encoding. */
+	private String defaultCharset;
+
+	/** Comma separated names of query parameters removed from links. */
+	private String trackingParameters;
+
+	/** Initial capacity of the filter of known urls. */
+	private int urlFilterCapacity;
+
 	/**
 	 * Class constructor, reads config file at the default location and sets
 	 * configuration accordingly.
@@ -123,6 +305,66 @@ public final class Configuration {
 		return instance;
 	}
 
+	/**
+	 * @return maximal number of pages with cached adjacency
+	 */
+	public int getNeighbourCacheSize() {
+
+		return neighbourCacheSize;
+	}
+
+	/**
+	 * @return comma separated names of query parameters removed from links
+	 * @see UrlCanonicalizer
+	 */
+	public String getTrackingParameters() {
+
+		return trackingParameters;
+	}
+
+	/**
+	 * @return initial capacity of the filter of known urls
+	 * @see ScalableBloomFilter
+	 */
+	public int getUrlFilterCapacity() {
+
+		return urlFilterCapacity;
+	}
+
+	/**
+	 * @return name of the encoding of pages, which do not declare their
+	 *         encoding
+	 */
+	public String getDefaultCharset() {
+
+		return defaultCharset;
+	}
+
+	/**
+	 * @return maximal number of differing bits of <i>SimHashes</i> of near
+	 *         duplicate pages, negative if near duplicates are not detected
+	 */
+	public int getDuplicateDistance() {
+
+		return duplicateDistance;
+	}
+
+	/**
+	 * @return weighting of neighbours drawn by bees
+	 */
+	public NeighbourSampler.Weighting getNeighbourWeighting() {
+
+		return neighbourWeighting;
+	}
+
+	/**
+	 * @return measure of relevance of articles to keywords used by bees
+	 */
+	public RelevanceEngine.Type getRelevanceEngine() {
+
+		return relevanceEngine;
+	}
+
 	/**
 	 * @return path to directory where database is stored
 	 */
@@ -131,6 +373,39 @@ public final class Configuration {
 		return databaseDir;
 	}
 
+	/**
+	 * @return length of a time bucket of the index, in milliseconds
+	 */
+	public long getIndexBucketSize() {
+
+		return indexBucketSize;
+	}
+
+	/**
+	 * @return age of pages in milliseconds, after which they are evicted from
+	 *         the index, <i>0</i> if eviction is disabled
+	 */
+	public long getIndexRetention() {
+
+		return indexRetention;
+	}
+
+	/**
+	 * @return maximal number of index writes committed in a single transaction
+	 */
+	public int getIndexBatchSize() {
+
+		return indexBatchSize;
+	}
+
+	/**
+	 * @return capacity of the queue of pending index writes
+	 */
+	public int getIndexQueueSize() {
+
+		return indexQueueSize;
+	}
+
 	/**
 	 * @return path to the log file
 	 */
@@ -148,8 +423,52 @@ public final class Configuration {
 	}
 
 	/**
-	 * @return path to the directory where text of crawled articles is stored
-	 *         for future reference
+	 * @return capacity of the queue of records waiting to be archived
+	 * @see com.github.beast.archive.PageArchive
+	 */
+	public int getArchiveQueueSize() {
+
+		return archiveQueueSize;
+	}
+
+	/**
+	 * @return size of a segment of the page archive, in bytes
+	 * @see com.github.beast.archive.PageArchive
+	 */
+	public long getArchiveSegmentSize() {
+
+		return archiveSegmentSize;
+	}
+
+	/**
+	 * @return size of buffers used for downloading of pages, in bytes
+	 * @see BufferPool
+	 */
+	public int getFetchBufferSize() {
+
+		return fetchBufferSize;
+	}
+
+	/**
+	 * @return maximal size of a downloaded page, in bytes
+	 */
+	public long getPageMaxSize() {
+
+		return pageMaxSize;
+	}
+
+	/**
+	 * @return maximal size of content held by processed pages, in bytes
+	 * @see com.github.beast.page.PageMemoryBudget PageMemoryBudget
+	 */
+	public long getPageMemoryBudget() {
+
+		return pageMemoryBudget;
+	}
+
+	/**
+	 * @return path to the directory where segments of the page archive are
+	 *         stored
 	 */
 	public String getPageArchiveDir() {
 
@@ -165,6 +484,81 @@ public final class Configuration {
 		return refreshDelay;
 	}
 
+	/**
+	 * @return maximal number of pages with cached keyword qualities
+	 * @see com.github.beast.database.QualityCache QualityCache
+	 */
+	public int getQualityCacheSize() {
+
+		return qualityCacheSize;
+	}
+
+	/**
+	 * @return maximal number of pages with cached keyword relevances
+	 * @see com.github.beast.database.PageKeywords PageKeywords
+	 */
+	public int getPageKeywordsCacheSize() {
+
+		return pageKeywordsCacheSize;
+	}
+
+	/**
+	 * @return path to the directory where fetched code evicted from memory is
+	 *         cached
+	 * @see com.github.beast.page.FetchCache FetchCache
+	 */
+	public String getResponseCacheDir() {
+
+		return responseCacheDir;
+	}
+
+	/**
+	 * @return maximal size of fetched code cached on the disk, in bytes
+	 * @see com.github.beast.page.FetchCache FetchCache
+	 */
+	public long getResponseCacheDiskSize() {
+
+		return responseCacheDiskSize;
+	}
+
+	/**
+	 * @return maximal size of fetched code cached in memory, in bytes
+	 * @see com.github.beast.page.FetchCache FetchCache
+	 */
+	public long getResponseCacheSize() {
+
+		return responseCacheSize;
+	}
+
+	/**
+	 * @return path to the compiled lexicon of Wordnet nouns
+	 * @see com.github.beast.semantics.LexiconCompiler LexiconCompiler
+	 */
+	public String getLexiconFile() {
+
+		return lexiconFile;
+	}
+
+	/**
+	 * @return path to the file where cached roots and synonyms of nouns are
+	 *         saved between runs
+	 * @see com.github.beast.semantics.SemanticEngine SemanticEngine
+	 */
+	public String getSemanticCacheFile() {
+
+		return semanticCacheFile;
+	}
+
+	/**
+	 * @return maximal number of nouns with cached roots, and with cached
+	 *         synonyms
+	 * @see com.github.beast.semantics.SemanticEngine SemanticEngine
+	 */
+	public int getSemanticCacheSize() {
+
+		return semanticCacheSize;
+	}
+
 	/**
 	 * @return path to the tagger dictionary
 	 */
@@ -181,6 +575,36 @@ public final class Configuration {
 		return wordnetDir;
 	}
 
+	/**
+	 * @return <i>true</i> if roots and synonyms of known keywords are cached
+	 *         before crawling, otherwise <i>false</i>
+	 * @see com.github.beast.semantics.SemanticEngine#preload(Iterable)
+	 */
+	public boolean useSemanticPreload() {
+
+		return semanticPreload;
+	}
+
+	/**
+	 * @return <i>true</i> if code of pages is replayed from the page archive
+	 *         instead of the web, otherwise <i>false</i>
+	 * @see com.github.beast.archive.ArchiveFetchSource ArchiveFetchSource
+	 */
+	public boolean useArchiveReplay() {
+
+		return archiveReplay;
+	}
+
+	/**
+	 * @return <i>true</i> if fetched code of pages is cached while fresh,
+	 *         otherwise <i>false</i>
+	 * @see com.github.beast.page.FetchCache FetchCache
+	 */
+	public boolean useResponseCache() {
+
+		return responseCache;
+	}
+
 	/**
 	 * @return boolean value indicating the verbose mode of bee agents,
 	 *         <i>true</i> for enabled verbose mode, othervise <i>false</i>
@@ -190,6 +614,24 @@ public final class Configuration {
 		return beeMessages;
 	}
 
+	/**
+	 * @return <i>true</i> if pages evicted from the index are archived before
+	 *         removal, otherwise <i>false</i>
+	 */
+	public boolean useIndexRetentionArchive() {
+
+		return indexRetentionArchive;
+	}
+
+	/**
+	 * @return <i>true</i> if refreshed pages are requested only if modified
+	 *         since their last retrieval, otherwise <i>false</i>
+	 */
+	public boolean useConditionalRequests() {
+
+		return conditionalRequests;
+	}
+
 	/**
 	 * @return boolean value indicating the use of logging, <i>true</i> for
 	 *         logging enabled, otherwise <i>false</i>
@@ -218,6 +660,25 @@ public final class Configuration {
 		return semantics;
 	}
 
+	/**
+	 * @return <i>true</i> if code of pages is released once they are parsed,
+	 *         otherwise <i>false</i>
+	 */
+	public boolean releasePageCode() {
+
+		return releasePageCode;
+	}
+
+	/**
+	 * @return <i>true</i> if only the sections of pages needed by their parser
+	 *         are extracted during download, otherwise <i>false</i>
+	 * @see com.github.beast.parser.StreamingExtractor StreamingExtractor
+	 */
+	public boolean useStreamingExtraction() {
+
+		return streamingExtraction;
+	}
+
 	public int getRequestDelay() {
 		
 		return requestDelay;
@@ -244,15 +705,59 @@ public final class Configuration {
 		semantics = Boolean.parseBoolean(properties.getProperty(SEMANTICS, DEFAULT_SEMANTICS));
 		beeMessages = Boolean.parseBoolean(properties.getProperty(BEE_MESSAGES, DEFAULT_BEE_MESSAGES));
 		pageArchive = Boolean.parseBoolean(properties.getProperty(PAGE_ARCHIVE, DEFAULT_PAGE_ARCHIVE));
+		indexRetentionArchive = Boolean.parseBoolean(properties.getProperty(INDEX_RETENTION_ARCHIVE,
+				DEFAULT_INDEX_RETENTION_ARCHIVE));
+		streamingExtraction = Boolean.parseBoolean(properties.getProperty(STREAMING_EXTRACTION,
+				DEFAULT_STREAMING_EXTRACTION));
+		releasePageCode = Boolean.parseBoolean(properties.getProperty(RELEASE_PAGE_CODE,
+				DEFAULT_RELEASE_PAGE_CODE));
+		conditionalRequests = Boolean.parseBoolean(properties.getProperty(CONDITIONAL_REQUESTS,
+				DEFAULT_CONDITIONAL_REQUESTS));
+		archiveReplay = Boolean.parseBoolean(properties.getProperty(ARCHIVE_REPLAY, DEFAULT_ARCHIVE_REPLAY));
+		responseCache = Boolean.parseBoolean(properties.getProperty(RESPONSE_CACHE, DEFAULT_RESPONSE_CACHE));
+		semanticPreload = Boolean.parseBoolean(properties.getProperty(SEMANTIC_PRELOAD, DEFAULT_SEMANTIC_PRELOAD));
 
 		refreshDelay = Integer.parseInt(properties.getProperty(REFRESH_DELAY, DEFAULT_REFRESH_DELAY));
 		requestDelay = Integer.parseInt(properties.getProperty(REQUEST_DELAY, DEFAULT_REQUEST_DELAY));
+		indexQueueSize = Integer.parseInt(properties.getProperty(INDEX_QUEUE_SIZE, DEFAULT_INDEX_QUEUE_SIZE));
+		indexBatchSize = Integer.parseInt(properties.getProperty(INDEX_BATCH_SIZE, DEFAULT_INDEX_BATCH_SIZE));
+		indexBucketSize = Long.parseLong(properties.getProperty(INDEX_BUCKET_SIZE, DEFAULT_INDEX_BUCKET_SIZE));
+		indexRetention = Long.parseLong(properties.getProperty(INDEX_RETENTION, DEFAULT_INDEX_RETENTION));
+		duplicateDistance = Integer.parseInt(properties.getProperty(DUPLICATE_DISTANCE, DEFAULT_DUPLICATE_DISTANCE));
+		pageMemoryBudget = Long.parseLong(properties.getProperty(PAGE_MEMORY_BUDGET, DEFAULT_PAGE_MEMORY_BUDGET));
+		pageMaxSize = Long.parseLong(properties.getProperty(PAGE_MAX_SIZE, DEFAULT_PAGE_MAX_SIZE));
+		archiveSegmentSize = Long.parseLong(properties.getProperty(ARCHIVE_SEGMENT_SIZE,
+				DEFAULT_ARCHIVE_SEGMENT_SIZE));
+		archiveQueueSize = Integer.parseInt(properties.getProperty(ARCHIVE_QUEUE_SIZE, DEFAULT_ARCHIVE_QUEUE_SIZE));
+		responseCacheSize = Long.parseLong(properties.getProperty(RESPONSE_CACHE_SIZE,
+				DEFAULT_RESPONSE_CACHE_SIZE));
+		responseCacheDiskSize = Long.parseLong(properties.getProperty(RESPONSE_CACHE_DISK_SIZE,
+				DEFAULT_RESPONSE_CACHE_DISK_SIZE));
+		fetchBufferSize = Integer.parseInt(properties.getProperty(FETCH_BUFFER_SIZE, DEFAULT_FETCH_BUFFER_SIZE));
+		urlFilterCapacity = Integer.parseInt(properties.getProperty(URL_FILTER_CAPACITY,
+				DEFAULT_URL_FILTER_CAPACITY));
+		qualityCacheSize = Integer.parseInt(properties.getProperty(QUALITY_CACHE_SIZE, DEFAULT_QUALITY_CACHE_SIZE));
+		pageKeywordsCacheSize = Integer.parseInt(properties.getProperty(PAGE_KEYWORDS_CACHE_SIZE,
+				DEFAULT_PAGE_KEYWORDS_CACHE_SIZE));
+		semanticCacheSize = Integer.parseInt(properties.getProperty(SEMANTIC_CACHE_SIZE,
+				DEFAULT_SEMANTIC_CACHE_SIZE));
+		neighbourCacheSize = Integer.parseInt(properties.getProperty(NEIGHBOUR_CACHE_SIZE,
+				DEFAULT_NEIGHBOUR_CACHE_SIZE));
+		neighbourWeighting = NeighbourSampler.Weighting.valueOf(properties.getProperty(NEIGHBOUR_WEIGHTING,
+				DEFAULT_NEIGHBOUR_WEIGHTING).trim().toUpperCase());
+		relevanceEngine = RelevanceEngine.Type.valueOf(properties.getProperty(RELEVANCE_ENGINE,
+				DEFAULT_RELEVANCE_ENGINE).trim().toUpperCase());
 		
 		resourceDir = properties.getProperty(MAIN_DIR, DEFAULT_MAIN_DIR);
 		logFile = properties.getProperty(LOG_FILE, DEFAULT_LOG_FILE);
 		databaseDir = properties.getProperty(DATABASE_DIR, DEFAULT_DATABASE_DIR);
 		wordnetDir = properties.getProperty(WORDNET_LOCATION, DEFAULT_WORDNET_LOCATION);
 		pageArchiveDir = properties.getProperty(PAGE_ARCHIVE_DIR, DEFAULT_PAGE_ARCHIVE_DIR);
+		responseCacheDir = properties.getProperty(RESPONSE_CACHE_DIR, DEFAULT_RESPONSE_CACHE_DIR);
+		semanticCacheFile = properties.getProperty(SEMANTIC_CACHE_FILE, DEFAULT_SEMANTIC_CACHE_FILE);
+		lexiconFile = properties.getProperty(LEXICON_FILE, DEFAULT_LEXICON_FILE);
 		taggerPath = properties.getProperty(TAGGER_PATH, DEFAULT_TAGGER_PATH);
+		defaultCharset = properties.getProperty(CHARSET, DEFAULT_CHARSET);
+		trackingParameters = properties.getProperty(TRACKING_PARAMETERS, DEFAULT_TRACKING_PARAMETERS);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.github.beast.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A reader decoding a byte stream of a downloaded page. Bytes are read into a
+ * pooled direct buffer and decoded straight into the buffer of the caller, so
+ * that no intermediate strings are created. The encoding is
+ * {@link CharsetDetector detected} from the start of the stream before any
+ * character is read. Malformed input is replaced, rather than reported.
+ * <p>
+ * The number of bytes read is limited, reading beyond the limit fails with an
+ * {@link IOException}. The pooled buffer is returned to the
+ * {@link BufferPool} when the reader is closed.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public class DecodingReader extends Reader {
+
+	private final ReadableByteChannel channel;
+	private final CharsetDecoder decoder;
+	private final long limit;
+	private ByteBuffer bytes;
+	private long total;
+	private boolean endOfInput;
+	private boolean flushed;
+
+	/**
+	 * @param channel the channel of the byte stream
+	 * @param bytes pooled buffer holding bytes already read, ready to be read
+	 * @param charset encoding of the stream
+	 * @param limit maximal number of bytes read from the stream
+	 * @param total number of bytes already read from the stream
+	 * @param endOfInput <i>true</i> if the end of the stream has been reached
+	 */
+	private DecodingReader(final ReadableByteChannel channel, final ByteBuffer bytes, final Charset charset,
+			final long limit, final long total, final boolean endOfInput) {
+
+		this.channel = channel;
+		this.bytes = bytes;
+		this.limit = limit;
+		this.total = total;
+		this.endOfInput = endOfInput;
+		this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Opens a reader of a byte stream of a page. The start of the stream is
+	 * read in order to detect its encoding.
+	 * 
+	 * @param stream the byte stream of the page
+	 * @param contentType the <i>Content-Type</i> header of the response, may
+	 *        be <code>null</code>
+	 * @param limit maximal number of bytes read from the stream
+	 * @return reader of the stream
+	 * @throws IOException if reading of the stream fails or exceeds the limit
+	 */
+	public static DecodingReader open(final InputStream stream, final String contentType, final long limit)
+			throws IOException {
+
+		ReadableByteChannel channel = Channels.newChannel(stream);
+		ByteBuffer buffer = BufferPool.getInstance().acquire();
+		long total = 0;
+		int read = 0;
+
+		try {
+			while ((buffer.position() < CharsetDetector.PRESCAN_LENGTH) && (buffer.hasRemaining())
+					&& ((read = channel.read(buffer)) >= 0)) {
+				total += read;
+			}
+			if (total > limit) {
+				throw new IOException("page exceeds the size limit of " + limit + " bytes");
+			}
+		} catch (IOException e) {
+			BufferPool.getInstance().release(buffer);
+			channel.close();
+			throw e;
+		}
+
+		buffer.flip();
+		Charset charset = CharsetDetector.detect(buffer, contentType);
+		return new DecodingReader(channel, buffer, charset, limit, total, read < 0);
+	}
+
+	/**
+	 * @return the encoding of the stream
+	 */
+	public Charset getCharset() {
+
+		return decoder.charset();
+	}
+
+	/**
+	 * Reads characters into a portion of an array.
+	 * 
+	 * @param buffer destination array
+	 * @param offset offset at which to start storing characters
+	 * @param length maximal number of characters to read
+	 * @return number of characters read, or <i>-1</i> at the end of the stream
+	 * @throws IOException if reading of the stream fails or exceeds the limit
+	 */
+	public int read(final char[] buffer, final int offset, final int length) throws IOException {
+
+		if (length == 0) {
+			return 0;
+		}
+
+		CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+		decode(out, false);
+
+		int count = out.position() - offset;
+		return ((count == 0) && (isFinished())) ? -1 : count;
+	}
+
+	/**
+	 * Reads and decodes the rest of the stream at once, directly into a
+	 * character buffer.
+	 * 
+	 * @param expectedLength expected number of characters, used to size the
+	 *        buffer, may be <i>0</i> if not known
+	 * @return the decoded characters, ready to be read
+	 * @throws IOException if reading of the stream fails or exceeds the limit
+	 */
+	public CharBuffer readFully(final int expectedLength) throws IOException {
+
+		CharBuffer out = CharBuffer.allocate(Math.max(expectedLength, BufferPool.getInstance().getBufferSize()));
+
+		while (true) {
+			decode(out, true);
+			if (isFinished()) {
+				break;
+			}
+			if (!out.hasRemaining()) {
+				CharBuffer larger = CharBuffer.allocate(out.capacity() * 2);
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
+		}
+		out.flip();
+		return out;
+	}
+
+	/**
+	 * Closes the stream and returns the buffer into the pool.
+	 * 
+	 * @throws IOException if closing of the stream fails
+	 */
+	public void close() throws IOException {
+
+		if (bytes != null) {
+			BufferPool.getInstance().release(bytes);
+			bytes = null;
+		}
+		channel.close();
+	}
+
+	/**
+	 * Decodes bytes into a character buffer, reading the stream as needed.
+	 * Unless reading fully, returns as soon as any characters are decoded, so
+	 * that callers are not blocked longer than needed.
+	 * 
+	 * @param out destination of decoded characters
+	 * @param fully <i>true</i> to decode until the destination is full or the
+	 *        stream ends
+	 * @throws IOException if reading of the stream fails or exceeds the limit
+	 */
+	private void decode(final CharBuffer out, final boolean fully) throws IOException {
+
+		int start = out.position();
+
+		if (bytes == null) {
+			throw new IOException("reader closed");
+		}
+		if (isFinished()) {
+			return;
+		}
+
+		while (out.hasRemaining()) {
+			CoderResult result = decoder.decode(bytes, out, endOfInput);
+
+			if (result.isOverflow()) {
+				return;
+			}
+			if (endOfInput) {
+				flushed = !decoder.flush(out).isOverflow();
+				return;
+			}
+			if ((!fully) && (out.position() > start)) {
+				return;
+			}
+			fill();
+		}
+	}
+
+	/**
+	 * Reads more bytes from the stream, keeping undecoded bytes.
+	 * 
+	 * @throws IOException if reading of the stream fails or exceeds the limit
+	 */
+	private void fill() throws IOException {
+
+		bytes.compact();
+		int read = channel.read(bytes);
+		bytes.flip();
+
+		if (read < 0) {
+			endOfInput = true;
+			return;
+		}
+		total += read;
+		if (total > limit) {
+			throw new IOException("page exceeds the size limit of " + limit + " bytes");
+		}
+	}
+
+	/**
+	 * @return <i>true</i> if all characters of the stream have been decoded
+	 */
+	private boolean isFinished() {
+
+		return (endOfInput) && (flushed) && (!bytes.hasRemaining());
+	}
+}
@@ -0,0 +1,193 @@
+package com.github.beast.util;
+
+/**
+ * An immutable fingerprint of the text content of a page. Consists of an exact
+ * 64-bit hash of the normalized text, identifying byte-identical content up
+ * to case and whitespace, and a 64-bit <i>SimHash</i> of word shingles,
+ * identifying near-identical content. Both are computed in a single pass over
+ * the text, without creating intermediate strings.
+ * <p>
+ * Near-identical texts have <i>SimHashes</i> differing only in few bits. In
+ * order to find such texts through exact lookups, the <i>SimHash</i> is split
+ * into {@link #BANDS} bands, of which at least one is shared by any two texts
+ * differing in fewer than {@link #BANDS} bits.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see <a href="http://www.wwwconference.org/www2007/papers/paper215.pdf">
+ *      Detecting near-duplicates for web crawling</a>
+ */
+public final class Fingerprint {
+
+	/** Number of bands of the <i>SimHash</i>. */
+	public static final int BANDS = 4;
+
+	/** Number of words in a shingle. */
+	private static final int SHINGLE = 3;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long hash;
+	private final long simHash;
+
+	/**
+	 * @param hash exact hash of the normalized text
+	 * @param simHash <i>SimHash</i> of the text
+	 */
+	public Fingerprint(final long hash, final long simHash) {
+
+		this.hash = hash;
+		this.simHash = simHash;
+	}
+
+	/**
+	 * Computes the fingerprint of a text. The text is normalized to lower case
+	 * words, separated by single spaces.
+	 * 
+	 * @param text the text to be fingerprinted
+	 * @return fingerprint of the text, or <code>null</code> if the text is
+	 *         <code>null</code> or contains no words, as all such texts would
+	 *         share a single fingerprint
+	 */
+	public static Fingerprint of(final CharSequence text) {
+
+		if (text == null) {
+			return null;
+		}
+
+		long exact = FNV_OFFSET;
+		long word = FNV_OFFSET;
+		boolean inWord = false;
+		long[] window = new long[SHINGLE];
+		int words = 0;
+		int[] votes = new int[Long.SIZE];
+		int length = text.length();
+
+		for (int i = 0; i <= length; i++) {
+			char c = (i < length) ? text.charAt(i) : ' ';
+
+			if (Character.isLetterOrDigit(c)) {
+				if ((!inWord) && (words > 0)) {
+					exact = (exact ^ ' ') * FNV_PRIME;
+				}
+				c = Character.toLowerCase(c);
+				exact = (exact ^ c) * FNV_PRIME;
+				word = (word ^ c) * FNV_PRIME;
+				inWord = true;
+			} else if (inWord) {
+				window[words % SHINGLE] = word;
+				words++;
+				if (words >= SHINGLE) {
+					vote(votes, shingle(window, words));
+				}
+				word = FNV_OFFSET;
+				inWord = false;
+			}
+		}
+
+		if (words == 0) {
+			return null;
+		}
+
+		// texts shorter than a shingle are represented by their words
+		for (int i = 0; (words < SHINGLE) && (i < words); i++) {
+			vote(votes, mix(window[i]));
+		}
+
+		long sim = 0;
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			if (votes[bit] > 0) {
+				sim |= 1L << bit;
+			}
+		}
+		return new Fingerprint(exact, sim);
+	}
+
+	/**
+	 * @return exact hash of the normalized text
+	 */
+	public long getHash() {
+
+		return hash;
+	}
+
+	/**
+	 * @return <i>SimHash</i> of the text
+	 */
+	public long getSimHash() {
+
+		return simHash;
+	}
+
+	/**
+	 * @param band index of a band, from <i>0</i> to {@link #BANDS} - 1
+	 * @return bits of the <i>SimHash</i> within the band
+	 */
+	public int getBand(final int band) {
+
+		int width = Long.SIZE / BANDS;
+		return (int) ((simHash >>> (band * width)) & ((1L << width) - 1));
+	}
+
+	/**
+	 * @param other fingerprint of another text
+	 * @return number of differing bits of the <i>SimHashes</i> of the texts
+	 */
+	public int distance(final Fingerprint other) {
+
+		return Long.bitCount(simHash ^ other.simHash);
+	}
+
+	/**
+	 * @param other fingerprint of another text, may be <code>null</code>
+	 * @return <i>true</i> if the normalized texts are identical
+	 */
+	public boolean sameContent(final Fingerprint other) {
+
+		return (other != null) && (hash == other.hash) && (simHash == other.simHash);
+	}
+
+	/**
+	 * Adds votes of a shingle hash to the bits of the <i>SimHash</i>.
+	 * 
+	 * @param votes votes for each bit
+	 * @param value hash of a shingle
+	 */
+	private static void vote(final int[] votes, final long value) {
+
+		for (int bit = 0; bit < Long.SIZE; bit++) {
+			votes[bit] += (((value >>> bit) & 1) != 0) ? 1 : -1;
+		}
+	}
+
+	/**
+	 * @param window hashes of the last words, in a circular buffer
+	 * @param words number of words read so far
+	 * @return hash of the shingle of the last words
+	 */
+	private static long shingle(final long[] window, final int words) {
+
+		long value = 0;
+
+		for (int i = words - SHINGLE; i < words; i++) {
+			value = (value * FNV_PRIME) ^ window[i % SHINGLE];
+		}
+		return mix(value);
+	}
+
+	/**
+	 * Spreads the bits of a hash, so that every bit of the result depends on
+	 * all bits of the input.
+	 * 
+	 * @param value a hash
+	 * @return the mixed hash
+	 */
+	private static long mix(final long value) {
+
+		long z = value;
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+}
@@ -0,0 +1,190 @@
+package com.github.beast.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A scalable Bloom filter of strings. The filter tells with certainty, that a
+ * string has not been added, while a string reported as possibly added may
+ * not have been added, with a bounded probability.
+ * <p>
+ * The filter consists of a series of Bloom filters. Once a filter reaches its
+ * capacity, a new one is added, with {@link #GROWTH} times the capacity and
+ * {@link #TIGHTENING} times the false positive probability of the previous
+ * one, so that the overall false positive probability stays bounded, no
+ * matter how many strings are added. Strings may be added and tested
+ * concurrently.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ * @see <a href="http://gsd.di.uminho.pt/members/cbm/ps/dbloom.pdf">Scalable
+ *      Bloom Filters</a>
+ */
+public class ScalableBloomFilter {
+
+	/** Growth of capacity of each added filter. */
+	private static final int GROWTH = 2;
+
+	/** Tightening of false positive probability of each added filter. */
+	private static final double TIGHTENING = 0.5;
+
+	/**
+	 * A single Bloom filter of fixed capacity.
+	 */
+	private static final class Stage {
+
+		private final AtomicLongArray bits;
+		private final long numBits;
+		private final int numHashes;
+		private final int capacity;
+		private final AtomicInteger count = new AtomicInteger();
+
+		/**
+		 * @param capacity number of strings, after which the filter is full
+		 * @param probability false positive probability at full capacity
+		 */
+		private Stage(final int capacity, final double probability) {
+
+			long optimalBits = (long) Math.ceil(-capacity * Math.log(probability) / (Math.log(2) * Math.log(2)));
+			int words = (int) Math.min(Integer.MAX_VALUE, (optimalBits + Long.SIZE - 1) / Long.SIZE);
+
+			this.bits = new AtomicLongArray(Math.max(words, 1));
+			this.numBits = (long) bits.length() * Long.SIZE;
+			this.numHashes = Math.max(1, (int) Math.round(Math.log(2) * numBits / capacity));
+			this.capacity = capacity;
+		}
+
+		/**
+		 * @param hash 64-bit hash of a string
+		 * @return <i>true</i> if the string may have been added
+		 */
+		private boolean mightContain(final long hash) {
+
+			int first = (int) hash;
+			int second = (int) (hash >>> 32);
+
+			for (int i = 0; i < numHashes; i++) {
+				long bit = ((first + (long) i * second) & Long.MAX_VALUE) % numBits;
+				if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @param hash 64-bit hash of a string
+		 */
+		private void put(final long hash) {
+
+			int first = (int) hash;
+			int second = (int) (hash >>> 32);
+
+			for (int i = 0; i < numHashes; i++) {
+				long bit = ((first + (long) i * second) & Long.MAX_VALUE) % numBits;
+				int word = (int) (bit >>> 6);
+				long mask = 1L << bit;
+				long current;
+				while (((current = bits.get(word)) & mask) == 0) {
+					if (bits.compareAndSet(word, current, current | mask)) {
+						break;
+					}
+				}
+			}
+			count.incrementAndGet();
+		}
+	}
+
+	/** Filters of the series, the last one receives added strings. */
+	private volatile Stage[] stages;
+
+	/**
+	 * @param initialCapacity capacity of the first filter
+	 * @param probability false positive probability of the first filter
+	 */
+	public ScalableBloomFilter(final int initialCapacity, final double probability) {
+
+		stages = new Stage[] {new Stage(initialCapacity, probability * (1 - TIGHTENING))};
+	}
+
+	/**
+	 * @param string a string
+	 * @return <i>false</i> if the string has certainly not been added,
+	 *         <i>true</i> if it may have been added
+	 */
+	public boolean mightContain(final String string) {
+
+		long hash = hash(string);
+
+		for (Stage stage : stages) {
+			if (stage.mightContain(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a string into the filter, adding a new filter to the series if the
+	 * current one is full.
+	 * 
+	 * @param string the added string
+	 */
+	public void put(final String string) {
+
+		Stage[] current = stages;
+		Stage last = current[current.length - 1];
+
+		if (last.count.get() >= last.capacity) {
+			synchronized (this) {
+				current = stages;
+				last = current[current.length - 1];
+				if (last.count.get() >= last.capacity) {
+					Stage[] grown = new Stage[current.length + 1];
+					System.arraycopy(current, 0, grown, 0, current.length);
+					grown[current.length] = new Stage(last.capacity * GROWTH, probabilityOf(last) * TIGHTENING);
+					stages = grown;
+					last = grown[current.length];
+				}
+			}
+		}
+		last.put(hash(string));
+	}
+
+	/**
+	 * @return number of strings added into the filter
+	 */
+	public int size() {
+
+		int size = 0;
+
+		for (Stage stage : stages) {
+			size += stage.count.get();
+		}
+		return size;
+	}
+
+	/**
+	 * @param stage a filter of the series
+	 * @return false positive probability of the filter at full capacity
+	 */
+	private static double probabilityOf(final Stage stage) {
+
+		return Math.pow(1 - Math.exp(-(double) stage.numHashes * stage.capacity / stage.numBits), stage.numHashes);
+	}
+
+	/**
+	 * @param string a string
+	 * @return 64-bit FNV-1a hash of the string, with mixed bits
+	 */
+	private static long hash(final String string) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < string.length(); i++) {
+			hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+		}
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		return hash ^ (hash >>> 33);
+	}
+}
@@ -0,0 +1,460 @@
+package com.github.beast.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of terms of an article, built once when the article is
+ * parsed. For every lower case term of the article, the index holds a bitmap
+ * of the chunks of its text containing the term, along with flags of presence
+ * in its title and perex. Looking up a keyword thus costs a binary search and
+ * a population count of its bitmap, independent of the length of the article.
+ * <p>
+ * The text is split into chunks of {@link #CHUNK_SIZE} characters, the
+ * remainder of the text belonging to the last chunk. Keywords are matched as
+ * prefixes of terms, so that a keyword in root form matches its inflected
+ * forms. Keywords of multiple words match chunks containing all their words.
+ * Several alternative keywords, such as synonyms, may be looked up at once,
+ * matching chunks containing any of them.
+ * <p>
+ * The number of occurrences of every term in the text is kept as well, for
+ * relevance measures based on term frequency.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class TermIndex {
+
+	/** Number of characters of a chunk of the text. */
+	public static final int CHUNK_SIZE = 1000;
+
+	/** Flag of a term contained in the title. */
+	private static final byte IN_TITLE = 1;
+
+	/** Flag of a term contained in the perex. */
+	private static final byte IN_PEREX = 2;
+
+	/** Index of an article without any content. */
+	public static final TermIndex EMPTY = new TermIndex(new String[0], new byte[0], new int[0], new long[0], 0, 0,
+			false, false);
+
+	/** Terms of the article, in ascending order. */
+	private final String[] terms;
+
+	/** Flags of the terms. */
+	private final byte[] flags;
+
+	/** Number of occurrences of the terms in the text. */
+	private final int[] counts;
+
+	/** Chunk bitmaps of the terms, {@link #words} longs per term. */
+	private final long[] chunks;
+
+	/** Number of longs of a single bitmap. */
+	private final int words;
+
+	/** Number of chunks of the text. */
+	private final int chunkCount;
+
+	/** Number of terms of the text, including repeated terms. */
+	private final int length;
+
+	/** Is <i>true</i> if the article has a title. */
+	private final boolean title;
+
+	/** Is <i>true</i> if the article has a perex. */
+	private final boolean perex;
+
+	/**
+	 * @param terms terms of the article, in ascending order
+	 * @param flags flags of the terms
+	 * @param counts number of occurrences of the terms in the text
+	 * @param chunks chunk bitmaps of the terms
+	 * @param chunkCount number of chunks of the text
+	 * @param length number of terms of the text, including repeated terms
+	 * @param title <i>true</i> if the article has a title
+	 * @param perex <i>true</i> if the article has a perex
+	 */
+	private TermIndex(final String[] terms, final byte[] flags, final int[] counts, final long[] chunks,
+			final int chunkCount, final int length, final boolean title, final boolean perex) {
+
+		this.terms = terms;
+		this.flags = flags;
+		this.counts = counts;
+		this.chunks = chunks;
+		this.chunkCount = chunkCount;
+		this.length = length;
+		this.words = (chunkCount + Long.SIZE - 1) / Long.SIZE;
+		this.title = title;
+		this.perex = perex;
+	}
+
+	/**
+	 * Builds the index of an article. Terms are maximal sequences of letters
+	 * and digits, normalized to lower case.
+	 * 
+	 * @param title the title of the article, may be <code>null</code>
+	 * @param perex the perex of the article, may be <code>null</code>
+	 * @param text the text of the article, may be <code>null</code>
+	 * @return index of the article
+	 */
+	public static TermIndex of(final CharSequence title, final CharSequence perex, final CharSequence text) {
+
+		int chunkCount = (text == null) ? 0 : text.length() / CHUNK_SIZE;
+		int words = (chunkCount + Long.SIZE - 1) / Long.SIZE;
+		Map<String, long[]> bitmaps = new HashMap<String, long[]>();
+		Map<String, int[]> occurrences = new HashMap<String, int[]>();
+		Map<String, Byte> marks = new HashMap<String, Byte>();
+		int textLength = 0;
+
+		if (text != null) {
+			StringBuilder term = new StringBuilder();
+			int end = text.length();
+			int start = 0;
+
+			for (int i = 0; i <= end; i++) {
+				char c = (i < end) ? text.charAt(i) : ' ';
+
+				if (Character.isLetterOrDigit(c)) {
+					if (term.length() == 0) {
+						start = i;
+					}
+					term.append(Character.toLowerCase(c));
+				} else if (term.length() > 0) {
+					String key = term.toString();
+					long[] bitmap = bitmaps.get(key);
+					if (bitmap == null) {
+						bitmap = new long[words];
+						bitmaps.put(key, bitmap);
+						occurrences.put(key, new int[1]);
+					}
+					// texts shorter than a chunk have no chunks
+					if (chunkCount > 0) {
+						int chunk = Math.min(start / CHUNK_SIZE, chunkCount - 1);
+						bitmap[chunk / Long.SIZE] |= 1L << chunk;
+					}
+					occurrences.get(key)[0]++;
+					textLength++;
+					term.setLength(0);
+				}
+			}
+		}
+		mark(marks, title, IN_TITLE);
+		mark(marks, perex, IN_PEREX);
+
+		for (String key : marks.keySet()) {
+			if (!bitmaps.containsKey(key)) {
+				bitmaps.put(key, new long[words]);
+			}
+		}
+
+		String[] terms = bitmaps.keySet().toArray(new String[bitmaps.size()]);
+		byte[] flags = new byte[terms.length];
+		int[] counts = new int[terms.length];
+		long[] chunks = new long[terms.length * words];
+
+		Arrays.sort(terms);
+		for (int i = 0; i < terms.length; i++) {
+			Byte mark = marks.get(terms[i]);
+			int[] count = occurrences.get(terms[i]);
+			flags[i] = (mark == null) ? 0 : mark;
+			counts[i] = (count == null) ? 0 : count[0];
+			System.arraycopy(bitmaps.get(terms[i]), 0, chunks, i * words, words);
+		}
+		return new TermIndex(terms, flags, counts, chunks, chunkCount, textLength, (title != null)
+				&& (title.length() > 0), (perex != null) && (perex.length() > 0));
+	}
+
+	/**
+	 * @return number of chunks of the text
+	 */
+	public int getChunkCount() {
+
+		return chunkCount;
+	}
+
+	/**
+	 * @return <i>true</i> if the article has a perex
+	 */
+	public boolean hasPerex() {
+
+		return perex;
+	}
+
+	/**
+	 * @return <i>true</i> if the article has a title
+	 */
+	public boolean hasTitle() {
+
+		return title;
+	}
+
+	/**
+	 * @return number of terms of the text, including repeated terms
+	 */
+	public int getLength() {
+
+		return length;
+	}
+
+	/**
+	 * @param i position of a term, from <i>0</i> to {@link #size()} - 1
+	 * @return the term, terms are in ascending order
+	 */
+	public String getTerm(final int i) {
+
+		return terms[i];
+	}
+
+	/**
+	 * @return estimated size of the storage of the index, in bytes
+	 */
+	public long getByteSize() {
+
+		long size = flags.length + 4L * counts.length + 8L * chunks.length;
+
+		for (String term : terms) {
+			size += 2L * term.length();
+		}
+		return size;
+	}
+
+	/**
+	 * @return number of distinct terms of the article
+	 */
+	public int size() {
+
+		return terms.length;
+	}
+
+	/**
+	 * Counts the occurrences of alternative keywords in the text. Occurrences
+	 * of a keyword of multiple words are counted as the occurrences of its
+	 * least frequent word.
+	 * 
+	 * @param alternatives the keywords, each split into its lower case words
+	 *        by {@link #tokenize(CharSequence)}
+	 * @return total number of occurrences of the keywords
+	 */
+	public int countOccurrences(final String[][] alternatives) {
+
+		int total = 0;
+
+		for (String[] tokens : alternatives) {
+			int least = Integer.MAX_VALUE;
+			for (String token : tokens) {
+				int count = 0;
+				for (int i = lowerBound(token); (i < terms.length) && (terms[i].startsWith(token)); i++) {
+					count += counts[i];
+				}
+				least = Math.min(least, count);
+			}
+			if (tokens.length > 0) {
+				total += least;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Counts the chunks of the text containing a keyword.
+	 * 
+	 * @param keyword the keyword, in lower case
+	 * @return number of chunks containing all words of the keyword
+	 */
+	public int countChunks(final String keyword) {
+
+		return countChunks(new String[][] {tokenize(keyword)});
+	}
+
+	/**
+	 * Counts the chunks of the text containing any of alternative keywords.
+	 * 
+	 * @param alternatives the keywords, each split into its lower case words
+	 *        by {@link #tokenize(CharSequence)}
+	 * @return number of chunks containing all words of at least one keyword
+	 */
+	public int countChunks(final String[][] alternatives) {
+
+		long[] matched = new long[words];
+		int count = 0;
+
+		for (String[] tokens : alternatives) {
+			long[] bitmap = chunksOf(tokens);
+			for (int w = 0; w < words; w++) {
+				matched[w] |= bitmap[w];
+			}
+		}
+
+		for (int w = 0; w < words; w++) {
+			count += Long.bitCount(matched[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @param keyword the keyword, in lower case
+	 * @return <i>true</i> if the perex contains all words of the keyword
+	 */
+	public boolean inPerex(final String keyword) {
+
+		return inPerex(new String[][] {tokenize(keyword)});
+	}
+
+	/**
+	 * @param alternatives the keywords, each split into its lower case words
+	 * @return <i>true</i> if the perex contains all words of at least one
+	 *         keyword
+	 */
+	public boolean inPerex(final String[][] alternatives) {
+
+		return hasFlag(alternatives, IN_PEREX);
+	}
+
+	/**
+	 * @param keyword the keyword, in lower case
+	 * @return <i>true</i> if the title contains all words of the keyword
+	 */
+	public boolean inTitle(final String keyword) {
+
+		return inTitle(new String[][] {tokenize(keyword)});
+	}
+
+	/**
+	 * @param alternatives the keywords, each split into its lower case words
+	 * @return <i>true</i> if the title contains all words of at least one
+	 *         keyword
+	 */
+	public boolean inTitle(final String[][] alternatives) {
+
+		return hasFlag(alternatives, IN_TITLE);
+	}
+
+	/**
+	 * Splits a text into terms, in the same way the article is split.
+	 * 
+	 * @param text a text
+	 * @return lower case terms of the text, in order of occurrence
+	 */
+	public static String[] tokenize(final CharSequence text) {
+
+		StringBuilder term = new StringBuilder();
+		List<String> tokens = new ArrayList<String>();
+		int length = text.length();
+
+		for (int i = 0; i <= length; i++) {
+			char c = (i < length) ? text.charAt(i) : ' ';
+
+			if (Character.isLetterOrDigit(c)) {
+				term.append(Character.toLowerCase(c));
+			} else if (term.length() > 0) {
+				tokens.add(term.toString());
+				term.setLength(0);
+			}
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * @param tokens words of a keyword
+	 * @return bitmap of the chunks containing all words of the keyword
+	 */
+	private long[] chunksOf(final String[] tokens) {
+
+		long[] matched = null;
+
+		if (tokens.length == 0) {
+			return new long[words];
+		}
+
+		for (String token : tokens) {
+			long[] bitmap = new long[words];
+			int first = lowerBound(token);
+			for (int i = first; (i < terms.length) && (terms[i].startsWith(token)); i++) {
+				for (int w = 0; w < words; w++) {
+					bitmap[w] |= chunks[i * words + w];
+				}
+			}
+			if (matched == null) {
+				matched = bitmap;
+			} else {
+				for (int w = 0; w < words; w++) {
+					matched[w] &= bitmap[w];
+				}
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * @param alternatives the keywords, each split into its lower case words
+	 * @param flag the flag to be checked
+	 * @return <i>true</i> if every word of at least one keyword is a prefix of
+	 *         a term with the flag
+	 */
+	private boolean hasFlag(final String[][] alternatives, final byte flag) {
+
+		for (String[] tokens : alternatives) {
+			if (hasFlag(tokens, flag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param tokens words of a keyword
+	 * @param flag the flag to be checked
+	 * @return <i>true</i> if every word of the keyword is a prefix of a term
+	 *         with the flag
+	 */
+	private boolean hasFlag(final String[] tokens, final byte flag) {
+
+		if (tokens.length == 0) {
+			return false;
+		}
+
+		for (String token : tokens) {
+			boolean found = false;
+			int first = lowerBound(token);
+			for (int i = first; (!found) && (i < terms.length) && (terms[i].startsWith(token)); i++) {
+				found = (flags[i] & flag) != 0;
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param token a token
+	 * @return position of the first term not less than the token
+	 */
+	private int lowerBound(final String token) {
+
+		int position = Arrays.binarySearch(terms, token);
+		return (position < 0) ? -position - 1 : position;
+	}
+
+	/**
+	 * Marks all terms of a section of the article with a flag.
+	 * 
+	 * @param marks flags of terms
+	 * @param section the section, may be <code>null</code>
+	 * @param flag the flag of the section
+	 */
+	private static void mark(final Map<String, Byte> marks, final CharSequence section, final byte flag) {
+
+		if (section == null) {
+			return;
+		}
+		for (String token : tokenize(section)) {
+			Byte mark = marks.get(token);
+			marks.put(token, (byte) (((mark == null) ? 0 : mark) | flag));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.github.beast.util;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Canonicalization of URLs of links, so that variants of a URL pointing to the
+ * same page are represented by a single URL. The canonical form of a URL has
+ * lower case scheme and host, no default port, no fragment, a non-empty path
+ * and no tracking parameters in the query. Tracking parameters are set in
+ * {@link Configuration}, parameters prefixed with "<i>utm_</i>" are always
+ * considered tracking parameters.
+ * 
+ * @author Štefan Sabo
+ * @version 1.0
+ */
+public final class UrlCanonicalizer {
+
+	private static final String TRACKING_PREFIX = "utm_";
+	private static final int DEFAULT_HTTP_PORT = 80;
+	private static final int DEFAULT_HTTPS_PORT = 443;
+
+	/** Names of tracking parameters, in lower case. */
+	private static volatile Set<String> trackingParameters;
+
+	/**
+	 * Constructor of the <code>UrlCanonicalizer</code> class. Is private
+	 * because <code>UrlCanonicalizer</code> holds static methods only.
+	 */
+	private UrlCanonicalizer() {
+
+	}
+
+	/**
+	 * Returns the canonical form of a URL.
+	 * 
+	 * @param url the URL to be canonicalized
+	 * @return the canonical URL, the same instance if already canonical
+	 */
+	public static URL canonicalize(final URL url) {
+
+		String scheme = url.getProtocol().toLowerCase(Locale.ENGLISH);
+		String host = url.getHost().toLowerCase(Locale.ENGLISH);
+		int port = url.getPort();
+		String path = url.getPath();
+		String query = stripTracking(url.getQuery());
+		StringBuilder canonical = new StringBuilder(url.toString().length());
+
+		if (((port == DEFAULT_HTTP_PORT) && ("http".equals(scheme)))
+				|| ((port == DEFAULT_HTTPS_PORT) && ("https".equals(scheme)))) {
+			port = -1;
+		}
+
+		canonical.append(scheme).append("://");
+		if (url.getUserInfo() != null) {
+			canonical.append(url.getUserInfo()).append('@');
+		}
+		canonical.append(host);
+		if (port != -1) {
+			canonical.append(':').append(port);
+		}
+		canonical.append((path.length() == 0) ? "/" : path);
+		if (query != null) {
+			canonical.append('?').append(query);
+		}
+
+		String result = canonical.toString();
+		if (result.equals(url.toString())) {
+			return url;
+		}
+		try {
+			return new URL(result);
+		} catch (MalformedURLException e) {
+			return url;
+		}
+	}
+
+	/**
+	 * Removes tracking parameters from a query, keeping the order of other
+	 * parameters.
+	 * 
+	 * @param query the query of a URL, may be <code>null</code>
+	 * @return the query without tracking parameters, or <code>null</code> if
+	 *         no parameters remain
+	 */
+	private static String stripTracking(final String query) {
+
+		if ((query == null) || (query.length() == 0)) {
+			return null;
+		}
+
+		Set<String> tracking = getTrackingParameters();
+		StringBuilder kept = new StringBuilder(query.length());
+
+		for (String parameter : query.split("&")) {
+			int pos = parameter.indexOf('=');
+			String name = ((pos < 0) ? parameter : parameter.substring(0, pos)).toLowerCase(Locale.ENGLISH);
+
+			if ((parameter.length() == 0) || (name.startsWith(TRACKING_PREFIX)) || (tracking.contains(name))) {
+				continue;
+			}
+			if (kept.length() > 0) {
+				kept.append('&');
+			}
+			kept.append(parameter);
+		}
+		return (kept.length() == 0) ? null : kept.toString();
+	}
+
+	/**
+	 * @return names of tracking parameters, in lower case
+	 */
+	private static Set<String> getTrackingParameters() {
+
+		Set<String> parameters = trackingParameters;
+
+		if (parameters == null) {
+			parameters = new HashSet<String>();
+			for (String name : Arrays.asList(Configuration.getInstance().getTrackingParameters().split(","))) {
+				if (name.trim().length() > 0) {
+					parameters.add(name.trim().toLowerCase(Locale.ENGLISH));
+				}
+			}
+			trackingParameters = parameters;
+		}
+		return parameters;
+	}
+}
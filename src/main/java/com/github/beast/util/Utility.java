@@ -1,13 +1,15 @@
 package com.github.beast.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Locale;
 
 import com.github.beast.page.Page;
+import com.github.beast.parser.StreamingExtractor;
 
 /**
  * Utility class for <i>Beast</i> project. Contains static utility methods used
@@ -27,25 +29,95 @@ public abstract class Utility {
 	 * @return HTML code of the given page
 	 * @throws NullPointerException if failed to obtain HTML code of the page
 	 */
-	public static StringBuffer requestCode(final Page page) throws NullPointerException {
+	public static CharSequence requestCode(final Page page) throws NullPointerException {
 
-		String line;
+		return requestCode(page, null);
+	}
+
+	/**
+	 * Fetches the HTML code of a given {@link Page page}, through HTTP request.
+	 * If an extractor is given, only the sections captured by the extractor
+	 * are kept and the download stops once all of its required sections are
+	 * captured.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @return HTML code of the given page, or its captured sections
+	 * @throws NullPointerException if failed to obtain HTML code of the page
+	 */
+	public static CharSequence requestCode(final Page page, final StreamingExtractor extractor)
+			throws NullPointerException {
+
+		return requestCode(page, extractor, false);
+	}
+
+	/**
+	 * Fetches the HTML code of a given {@link Page page}, through HTTP request,
+	 * as {@link #requestCode(Page, StreamingExtractor)} does. Validators of the
+	 * response (<i>ETag</i> and <i>Last-Modified</i>) and its freshness are
+	 * stored in the page.
+	 * If the request is conditional, validators stored in the page are sent
+	 * along, so that the code is not transferred if the page has not been
+	 * modified since.
+	 * <p>
+	 * The code is read as bytes into a pooled buffer and decoded with the
+	 * {@link CharsetDetector detected} encoding directly into a character
+	 * buffer, or into the extractor. Pages exceeding the size limit set in
+	 * {@link Configuration} are not downloaded.
+	 * 
+	 * @param page the page, for which the code is to be fetched
+	 * @param extractor the extractor of needed sections of the page, or
+	 *        <code>null</code> to fetch the whole code
+	 * @param conditional <i>true</i> to request the code only if modified
+	 * @return HTML code of the given page, or its captured sections, or
+	 *         <code>null</code> if the page has not been modified
+	 * @throws NullPointerException if failed to obtain HTML code of the page
+	 */
+	public static CharSequence requestCode(final Page page, final StreamingExtractor extractor,
+			final boolean conditional) throws NullPointerException {
+
+		long maxSize = Configuration.getInstance().getPageMaxSize();
 		URLConnection connection;
-		BufferedReader reader;
-		StringBuffer receivedCode = null;
+		DecodingReader reader = null;
+		CharSequence receivedCode = null;
 
 		try {
 			connection = page.getUrl().openConnection();
-			reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-			receivedCode = new StringBuffer();
 
-			while ((line = reader.readLine()) != null) {
-				receivedCode.append(line);
+			if (conditional) {
+				if (page.getEtag() != null) {
+					connection.setRequestProperty("If-None-Match", page.getEtag());
+				}
+				if (page.getLastModified() != null) {
+					connection.setRequestProperty("If-Modified-Since", page.getLastModified());
+				}
+			}
+			if ((connection instanceof HttpURLConnection)
+					&& (((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)) {
+				((HttpURLConnection) connection).disconnect();
+				return null;
+			}
+			page.setValidators(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+			page.setFreshUntil(freshUntil(connection));
+
+			if (connection.getContentLengthLong() > maxSize) {
+				throw new IOException("page exceeds the size limit of " + maxSize + " bytes");
+			}
+
+			reader = DecodingReader.open(connection.getInputStream(), connection.getContentType(), maxSize);
+
+			if (extractor != null) {
+				receivedCode = extractor.extract(reader);
+			} else {
+				receivedCode = reader.readFully((int) Math.max(0, connection.getContentLengthLong()));
 			}
-			reader.close();
 
 		} catch (IOException e) {
+			System.err.println("Failed to fetch page: " + page.getUrl() + ", " + e.getMessage());
 			throw new NullPointerException();
+		} finally {
+			closeQuietly(reader);
 		}
 
 		if (receivedCode.length() == 0) {
@@ -55,6 +127,63 @@ public abstract class Utility {
 		return receivedCode;
 	}
 
+	/**
+	 * Determines the time until which a response may be reused without
+	 * requesting the page again. The freshness is given by the <i>max-age</i>
+	 * directive of the <i>Cache-Control</i> header, or by the <i>Expires</i>
+	 * header, relative to the <i>Date</i> of the response. Responses without
+	 * either are fresh for the refresh delay of bees set in
+	 * {@link Configuration}, responses marked <i>no-cache</i> or
+	 * <i>no-store</i> are not fresh at all.
+	 * 
+	 * @param connection the connection of the response
+	 * @return time in milliseconds until which the response is fresh
+	 */
+	private static long freshUntil(final URLConnection connection) {
+
+		long now = System.currentTimeMillis();
+		String cacheControl = connection.getHeaderField("Cache-Control");
+		long expires = connection.getExpiration();
+		long date = connection.getDate();
+
+		if (cacheControl != null) {
+			for (String directive : cacheControl.toLowerCase(Locale.ENGLISH).split(",")) {
+				directive = directive.trim();
+				if (directive.equals("no-cache") || directive.equals("no-store")) {
+					return now;
+				}
+				if (directive.startsWith("max-age=")) {
+					try {
+						return now + 1000 * Long.parseLong(directive.substring("max-age=".length()).trim());
+					} catch (NumberFormatException e) {
+						continue;
+					}
+				}
+			}
+		}
+
+		if (expires > 0) {
+			return now + expires - ((date > 0) ? date : now);
+		}
+		return now + Configuration.getInstance().getRefreshDelay();
+	}
+
+	/**
+	 * Closes a reader, ignoring failures.
+	 * 
+	 * @param reader the reader to be closed, may be <code>null</code>
+	 */
+	private static void closeQuietly(final Reader reader) {
+
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				System.err.println("Failed to close stream: " + e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Creates an {@link URL} object from a {@link String}. Protocol prefix is
 	 * automatically added, however the <i>string</i> needs to be well-formed,
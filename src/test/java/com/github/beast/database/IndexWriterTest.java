@@ -0,0 +1,213 @@
+package com.github.beast.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import com.github.beast.page.ArticlePage;
+import com.github.beast.page.Page;
+import com.github.beast.util.Configuration;
+
+/**
+ * Tests of the {@link IndexWriter}, writing into an index which records the
+ * writes instead of performing them. Intents are posted before the writer is
+ * started, so that all of them are drained in a single batch.
+ */
+public class IndexWriterTest extends TestCase {
+
+	/** Properties of unit tests. */
+	private static final String PROPERTIES = "src/test/resources/test.properties";
+
+	private static final int KEYWORD = 7;
+
+	private RecordingIndex index;
+	private IndexWriter writer;
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public IndexWriterTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(IndexWriterTest.class);
+	}
+
+	protected void setUp() throws Exception {
+
+		Configuration.getInstance(PROPERTIES);
+		index = new RecordingIndex();
+		writer = new IndexWriter(index);
+	}
+
+	protected void tearDown() throws Exception {
+
+		writer.shutdown();
+	}
+
+	/**
+	 * Repeated writes of a page, keyword or relation within a batch are
+	 * written once, page writes first.
+	 */
+	public void testCoalescesBatch() throws Exception {
+
+		ArticlePage first = page("http://example.com/a");
+		ArticlePage refreshed = page("http://example.com/a");
+		ArticlePage second = page("http://example.com/b");
+
+		writer.postKeyword(first, KEYWORD, 0.3);
+		writer.postRelation(first, second, KEYWORD, 0.2);
+		writer.postIndex(first);
+		writer.postKeyword(first, KEYWORD, 0.7);
+		writer.postRefresh(refreshed);
+		writer.postKeyword(first, KEYWORD, 0.5);
+		writer.postRelation(first, second, KEYWORD, 0.4);
+		writer.postIndex(second);
+		drain();
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("refresh http://example.com/a");
+		expected.add("index http://example.com/b");
+		expected.add("keyword http://example.com/a 7 0.7");
+		expected.add("relation http://example.com/a http://example.com/b 7 0.4");
+		assertEquals(expected, index.writes);
+		assertSame(refreshed, index.pages.get(0));
+	}
+
+	/**
+	 * Every drained intent leaves the pending view, including intents
+	 * coalesced into the write of another intent.
+	 */
+	public void testReleasesCoalescedIntents() throws Exception {
+
+		ArticlePage refreshed = page("http://example.com/a");
+		ArticlePage indexed = page("http://example.com/a");
+
+		writer.postRefresh(refreshed);
+		writer.postIndex(indexed);
+		writer.postKeyword(refreshed, KEYWORD, 0.7);
+		writer.postKeyword(indexed, KEYWORD, 0.3);
+
+		assertSame(indexed, writer.getPendingPage("http://example.com/a"));
+		assertEquals(0.7, writer.getPendingRelevance(indexed, KEYWORD), 0);
+		drain();
+
+		assertEquals(2, index.writes.size());
+		assertSame(refreshed, index.pages.get(0));
+		assertNull(writer.getPendingPage("http://example.com/a"));
+		assertEquals(0.0, writer.getPendingRelevance(indexed, KEYWORD), 0);
+	}
+
+	/**
+	 * Intents posted after shutdown are rejected and leave no trace in the
+	 * pending view.
+	 */
+	public void testRejectsAfterShutdown() throws Exception {
+
+		ArticlePage page = page("http://example.com/a");
+
+		writer.start();
+		writer.shutdown();
+		writer.postIndex(page);
+		writer.postKeyword(page, KEYWORD, 0.5);
+
+		assertFalse(page.isIndexed());
+		assertNull(writer.getPendingPage("http://example.com/a"));
+		assertEquals(0.0, writer.getPendingRelevance(page, KEYWORD), 0);
+		assertEquals(0, writer.getQueueLength());
+		assertTrue(index.writes.isEmpty());
+	}
+
+	/**
+	 * Starts the writer and waits until all posted intents are written.
+	 */
+	private void drain() {
+
+		writer.start();
+		writer.shutdown();
+	}
+
+	/**
+	 * @param url the url of the page
+	 * @return a page not processed yet
+	 * @throws Exception if the url is malformed
+	 */
+	private static ArticlePage page(final String url) throws Exception {
+
+		return new ArticlePage(new URL(url));
+	}
+
+	/**
+	 * An index recording writes instead of performing them, committing
+	 * transactions which do nothing.
+	 */
+	private static final class RecordingIndex extends BeastIndex {
+
+		/** Performed writes, in order. */
+		private final List<String> writes = new ArrayList<String>();
+
+		/** Written pages, in order. */
+		private final List<Page> pages = new ArrayList<Page>();
+
+		public Node indexPage(final ArticlePage page) {
+
+			writes.add("index " + page.getUrl());
+			pages.add(page);
+			return null;
+		}
+
+		public Node reindexPage(final ArticlePage page, final boolean reprocess) {
+
+			writes.add("refresh " + page.getUrl());
+			pages.add(page);
+			return null;
+		}
+
+		public void addKeyword(final Page page, final int keyword, final double relevance) {
+
+			writes.add("keyword " + page.getUrl() + " " + keyword + " " + relevance);
+		}
+
+		public Relationship addRelation(final Page first, final Page second, final int keyword,
+				final double relevance) {
+
+			writes.add("relation " + first.getUrl() + " " + second.getUrl() + " " + keyword + " " + relevance);
+			return null;
+		}
+
+		public void enforceRetention() {
+
+		}
+
+		Transaction beginTx() {
+
+			return (Transaction) Proxy.newProxyInstance(Transaction.class.getClassLoader(),
+					new Class<?>[] {Transaction.class}, new InvocationHandler() {
+
+						public Object invoke(final Object proxy, final Method method, final Object[] args) {
+
+							return null;
+						}
+					});
+		}
+	}
+}
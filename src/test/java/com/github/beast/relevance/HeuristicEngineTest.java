@@ -0,0 +1,183 @@
+package com.github.beast.relevance;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.github.beast.semantics.SynonymMatcher;
+import com.github.beast.util.CompactText;
+import com.github.beast.util.TermIndex;
+
+/**
+ * Tests of the {@link HeuristicEngine}, pinning its scores to those of the
+ * original heuristic, which scanned the text of an article for the keyword
+ * chunk by chunk.
+ */
+public class HeuristicEngineTest extends TestCase {
+
+	/** Words of generated articles, none contains another but as a prefix. */
+	private static final String[] WORDS = {"market", "markets", "marketing", "bank", "banks", "storm", "river",
+			"election", "minister", "vote", "votes", "oil", "price", "prices", "court"};
+
+	/** Keywords scored against generated articles. */
+	private static final String[] KEYWORDS = {"market", "bank", "storm", "vote", "oil", "price", "court",
+			"election", "weather"};
+
+	private final HeuristicEngine engine = new HeuristicEngine();
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public HeuristicEngineTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(HeuristicEngineTest.class);
+	}
+
+	/**
+	 * Scores of generated articles of various lengths equal the scores of the
+	 * original heuristic, for keywords present and absent.
+	 */
+	public void testEquivalentToOriginalHeuristic() {
+
+		Random generator = new Random(42);
+
+		for (int article = 0; article < 200; article++) {
+			String title = words(generator, 1 + generator.nextInt(8));
+			String perex = (generator.nextInt(4) == 0) ? null : words(generator, 5 + generator.nextInt(30));
+			String text = words(generator, generator.nextInt(900));
+			TermIndex terms = TermIndex.of(title, perex, CompactText.of(text));
+
+			for (String keyword : KEYWORDS) {
+				SynonymMatcher matcher = SynonymMatcher.compile(Arrays.asList(keyword));
+				assertEquals(keyword + " in article " + article, originalScore(title, perex, text, keyword),
+						engine.score(terms, matcher), 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * The remainder of the text shorter than a chunk belongs to the last
+	 * chunk.
+	 */
+	public void testRemainderBelongsToLastChunk() {
+
+		String text = pad("storm", TermIndex.CHUNK_SIZE) + pad("river", TermIndex.CHUNK_SIZE)
+				+ pad("storm", TermIndex.CHUNK_SIZE / 2);
+		TermIndex terms = TermIndex.of("river", null, CompactText.of(text));
+		SynonymMatcher matcher = SynonymMatcher.compile(Arrays.asList("storm"));
+
+		assertEquals(2, terms.getChunkCount());
+		assertEquals(originalScore("river", null, text, "storm"), engine.score(terms, matcher), 1e-12);
+		assertEquals(2.0 / 7, engine.score(terms, matcher), 1e-12);
+	}
+
+	/**
+	 * Texts shorter than a chunk are scored by their title only.
+	 */
+	public void testShortTextScoredByTitle() {
+
+		TermIndex terms = TermIndex.of("Storm hits the coast", "A storm", CompactText.of("The storm came."));
+
+		assertEquals(1.0, engine.score(terms, SynonymMatcher.compile(Arrays.asList("storm"))), 1e-12);
+		assertEquals(0.0, engine.score(terms, SynonymMatcher.compile(Arrays.asList("river"))), 1e-12);
+	}
+
+	/**
+	 * The original heuristic, as evaluated before articles were indexed.
+	 *
+	 * @param title the title of the article
+	 * @param perex the perex of the article, may be <code>null</code>
+	 * @param plainText the text of the article
+	 * @param keywordInLow the keyword, in lower case
+	 * @return relevance of the article to the keyword
+	 */
+	private static double originalScore(final String title, final String perex, final String plainText,
+			final String keywordInLow) {
+
+		final int granularity = 1000;
+
+		CompactText text = CompactText.of(plainText);
+		CompactText perexText = CompactText.of(perex);
+		int maxPoints = (int) Math.ceil(text.length() / granularity);
+		int recPoints = 0;
+
+		if (maxPoints > 0) {
+			for (int i = 0; i < maxPoints - 1; i++) {
+				if (text.containsIgnoreCase(keywordInLow, i * granularity, (i + 1) * granularity)) {
+					recPoints = recPoints + 1;
+				}
+			}
+			if (text.containsIgnoreCase(keywordInLow, (maxPoints - 1) * granularity, text.length())) {
+				recPoints = recPoints + 1;
+			}
+			if ((perexText != null) && (perexText.length() > 0)) {
+				maxPoints = maxPoints + 2;
+				if (perexText.containsIgnoreCase(keywordInLow)) {
+					recPoints = recPoints + 2;
+				}
+			}
+		}
+
+		if ((title != null) && (!title.isEmpty())) {
+			maxPoints = maxPoints + 5;
+			if (title.toLowerCase().contains(keywordInLow)) {
+				recPoints = recPoints + 5;
+			}
+		}
+
+		if (recPoints > maxPoints) {
+			recPoints = maxPoints;
+		}
+		return (double) recPoints / maxPoints;
+	}
+
+	/**
+	 * Generates a text of random words, each padded to ten characters, so
+	 * that no word crosses the border of a chunk.
+	 *
+	 * @param generator source of randomness
+	 * @param count number of words
+	 * @return the text
+	 */
+	private static String words(final Random generator, final int count) {
+
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < count; i++) {
+			String word = WORDS[generator.nextInt(WORDS.length)];
+			if (generator.nextBoolean()) {
+				word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+			}
+			text.append(pad(word, 10));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @param word a word
+	 * @param length length of the result
+	 * @return the word followed by spaces up to the given length
+	 */
+	private static String pad(final String word, final int length) {
+
+		StringBuilder padded = new StringBuilder(word);
+
+		while (padded.length() < length) {
+			padded.append(' ');
+		}
+		return padded.toString();
+	}
+}
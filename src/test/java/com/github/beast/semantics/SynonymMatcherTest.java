@@ -0,0 +1,78 @@
+package com.github.beast.semantics;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.github.beast.util.TermIndex;
+
+/**
+ * Tests of the {@link SynonymMatcher}.
+ */
+public class SynonymMatcherTest extends TestCase {
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public SynonymMatcherTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(SynonymMatcherTest.class);
+	}
+
+	/**
+	 * Synonyms subsumed by a shorter synonym, repeated synonyms and synonyms
+	 * without words are dropped.
+	 */
+	public void testDropsRedundantSynonyms() {
+
+		SynonymMatcher matcher = SynonymMatcher.compile(Arrays.asList("Bank", "bank building", "BANK", "--",
+				"depository financial institution"));
+
+		assertEquals(2, matcher.size());
+		assertEquals(Arrays.asList("bank"), Arrays.asList(matcher.getPatterns()[0]));
+	}
+
+	/**
+	 * Chunks containing any of the synonyms are counted once.
+	 */
+	public void testMatchesAnySynonym() {
+
+		StringBuilder text = new StringBuilder();
+		text.append(chunk("the bank and the depository financial institution"));
+		text.append(chunk("depository financial institution"));
+		text.append(chunk("river"));
+		TermIndex terms = TermIndex.of("Banks merge", null, text);
+		SynonymMatcher matcher = SynonymMatcher.compile(Arrays.asList("bank", "depository financial institution"));
+
+		assertEquals(2, matcher.countChunks(terms));
+		assertEquals(3, matcher.countOccurrences(terms));
+		assertTrue(matcher.inTitle(terms));
+		assertFalse(matcher.inPerex(terms));
+	}
+
+	/**
+	 * @param words words of the chunk
+	 * @return the words padded to a single chunk
+	 */
+	private static String chunk(final String words) {
+
+		StringBuilder chunk = new StringBuilder(words);
+
+		while (chunk.length() < TermIndex.CHUNK_SIZE) {
+			chunk.append(' ');
+		}
+		return chunk.toString();
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.beast.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link CompactText}.
+ */
+public class CompactTextTest extends TestCase {
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public CompactTextTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(CompactTextTest.class);
+	}
+
+	/**
+	 * Latin-1 text is stored as bytes, other text as characters.
+	 */
+	public void testStorage() {
+
+		CompactText latin = CompactText.of("Zürich");
+		CompactText other = CompactText.of("Štefan");
+
+		assertEquals("Zürich", latin.toString());
+		assertEquals("Štefan", other.toString());
+		assertEquals(6, latin.getByteSize());
+		assertEquals(12, other.getByteSize());
+		assertNull(CompactText.of(null));
+	}
+
+	/**
+	 * Searching ignores case of the text, patterns need to be fully contained
+	 * in the searched region.
+	 */
+	public void testSearchIgnoresCase() {
+
+		CompactText text = CompactText.of("Central BANK raises rates");
+
+		assertTrue(text.containsIgnoreCase("bank"));
+		assertEquals(8, text.indexOfIgnoreCase("bank"));
+		assertFalse(text.containsIgnoreCase("bank", 0, 10));
+		assertTrue(text.containsIgnoreCase("bank", 8, 12));
+		assertFalse(text.containsIgnoreCase("storm"));
+	}
+
+	/**
+	 * Slices share the storage and equal copies of their characters.
+	 */
+	public void testSlices() {
+
+		CompactText text = CompactText.of("Central bank raises rates");
+		CompactText slice = text.subSequence(8, 12);
+
+		assertEquals("bank", slice.toString());
+		assertEquals(CompactText.of("bank"), slice);
+		assertEquals(CompactText.of("bank").hashCode(), slice.hashCode());
+		assertTrue(slice.containsIgnoreCase("ank"));
+		assertFalse(slice.containsIgnoreCase("rai"));
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.beast.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link ConcurrentLruCache}.
+ */
+public class ConcurrentLruCacheTest extends TestCase {
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public ConcurrentLruCacheTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(ConcurrentLruCacheTest.class);
+	}
+
+	/**
+	 * The least recently used entry of a full stripe is evicted.
+	 */
+	public void testEvictsLeastRecentlyUsed() {
+
+		// two entries per stripe, keys of equal hash share a stripe
+		ConcurrentLruCache<Key, String> cache = new ConcurrentLruCache<Key, String>(32);
+		Key first = new Key("first");
+		Key second = new Key("second");
+		Key third = new Key("third");
+
+		cache.put(first, "1");
+		cache.put(second, "2");
+		assertEquals("1", cache.get(first));
+		cache.put(third, "3");
+
+		assertEquals("1", cache.get(first));
+		assertNull(cache.get(second));
+		assertEquals("3", cache.get(third));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	/**
+	 * The size of the cache never exceeds its capacity.
+	 */
+	public void testBounded() {
+
+		ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>(160);
+
+		for (int i = 0; i < 10000; i++) {
+			cache.put("key" + i, i);
+		}
+		assertTrue(cache.size() <= 160);
+		assertEquals(10000 - cache.size(), cache.getEvictions());
+	}
+
+	/**
+	 * A value already cached is kept by {@link ConcurrentLruCache#putIfAbsent}.
+	 */
+	public void testPutIfAbsent() {
+
+		ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>(100);
+
+		assertNull(cache.putIfAbsent("a", "1"));
+		assertEquals("1", cache.putIfAbsent("a", "2"));
+		assertEquals("1", cache.remove("a"));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * A key of a constant hash.
+	 */
+	private static final class Key {
+
+		private final String name;
+
+		/**
+		 * @param name name of the key
+		 */
+		private Key(final String name) {
+
+			this.name = name;
+		}
+
+		public boolean equals(final Object other) {
+
+			return (other instanceof Key) && (name.equals(((Key) other).name));
+		}
+
+		public int hashCode() {
+
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.beast.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link Fingerprint}.
+ */
+public class FingerprintTest extends TestCase {
+
+	private static final String TEXT = "The central bank raised interest rates on Tuesday, citing inflation that "
+			+ "has stayed above its target for more than a year. Markets had expected the move, and stocks "
+			+ "rose slightly after the announcement.";
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public FingerprintTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(FingerprintTest.class);
+	}
+
+	/**
+	 * Texts differing only in case and whitespace have the same content.
+	 */
+	public void testNormalizedContent() {
+
+		Fingerprint original = Fingerprint.of(TEXT);
+		Fingerprint normalized = Fingerprint.of("  " + TEXT.toUpperCase().replace(" ", "\n\t "));
+
+		assertTrue(original.sameContent(normalized));
+		assertEquals(0, original.distance(normalized));
+	}
+
+	/**
+	 * Near-identical texts differ in few bits of their <i>SimHashes</i>, other
+	 * texts in many.
+	 */
+	public void testNearDuplicates() {
+
+		Fingerprint original = Fingerprint.of(TEXT);
+		Fingerprint edited = Fingerprint.of(TEXT.replace("Tuesday", "Wednesday"));
+		Fingerprint other = Fingerprint.of("A storm flooded the coast overnight, leaving thousands of homes "
+				+ "without power and closing roads across the region until the water receded.");
+
+		assertFalse(original.sameContent(edited));
+		assertTrue(original.distance(edited) < original.distance(other));
+		assertFalse(original.sameContent(null));
+	}
+
+	/**
+	 * Texts without words have no fingerprint.
+	 */
+	public void testNoWords() {
+
+		assertNull(Fingerprint.of(null));
+		assertNull(Fingerprint.of(""));
+		assertNull(Fingerprint.of(" -- ... !"));
+		assertNotNull(Fingerprint.of("word"));
+	}
+
+	/**
+	 * Bands split the <i>SimHash</i> into disjoint parts.
+	 */
+	public void testBands() {
+
+		Fingerprint fingerprint = new Fingerprint(0, 0x0004000300020001L);
+
+		for (int band = 0; band < Fingerprint.BANDS; band++) {
+			assertEquals(band + 1, fingerprint.getBand(band));
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.github.beast.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link ScalableBloomFilter}.
+ */
+public class ScalableBloomFilterTest extends TestCase {
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public ScalableBloomFilterTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(ScalableBloomFilterTest.class);
+	}
+
+	/**
+	 * Added strings are always reported, also beyond the initial capacity,
+	 * while the false positive rate stays near the configured probability.
+	 */
+	public void testGrowsBeyondCapacity() {
+
+		ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+		int falsePositives = 0;
+
+		for (int i = 0; i < 5000; i++) {
+			filter.put("http://example.com/added/" + i);
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertTrue(filter.mightContain("http://example.com/added/" + i));
+		}
+		for (int i = 0; i < 10000; i++) {
+			if (filter.mightContain("http://example.com/other/" + i)) {
+				falsePositives++;
+			}
+		}
+
+		assertEquals(5000, filter.size());
+		assertTrue("false positives: " + falsePositives, falsePositives < 300);
+	}
+
+	/**
+	 * An empty filter reports no string.
+	 */
+	public void testEmpty() {
+
+		ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+
+		assertFalse(filter.mightContain("http://example.com/"));
+		assertEquals(0, filter.size());
+	}
+}
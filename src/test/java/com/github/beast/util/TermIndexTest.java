@@ -0,0 +1,122 @@
+package com.github.beast.util;
+
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link TermIndex}.
+ */
+public class TermIndexTest extends TestCase {
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public TermIndexTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(TermIndexTest.class);
+	}
+
+	/**
+	 * Terms are maximal sequences of letters and digits, in lower case.
+	 */
+	public void testTokenize() {
+
+		assertEquals(Arrays.asList("oil", "prices", "rise", "3", "percent"),
+				Arrays.asList(TermIndex.tokenize("Oil prices -- rise 3 percent!")));
+		assertEquals(0, TermIndex.tokenize(" .,; ").length);
+	}
+
+	/**
+	 * Terms of all sections are sorted, terms of the text are counted, and
+	 * keywords match as prefixes of terms.
+	 */
+	public void testTermsAndOccurrences() {
+
+		TermIndex terms = TermIndex.of("Title", null, "Banks bank banking river");
+
+		assertEquals(5, terms.size());
+		assertEquals("bank", terms.getTerm(0));
+		assertEquals("title", terms.getTerm(4));
+		assertEquals(4, terms.getLength());
+		assertEquals(3, terms.countOccurrences(new String[][] {{"bank"}}));
+		assertEquals(1, terms.countOccurrences(new String[][] {{"banks"}}));
+		assertEquals(0, terms.countOccurrences(new String[][] {{"ank"}}));
+		assertEquals(0, terms.countOccurrences(new String[][] {{"title"}}));
+	}
+
+	/**
+	 * Keywords of multiple words match chunks containing all their words,
+	 * alternative keywords match chunks containing any of them.
+	 */
+	public void testChunks() {
+
+		StringBuilder text = new StringBuilder();
+		text.append(chunk("central bank"));
+		text.append(chunk("central river"));
+		text.append(chunk("bank"));
+		TermIndex terms = TermIndex.of(null, null, text);
+
+		assertEquals(3, terms.getChunkCount());
+		assertEquals(2, terms.countChunks("bank"));
+		assertEquals(1, terms.countChunks("central bank"));
+		assertEquals(2, terms.countChunks(new String[][] {{"central", "bank"}, {"river"}}));
+		assertEquals(0, terms.countChunks("storm"));
+	}
+
+	/**
+	 * The title and perex are flagged, without counting as chunks of text.
+	 */
+	public void testTitleAndPerex() {
+
+		TermIndex terms = TermIndex.of("Storm over the coast", "Heavy rain", null);
+
+		assertTrue(terms.hasTitle());
+		assertTrue(terms.hasPerex());
+		assertEquals(0, terms.getChunkCount());
+		assertTrue(terms.inTitle("storm"));
+		assertTrue(terms.inTitle("the coast"));
+		assertFalse(terms.inTitle("rain"));
+		assertTrue(terms.inPerex("rain"));
+		assertFalse(terms.inPerex("storm rain"));
+	}
+
+	/**
+	 * An article without content has no terms.
+	 */
+	public void testEmpty() {
+
+		TermIndex terms = TermIndex.of(null, null, null);
+
+		assertEquals(0, terms.size());
+		assertFalse(terms.hasTitle());
+		assertEquals(0, terms.countChunks("storm"));
+		assertEquals(0, TermIndex.EMPTY.getByteSize());
+	}
+
+	/**
+	 * @param words words of the chunk
+	 * @return the words padded to a single chunk
+	 */
+	private static String chunk(final String words) {
+
+		StringBuilder chunk = new StringBuilder(words);
+
+		while (chunk.length() < TermIndex.CHUNK_SIZE) {
+			chunk.append(' ');
+		}
+		return chunk.toString();
+	}
+}
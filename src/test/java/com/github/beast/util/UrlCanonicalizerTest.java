@@ -0,0 +1,80 @@
+package com.github.beast.util;
+
+import java.net.URL;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests of the {@link UrlCanonicalizer}.
+ */
+public class UrlCanonicalizerTest extends TestCase {
+
+	/** Properties of unit tests. */
+	private static final String PROPERTIES = "src/test/resources/test.properties";
+
+	/**
+	 * Create the test case.
+	 *
+	 * @param testName name of the test case
+	 */
+	public UrlCanonicalizerTest(final String testName) {
+
+		super(testName);
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+
+		return new TestSuite(UrlCanonicalizerTest.class);
+	}
+
+	protected void setUp() throws Exception {
+
+		Configuration.getInstance(PROPERTIES);
+	}
+
+	/**
+	 * Scheme and host are lower case, default ports, fragments and empty paths
+	 * are dropped.
+	 */
+	public void testNormalizesUrl() throws Exception {
+
+		assertEquals("http://www.reuters.com/", canonical("HTTP://WWW.Reuters.com:80"));
+		assertEquals("https://example.com/a/B", canonical("https://example.com:443/a/B#section"));
+		assertEquals("http://example.com:8080/", canonical("http://example.com:8080/"));
+	}
+
+	/**
+	 * Tracking parameters are removed, other parameters keep their order.
+	 */
+	public void testStripsTracking() throws Exception {
+
+		assertEquals("http://example.com/a?id=1&page=2",
+				canonical("http://example.com/a?utm_source=x&id=1&feedType=RSS&page=2"));
+		assertEquals("http://example.com/a", canonical("http://example.com/a?UTM_MEDIUM=y&rpc=22"));
+	}
+
+	/**
+	 * A canonical url is returned as is.
+	 */
+	public void testKeepsCanonicalInstance() throws Exception {
+
+		URL url = new URL("http://example.com/a?id=1");
+
+		assertSame(url, UrlCanonicalizer.canonicalize(url));
+	}
+
+	/**
+	 * @param url a url
+	 * @return the canonical form of the url
+	 * @throws Exception if the url is malformed
+	 */
+	private static String canonical(final String url) throws Exception {
+
+		return UrlCanonicalizer.canonicalize(new URL(url)).toString();
+	}
+}